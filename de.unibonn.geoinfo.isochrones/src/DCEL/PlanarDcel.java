@@ -0,0 +1,162 @@
+package DCEL;
+
+import java.util.Arrays;
+import java.util.List;
+
+import graph.generic.DiGraph;
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+
+/**
+ * Doubly connected edge list of a planar graph on primitive arrays. In
+ * contrast to {@link Dcel}, no data is attached to vertices, half-edges or
+ * faces, so that the structure only depends on the topology of the graph. It
+ * can be built once for a static graph and shared by concurrent queries, which
+ * keep their data in own arrays indexed by the ids of the vertices and
+ * half-edges.
+ *
+ * Vertices and half-edges have the ids of the nodes and arcs of the graph.
+ * Next half-edges and faces are defined as in
+ * {@link Dcel#Dcel(DiGraph, DiGraph.DiGraphArc)}: the graph needs a twin for
+ * each arc, ids matching the positions in the node and arc lists and
+ * adjacency lists sorted by {@link graph.generic.LineComparator}, so that the
+ * i-th incoming arc of a node is the twin of its i-th outgoing arc.
+ */
+public class PlanarDcel {
+
+	/**
+	 * id of the face containing the outer arc of the graph
+	 */
+	public static final int OUTER_FACE = 0;
+
+	private final int[] vertexEdge; // first outgoing half-edge, -1 if isolated
+	private final int[] degree;
+	private final int[] origin;
+	private final int[] twin;
+	private final int[] next;
+	private final int[] face;
+	private final int[] faceEdge; // half-edge of the boundary with the smallest id, -1 for the outer face
+
+	/**
+	 * @param graph    planar graph, see the requirements above
+	 * @param outerArc arc on the boundary of the outer face
+	 */
+	public PlanarDcel(DiGraph<?, ?> graph, DiGraphArc<?, ?> outerArc) {
+		int n = graph.n();
+		int m = graph.m();
+		vertexEdge = new int[n];
+		degree = new int[n];
+		origin = new int[m];
+		twin = new int[m];
+		next = new int[m];
+		face = new int[m];
+
+		for (int v = 0; v < n; ++v) {
+			DiGraphNode<?, ?> node = graph.getNode(v);
+			List<? extends DiGraphArc<?, ?>> outgoing = node.getOutgoingArcs();
+			List<? extends DiGraphArc<?, ?>> incoming = node.getIncomingArcs();
+			degree[v] = outgoing.size();
+			vertexEdge[v] = outgoing.isEmpty() ? -1 : outgoing.get(0).getId();
+			for (int i = 0; i < outgoing.size(); ++i) {
+				int e = outgoing.get(i).getId();
+				origin[e] = v;
+				twin[e] = incoming.get(i).getId();
+				// the next half-edge turns at the target of e, following the outgoing arc
+				// before the twin of e in the order of the target
+				DiGraphNode<?, ?> target = outgoing.get(i).getTarget();
+				int j = target.getIncomingArcs().indexOf(outgoing.get(i));
+				int deg = target.getOutgoingArcs().size();
+				next[e] = target.getOutgoingArcs().get(j == 0 ? deg - 1 : j - 1).getId();
+			}
+		}
+
+		Arrays.fill(face, -1);
+		int numFaces = 0;
+		int[] faceEdge = new int[16];
+		numFaces = labelRing(outerArc.getId(), numFaces);
+		faceEdge[OUTER_FACE] = -1;
+		for (int e = 0; e < m; ++e) {
+			if (face[e] >= 0)
+				continue;
+			if (numFaces == faceEdge.length)
+				faceEdge = Arrays.copyOf(faceEdge, 2 * numFaces);
+			faceEdge[numFaces] = e;
+			numFaces = labelRing(e, numFaces);
+		}
+		this.faceEdge = Arrays.copyOf(faceEdge, numFaces);
+	}
+
+	/**
+	 * Assigns the face to all half-edges of the ring of <code>start</code>.
+	 *
+	 * @return number of faces including the labeled one
+	 */
+	private int labelRing(int start, int f) {
+		int e = start;
+		do {
+			face[e] = f;
+			e = next[e];
+		} while (e != start);
+		return f + 1;
+	}
+
+	public int numVertices() {
+		return vertexEdge.length;
+	}
+
+	public int numHalfEdges() {
+		return origin.length;
+	}
+
+	public int numFaces() {
+		return faceEdge.length;
+	}
+
+	/**
+	 * @return first outgoing half-edge of the vertex, the others follow by
+	 *         {@link #nextOutgoing(int)}; -1 if the vertex is isolated
+	 */
+	public int outgoing(int vertex) {
+		return vertexEdge[vertex];
+	}
+
+	/**
+	 * @return outgoing half-edge of the origin of <code>edge</code> following
+	 *         it, i.e. the next half-edge of its twin
+	 */
+	public int nextOutgoing(int edge) {
+		return next[twin[edge]];
+	}
+
+	public int degree(int vertex) {
+		return degree[vertex];
+	}
+
+	public int origin(int edge) {
+		return origin[edge];
+	}
+
+	public int target(int edge) {
+		return origin[twin[edge]];
+	}
+
+	public int twin(int edge) {
+		return twin[edge];
+	}
+
+	public int next(int edge) {
+		return next[edge];
+	}
+
+	public int face(int edge) {
+		return face[edge];
+	}
+
+	/**
+	 * @return half-edge with the smallest id on the boundary of the face, -1 for
+	 *         the {@link #OUTER_FACE outer face}
+	 */
+	public int faceEdge(int face) {
+		return faceEdge[face];
+	}
+}
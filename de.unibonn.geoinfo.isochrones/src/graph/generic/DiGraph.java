@@ -2,11 +2,22 @@ package graph.generic;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * Directed graph with adjacency lists. Removing single arcs takes time linear in
+ * the degree of their nodes: removed arcs are only marked and purged from the
+ * arc list by {@link #compact()} or {@link #updateIDs()}, until then reading the
+ * arc list throws an {@link IllegalStateException}. Hence, reading the graph has
+ * no side effects and several threads may read it concurrently. Each arc
+ * keeps a reference to its twin, i.e. the arc in opposite direction it has been
+ * paired with when added. Once built, the graph can be {@link #freeze() frozen}
+ * to share it read-only, e.g. between concurrent queries.
+ */
 public class DiGraph<V, E> {
 
 	public static class DiGraphNode<V, E> {
@@ -79,6 +90,8 @@ public class DiGraph<V, E> {
 		private DiGraphNode<V, E> target;
 		private E arcData;
 		private int id;
+		private DiGraphArc<V, E> twin;
+		private boolean removed = false;
 
 		protected DiGraphArc(DiGraphNode<V, E> source, DiGraphNode<V, E> target, E arcData, int id) {
 			this.source = source;
@@ -107,7 +120,13 @@ public class DiGraph<V, E> {
 			return id;
 		}
 
+		/**
+		 * @return arc in opposite direction paired with this arc, or, if there is
+		 *         none, the first incoming arc of the source coming from the target
+		 */
 		public DiGraphArc<V, E> getTwin() {
+			if (twin != null)
+				return twin;
 			for (DiGraphArc<V, E> a : source.getIncomingArcs()) {
 				if (a.getSource() == this.getTarget())
 					return a;
@@ -152,6 +171,9 @@ public class DiGraph<V, E> {
 
 	private ArrayList<DiGraphNode<V, E>> nodeList;
 	private ArrayList<DiGraphArc<V, E>> arcList;
+	// removed arcs still contained in the arc list
+	private int removedArcs = 0;
+	private boolean frozen = false;
 
 	/**
 	 * Generates empty graph
@@ -184,13 +206,23 @@ public class DiGraph<V, E> {
 	}
 
 	public DiGraphNode<V, E> addNode(V nodeInfo) {
+		checkMutable();
 		DiGraphNode<V, E> v = new DiGraphNode<V, E>(nodeInfo, nodeList.size());
 		nodeList.add(v);
 		return v;
 	}
 
 	public DiGraphArc<V, E> addArc(DiGraphNode<V, E> v1, DiGraphNode<V, E> v2, E edgeData) {
+		checkMutable();
+		// ids stay unique while removed arcs are not purged
 		DiGraphArc<V, E> a = new DiGraphArc<V, E>(v1, v2, edgeData, arcList.size());
+		for (DiGraphArc<V, E> reverse : v1.incomingArcs) {
+			if (reverse.source == v2 && reverse.twin == null) {
+				a.twin = reverse;
+				reverse.twin = a;
+				break;
+			}
+		}
 		v1.outgoingArcs.add(a);
 		v2.incomingArcs.add(a);
 		arcList.add(a);
@@ -202,7 +234,7 @@ public class DiGraph<V, E> {
 	}
 
 	public int m() {
-		return arcList.size();
+		return arcList.size() - removedArcs;
 	}
 
 	public DiGraphNode<V, E> getNode(int index) {
@@ -214,19 +246,91 @@ public class DiGraph<V, E> {
 	}
 
 	public DiGraphArc<V, E> getArc(int index) {
+		checkCompacted();
 		return arcList.get(index);
 	}
 
 	public ArrayList<DiGraphArc<V, E>> getArcs() {
+		checkCompacted();
 		return arcList;
 	}
 
 	public void setNodes(ArrayList<DiGraphNode<V, E>> nodes) {
+		checkMutable();
 		this.nodeList = nodes;
 	}
 
 	public void setArcs(ArrayList<DiGraphArc<V, E>> arcs) {
+		checkMutable();
 		this.arcList = arcs;
+		this.removedArcs = 0;
+	}
+
+	private void purgeRemovedArcs() {
+		if (removedArcs > 0) {
+			arcList.removeIf(a -> a.removed);
+			removedArcs = 0;
+		}
+	}
+
+	/**
+	 * @return true if the ids of all nodes and arcs match their positions
+	 */
+	private boolean isNumbered() {
+		for (int i = 0; i < nodeList.size(); i++)
+			if (nodeList.get(i).getId() != i)
+				return false;
+		for (int i = 0; i < arcList.size(); i++)
+			if (arcList.get(i).getId() != i)
+				return false;
+		return true;
+	}
+
+	private void checkCompacted() {
+		if (removedArcs > 0)
+			throw new IllegalStateException("Arcs have been removed, call compact() first.");
+	}
+
+	private void checkMutable() {
+		if (frozen)
+			throw new IllegalStateException("Graph is frozen.");
+	}
+
+	private void unlinkTwin(DiGraphArc<V, E> arc) {
+		if (arc.twin != null) {
+			arc.twin.twin = null;
+			arc.twin = null;
+		}
+	}
+
+	/**
+	 * Purges removed arcs from the arc list and renumbers nodes and arcs by their
+	 * positions, see {@link #updateIDs()}.
+	 */
+	public void compact() {
+		updateIDs();
+	}
+
+	/**
+	 * Compacts the graph and makes it read-only: adjacency lists cannot be
+	 * modified anymore and adding or removing nodes and arcs throws an
+	 * {@link IllegalStateException}.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		compact();
+		nodeList.trimToSize();
+		arcList.trimToSize();
+		for (DiGraphNode<V, E> node : nodeList) {
+			node.outgoingArcs = Collections.unmodifiableList(new ArrayList<>(node.outgoingArcs));
+			node.incomingArcs = Collections.unmodifiableList(new ArrayList<>(node.incomingArcs));
+		}
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
 	}
 
 	/**
@@ -235,6 +339,8 @@ public class DiGraph<V, E> {
 	 * @param arcsToBeRemoved
 	 */
 	public void removeArcs(HashSet<DiGraphArc<V, E>> arcsToBeRemoved) {
+		checkMutable();
+		purgeRemovedArcs();
 		ArrayList<DiGraphArc<V, E>> arcListNew = new ArrayList<DiGraphArc<V, E>>();
 		for (DiGraphArc<V, E> a : arcList) {
 			if (!arcsToBeRemoved.contains(a)) {
@@ -242,22 +348,27 @@ public class DiGraph<V, E> {
 			} else {
 				a.getSource().getOutgoingArcs().remove(a);
 				a.getTarget().getIncomingArcs().remove(a);
+				unlinkTwin(a);
 			}
 		}
 		arcList = arcListNew;
 	}
 
 	/**
-	 * method to remove an arc in O(m) time
+	 * method to remove an arc in O(deg) time, the arc is purged from the arc list
+	 * by the next {@link #compact()}
 	 * 
 	 * @param arcToBeRemoved
 	 */
 	public void removeArc(DiGraphArc<V, E> arcToBeRemoved) {
-		if (arcToBeRemoved == null)
+		if (arcToBeRemoved == null || arcToBeRemoved.removed)
 			return;
-		arcList.remove(arcToBeRemoved);
+		checkMutable();
 		arcToBeRemoved.source.getOutgoingArcs().remove(arcToBeRemoved);
 		arcToBeRemoved.target.getIncomingArcs().remove(arcToBeRemoved);
+		unlinkTwin(arcToBeRemoved);
+		arcToBeRemoved.removed = true;
+		++removedArcs;
 	}
 
 	/**
@@ -266,6 +377,7 @@ public class DiGraph<V, E> {
 	 * @param nodesToBeRemoved
 	 */
 	public void removeNodes(HashSet<DiGraphNode<V, E>> nodesToBeRemoved) {
+		checkMutable();
 		// remove incident arcs
 		HashSet<DiGraphArc<V, E>> arcsToBeRemoved = new HashSet<DiGraphArc<V, E>>();
 		for (DiGraphNode<V, E> v : nodesToBeRemoved) {
@@ -289,6 +401,7 @@ public class DiGraph<V, E> {
 	 * @param nodeToBeRemoved
 	 */
 	public void removeNode(DiGraphNode<V, E> nodeToBeRemoved) {
+		checkMutable();
 		HashSet<DiGraphArc<V, E>> arcsToBeRemoved = new HashSet<DiGraphArc<V, E>>();
 		arcsToBeRemoved.addAll(nodeToBeRemoved.incomingArcs);
 		arcsToBeRemoved.addAll(nodeToBeRemoved.outgoingArcs);
@@ -341,6 +454,7 @@ public class DiGraph<V, E> {
 //	}
 
 	public void sort(Comparator<DiGraphArc<V, E>> outgoingComp, Comparator<DiGraphArc<V, E>> incomingComp) {
+		checkMutable();
 		for (DiGraphNode<V, E> node : nodeList) {
 			node.outgoingArcs.sort(outgoingComp);
 			node.incomingArcs.sort(incomingComp);
@@ -348,7 +462,19 @@ public class DiGraph<V, E> {
 //		updateIDs();
 	}
 
+	/**
+	 * Purges removed arcs from the arc list and renumbers nodes and arcs by their
+	 * positions.
+	 * 
+	 * @return previous ids of the nodes and of the arcs, indexed by their new ids
+	 * @throws IllegalStateException if the graph is frozen and would change
+	 */
 	public ArrayList<ArrayList<Integer>> updateIDs() {
+		boolean renumber = removedArcs > 0 || !isNumbered();
+		if (renumber) {
+			checkMutable();
+			purgeRemovedArcs();
+		}
 		ArrayList<ArrayList<Integer>> lookuptable = new ArrayList<>();
 		ArrayList<Integer> nodeTable = new ArrayList<>();
 		ArrayList<Integer> arcTable = new ArrayList<>();
@@ -356,12 +482,14 @@ public class DiGraph<V, E> {
 		for (int i = 0; i < this.n(); i++) {
 			DiGraphNode<V, E> node = this.getNode(i);
 			nodeTable.add(node.getId());
-			node.setId(i);
+			if (renumber)
+				node.setId(i);
 		}
 		for (int i = 0; i < this.m(); i++) {
 			DiGraphArc<V, E> arc = this.getArc(i);
 			arcTable.add(arc.getId());
-			arc.setId(i);
+			if (renumber)
+				arc.setId(i);
 		}
 		lookuptable.add(nodeTable);
 		lookuptable.add(arcTable);
@@ -3,6 +3,7 @@ package graph.generic.LD;
 import java.awt.geom.Point2D;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 
@@ -13,12 +14,13 @@ import graph.generic.LD.LinearDualCreator.LinearDualGraphIdentifier;
 import graph.generic.LD.factory.LineSegment;
 import graph.generic.LD.factory.TurncostFactory;
 import graph.planarizer.PlanarGraph;
+import graph.routing.Dijkstra.NeighborVisitor;
 import graph.routing.Dijkstra.NodeIterator;
 import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
-import main.AbstractMain;
+import main.QueryConfig;
 
 public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 
@@ -31,16 +33,23 @@ public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 	DiGraphNode<Point2D, VisualizationEdge> originalSource;
 	DiGraphNode<Point2D, VisualizationEdge> originalTarget;
 
+	private final double nonOctiMalus;
+	private final double dilationFactor;
+
 	public LDIterator(DiGraphNode<Point2D, VisualizationEdge> originalSource,
 			DiGraphNode<Point2D, VisualizationEdge> originalTarget, DiGraphNode<Point2D, VisualizationEdge> source,
 			DiGraphNode<Point2D, VisualizationEdge> target,
-			LinearDualGraphIdentifier<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldi) {
+			LinearDualGraphIdentifier<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldi,
+			QueryConfig config) {
 		this.originalSource = originalSource;
 		this.originalTarget = originalTarget;
 
 		this.source = source;
 		this.target = target;
 		this.ldi = ldi;
+
+		this.nonOctiMalus = config.getNonOctiMalus();
+		this.dilationFactor = config.getDilationFactor();
 	}
 
 	public void setColoredGraph(PlanarGraph<ColoredNode, GeofabrikData> coloredGraph) {
@@ -50,6 +59,13 @@ public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 	@Override
 	public Iterator<DiGraphNode<Point2D, VisualizationEdge>> getIterator(DiGraphNode<Point2D, VisualizationEdge> s) {
 		LinkedList<DiGraphNode<Point2D, VisualizationEdge>> a = new LinkedList<>();
+		forEachNeighbor(s, (t, weight) -> a.add(t));
+		return a.iterator();
+	}
+
+	@Override
+	public void forEachNeighbor(DiGraphNode<Point2D, VisualizationEdge> s,
+			NeighborVisitor<Point2D, VisualizationEdge> visitor) {
 		if (s == source) {
 
 			TreeSet<LineSegment> compareSet;
@@ -78,7 +94,7 @@ public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 //					System.out.println(s.getNodeData() + " " + arc.getTarget().getNodeData() + " to right");
 
 				if (direction == 1)
-					a.add(ldi.getLDNode(arc));
+					visitor.visit(ldi.getLDNode(arc), 0);
 			}
 		}
 
@@ -113,15 +129,17 @@ public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 //						+ " from left");
 
 			if (direction == -1)
-				a.add(target);
+				visitor.visit(target, getWeightOfCurrentArc(s, target));
 		}
 
 		if (s != source && s != target) {
-			for (DiGraphArc<Point2D, VisualizationEdge> arc : s.getOutgoingArcs()) {
-				a.add(arc.getTarget());
+			List<DiGraphArc<Point2D, VisualizationEdge>> arcs = s.getOutgoingArcs();
+			DiGraphArc<Point2D, VisualizationEdge> arc;
+			for (int i = 0; i < arcs.size(); ++i) {
+				arc = arcs.get(i);
+				visitor.visit(arc.getTarget(), arc.getArcData().getValue());
 			}
 		}
-		return a.iterator();
 	}
 
 	@Override
@@ -130,9 +148,8 @@ public class LDIterator implements NodeIterator<Point2D, VisualizationEdge> {
 		if (s == source)
 			return 0;
 		if (ldi.getOriginalArc(s) != null && ldi.getOriginalArc(s).getTarget() == originalTarget) {
-			double nonOctiMalus = TurncostFactory.isOcti(s.getNodeData(), t.getNodeData()) ? 1
-					: AbstractMain.NON_OCTI_MALUS;
-			return ldi.getOriginalArc(s).getArcData().getValue() * AbstractMain.DILATION_FACTOR * nonOctiMalus;
+			double malus = TurncostFactory.isOcti(s.getNodeData(), t.getNodeData()) ? 1 : nonOctiMalus;
+			return ldi.getOriginalArc(s).getArcData().getValue() * dilationFactor * malus;
 		}
 		return s.getFirstOutgoingArcTo(t).getArcData().getValue();
 	}
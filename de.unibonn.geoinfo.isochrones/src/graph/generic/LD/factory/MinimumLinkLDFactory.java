@@ -11,13 +11,14 @@ import graph.planarizer.PlanarGraph;
 import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.VisualizationEdge;
+import main.QueryConfig;
 
 public class MinimumLinkLDFactory extends TurncostFactory {
 
 	private PlanarGraph<ColoredNode, ?> coloredGraph;
 
-	public MinimumLinkLDFactory(double offsetFactor, PlanarGraph<ColoredNode, ?> coloredGraph) {
-		super(offsetFactor);
+	public MinimumLinkLDFactory(double offsetFactor, PlanarGraph<ColoredNode, ?> coloredGraph, QueryConfig config) {
+		super(offsetFactor, config);
 		this.coloredGraph = coloredGraph;
 	}
 
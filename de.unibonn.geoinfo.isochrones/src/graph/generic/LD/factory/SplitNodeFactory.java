@@ -12,6 +12,7 @@ import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
+import main.QueryConfig;
 
 public class SplitNodeFactory extends TurncostFactory {
 
@@ -19,8 +20,8 @@ public class SplitNodeFactory extends TurncostFactory {
 	private Set<DiGraphNode<Point2D, VisualizationEdge>> splitnodes;
 
 	public SplitNodeFactory(double offsetFactor, PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
-			Set<DiGraphNode<Point2D, VisualizationEdge>> splitnodes) {
-		super(offsetFactor);
+			Set<DiGraphNode<Point2D, VisualizationEdge>> splitnodes, QueryConfig config) {
+		super(offsetFactor, config);
 		this.coloredGraph = coloredGraph;
 		this.splitnodes = splitnodes;
 	}
@@ -7,16 +7,21 @@ import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.LD.LinearDualCreator.LinearDualFactory;
 import graph.types.VisualizationEdge;
 import main.AbstractMain;
+import main.QueryConfig;
 import util.tools.Util;
 
 public class TurncostFactory
 		implements LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> {
 
 	private double offsetFactor;
+	private final double nonOctiMalus;
+	private final boolean weightTurns;
 	public static final int WEIGHT_UTURN = 10000;
 
-	public TurncostFactory(double offsetFactor) {
+	public TurncostFactory(double offsetFactor, QueryConfig config) {
 		this.offsetFactor = offsetFactor;
+		this.nonOctiMalus = config.getNonOctiMalus();
+		this.weightTurns = config.weightTurns();
 	}
 
 	@Override
@@ -63,10 +68,10 @@ public class TurncostFactory
 	}
 
 	protected double computeWeight(Point2D pred, Point2D actual, Point2D target) {
-		double val = TurncostFactory.computeTurncosts(pred, actual, target);
+		double val = TurncostFactory.computeTurncosts(pred, actual, target, weightTurns);
 
-		double nonOctiMalus = TurncostFactory.isOcti(pred, actual) ? 1 : AbstractMain.NON_OCTI_MALUS;
-		val += pred.distance(actual) * AbstractMain.DISTANCE_FACTOR * nonOctiMalus;
+		double malus = TurncostFactory.isOcti(pred, actual) ? 1 : nonOctiMalus;
+		val += pred.distance(actual) * AbstractMain.DISTANCE_FACTOR * malus;
 		return val;
 	}
 
@@ -83,6 +88,15 @@ public class TurncostFactory
 	}
 
 	public static double computeTurncosts(Point2D pred, Point2D actual, Point2D target) {
+		return computeTurncosts(pred, actual, target, true);
+	}
+
+	/**
+	 * @param weightTurns if false, all turns except for straight lines cost 1
+	 * @return 0 for straight lines, 1 to 4 for octilinear turns depending on
+	 *         their angle, {@link #WEIGHT_UTURN} for u-turns
+	 */
+	public static double computeTurncosts(Point2D pred, Point2D actual, Point2D target, boolean weightTurns) {
 		double winkel1 = Util.getInclination(pred, actual);
 		double winkel2 = Util.getInclination(actual, target);
 		double diffWinkel = Math.abs(winkel1 - winkel2); // Winkel im Wertebereich [0,2*pi] (Knick 1/4*pi = 3/4*pi
@@ -94,7 +108,7 @@ public class TurncostFactory
 		if (diffReduced < (2.0 / 180.0 * Math.PI))
 			return 0; // geradeaus ist 0
 
-		if (!AbstractMain.WEIGHT_TURNS)
+		if (!weightTurns)
 			return 1;
 
 		if (diffReduced > (178.0 / 180.0 * Math.PI))
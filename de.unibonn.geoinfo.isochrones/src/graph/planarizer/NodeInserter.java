@@ -2,12 +2,14 @@ package graph.planarizer;
 
 import java.awt.Color;
 import java.awt.geom.Point2D;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import gisviewer.ListLayer;
 import gisviewer.MapObject;
@@ -23,6 +25,7 @@ import graph.routing.Dijkstra;
 import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.GeofabrikData;
+import graph.types.NodeColoring;
 import graph.types.WalkingData;
 import isochrone.IsochroneCreator;
 import main.AbstractMain;
@@ -37,19 +40,41 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 
 	private ArcDataSplitter<E> ads;
 
+	// arcs added by splitting, indexed by their id minus the number of arcs of the
+	// original graph: the arc of the original graph in the same direction they lie
+	// on and the parameters of their source and target along it
+	private int[] splitArc = new int[16];
+	private double[] splitFrom = new double[16];
+	private double[] splitTo = new double[16];
+	private int numSplitArcs = 0;
+	private int[][] splitArcs;
+
+	private final Set<DiGraphNode<ColoredNode, E>> touchedNodes = new LinkedHashSet<>();
+
 	public NodeInserter(final PlanarGraph<V, E> planarGraph) {
 		this.originalGraph = planarGraph;
 		copyGraph();
 	}
 
-	public void colorGraph(DiGraph<ColoredNode, ?> coloredGraph) {
+	/**
+	 * Colors the nodes of the planar graph as the nodes of the graph at the same
+	 * position.
+	 * 
+	 * @param graph    colored graph, e.g. the road graph
+	 * @param coloring colors of the nodes of <code>graph</code>, indexed by their
+	 *                 ids
+	 */
+	public void colorGraph(DiGraph<? extends Point2D, ?> graph, NodeColoring coloring) {
 
 		DiGraphNode<ColoredNode, E> planarNode;
-		for (DiGraphNode<ColoredNode, ?> node : coloredGraph.getNodes()) {
-			planarNode = insertedGraph.getDiGraphNode(node.getNodeData().x, node.getNodeData().y);
+		Point2D position;
+		for (DiGraphNode<? extends Point2D, ?> node : graph.getNodes()) {
+			position = node.getNodeData();
+			planarNode = insertedGraph.getDiGraphNode(position.getX(), position.getY());
 
 			if (planarNode != null)
-				planarNode.getNodeData().setReachability(node.getNodeData());
+				planarNode.getNodeData().setReachability(coloring.getColor(node.getId()),
+						coloring.getRemainingTime(node.getId()));
 		}
 
 		colorCrosspoints();
@@ -94,23 +119,33 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 
 	}
 
+	/**
+	 * Copies the original graph, nodes and arcs keep their ids and the order of
+	 * the adjacency lists.
+	 */
 	private void copyGraph() {
 		this.insertedGraph = new PlanarGraph<>(originalGraph.getEnvelope());
 
-		// initialize maps to store relation between graphs
-		Map<DiGraphNode<V, E>, DiGraphNode<ColoredNode, E>> original2inserted = new HashMap<>();
+		List<DiGraphNode<ColoredNode, E>> insertedNodes = new ArrayList<>(originalGraph.n());
+		for (DiGraphNode<V, E> node : originalGraph.getNodes())
+			insertedNodes.add(insertedGraph.addNode(new ColoredNode(node.getNodeData())));
 
-		DiGraphNode<ColoredNode, E> insertedNode;
-		for (DiGraphNode<V, E> node : originalGraph.getNodes()) {
-			insertedNode = insertedGraph.addNode(new ColoredNode(node.getNodeData()));
-			original2inserted.put(node, insertedNode);
-		}
+		for (DiGraphArc<V, E> arc : originalGraph.getArcs())
+			insertedGraph.addArc(insertedNodes.get(arc.getSource().getId()),
+					insertedNodes.get(arc.getTarget().getId()), arc.getArcData());
 
-		DiGraphNode<ColoredNode, E> insertedSource, insertedTarget;
-		for (DiGraphArc<V, E> arc : originalGraph.getArcs()) {
-			insertedSource = original2inserted.get(arc.getSource());
-			insertedTarget = original2inserted.get(arc.getTarget());
-			insertedGraph.addArc(insertedSource, insertedTarget, arc.getArcData());
+		// the original graph is sorted already, adopting its order is cheaper than
+		// sorting the copy
+		List<DiGraphArc<ColoredNode, E>> arcs;
+		for (DiGraphNode<V, E> node : originalGraph.getNodes()) {
+			arcs = insertedNodes.get(node.getId()).getOutgoingArcs();
+			arcs.clear();
+			for (DiGraphArc<V, E> arc : node.getOutgoingArcs())
+				arcs.add(insertedGraph.getArc(arc.getId()));
+			arcs = insertedNodes.get(node.getId()).getIncomingArcs();
+			arcs.clear();
+			for (DiGraphArc<V, E> arc : node.getIncomingArcs())
+				arcs.add(insertedGraph.getArc(arc.getId()));
 		}
 	}
 
@@ -175,12 +210,106 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 		}
 
 		insertedGraph.removeArcs(removedArcs);
+		List<List<DiGraphArc<ColoredNode, E>>> pieces = collectSplitArcs(m);
 		insertedGraph.updateIDs();
-		insertedGraph.sort(new LineComparator<>(false), new LineComparator<>(true));
+
+		// only the adjacency lists of nodes with new arcs need to be sorted again
+		LineComparator<ColoredNode, E> outgoingComp = new LineComparator<>(false);
+		LineComparator<ColoredNode, E> incomingComp = new LineComparator<>(true);
+		for (DiGraphNode<ColoredNode, E> node : touchedNodes) {
+			node.getOutgoingArcs().sort(outgoingComp);
+			node.getIncomingArcs().sort(incomingComp);
+		}
+		touchedNodes.clear();
+
+		splitArcs = new int[m][];
+		for (int arcId = 0; arcId < m; ++arcId) {
+			if (pieces.get(arcId) == null)
+				continue;
+			splitArcs[arcId] = new int[pieces.get(arcId).size()];
+			for (int i = 0; i < splitArcs[arcId].length; ++i)
+				splitArcs[arcId][i] = pieces.get(arcId).get(i).getId();
+		}
 
 		return newSplitNodes;
 	}
 
+	/**
+	 * Groups the remaining arcs added by splitting by the arc of the original
+	 * graph they lie on, ordered from its source to its target.
+	 * 
+	 * @param m number of arcs of the original graph
+	 */
+	private List<List<DiGraphArc<ColoredNode, E>>> collectSplitArcs(int m) {
+		List<List<DiGraphArc<ColoredNode, E>>> pieces = new ArrayList<>(m);
+		for (int arcId = 0; arcId < m; ++arcId)
+			pieces.add(null);
+		for (DiGraphArc<ColoredNode, E> arc : insertedGraph.getArcs()) {
+			if (arc.getId() < m)
+				continue;
+			int h = splitArc[arc.getId() - m];
+			if (pieces.get(h) == null)
+				pieces.set(h, new ArrayList<>(2));
+			pieces.get(h).add(arc);
+		}
+		for (List<DiGraphArc<ColoredNode, E>> arcs : pieces)
+			if (arcs != null)
+				arcs.sort((a1, a2) -> Double.compare(splitFrom[a1.getId() - m], splitFrom[a2.getId() - m]));
+		return pieces;
+	}
+
+	/**
+	 * Records the position of the arcs added by splitting <code>arc</code> on the
+	 * arcs of the original graph.
+	 * 
+	 * @param arc       split arc
+	 * @param fraction  position of the new node along the arc
+	 * @param toNew     double arc from the source of the split arc to the new node
+	 * @param fromNew   double arc from the new node to the target of the split arc
+	 */
+	private void recordSplit(DiGraphArc<ColoredNode, E> arc, double fraction, List<DiGraphArc<ColoredNode, E>> toNew,
+			List<DiGraphArc<ColoredNode, E>> fromNew) {
+		int m = originalGraph.m();
+		int h;
+		double from, to;
+		if (arc.getId() < m) {
+			h = arc.getId();
+			from = 0;
+			to = 1;
+		} else {
+			h = splitArc[arc.getId() - m];
+			from = splitFrom[arc.getId() - m];
+			to = splitTo[arc.getId() - m];
+		}
+		int twin = originalGraph.getArc(h).getTwin().getId();
+		double p = from + fraction * (to - from);
+
+		if (numSplitArcs + 4 > splitArc.length) {
+			splitArc = Arrays.copyOf(splitArc, 2 * splitArc.length);
+			splitFrom = Arrays.copyOf(splitFrom, splitArc.length);
+			splitTo = Arrays.copyOf(splitTo, splitArc.length);
+		}
+		// arcs are added with consecutive ids, the ones of the twin measure from its source
+		addSplitArc(toNew.get(0), h, from, p);
+		addSplitArc(toNew.get(1), twin, 1 - p, 1 - from);
+		addSplitArc(fromNew.get(0), h, p, to);
+		addSplitArc(fromNew.get(1), twin, 1 - to, 1 - p);
+
+		touchedNodes.add(arc.getSource());
+		touchedNodes.add(arc.getTarget());
+		touchedNodes.add(fromNew.get(0).getSource());
+	}
+
+	private void addSplitArc(DiGraphArc<ColoredNode, E> arc, int h, double from, double to) {
+		int i = arc.getId() - originalGraph.m();
+		if (i != numSplitArcs)
+			throw new IllegalStateException("Arcs added out of order.");
+		splitArc[i] = h;
+		splitFrom[i] = from;
+		splitTo[i] = to;
+		++numSplitArcs;
+	}
+
 	public PlanarGraph<V, E> getOriginalGraph() {
 		return originalGraph;
 	}
@@ -189,6 +318,19 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 		return insertedGraph;
 	}
 
+	/**
+	 * Arcs of the original graph keep their ids in the result graph, the ones of
+	 * the nodes are kept as well. Split arcs are replaced by the arcs returned
+	 * here, ordered from the source to the target of the split arc; arc ids are
+	 * the ones after {@link #insertSplitNodes()}.
+	 * 
+	 * @return arcs of the result graph replacing each arc of the original graph,
+	 *         null for arcs which have not been split
+	 */
+	public int[][] getSplitArcs() {
+		return splitArcs;
+	}
+
 	private DiGraphNode<ColoredNode, E> insertDummyOnArc(DiGraphNode<ColoredNode, E> source,
 			DiGraphNode<ColoredNode, E> target, HashSet<DiGraphArc<ColoredNode, E>> removedArcs) {
 		Objects.requireNonNull(source);
@@ -219,8 +361,9 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 			removedArcs.add(planarArc.getTwin());
 
 		// add arcs to node
-		insertedGraph.addDoubleArc(source, newNode, ads.splitArcData(planarArc.getArcData(), fraction));
-		insertedGraph.addDoubleArc(newNode, target, ads.splitArcData(planarArc.getArcData(), 1 - fraction));
+		recordSplit(planarArc, fraction,
+				insertedGraph.addDoubleArc(source, newNode, ads.splitArcData(planarArc.getArcData(), fraction)),
+				insertedGraph.addDoubleArc(newNode, target, ads.splitArcData(planarArc.getArcData(), 1 - fraction)));
 		return newNode;
 	}
 
@@ -279,8 +422,10 @@ public class NodeInserter<V extends Point2D, E extends WalkingData> {
 		newSplitNodes.add(newNode);
 
 		// add arcs to node
-		insertedGraph.addDoubleArc(planarSource, newNode, ads.splitArcData(planarArc.getArcData(), fraction));
-		insertedGraph.addDoubleArc(newNode, planarTarget, ads.splitArcData(planarArc.getArcData(), 1 - fraction));
+		recordSplit(planarArc, fraction,
+				insertedGraph.addDoubleArc(planarSource, newNode, ads.splitArcData(planarArc.getArcData(), fraction)),
+				insertedGraph.addDoubleArc(newNode, planarTarget,
+						ads.splitArcData(planarArc.getArcData(), 1 - fraction)));
 
 		Dijkstra<ColoredNode, E> dij = new Dijkstra<>(insertedGraph);
 		dij.run(oldPlanarSource, newNode);
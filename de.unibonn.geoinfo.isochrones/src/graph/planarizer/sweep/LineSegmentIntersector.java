@@ -30,6 +30,20 @@ public class LineSegmentIntersector {
 		xMean /= (2 * counter);
 		yMean /= (2 * counter);
 
+		return getIntersections(segs, xMean, yMean);
+	}
+
+	/**
+	 * Computes the intersections of the segments with coordinates reduced by the
+	 * given offset. Sweeps over subsets of segments using the same offset compute
+	 * identical intersection points.
+	 * 
+	 * @param segs  segments to intersect, they are reduced by the offset
+	 * @param xMean offset of the x-coordinates
+	 * @param yMean offset of the y-coordinates
+	 * @return crossing events in the order of the sweep, with restored points
+	 */
+	public static List<Event> getIntersections(Iterable<LineSegment> segs, double xMean, double yMean) {
 		List<Event> intersections = new LinkedList<>();
 
 		// initialization of event queue
@@ -18,7 +18,7 @@ import util.geometry.Envelope;
 
 public class SweepPlanarizer<V extends Point2D, E> extends Planarizer<V, E> {
 
-	private Map<LineSegment, DiGraphArc<V, E>> arcMap;
+	protected Map<LineSegment, DiGraphArc<V, E>> arcMap;
 
 	/**
 	 * Default constructor
@@ -144,7 +144,7 @@ public class SweepPlanarizer<V extends Point2D, E> extends Planarizer<V, E> {
 		}
 	}
 
-	private void copyGraph(DiGraph<V, E> input) {
+	protected void copyGraph(DiGraph<V, E> input) {
 		Envelope env = new Envelope();
 		for (DiGraphNode<V, E> node : input.getNodes()) {
 			env.expandToInclude(node.getNodeData().getX(), node.getNodeData().getY());
@@ -172,7 +172,7 @@ public class SweepPlanarizer<V extends Point2D, E> extends Planarizer<V, E> {
 	/**
 	 * Reduces the amount of edges to edges from bottom left to top right
 	 */
-	private void preprocessArcs() {
+	protected void preprocessArcs() {
 		this.arcMap = new HashMap<>();
 		for (DiGraphArc<V, E> a : planarGraph.getArcs()) {
 			if ((a.getSource().getNodeData()).getX() > (a.getTarget().getNodeData()).getX())
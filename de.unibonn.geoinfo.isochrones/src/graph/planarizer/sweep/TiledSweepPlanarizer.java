@@ -0,0 +1,238 @@
+package graph.planarizer.sweep;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+import graph.generic.LineComparator;
+import util.tools.Tasks;
+
+/**
+ * Sweep-line planarizer running on several threads. The graph is divided into
+ * vertical strips holding about the same number of segments, which are swept
+ * independently. A segment is swept in every strip it overlaps, a crossing is
+ * kept only by the strip containing it. All strips reduce the coordinates by
+ * the same offset, so the crossing of two segments is computed identically in
+ * each strip and the result does not depend on the number of strips.
+ *
+ * Instead of splitting arcs crossing by crossing, all split arcs are replaced in
+ * one pass after the crossings of all strips are known.
+ */
+public class TiledSweepPlanarizer<V extends Point2D, E> extends SweepPlanarizer<V, E> {
+
+	private final int threads;
+	private final int strips;
+
+	/**
+	 * @param factory factory for the data of new nodes and arcs
+	 * @param threads number of threads, the graph is divided into as many strips
+	 */
+	public TiledSweepPlanarizer(PlanarizerFactory<V, E> factory, int threads) {
+		this(factory, threads, threads);
+	}
+
+	/**
+	 * @param factory factory for the data of new nodes and arcs
+	 * @param threads number of threads
+	 * @param strips  number of strips the graph is divided into
+	 */
+	public TiledSweepPlanarizer(PlanarizerFactory<V, E> factory, int threads, int strips) {
+		super(factory);
+		if (threads < 1 || strips < 1)
+			throw new IllegalArgumentException("At least one thread and strip needed.");
+		this.threads = threads;
+		this.strips = strips;
+	}
+
+	@Override
+	public void intersect() {
+		this.crossPoints = new HashMap<>();
+		this.crossedLines = new HashMap<>();
+
+		// segments in the order of their arcs for deterministic results
+		List<LineSegment> segments = new ArrayList<>(arcMap.keySet());
+		segments.sort(Comparator.comparingInt(ls -> arcMap.get(ls).getId()));
+
+		TreeMap<Point, TreeSet<Integer>> crossings = findCrossings(segments);
+
+		// create the nodes at the crossings, in the order of the sweep
+		List<List<DiGraphNode<V, E>>> splitNodes = new ArrayList<>(Collections.nCopies(segments.size(), null));
+		DiGraphNode<V, E> eventNode;
+		Point2D eventLocation;
+		for (Entry<Point, TreeSet<Integer>> cross : crossings.entrySet()) {
+			eventLocation = new Point2D.Double(cross.getKey().getX(), cross.getKey().getY());
+			eventNode = planarGraph.addNode(factory.createNodeData(eventLocation.getX(), eventLocation.getY()));
+			if (eventNode != null)
+				crossPoints.put(eventLocation, new LinkedList<>());
+			else
+				eventNode = planarGraph.getDiGraphNode(eventLocation);
+
+			for (int i : cross.getValue()) {
+				DiGraphArc<V, E> arc = arcMap.get(segments.get(i));
+				if (crossPoints.containsKey(eventLocation))
+					crossPoints.get(eventLocation).add(arc);
+				if (!crossedLines.containsKey(arc))
+					crossedLines.put(arc, new LinkedList<>());
+				crossedLines.get(arc).add(eventLocation);
+
+				if (splitNodes.get(i) == null)
+					splitNodes.set(i, new ArrayList<>());
+				splitNodes.get(i).add(eventNode);
+			}
+		}
+
+		splitArcs(segments, splitNodes);
+
+		planarGraph.setCrosspoints(crossPoints);
+		planarGraph.setCrossedLines(crossedLines);
+
+		planarGraph.updateIDs();
+		planarGraph.sort(new LineComparator<>(false), new LineComparator<>(true));
+	}
+
+	/**
+	 * Sweeps the strips in parallel.
+	 *
+	 * @return indices of the segments crossing at each crossing point, in the
+	 *         order of the sweep
+	 */
+	private TreeMap<Point, TreeSet<Integer>> findCrossings(List<LineSegment> segments) {
+		TreeMap<Point, TreeSet<Integer>> crossings = new TreeMap<>();
+		int n = segments.size();
+		if (n == 0)
+			return crossings;
+
+		// offset of the coordinates as used by a single sweep
+		double xSum = 0;
+		double ySum = 0;
+		double[] midX = new double[n];
+		for (int i = 0; i < n; ++i) {
+			LineSegment seg = segments.get(i);
+			xSum += seg.getP1().getX() + seg.getP2().getX();
+			ySum += seg.getP1().getY() + seg.getP2().getY();
+			midX[i] = (seg.getP1().getX() + seg.getP2().getX()) / 2;
+		}
+		double xMean = xSum / (2 * n);
+		double yMean = ySum / (2 * n);
+
+		// strip borders at quantiles of the segment centers
+		Arrays.sort(midX);
+		double[] borders = new double[strips + 1];
+		borders[0] = Double.NEGATIVE_INFINITY;
+		borders[strips] = Double.POSITIVE_INFINITY;
+		for (int s = 1; s < strips; ++s)
+			borders[s] = midX[(int) ((long) s * n / strips)];
+
+		List<Callable<List<Event>>> tasks = new ArrayList<>(strips);
+		for (int s = 0; s < strips; ++s) {
+			double min = borders[s];
+			double max = borders[s + 1];
+			if (min < max)
+				tasks.add(() -> sweepStrip(segments, min, max, xMean, yMean));
+		}
+
+		// merge the crossings of the strips, strips are ordered by x
+		for (List<Event> events : Tasks.invokeAllUnchecked(tasks, threads)) {
+			for (Event event : events) {
+				TreeSet<Integer> crossing = crossings.get(event.getEventPoint());
+				if (crossing == null) {
+					crossing = new TreeSet<>();
+					crossings.put(event.getEventPoint(), crossing);
+				}
+				for (LineSegment seg : event.getSegmentsCross())
+					crossing.add(Integer.parseInt(seg.getName()));
+			}
+		}
+		return crossings;
+	}
+
+	/**
+	 * Sweeps the segments overlapping the strip <code>[min, max)</code>.
+	 *
+	 * @return crossing events inside the strip, the names of the segments are
+	 *         their indices
+	 */
+	private static List<Event> sweepStrip(List<LineSegment> segments, double min, double max, double xMean,
+			double yMean) {
+		// the sweep reduces the coordinates of the segments, so it needs own copies
+		List<LineSegment> stripSegments = new ArrayList<>();
+		for (int i = 0; i < segments.size(); ++i) {
+			Point p1 = segments.get(i).getP1();
+			Point p2 = segments.get(i).getP2();
+			if (Math.max(p1.getX(), p2.getX()) >= min && Math.min(p1.getX(), p2.getX()) < max)
+				stripSegments.add(new LineSegment(new Point(p1.getX(), p1.getY()), new Point(p2.getX(), p2.getY()),
+						Integer.toString(i)));
+		}
+		if (stripSegments.isEmpty())
+			return new ArrayList<>();
+
+		List<Event> events = new ArrayList<>();
+		for (Event event : LineSegmentIntersector.getIntersections(stripSegments, xMean, yMean)) {
+			double x = event.getEventPoint().getX();
+			if (x >= min && x < max)
+				events.add(event);
+		}
+		return events;
+	}
+
+	/**
+	 * Replaces the arcs of the split segments and their twins by arcs between
+	 * consecutive nodes along them.
+	 *
+	 * @param splitNodes nodes on each segment in the order of the sweep, null for
+	 *                   segments without crossings
+	 */
+	private void splitArcs(List<LineSegment> segments, List<List<DiGraphNode<V, E>>> splitNodes) {
+		HashSet<DiGraphArc<V, E>> removedArcs = new HashSet<>();
+		for (int i = 0; i < segments.size(); ++i) {
+			if (splitNodes.get(i) == null)
+				continue;
+			DiGraphArc<V, E> arc = arcMap.get(segments.get(i));
+			removedArcs.add(arc);
+			if (arc.getTwin() != null)
+				removedArcs.add(arc.getTwin());
+		}
+		planarGraph.removeArcs(removedArcs);
+
+		for (int i = 0; i < segments.size(); ++i) {
+			if (splitNodes.get(i) == null)
+				continue;
+			DiGraphArc<V, E> arc = arcMap.get(segments.get(i));
+
+			// the sweep runs from the first to the second point of the segment
+			List<DiGraphNode<V, E>> nodes = splitNodes.get(i);
+			Point p1 = segments.get(i).getP1();
+			V source = arc.getSource().getNodeData();
+			if (p1.getX() != source.getX() || p1.getY() != source.getY())
+				Collections.reverse(nodes);
+
+			DiGraphNode<V, E> last = arc.getSource();
+			for (DiGraphNode<V, E> node : nodes) {
+				addDoubleArc(last, node);
+				last = node;
+			}
+			addDoubleArc(last, arc.getTarget());
+		}
+	}
+
+	private void addDoubleArc(DiGraphNode<V, E> source, DiGraphNode<V, E> target) {
+		if (source == target)
+			return;
+		double dist = source.getNodeData().distance(target.getNodeData());
+		planarGraph.addArc(source, target, factory.createEdgeData(dist));
+		planarGraph.addArc(target, source, factory.createEdgeData(dist));
+	}
+}
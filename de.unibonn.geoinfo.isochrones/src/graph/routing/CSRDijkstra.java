@@ -0,0 +1,135 @@
+package graph.routing;
+
+import util.structures.IndexedDaryHeap;
+import util.structures.IntPriorityQueue;
+
+/**
+ * Time-dependent Dijkstra for the multimodal routing on a {@link CSRGraph}.
+ * Besides the arcs of the snapshot, the search follows the same dynamic arcs
+ * as the {@link OwnIterator}: from a road node next to a stop to the next
+ * catchable departure of that stop and from an arrival node to its next street
+ * node.
+ *
+ * Distances are absolute times in seconds after the beginning of the week. Due
+ * to the time stamp mechanism, the data structures can be reused for multiple
+ * queries without reinitialization.
+ */
+public class CSRDijkstra implements MultiModalSearch {
+
+	private static final double WEEK = 7 * 86400;
+
+	private final CSRGraph graph;
+
+	private double dist[];
+	private int stamps[];
+	private int pred[];
+	private IntPriorityQueue queue;
+
+	private int currentStamp = 0;
+
+	public CSRDijkstra(CSRGraph graph) {
+		this(graph, new IndexedDaryHeap(graph.n()));
+	}
+
+	public CSRDijkstra(CSRGraph graph, IntPriorityQueue queue) {
+		this.graph = graph;
+		this.dist = new double[graph.n()];
+		this.stamps = new int[graph.n()];
+		this.pred = new int[graph.n()];
+		this.queue = queue;
+	}
+
+	/**
+	 * Runs the search starting at the source node at the given start time. All
+	 * nodes reachable until <code>maxTime</code> are settled.
+	 *
+	 * @param source        id of the source node
+	 * @param starttime     start time in seconds after the beginning of the week
+	 * @param maxTime       the search is aborted as soon as a node with a larger
+	 *                      distance is settled
+	 * @param avoidMotorway if true, arcs flagged as {@link CSRGraph#NO_WALKING}
+	 *                      are not used
+	 */
+	@Override
+	public void run(int source, double starttime, double maxTime, boolean avoidMotorway) {
+		currentStamp++;
+		dist[source] = starttime;
+		pred[source] = CSRGraph.NONE;
+
+		// the previous run may have been aborted at maxTime
+		queue.clear();
+
+		queue.insert(source, starttime);
+		stamps[source] = currentStamp;
+
+		while (!queue.isEmpty()) {
+			double d = queue.getMinKey();
+			int u = queue.extractMin();
+
+			if (d > maxTime)
+				return;
+
+			// arcs of the graph
+			for (int arc = graph.firstOut(u); arc < graph.lastOut(u); ++arc) {
+				if (avoidMotorway && graph.hasFlag(arc, CSRGraph.NO_WALKING))
+					continue;
+				discoverNode(u, graph.target(arc), dist[u] + graph.weight(arc));
+			}
+
+			// dynamic arcs
+			byte kind = graph.kind(u);
+			if (kind == CSRGraph.ROAD && graph.station(u) != CSRGraph.NONE) {
+				int station = graph.station(u);
+				int departure = graph.nextDeparture(station, (long) dist[u]);
+				if (departure != CSRGraph.NONE) {
+					// the label is computed from the departure, not by adding the waiting
+					// time, so that it is not off by a rounding error
+					double time = graph.departure(departure) + graph.halfTransferTime(station);
+					while (time <= d)
+						time += WEEK;
+					discoverNode(u, graph.transferNode(departure), time);
+				}
+			} else if (kind == CSRGraph.ARRIVAL) {
+				int street = graph.nextStreetNode(u);
+				if (street != CSRGraph.NONE && (stamps[street] != currentStamp || pred[street] == CSRGraph.NONE))
+					discoverNode(u, street, dist[u] + graph.halfTransferTime(graph.station(u)));
+			}
+		}
+	}
+
+	private void discoverNode(int curr, int target, double alt) {
+		if (stamps[target] < currentStamp || alt < dist[target]) {
+			dist[target] = alt;
+			pred[target] = curr;
+			if (queue.contains(target)) {
+				queue.decreaseKey(target, alt);
+			} else {
+				queue.insert(target, alt);
+			}
+			stamps[target] = currentStamp;
+		}
+	}
+
+	/**
+	 * Assumes that the search has been executed before.
+	 *
+	 * @return absolute arrival time at the node in the last run,
+	 *         Double.MAX_VALUE if the node has not been reached
+	 */
+	@Override
+	public double getDistance(int node) {
+		return stamps[node] < currentStamp ? Double.MAX_VALUE : dist[node];
+	}
+
+	/**
+	 * @return predecessor of the node in the last run, {@link CSRGraph#NONE} for
+	 *         the source and unreached nodes
+	 */
+	public int getPred(int node) {
+		return stamps[node] < currentStamp ? CSRGraph.NONE : pred[node];
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+}
@@ -0,0 +1,354 @@
+package graph.routing;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import graph.generic.DiGraph;
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+import graph.types.ArrivalNode;
+import graph.types.DepartureNode;
+import graph.types.GeofabrikData;
+import graph.types.IsoEdge;
+import graph.types.IsoVertex;
+import graph.types.PublicTransportNode;
+import graph.types.RoadNode;
+import graph.types.TransferNode;
+import io.snapshot.SnapshotReader;
+import io.snapshot.SnapshotWriter;
+
+/**
+ * Frozen, read-only snapshot of the multimodal routing graph in
+ * compressed-sparse-row (CSR) layout. The outgoing arcs of node <code>u</code>
+ * are stored at the positions <code>firstOut[u]</code> (inclusive) to
+ * <code>firstOut[u + 1]</code> (exclusive) of the arc arrays. Node types are
+ * stored as a byte tag instead of the {@link IsoVertex} class hierarchy.
+ *
+ * Besides the static arcs, the snapshot contains the data needed for the
+ * dynamic arcs of the multimodal routing (see {@link OwnIterator}): road nodes
+ * next to a stop are linked to the stop's station, arrival nodes are linked to
+ * their next street node and for each station the transfer nodes are stored in
+ * order of their departure time.
+ *
+ * Node ids of the snapshot equal the node ids of the graph it was created from.
+ */
+public class CSRGraph {
+
+	public static final byte ROAD = 0;
+	public static final byte ARRIVAL = 1;
+	public static final byte TRANSFER = 2;
+	public static final byte DEPARTURE = 3;
+
+	/**
+	 * arc flag for arcs that are not accessible for pedestrians (motorways and
+	 * trunk roads)
+	 */
+	public static final byte NO_WALKING = 1;
+
+	public static final int NONE = -1;
+
+	private final int n;
+	private final int m;
+	private final int numRoadNodes;
+
+	// adjacency
+	private final int[] firstOut;
+	private final int[] arcTarget;
+	private final double[] arcWeight;
+	private final byte[] arcFlags;
+
+	// node data
+	private final byte[] nodeKind;
+	private final int[] nodeStation;
+	private final int[] nextStreetNode;
+
+	// stations, transfer nodes sorted by departure
+	private final int[] stationFirstTransfer;
+	private final int[] stationTransfer;
+	private final int[] stationDeparture;
+	private final int[] stationHalfTransferTime;
+
+	private CSRGraph(int n, int m, int numRoadNodes, int numStations, int numTransfers) {
+		this.n = n;
+		this.m = m;
+		this.numRoadNodes = numRoadNodes;
+
+		this.firstOut = new int[n + 1];
+		this.arcTarget = new int[m];
+		this.arcWeight = new double[m];
+		this.arcFlags = new byte[m];
+
+		this.nodeKind = new byte[n];
+		this.nodeStation = new int[n];
+		this.nextStreetNode = new int[n];
+
+		this.stationFirstTransfer = new int[numStations + 1];
+		this.stationTransfer = new int[numTransfers];
+		this.stationDeparture = new int[numTransfers];
+		this.stationHalfTransferTime = new int[numStations];
+	}
+
+	private CSRGraph(int numRoadNodes, int[] firstOut, int[] arcTarget, double[] arcWeight, byte[] arcFlags,
+			byte[] nodeKind, int[] nodeStation, int[] nextStreetNode, int[] stationFirstTransfer,
+			int[] stationTransfer, int[] stationDeparture, int[] stationHalfTransferTime) {
+		this.n = nodeKind.length;
+		this.m = arcTarget.length;
+		this.numRoadNodes = numRoadNodes;
+
+		this.firstOut = firstOut;
+		this.arcTarget = arcTarget;
+		this.arcWeight = arcWeight;
+		this.arcFlags = arcFlags;
+
+		this.nodeKind = nodeKind;
+		this.nodeStation = nodeStation;
+		this.nextStreetNode = nextStreetNode;
+
+		this.stationFirstTransfer = stationFirstTransfer;
+		this.stationTransfer = stationTransfer;
+		this.stationDeparture = stationDeparture;
+		this.stationHalfTransferTime = stationHalfTransferTime;
+	}
+
+	/**
+	 * Creates the snapshot of a multimodal routing graph. The graph has to contain
+	 * the road nodes first, followed by the public transportation nodes created by
+	 * the {@link io.gtfs.GTFSLoader}. The ids of the graph's nodes have to match
+	 * their position in the node list.
+	 *
+	 * @param routingGraph        combined road and public transportation graph
+	 * @param numRoadNodes        number of road nodes at the beginning of the graph
+	 * @param transferNodes       transfer nodes of each stop, sorted by time
+	 * @param transferTimes       minimum transfer time of each stop in seconds
+	 * @param defaultTransferTime transfer time for stops without entry in
+	 *                            <code>transferTimes</code>
+	 * @return read-only CSR representation of <code>routingGraph</code>
+	 */
+	public static CSRGraph freeze(DiGraph<IsoVertex, IsoEdge> routingGraph, int numRoadNodes,
+			Map<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes,
+			Map<Integer, Integer> transferTimes, int defaultTransferTime) {
+
+		// assign station indices to all stops referenced by the graph
+		Map<Integer, Integer> stationOf = new HashMap<>();
+		List<Integer> stopIds = new LinkedList<>();
+		int numTransfers = 0;
+		for (DiGraphNode<IsoVertex, IsoEdge> node : routingGraph.getNodes()) {
+			int stopId = stopIdOf(node.getNodeData());
+			if (stopId != NONE && !stationOf.containsKey(stopId)) {
+				stationOf.put(stopId, stationOf.size());
+				stopIds.add(stopId);
+				if (transferNodes.containsKey(stopId))
+					numTransfers += transferNodes.get(stopId).size();
+			}
+		}
+
+		CSRGraph csr = new CSRGraph(routingGraph.n(), routingGraph.m(), numRoadNodes, stationOf.size(), numTransfers);
+
+		// nodes and arcs
+		int arcIndex = 0;
+		for (int i = 0; i < csr.n; ++i) {
+			DiGraphNode<IsoVertex, IsoEdge> node = routingGraph.getNode(i);
+			if (node.getId() != i)
+				throw new IllegalArgumentException("Node ids do not match node positions, call updateIDs() first.");
+			IsoVertex data = node.getNodeData();
+
+			csr.nodeKind[i] = kindOf(data);
+			int stopId = stopIdOf(data);
+			csr.nodeStation[i] = stopId == NONE ? NONE : stationOf.get(stopId);
+			csr.nextStreetNode[i] = NONE;
+			if (data instanceof ArrivalNode && ((ArrivalNode) data).getNextStreetNode() != null)
+				csr.nextStreetNode[i] = ((ArrivalNode) data).getNextStreetNode().getId();
+
+			csr.firstOut[i] = arcIndex;
+			for (DiGraphArc<IsoVertex, IsoEdge> arc : node.getOutgoingArcs()) {
+				csr.arcTarget[arcIndex] = arc.getTarget().getId();
+				csr.arcWeight[arcIndex] = arc.getArcData().getValue();
+				if (isMotorway(arc.getArcData()))
+					csr.arcFlags[arcIndex] |= NO_WALKING;
+				++arcIndex;
+			}
+		}
+		csr.firstOut[csr.n] = arcIndex;
+
+		// stations
+		int station = 0;
+		int transferIndex = 0;
+		for (int stopId : stopIds) {
+			csr.stationFirstTransfer[station] = transferIndex;
+			csr.stationHalfTransferTime[station] = transferTimes.getOrDefault(stopId, defaultTransferTime) / 2;
+			if (transferNodes.containsKey(stopId)) {
+				for (DiGraphNode<IsoVertex, IsoEdge> transfer : transferNodes.get(stopId)) {
+					csr.stationTransfer[transferIndex] = transfer.getId();
+					csr.stationDeparture[transferIndex] = (int) (((PublicTransportNode) transfer.getNodeData())
+							.getTime().getTime() / 1000);
+					++transferIndex;
+				}
+			}
+			++station;
+		}
+		csr.stationFirstTransfer[station] = transferIndex;
+
+		return csr;
+	}
+
+	/**
+	 * Writes the arrays of the graph, see {@link #read(SnapshotReader)}.
+	 */
+	public void write(SnapshotWriter out) throws IOException {
+		out.writeInt(numRoadNodes);
+		out.writeInts(firstOut);
+		out.writeInts(arcTarget);
+		out.writeDoubles(arcWeight);
+		out.writeBytes(arcFlags);
+		out.writeBytes(nodeKind);
+		out.writeInts(nodeStation);
+		out.writeInts(nextStreetNode);
+		out.writeInts(stationFirstTransfer);
+		out.writeInts(stationTransfer);
+		out.writeInts(stationDeparture);
+		out.writeInts(stationHalfTransferTime);
+	}
+
+	/**
+	 * Reads a graph written by {@link #write(SnapshotWriter)}.
+	 */
+	public static CSRGraph read(SnapshotReader in) throws IOException {
+		return new CSRGraph(in.readInt(), in.readInts(), in.readInts(), in.readDoubles(), in.readBytes(),
+				in.readBytes(), in.readInts(), in.readInts(), in.readInts(), in.readInts(), in.readInts(),
+				in.readInts());
+	}
+
+	private static byte kindOf(IsoVertex data) {
+		if (data instanceof ArrivalNode)
+			return ARRIVAL;
+		if (data instanceof TransferNode)
+			return TRANSFER;
+		if (data instanceof DepartureNode)
+			return DEPARTURE;
+		return ROAD;
+	}
+
+	private static int stopIdOf(IsoVertex data) {
+		if (data instanceof RoadNode)
+			return ((RoadNode) data).isNextToStop() ? ((RoadNode) data).getNextStopId() : NONE;
+		if (data instanceof PublicTransportNode)
+			return data.getId();
+		return NONE;
+	}
+
+	private static boolean isMotorway(IsoEdge arcData) {
+		return arcData instanceof GeofabrikData && ((GeofabrikData) arcData).isMotorway();
+	}
+
+	public int n() {
+		return n;
+	}
+
+	public int m() {
+		return m;
+	}
+
+	public int numRoadNodes() {
+		return numRoadNodes;
+	}
+
+	public int firstOut(int node) {
+		return firstOut[node];
+	}
+
+	public int lastOut(int node) {
+		return firstOut[node + 1];
+	}
+
+	public int target(int arc) {
+		return arcTarget[arc];
+	}
+
+	public double weight(int arc) {
+		return arcWeight[arc];
+	}
+
+	public boolean hasFlag(int arc, byte flag) {
+		return (arcFlags[arc] & flag) != 0;
+	}
+
+	public byte kind(int node) {
+		return nodeKind[node];
+	}
+
+	/**
+	 * @return index of the station the node belongs to (public transportation
+	 *         nodes) or is next to (road nodes), {@link #NONE} otherwise
+	 */
+	public int station(int node) {
+		return nodeStation[node];
+	}
+
+	/**
+	 * @return next street node of an arrival node, {@link #NONE} for all other
+	 *         nodes
+	 */
+	public int nextStreetNode(int node) {
+		return nextStreetNode[node];
+	}
+
+	public int numStations() {
+		return stationHalfTransferTime.length;
+	}
+
+	/**
+	 * @return half of the minimum transfer time of the station in seconds
+	 */
+	public int halfTransferTime(int station) {
+		return stationHalfTransferTime[station];
+	}
+
+	/**
+	 * Finds the first departure of the station that can be caught at the given
+	 * time by a binary search on the sorted departures. If no such departure
+	 * exists, the first departure of the week is returned.
+	 *
+	 * @param station station index
+	 * @param time    arrival time at the station's street node in seconds
+	 * @return index of the departure, use {@link #transferNode(int)} and
+	 *         {@link #departure(int)} to access it; {@link #NONE} if the station
+	 *         has no departures
+	 */
+	public int nextDeparture(int station, long time) {
+		int first = stationFirstTransfer[station];
+		int last = stationFirstTransfer[station + 1];
+		if (first == last)
+			return NONE;
+
+		// first departure with time < departure + halfTransfer
+		long limit = time - stationHalfTransferTime[station];
+		int low = first;
+		int high = last;
+		int mid;
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (stationDeparture[mid] <= limit)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low < last ? low : first;
+	}
+
+	/**
+	 * @return id of the transfer node of a departure
+	 */
+	public int transferNode(int departure) {
+		return stationTransfer[departure];
+	}
+
+	/**
+	 * @return time of a departure in seconds after the beginning of the week
+	 */
+	public int departure(int departure) {
+		return stationDeparture[departure];
+	}
+}
@@ -0,0 +1,214 @@
+package graph.routing;
+
+import util.structures.IndexedDaryHeap;
+import util.structures.IntPriorityQueue;
+
+/**
+ * Connection scan for the multimodal routing on a {@link Timetable}
+ * interleaved with a Dijkstra on the road network. It yields the same arrival
+ * times at the road nodes as the {@link CSRDijkstra} on the time-expanded
+ * graph, whose rules are:
+ * <ul>
+ * <li>a departure can be caught from the road node of its stop if the node is
+ * reached before the departure plus half of the stop's transfer time, the trip
+ * is continued with this offset,</li>
+ * <li>leaving a trip at a stop adds half of its transfer time and only reaches
+ * the road node next to the stop if the search has not reached it before.</li>
+ * </ul>
+ *
+ * As these offsets differ between stops, the connections cannot simply be
+ * scanned in order of their departure. Instead, three kinds of events are
+ * processed in order of their time: road nodes are settled at their arrival
+ * time, a connection is boarded at its {@link Timetable#deadline(int) deadline}
+ * once all road nodes reached earlier are settled, and the arrival of a
+ * boarded connection is handled at its arrival plus the offset of the trip.
+ *
+ * The restriction on leaving a trip makes the arrival times depend on the order
+ * of the search, so that departing later may arrive earlier. Optionally, it is
+ * dropped, which yields the arrival times of the {@link ProfileScan}.
+ *
+ * Distances are absolute times in seconds after the beginning of the week. The
+ * timetable is repeated weekly. As for the {@link CSRDijkstra}, the data
+ * structures are reused for multiple queries without reinitialization.
+ */
+public class ConnectionScan implements MultiModalSearch {
+
+	private static final int WEEK = 7 * 86400;
+	private static final int DAY = 86400;
+
+	private final CSRGraph graph;
+	private final Timetable timetable;
+	private final boolean improveReached;
+
+	// road nodes
+	private double dist[];
+	private int stamps[];
+	private IntPriorityQueue queue;
+
+	// arrivals of boarded connections, one entry per connection and week
+	private IntPriorityQueue arrivals;
+	private int arrivalStamps[];
+	private int weeks = 0;
+
+	private int currentStamp = 0;
+
+	/**
+	 * @param graph     road network, the ids of the road nodes have to match the
+	 *                  street nodes of the timetable
+	 * @param timetable connections of the public transportation
+	 */
+	public ConnectionScan(CSRGraph graph, Timetable timetable) {
+		this(graph, timetable, false);
+	}
+
+	/**
+	 * @param graph          road network, the ids of the road nodes have to match
+	 *                       the street nodes of the timetable
+	 * @param timetable      connections of the public transportation
+	 * @param improveReached if true, leaving a trip also improves road nodes that
+	 *                       have been reached before, unlike in the time-expanded
+	 *                       graph
+	 */
+	public ConnectionScan(CSRGraph graph, Timetable timetable, boolean improveReached) {
+		this.graph = graph;
+		this.timetable = timetable;
+		this.improveReached = improveReached;
+		this.dist = new double[graph.n()];
+		this.stamps = new int[graph.n()];
+		this.queue = new IndexedDaryHeap(graph.n());
+		ensureArrivalCapacity(1);
+	}
+
+	@Override
+	public void run(int source, double starttime, double maxTime, boolean avoidMotorway) {
+		currentStamp++;
+		queue.clear();
+		arrivals.clear();
+
+		dist[source] = starttime;
+		stamps[source] = currentStamp;
+		queue.insert(source, starttime);
+
+		// weekly repetitions of the timetable that may be used, the next connection
+		// to board in order of the deadlines is tracked for each of them
+		int numWeeks = (int) ((maxTime + DAY) / WEEK) + 1;
+		ensureArrivalCapacity(numWeeks);
+		int[] next = new int[numWeeks];
+		for (int k = 0; k < numWeeks; ++k)
+			next[k] = timetable.firstDeadline(starttime - (double) k * WEEK);
+
+		int week;
+		double deadline;
+		while (true) {
+			// next connection to board over all weeks
+			week = -1;
+			deadline = Double.MAX_VALUE;
+			for (int k = 0; k < numWeeks; ++k) {
+				if (next[k] < timetable.numConnections()
+						&& timetable.deadline(timetable.byDeadline(next[k])) + (double) k * WEEK < deadline) {
+					week = k;
+					deadline = timetable.deadline(timetable.byDeadline(next[k])) + (double) k * WEEK;
+				}
+			}
+
+			// road nodes and arrivals before the deadline, or until maxTime if there is
+			// no further connection to board
+			boolean last = deadline > maxTime;
+			while (true) {
+				double road = queue.isEmpty() ? Double.MAX_VALUE : queue.getMinKey();
+				double arrival = arrivals.isEmpty() ? Double.MAX_VALUE : arrivals.getMinKey();
+				double time = Math.min(road, arrival);
+				if (last ? time > maxTime : time >= deadline)
+					break;
+				if (road <= arrival)
+					settle(queue.extractMin(), road, avoidMotorway);
+				else
+					leave(arrivals.extractMin(), arrival);
+			}
+			if (last)
+				return;
+
+			board(timetable.byDeadline(next[week]++), week, deadline);
+		}
+	}
+
+	private void settle(int u, double d, boolean avoidMotorway) {
+		for (int arc = graph.firstOut(u); arc < graph.lastOut(u); ++arc) {
+			if (avoidMotorway && graph.hasFlag(arc, CSRGraph.NO_WALKING))
+				continue;
+			discoverNode(graph.target(arc), d + graph.weight(arc));
+		}
+	}
+
+	/**
+	 * Boards the connection if the road node of its stop has been reached before
+	 * the deadline; the arrival time at the road node is truncated to seconds as
+	 * the departures are.
+	 */
+	private void board(int c, int week, double deadline) {
+		int stop = timetable.depStop(c);
+		int boarding = timetable.boardingNode(stop);
+		if (boarding != Timetable.NONE && stamps[boarding] == currentStamp && (long) dist[boarding] < deadline)
+			discoverArrival(week * timetable.numConnections() + c,
+					timetable.arrTime(c) + (double) week * WEEK + timetable.halfTransferTime(stop));
+	}
+
+	/**
+	 * Leaves the trip at the arrival stop of the connection and continues it with
+	 * the next connection.
+	 */
+	private void leave(int event, double arrival) {
+		int week = event / timetable.numConnections();
+		int c = event % timetable.numConnections();
+
+		// as the arcs from the arrival nodes of the time-expanded graph, the road
+		// node next to the stop is only reached if it has not been reached before
+		int stop = timetable.arrStop(c);
+		int street = timetable.streetNode(stop);
+		if (street != Timetable.NONE && (improveReached || stamps[street] < currentStamp))
+			discoverNode(street, arrival + timetable.halfTransferTime(stop));
+
+		int next = timetable.nextInTrip(c);
+		if (next != Timetable.NONE)
+			discoverArrival(week * timetable.numConnections() + next,
+					arrival + timetable.arrTime(next) - timetable.arrTime(c));
+	}
+
+	private void discoverNode(int target, double alt) {
+		if (stamps[target] < currentStamp || alt < dist[target]) {
+			dist[target] = alt;
+			if (queue.contains(target)) {
+				queue.decreaseKey(target, alt);
+			} else {
+				queue.insert(target, alt);
+			}
+			stamps[target] = currentStamp;
+		}
+	}
+
+	private void discoverArrival(int event, double alt) {
+		if (arrivalStamps[event] < currentStamp) {
+			arrivals.insert(event, alt);
+			arrivalStamps[event] = currentStamp;
+		} else if (arrivals.contains(event) && alt < arrivals.getKey(event)) {
+			arrivals.decreaseKey(event, alt);
+		}
+	}
+
+	private void ensureArrivalCapacity(int numWeeks) {
+		if (weeks < numWeeks) {
+			weeks = numWeeks;
+			arrivals = new IndexedDaryHeap(weeks * timetable.numConnections());
+			arrivalStamps = new int[weeks * timetable.numConnections()];
+		}
+	}
+
+	@Override
+	public double getDistance(int node) {
+		return stamps[node] < currentStamp ? Double.MAX_VALUE : dist[node];
+	}
+
+	public Timetable getTimetable() {
+		return timetable;
+	}
+}
@@ -9,14 +9,15 @@ import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
 import graph.generic.WeightedArcData;
-import graph.types.ArrivalNode;
-import util.structures.MinHeap;
-import util.structures.MinHeap.HeapItem;
+import util.structures.IndexedDaryHeap;
+import util.structures.IntPriorityQueue;
 
 /**
  * Simple implementation of the Dijkstra algorithm. The data structures are
  * initialized. Due to some internal time stamp mechanism, the class supports
  * multiple executions without the need to reinitialize the data structures.
+ * The priority queue is keyed by node id, by default an
+ * {@link IndexedDaryHeap} is used.
  */
 public class Dijkstra<V, E extends WeightedArcData> {
 
@@ -25,30 +26,42 @@ public class Dijkstra<V, E extends WeightedArcData> {
 	protected double dist[];
 	protected double curr_dist = 0;
 	protected int stamps[];
-	protected HeapItem<DiGraphNode<V, E>> items[];
+	protected IntPriorityQueue queue;
+	protected DiGraphNode<V, E> nodes[];
 	public DiGraphNode<V, E> pred[];
 
 	protected int currentStamp = 0;
 
+	// node being expanded and the relaxation passed to the NodeIterator, created
+	// once to avoid allocations per node
+	private DiGraphNode<V, E> expanded;
+	private final NeighborVisitor<V, E> relax = (v, weight) -> discoverNode(expanded, v,
+			dist[expanded.getId()] + weight);
+
 //	static int i = 0;
 
-	@SuppressWarnings("unchecked")
 	public Dijkstra(DiGraph<V, E> g) {
-		this.dist = new double[g.n()];
-		this.stamps = new int[g.n()];
-		this.items = new HeapItem[g.n()];
-		this.pred = new DiGraphNode[g.n()];
+		this(g, new IndexedDaryHeap(g.n()));
 //		mInstance = (Dijkstra<IsoVertex, IsoEdge>) this;
 	}
 
-	@SuppressWarnings("unchecked")
 	public Dijkstra(DiGraph<V, E> g, double startTime) {
+		this(g, new IndexedDaryHeap(g.n()));
+		this.starttime = startTime;
+//		mInstance = (Dijkstra<IsoVertex, IsoEdge>) this;
+	}
+
+	/**
+	 * @param queue priority queue used by the search, must support node ids of
+	 *              <code>g</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public Dijkstra(DiGraph<V, E> g, IntPriorityQueue queue) {
 		this.dist = new double[g.n()];
 		this.stamps = new int[g.n()];
-		this.items = new HeapItem[g.n()];
+		this.nodes = new DiGraphNode[g.n()];
 		this.pred = new DiGraphNode[g.n()];
-		this.starttime = startTime;
-//		mInstance = (Dijkstra<IsoVertex, IsoEdge>) this;
+		this.queue = queue;
 	}
 
 //	public static Dijkstra<IsoVertex, IsoEdge> getInstance() {
@@ -121,44 +134,37 @@ public class Dijkstra<V, E extends WeightedArcData> {
 		currentStamp++;
 		dist[source.getId()] = starttime;
 		pred[source.getId()] = null;
-		double weightOfArc;
 
-		MinHeap<DiGraphNode<V, E>> queue = new MinHeap<DiGraphNode<V, E>>();
+		// a previous run may have been aborted by its visitor
+		queue.clear();
 
-		items[source.getId()] = queue.insertItem(starttime, source);
+		nodes[source.getId()] = source;
+		queue.insert(source.getId(), starttime);
 		stamps[source.getId()] = currentStamp;
 
-		while (queue.size() > 0) {
-			HeapItem<DiGraphNode<V, E>> item = queue.extractMin();
-			DiGraphNode<V, E> u = item.getValue();
-			curr_dist = item.getKey();
-
-			if (u.getNodeData() instanceof ArrivalNode)
-				System.out.println(u.getNodeData());
+		while (!queue.isEmpty()) {
+			curr_dist = queue.getMinKey();
+			DiGraphNode<V, E> u = nodes[queue.extractMin()];
 
 			if (!visitor.visit(u)) {
 				return false;
 			}
 
-			for (Iterator<DiGraphNode<V, E>> it = nit.getIterator(u); it.hasNext();) {
-				DiGraphNode<V, E> v = it.next();
-
-				weightOfArc = nit.getWeightOfCurrentArc(u, v);
-				discoverNode(u, v, queue, dist[u.getId()] + weightOfArc);
-			}
+			expanded = u;
+			nit.forEachNeighbor(u, relax);
 		}
 		return true;
 	}
 
-	private void discoverNode(DiGraphNode<V, E> curr, DiGraphNode<V, E> target, MinHeap<DiGraphNode<V, E>> queue,
-			double alt) {
+	private void discoverNode(DiGraphNode<V, E> curr, DiGraphNode<V, E> target, double alt) {
 		if (stamps[target.getId()] < currentStamp || alt < dist[target.getId()]) {
 			dist[target.getId()] = alt;
 			pred[target.getId()] = curr;
-			if (stamps[target.getId()] < currentStamp || items[target.getId()] == null) {
-				items[target.getId()] = queue.insertItem(alt, target);
+			if (queue.contains(target.getId())) {
+				queue.decreaseKey(target.getId(), alt);
 			} else {
-				queue.decreaseKey(items[target.getId()], alt);
+				nodes[target.getId()] = target;
+				queue.insert(target.getId(), alt);
 			}
 			stamps[target.getId()] = currentStamp;
 		}
@@ -229,10 +235,32 @@ public class Dijkstra<V, E extends WeightedArcData> {
 		boolean visit(V node);
 	}
 
+	/**
+	 * Receives the adjacent nodes of a node together with the weight of the arc
+	 * to them.
+	 */
+	public static interface NeighborVisitor<V, E> {
+		void visit(DiGraphNode<V, E> target, double weight);
+	}
+
 	public static interface NodeIterator<V, E extends WeightedArcData> {
 		Iterator<DiGraphNode<V, E>> getIterator(DiGraphNode<V, E> s);
 
 		double getWeightOfCurrentArc(DiGraphNode<V, E> s, DiGraphNode<V, E> t);
+
+		/**
+		 * Calls the visitor for each node adjacent to <code>s</code>. This is the
+		 * method used by the Dijkstra; implementations should override it to
+		 * pass the weights directly without allocating an iterator. The default
+		 * implementation uses {@link #getIterator(DiGraphNode)} and
+		 * {@link #getWeightOfCurrentArc(DiGraphNode, DiGraphNode)}.
+		 */
+		default void forEachNeighbor(DiGraphNode<V, E> s, NeighborVisitor<V, E> visitor) {
+			for (Iterator<DiGraphNode<V, E>> it = getIterator(s); it.hasNext();) {
+				DiGraphNode<V, E> t = it.next();
+				visitor.visit(t, getWeightOfCurrentArc(s, t));
+			}
+		}
 	}
 
 	/**
@@ -262,6 +290,18 @@ public class Dijkstra<V, E extends WeightedArcData> {
 			return addIt.getWeightOfCurrentArc(s, t);
 		}
 
+		@Override
+		public void forEachNeighbor(DiGraphNode<V, E> s, NeighborVisitor<V, E> visitor) {
+			List<DiGraphArc<V, E>> arcs = s.getOutgoingArcs();
+			DiGraphArc<V, E> arc;
+			for (int i = 0; i < arcs.size(); ++i) {
+				arc = arcs.get(i);
+				visitor.visit(arc.getTarget(), arc.getArcData().getValue());
+			}
+			if (addIt != null)
+				addIt.forEachNeighbor(s, visitor);
+		}
+
 		@Override
 		public Iterator<DiGraphNode<V, E>> getIterator(DiGraphNode<V, E> s) {
 			Iterator<DiGraphArc<V, E>> it = s.getOutgoingArcs().iterator();
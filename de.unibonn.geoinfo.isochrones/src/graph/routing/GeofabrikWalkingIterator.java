@@ -2,10 +2,12 @@ package graph.routing;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
 import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
 import graph.generic.WeightedArcData;
+import graph.routing.Dijkstra.NeighborVisitor;
 import graph.routing.Dijkstra.NodeIterator;
 import graph.types.GeofabrikData;
 
@@ -32,18 +34,29 @@ public class GeofabrikWalkingIterator<V, E extends WeightedArcData> implements N
 		return addIt.getWeightOfCurrentArc(s, t);
 	}
 
+	@Override
+	public void forEachNeighbor(DiGraphNode<V, E> s, NeighborVisitor<V, E> visitor) {
+		List<DiGraphArc<V, E>> arcs = s.getOutgoingArcs();
+		DiGraphArc<V, E> arc;
+		for (int i = 0; i < arcs.size(); ++i) {
+			arc = arcs.get(i);
+			if (!isMotorway(arc))
+				visitor.visit(arc.getTarget(), arc.getArcData().getValue());
+		}
+		if (addIt != null)
+			addIt.forEachNeighbor(s, visitor);
+	}
+
+	private boolean isMotorway(DiGraphArc<V, E> arc) {
+		return arc.getArcData() instanceof GeofabrikData && ((GeofabrikData) arc.getArcData()).isMotorway();
+	}
+
 	@Override
 	public Iterator<DiGraphNode<V, E>> getIterator(DiGraphNode<V, E> s) {
 		LinkedList<DiGraphArc<V, E>> outgoingArcs = new LinkedList<>();
-		String fclass;
 		for (var arc : s.getOutgoingArcs()) {
-			if (arc.getArcData() instanceof GeofabrikData) {
-				fclass = ((GeofabrikData) arc.getArcData()).fclass();
-				if (fclass.equals("motorway_link") || fclass.equals("motorway") || fclass.equals("trunk")
-						|| fclass.equals("trunk_link"))
-					continue;
-			}
-			outgoingArcs.add(arc);
+			if (!isMotorway(arc))
+				outgoingArcs.add(arc);
 		}
 		Iterator<DiGraphArc<V, E>> it = outgoingArcs.iterator();
 
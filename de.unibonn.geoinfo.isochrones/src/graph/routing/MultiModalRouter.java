@@ -3,10 +3,14 @@ package graph.routing;
 import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.DoubleStream;
 
 import com.vividsolutions.jump.io.IllegalParametersException;
@@ -17,16 +21,17 @@ import gisviewer.PointMapObject;
 import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
-import graph.routing.Dijkstra.BasicAdjacentNodeIterator;
-import graph.routing.Dijkstra.NodeIterator;
 import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.IsoEdge;
 import graph.types.IsoVertex;
+import graph.types.MappedPoint;
+import graph.types.NodeColoring;
 import graph.types.RoadGraph;
 import graph.types.RoadNode;
 import graph.types.WalkingData;
 import io.gtfs.GTFSLoader;
+import io.gtfs.StopSnapper;
 import isochrone.IsochroneCreator;
 import isochrone.SplitNodeFinder;
 import main.AbstractMain;
@@ -34,55 +39,267 @@ import tools.Stopwatch;
 import viewer.IsochronePanel;
 import viewer.ResultFrame;
 
+/**
+ * Router for the combined road and public transportation network. The network
+ * is shared by all threads; the state of a query (labels, node colors and split
+ * nodes) is kept per thread, so that multiple threads can route concurrently.
+ * All results refer to the last query of the calling thread.
+ * 
+ * The public transportation is either expanded into the routing graph and
+ * searched by the {@link CSRDijkstra} or kept as flat {@link Timetable} and
+ * searched by the {@link ConnectionScan}, which needs considerably less
+ * memory. With the timetable, profiles of a whole departure window can be
+ * computed by the {@link ProfileScan}, and the GTFS data can be replaced while
+ * queries are running, see {@link #updateTimetable(File)}.
+ */
 public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData> implements Router<Point2D, E_road> {
 
 	private int numNodesRoad;
 
+	// object graph, only kept until the snapshot is created
 	private DiGraph<IsoVertex, IsoEdge> routingGraph;
-	private DiGraph<ColoredNode, E_road> coloredGraph;
-	private List<DiGraphNode<ColoredNode, E_road>> splitNodes;
 
-	private Dijkstra<IsoVertex, IsoEdge> dijkstra;
-	private NodeIterator<IsoVertex, IsoEdge> it;
-	private NodeIterator<IsoVertex, IsoEdge> adj_it;
-	private SplitVisitor visit;
+	// frozen routing graph the queries run on, shared by all threads; only
+	// contains the road network if the timetable is used
+	private CSRGraph snapshot;
+	// public transportation for the connection scan, null for the expanded graph;
+	// replaced as a whole when the GTFS data is updated
+	private volatile Timetable timetable;
+	private final RoadGraph<Point2D, E_road> roadGraph;
+	// motorways are only part of the graph if they have been kept during import
+	private final boolean avoidMotorway;
 
-	private long starttime;
-	private DiGraphNode<ColoredNode, E_road> lastSource;
+	// road nodes of the stops, kept for updates of the timetable
+	private StopSnapper snapper;
 
-	Map<DiGraphNode<Point2D, E_road>, DiGraphNode<IsoVertex, IsoEdge>> road2routing;
-	Map<DiGraphNode<IsoVertex, IsoEdge>, DiGraphNode<ColoredNode, E_road>> routing2color;
-
-	// maps to dynamically add arcs to next transfer node
-	private final HashMap<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes;
-	private final HashMap<Integer, Integer> transferTimes;
+	// road nodes have the same index in the road and routing graph, which is the
+	// id of the road node
+	Map<DiGraphNode<Point2D, E_road>, Integer> road2routing;
 
 	Factory<E_iso, E_road> factory;
 
+	// per-thread query state, created on first use of a thread
+	private final ThreadLocal<QueryContext> contexts = ThreadLocal.withInitial(() -> new QueryContext());
+
+	/**
+	 * State of the queries of one thread: labels of the search, the colors of the
+	 * road nodes and the result of the last query.
+	 */
+	private class QueryContext {
+		private MultiModalSearch search;
+		// timetable the searches run on, null for the expanded graph
+		private Timetable searchTimetable;
+		private final NodeColoring coloring;
+		private List<DiGraphNode<Point2D, E_road>> splitNodes;
+
+		private long starttime;
+		private DiGraphNode<Point2D, E_road> lastSource;
+
+		// source, start time and time bound of the travel times currently stored in
+		// the search, -1 if there are none
+		private int routedSource = -1;
+		private long routedStarttime = -1;
+		private long routedMaxTime = -1;
+
+		// profile search, only created for the timetable, and source, window and
+		// time bound of the profile currently stored in it
+		private ProfileScan profile;
+		private int profileSource = -1;
+		private long profileStarttime = -1;
+		private long profileWindow = -1;
+		private long profileMaxTime = -1;
+
+		private QueryContext() {
+			Timetable current = timetable;
+			if (current == null)
+				search = new CSRDijkstra(snapshot);
+			else
+				useTimetable(current);
+			coloring = new NodeColoring(numNodesRoad);
+		}
+
+		/**
+		 * Runs the searches on the given timetable, the results of previous queries
+		 * are discarded.
+		 */
+		private void useTimetable(Timetable current) {
+			search = new ConnectionScan(snapshot, current);
+			searchTimetable = current;
+			profile = null;
+			routedSource = -1;
+			profileSource = -1;
+		}
+	}
+
 	public MultiModalRouter(RoadGraph<Point2D, E_road> roadGraph, File gtfsDirectory, Factory<E_iso, E_road> factory)
 			throws IllegalParametersException, Exception {
+		this(roadGraph, gtfsDirectory, factory, false);
+	}
+
+	/**
+	 * @param useTimetable if true, the public transportation is routed by the
+	 *                     {@link ConnectionScan} on a {@link Timetable} instead
+	 *                     of being expanded into the routing graph
+	 */
+	public MultiModalRouter(RoadGraph<Point2D, E_road> roadGraph, File gtfsDirectory, Factory<E_iso, E_road> factory,
+			boolean useTimetable) throws IllegalParametersException, Exception {
 		this.factory = factory;
+		this.roadGraph = roadGraph;
+		avoidMotorway = AbstractMain.KEEP_MOTORWAY;
 		numNodesRoad = roadGraph.n();
 		initializeRoutingGraphWithRoadGraph(roadGraph);
 
-		GTFSLoader loader = new GTFSLoader(routingGraph);
-		loader.loadGTFS(gtfsDirectory);
+		if (useTimetable) {
+			snapper = createSnapper();
+			GTFSLoader loader = createLoader(routingGraph, snapper);
+			timetable = loader.loadTimetable(gtfsDirectory);
+			freezeRoutingGraph(Collections.emptyMap(), loader.getTransferTimes());
+		} else {
+			GTFSLoader loader = createLoader(routingGraph, createSnapper());
+			loader.loadGTFS(gtfsDirectory);
+			freezeRoutingGraph(loader.getTransferNodes(), loader.getTransferTimes());
+		}
+	}
 
-		transferNodes = loader.getTransferNodes();
-		transferTimes = loader.getTransferTimes();
+	/**
+	 * Creates the router on a frozen routing graph, e.g. of a
+	 * {@link io.snapshot.NetworkSnapshot}, instead of loading the GTFS data.
+	 * 
+	 * @param snapshot      routing graph whose road nodes are the nodes of
+	 *                      <code>roadGraph</code> in the same order
+	 * @param timetable     timetable of the connection scan, null if the public
+	 *                      transportation is expanded into <code>snapshot</code>
+	 * @param avoidMotorway if true, arcs not accessible for pedestrians are not
+	 *                      walked; set it if motorways have been kept during
+	 *                      the import
+	 */
+	public MultiModalRouter(RoadGraph<Point2D, E_road> roadGraph, CSRGraph snapshot, Timetable timetable,
+			Factory<E_iso, E_road> factory, boolean avoidMotorway) {
+		if (snapshot.numRoadNodes() != roadGraph.n())
+			throw new IllegalArgumentException("Routing graph has " + snapshot.numRoadNodes()
+					+ " road nodes, road graph has " + roadGraph.n() + ".");
+		this.factory = factory;
+		this.roadGraph = roadGraph;
+		this.avoidMotorway = avoidMotorway;
+		numNodesRoad = roadGraph.n();
+		indexRoadNodes();
 
-		dijkstra = new Dijkstra<>(routingGraph);
-		it = new OwnIterator(transferNodes, transferTimes, dijkstra);
+		this.snapshot = snapshot;
+		this.timetable = timetable;
+	}
+
+	/**
+	 * Maps the road nodes to their index in the routing graph, which is their
+	 * position in the road graph. The node colors are indexed by the node ids,
+	 * hence, they have to match the positions.
+	 */
+	private void indexRoadNodes() {
+		road2routing = new HashMap<>();
+		for (DiGraphNode<Point2D, E_road> node : roadGraph.getNodes()) {
+			if (node.getId() != road2routing.size())
+				throw new IllegalArgumentException("Node ids do not match node positions, call updateIDs() first.");
+			road2routing.put(node, road2routing.size());
+		}
+	}
+
+	/**
+	 * @return loader with the threads and service dates of {@link AbstractMain}
+	 */
+	private static GTFSLoader createLoader(DiGraph<IsoVertex, IsoEdge> graph, StopSnapper snapper) {
+		GTFSLoader loader = new GTFSLoader(graph, snapper,
+				AbstractMain.USE_PARALLEL_PROCESSING ? AbstractMain.THREADS : 1);
+		if (AbstractMain.SERVICE_DATE != null)
+			loader.setServiceDates(AbstractMain.SERVICE_DATE, AbstractMain.SERVICE_DAYS);
+		return loader;
+	}
+
+	/**
+	 * @return snapper of the stops to the road nodes, to the end points of the
+	 *         next arcs if {@link AbstractMain#SNAP_TO_ARCS} is set
+	 */
+	private StopSnapper createSnapper() {
+		if (!AbstractMain.SNAP_TO_ARCS)
+			return new StopSnapper(roadGraph.getNodeIndex());
+
+		List<Point2D> nodes = new ArrayList<>(roadGraph.n());
+		for (DiGraphNode<Point2D, E_road> node : roadGraph.getNodes())
+			nodes.add(node.getNodeData());
+		int[] sources = new int[roadGraph.m()];
+		int[] targets = new int[roadGraph.m()];
+		for (int i = 0; i < roadGraph.m(); ++i) {
+			DiGraphArc<Point2D, E_road> arc = roadGraph.getArc(i);
+			sources[i] = road2routing.get(arc.getSource());
+			targets[i] = road2routing.get(arc.getTarget());
+		}
+		return new StopSnapper(nodes, sources, targets);
+	}
+
+	/**
+	 * Replaces the public transportation by the one of another GTFS feed, e.g. a
+	 * new version of the current one. The road network and the road nodes of the
+	 * stops are kept, only stops which are new or have moved are snapped again.
+	 * 
+	 * Queries may run while the feed is loaded. Each thread switches to the new
+	 * timetable with its next query; travel times and profiles computed before
+	 * have to be routed again.
+	 * 
+	 * @param gtfsDirectory directory of the new GTFS data
+	 * @return the new timetable
+	 * @throws IllegalArgumentException if the public transportation is expanded
+	 *                                  into the routing graph
+	 */
+	public synchronized Timetable updateTimetable(File gtfsDirectory) throws IllegalParametersException, Exception {
+		if (timetable == null)
+			throw new IllegalArgumentException("Updating the GTFS data needs the timetable of the connection scan.");
+		long time = System.currentTimeMillis();
+		if (snapper == null)
+			snapper = createSnapper();
+
+		Timetable updated = createLoader(null, snapper).loadTimetable(gtfsDirectory);
+		timetable = updated;
+
+		if (AbstractMain.VERBOSE)
+			System.out.println("Timetable updated: " + updated.numConnections() + " connections ("
+					+ (System.currentTimeMillis() - time) + "ms)");
+		return updated;
+	}
+
+	/**
+	 * Runs {@link #updateTimetable(File)} on a background thread.
+	 * 
+	 * @return the new timetable once it is used
+	 */
+	public CompletableFuture<Timetable> updateTimetableInBackground(File gtfsDirectory) {
+		CompletableFuture<Timetable> result = new CompletableFuture<>();
+		Thread thread = new Thread(() -> {
+			try {
+				result.complete(updateTimetable(gtfsDirectory));
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+		}, "GTFS update");
+		thread.setDaemon(true);
+		thread.start();
+		return result;
+	}
+
+	/**
+	 * @return query context of the current thread, switched to the current
+	 *         timetable if it has been updated
+	 */
+	private QueryContext context() {
+		QueryContext c = contexts.get();
+		Timetable current = timetable;
+		if (current != c.searchTimetable)
+			c.useTimetable(current);
+		return c;
 	}
 
 	/**
 	 * Creates a copy of <code>roadGraph</code>, changing the node and edge data
 	 * type to be suitable for the combined routing graph in the process.
 	 * 
-	 * Additionally, a copy of <code>roadGraph</code> is created, exchanging the
-	 * node data to <code>ColoredNode</code> to later color the graph.
-	 * 
-	 * Due to the copy steps, the original <code>roadGraph</code> remains unchanged.
+	 * Due to the copy step, the original <code>roadGraph</code> remains unchanged.
 	 * 
 	 * @param roadGraph previously loaded road graph
 	 */
@@ -91,54 +308,174 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 			System.err.println("Factory not set");
 
 		this.routingGraph = new DiGraph<>();
-		this.coloredGraph = new DiGraph<>();
 
-		// initialize maps to store relation between graphs
-		road2routing = new HashMap<>();
-		routing2color = new HashMap<>();
+		// initialize map to store relation between graphs
+		indexRoadNodes();
 
-		DiGraphNode<IsoVertex, IsoEdge> routingGraphNode;
-		DiGraphNode<ColoredNode, E_road> coloredGraphNode;
+		// the coordinates of mapped road nodes are shared instead of copied
+		Point2D location;
 		for (DiGraphNode<Point2D, E_road> node : roadGraph.getNodes()) {
-			routingGraphNode = routingGraph.addNode(new RoadNode(node.getNodeData()));
-			coloredGraphNode = coloredGraph.addNode(new ColoredNode(node.getNodeData()));
-
-			road2routing.put(node, routingGraphNode);
-			routing2color.put(routingGraphNode, coloredGraphNode);
+			location = node.getNodeData();
+			routingGraph.addNode(
+					location instanceof MappedPoint ? new RoadNode((MappedPoint) location) : new RoadNode(location));
 		}
 
-		DiGraphNode<IsoVertex, IsoEdge> routingGraphSource, routingGraphTarget;
-		DiGraphNode<ColoredNode, E_road> coloredGraphSource, coloredGraphTarget;
+		int source, target;
 		for (DiGraphArc<Point2D, E_road> arc : roadGraph.getArcs()) {
-			routingGraphSource = road2routing.get(arc.getSource());
-			routingGraphTarget = road2routing.get(arc.getTarget());
-			routingGraph.addArc(routingGraphSource, routingGraphTarget, factory.createIsoEdgeData(arc.getArcData()));
-
-			coloredGraphSource = routing2color.get(routingGraphSource);
-			coloredGraphTarget = routing2color.get(routingGraphTarget);
-			coloredGraph.addArc(coloredGraphSource, coloredGraphTarget, factory.createEdgeData(arc.getArcData()));
+			source = road2routing.get(arc.getSource());
+			target = road2routing.get(arc.getTarget());
+			routingGraph.addArc(routingGraph.getNode(source), routingGraph.getNode(target),
+					factory.createIsoEdgeData(arc.getArcData()));
 		}
 	}
 
+	/**
+	 * Creates a copy of the road graph, exchanging the node data to
+	 * <code>ColoredNode</code> with the given colors. Only used to show the
+	 * coloring, the queries keep the colors apart from the shared road graph.
+	 * 
+	 * @return colored graph with the node indices of the road graph
+	 */
+	private DiGraph<ColoredNode, E_road> createColoredGraph(NodeColoring coloring) {
+		DiGraph<ColoredNode, E_road> coloredGraph = new DiGraph<>();
+		for (DiGraphNode<Point2D, E_road> node : roadGraph.getNodes())
+			coloredGraph.addNode(new ColoredNode(node.getNodeData(), coloring.getColor(node.getId()),
+					coloring.getRemainingTime(node.getId())));
+
+		for (DiGraphArc<Point2D, E_road> arc : roadGraph.getArcs())
+			coloredGraph.addArc(coloredGraph.getNode(road2routing.get(arc.getSource())),
+					coloredGraph.getNode(road2routing.get(arc.getTarget())),
+					factory.createEdgeData(arc.getArcData()));
+		return coloredGraph;
+	}
+
+	/**
+	 * Creates the read-only {@link CSRGraph} snapshot of the combined road and
+	 * public transportation graph the queries are run on. Afterwards, the object
+	 * graph is released.
+	 * 
+	 * @param transferNodes transfer nodes of each stop, sorted by time
+	 * @param transferTimes minimum transfer time of each stop
+	 */
+	private void freezeRoutingGraph(Map<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes,
+			Map<Integer, Integer> transferTimes) {
+		long time = System.currentTimeMillis();
+		snapshot = CSRGraph.freeze(routingGraph, numNodesRoad, transferNodes, transferTimes,
+				AbstractMain.DEFAULT_TRANSFER_TIME);
+		routingGraph = null;
+
+		if (AbstractMain.VERBOSE)
+			System.out.println("Routing graph frozen: " + snapshot.n() + " nodes, " + snapshot.m() + " arcs, "
+					+ snapshot.numStations() + " stations (" + (System.currentTimeMillis() - time) + "ms)");
+	}
+
 	@Override
 	public void setStarttime(long starttime) {
-		this.starttime = starttime;
-		this.dijkstra.setStarttime(starttime);
+		contexts.get().starttime = starttime;
 	}
 
 	@Override
 	public void run(DiGraphNode<Point2D, E_road> originalSource, long maxTime, long bufferTime) {
+		route(originalSource, maxTime + bufferTime);
+		color(maxTime, bufferTime);
+	}
+
+	@Override
+	public void route(DiGraphNode<Point2D, E_road> originalSource, long maxTime) {
+		QueryContext c = context();
+		int source = road2routing.get(originalSource);
+		c.search.run(source, c.starttime, c.starttime + maxTime, avoidMotorway);
+		c.lastSource = roadGraph.getNode(source);
+
+		c.routedSource = source;
+		c.routedStarttime = c.starttime;
+		c.routedMaxTime = maxTime;
+	}
+
+	@Override
+	public boolean hasTravelTimes(DiGraphNode<Point2D, E_road> originalSource, long maxTime) {
+		QueryContext c = context();
+		return c.routedSource >= 0 && c.routedSource == road2routing.get(originalSource)
+				&& c.routedStarttime == c.starttime && c.routedMaxTime >= maxTime;
+	}
+
+	@Override
+	public void color(long maxTime, long bufferTime) {
+		QueryContext c = contexts.get();
 		long totalTime = maxTime + bufferTime;
+		if (c.routedSource < 0 || c.routedMaxTime < totalTime)
+			throw new IllegalArgumentException("No travel times computed for " + totalTime
+					+ "s, route with a time bound of at least this value first.");
 
-		DiGraphNode<IsoVertex, IsoEdge> source = road2routing.get(originalSource);
-		if (!AbstractMain.KEEP_MOTORWAY)
-			adj_it = new BasicAdjacentNodeIterator<>(it);
-		else
-			adj_it = new GeofabrikWalkingIterator<>(it);
-		visit = new SplitVisitor(starttime + totalTime, dijkstra);
+		c.lastSource = roadGraph.getNode(c.routedSource);
+		color(c, i -> c.search.getDistance(i) - c.routedStarttime, maxTime, bufferTime);
+	}
 
-		dijkstra.run(source, visit, adj_it);
-		lastSource = routing2color.get(source);
+	@Override
+	public void routeProfile(DiGraphNode<Point2D, E_road> originalSource, long window, long maxTime) {
+		QueryContext c = context();
+		if (c.searchTimetable == null)
+			throw new IllegalArgumentException("Profile queries need the timetable of the connection scan.");
+		if (c.profile == null)
+			c.profile = new ProfileScan(snapshot, c.searchTimetable);
+
+		int source = road2routing.get(originalSource);
+		c.profile.run(source, c.starttime, c.starttime + window, maxTime, avoidMotorway);
+		c.lastSource = roadGraph.getNode(source);
+
+		c.profileSource = source;
+		c.profileStarttime = c.starttime;
+		c.profileWindow = window;
+		c.profileMaxTime = maxTime;
+	}
+
+	@Override
+	public boolean hasProfile(DiGraphNode<Point2D, E_road> originalSource, long window, long maxTime) {
+		QueryContext c = context();
+		return c.profileSource >= 0 && c.profileSource == road2routing.get(originalSource)
+				&& c.profileStarttime == c.starttime && c.profileWindow >= window && c.profileMaxTime >= maxTime;
+	}
+
+	@Override
+	public void colorProfile(long departure, long maxTime, long bufferTime) {
+		QueryContext c = contexts.get();
+		checkProfile(c, maxTime + bufferTime);
+		if (departure < c.profileStarttime || departure > c.profileStarttime + c.profileWindow)
+			throw new IllegalArgumentException("Departure " + departure + " outside of the profile window ["
+					+ c.profileStarttime + ", " + (c.profileStarttime + c.profileWindow) + "].");
+
+		c.lastSource = roadGraph.getNode(c.profileSource);
+		color(c, i -> c.profile.getTravelTime(i, departure), maxTime, bufferTime);
+	}
+
+	@Override
+	public void colorProfile(ProfileStatistic statistic, long window, long maxTime, long bufferTime) {
+		QueryContext c = contexts.get();
+		checkProfile(c, maxTime + bufferTime);
+		if (window < 0 || window > c.profileWindow)
+			throw new IllegalArgumentException(
+					"Window " + window + " not within the profile window of " + c.profileWindow + "s.");
+
+		c.lastSource = roadGraph.getNode(c.profileSource);
+		color(c, i -> c.profile.getTravelTime(i, statistic, window), maxTime, bufferTime);
+	}
+
+	private void checkProfile(QueryContext c, long totalTime) {
+		if (c.profileSource < 0 || c.profileMaxTime < totalTime)
+			throw new IllegalArgumentException("No profile computed for " + totalTime
+					+ "s, route the profile with a time bound of at least this value first.");
+	}
+
+	/**
+	 * Colors the road nodes by their travel time and finds the split nodes.
+	 * 
+	 * @param c          query context of the current thread
+	 * @param travelTime travel time from the source of each road node
+	 * @param maxTime    threshold of the isochrone
+	 * @param bufferTime buffer time for closing operation
+	 */
+	private void color(QueryContext c, IntToDoubleFunction travelTime, long maxTime, long bufferTime) {
+		long totalTime = maxTime + bufferTime;
 
 		double time;
 		// road nodes are the first ones in the routing graph
@@ -146,29 +483,27 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 //			if (i == 78138)
 //				System.out.println();
 
-			time = dijkstra.getDistance(routingGraph.getNode(i)) - starttime;
-
-			ColoredNode nodeData = coloredGraph.getNode(i).getNodeData();
+			time = travelTime.applyAsDouble(i);
 
 			if (time <= maxTime) {
-				nodeData.setReachability(Colored.REACHABLE, totalTime - time);
+				c.coloring.setReachability(i, Colored.REACHABLE, totalTime - time);
 			} else if (time <= totalTime) {
-				nodeData.setReachability(Colored.BUFFER, totalTime - time);
+				c.coloring.setReachability(i, Colored.BUFFER, totalTime - time);
 			} else {
-				nodeData.setReachability(Colored.UNREACHABLE, -1);
+				c.coloring.setReachability(i, Colored.UNREACHABLE, -1);
 			}
 		}
 
-		splitNodes = SplitNodeFinder.findSplitNodes(coloredGraph, new Stopwatch(), bufferTime > 0);
+		c.splitNodes = SplitNodeFinder.findSplitNodes(roadGraph, c.coloring, new Stopwatch(), bufferTime > 0);
 
 		if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG) {
-			if (coloredGraph.n() >= 10000)
+			if (roadGraph.n() >= 10000)
 				showRoutingResult(AbstractMain.GUI, "RR");
 			else
 				showColoredNodes(AbstractMain.GUI, "RR nodes");
 		}
 
-		removeBuffer(bufferTime);
+		removeBuffer(c, bufferTime);
 	}
 
 	@Override
@@ -181,31 +516,32 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 	 * <code>UNREACHABLE</code>. On top of that, the remaining distance for all
 	 * nodes is adjusted by the previously entered buffer distance.
 	 * 
+	 * @param c          query context of the current thread
 	 * @param bufferTime previously used distance for buffering
 	 */
-	private void removeBuffer(double bufferTime) {
+	private void removeBuffer(QueryContext c, double bufferTime) {
 		if (bufferTime == 0)
 			return;
 
-		for (DiGraphNode<ColoredNode, E_road> splitNode : splitNodes) {
-			blueToRedRecursive(splitNode);
+		for (DiGraphNode<Point2D, E_road> splitNode : c.splitNodes) {
+			blueToRedRecursive(c.coloring, splitNode);
 		}
 
 		int color;
 		double remTime;
-		for (DiGraphNode<ColoredNode, E_road> node : coloredGraph.getNodes()) {
-			color = node.getNodeData().getColor();
-			remTime = node.getNodeData().getRemainingTime() - bufferTime;
-			if (node.getNodeData().getColor() == Colored.BUFFER) {
+		for (DiGraphNode<Point2D, E_road> node : roadGraph.getNodes()) {
+			color = c.coloring.getColor(node.getId());
+			remTime = c.coloring.getRemainingTime(node.getId()) - bufferTime;
+			if (color == Colored.BUFFER) {
 				color = Colored.REACHABLE;
 				remTime = 0;
 				remTime = node.getIncomingArcs().stream()
 						.flatMapToDouble(x -> DoubleStream.of(x.getArcData().getValue())).max().getAsDouble() * 2;
 			}
-			node.getNodeData().setReachability(color, remTime);
+			c.coloring.setReachability(node.getId(), color, remTime);
 		}
 
-		splitNodes = SplitNodeFinder.findSplitNodes(coloredGraph, new Stopwatch());
+		c.splitNodes = SplitNodeFinder.findSplitNodes(roadGraph, c.coloring, new Stopwatch(), false);
 
 		if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG) {
 			showRoutingResult(AbstractMain.GUI, "RR w/o buffer");
@@ -216,37 +552,39 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 	/**
 	 * Recursively coloring blue nodes red starting at a given node
 	 * 
-	 * @param node Starting node
+	 * @param coloring colors of the road nodes
+	 * @param node     Starting node
 	 */
-	private void blueToRedRecursive(DiGraphNode<ColoredNode, E_road> node) {
-		if (node.getNodeData().getColor() == Colored.REACHABLE)
+	private void blueToRedRecursive(NodeColoring coloring, DiGraphNode<Point2D, E_road> node) {
+		if (coloring.getColor(node.getId()) == Colored.REACHABLE)
 			return;
-		node.getNodeData().setReachability(Colored.UNREACHABLE, node.getNodeData().getRemainingTime());
-		for (DiGraphArc<ColoredNode, E_road> a : node.getOutgoingArcs()) {
-			if (a.getTarget().getNodeData().getColor() == Colored.BUFFER)
-				blueToRedRecursive(a.getTarget());
+		coloring.setReachability(node.getId(), Colored.UNREACHABLE, coloring.getRemainingTime(node.getId()));
+		for (DiGraphArc<Point2D, E_road> a : node.getOutgoingArcs()) {
+			if (coloring.getColor(a.getTarget().getId()) == Colored.BUFFER)
+				blueToRedRecursive(coloring, a.getTarget());
 		}
 	}
 
 	public IsochronePanel showRoutingResult(ResultFrame frame, String title) {
-		IsochronePanel panel = IsochroneCreator.showColoredArcs(frame, title, coloredGraph);
+		QueryContext c = contexts.get();
+		IsochronePanel panel = IsochroneCreator.showColoredArcs(frame, title, createColoredGraph(c.coloring));
 
 		ListLayer sourceLayer = new ListLayer(Color.ORANGE);
 		ListLayer splitNodeBufferLayer = new ListLayer(AbstractMain.COLOR_STYLE.buffer());
 		ListLayer splitNodeReachableLayer = new ListLayer(AbstractMain.COLOR_STYLE.reachable());
 
-		if (splitNodes != null)
-			for (DiGraphNode<ColoredNode, E_road> splitnode : splitNodes) {
-				if (splitnode.getNodeData().getColor() == Colored.BUFFER) {
+		if (c.splitNodes != null)
+			for (DiGraphNode<Point2D, E_road> splitnode : c.splitNodes) {
+				if (c.coloring.getColor(splitnode.getId()) == Colored.BUFFER) {
 					splitNodeBufferLayer.add(new PointMapObject(splitnode.getNodeData()));
-				} else if (splitnode.getNodeData().getColor() == Colored.REACHABLE) {
+				} else if (c.coloring.getColor(splitnode.getId()) == Colored.REACHABLE) {
 					splitNodeReachableLayer.add(new PointMapObject(splitnode.getNodeData()));
 				} else {
 					System.err.println("error");
 				}
 			}
 
-		sourceLayer.add(new PointMapObject(lastSource.getNodeData()));
+		sourceLayer.add(new PointMapObject(c.lastSource.getNodeData()));
 
 		panel.getMap().addLayer(splitNodeBufferLayer, 15);
 		panel.getMap().addLayer(splitNodeReachableLayer, 20);
@@ -256,6 +594,8 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 	}
 
 	public IsochronePanel showColoredNodes(ResultFrame frame, String title) {
+		QueryContext c = contexts.get();
+		DiGraph<ColoredNode, E_road> coloredGraph = createColoredGraph(c.coloring);
 		IsochronePanel panel = IsochroneCreator.showColoredArcs(frame, title, coloredGraph);
 
 		ListLayer sourceLayer = new ListLayer(Color.ORANGE);
@@ -274,7 +614,7 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 				bufferLayer.add(mo);
 		}
 
-		sourceLayer.add(new PointMapObject(lastSource.getNodeData()));
+		sourceLayer.add(new PointMapObject(c.lastSource.getNodeData()));
 
 		panel.getMap().addLayer(unreachableLayer, 15);
 		panel.getMap().addLayer(bufferLayer, 20);
@@ -285,22 +625,29 @@ public class MultiModalRouter<E_iso extends IsoEdge, E_road extends WalkingData>
 	}
 
 	@Override
-	public DiGraphNode<ColoredNode, E_road> getLastSource() {
-		return lastSource;
+	public DiGraphNode<Point2D, E_road> getLastSource() {
+		return contexts.get().lastSource;
 	}
 
 	@Override
-	public List<DiGraphNode<ColoredNode, E_road>> getSplitNodes() {
-		return splitNodes;
+	public List<DiGraphNode<Point2D, E_road>> getSplitNodes() {
+		return contexts.get().splitNodes;
 	}
 
 	@Override
-	public DiGraph<ColoredNode, E_road> getColoredGraph() {
-		return coloredGraph;
+	public NodeColoring getColoring() {
+		return contexts.get().coloring;
 	}
 
-	@Override
-	public final DiGraph<IsoVertex, IsoEdge> getRoutingGraph() {
-		return routingGraph;
+	public CSRGraph getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return timetable of the connection scan, null if the public transportation
+	 *         is expanded into the routing graph
+	 */
+	public Timetable getTimetable() {
+		return timetable;
 	}
 }
\ No newline at end of file
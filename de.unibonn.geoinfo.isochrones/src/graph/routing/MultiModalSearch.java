@@ -0,0 +1,30 @@
+package graph.routing;
+
+/**
+ * One-to-all earliest arrival search of the {@link MultiModalRouter}. Node ids
+ * of the road nodes equal their ids in the road graph. Implementations keep
+ * their labels until the next run and are not thread-safe, each thread uses
+ * its own instance.
+ */
+public interface MultiModalSearch {
+
+	/**
+	 * Runs the search starting at the source node at the given start time. All
+	 * nodes reachable until <code>maxTime</code> are settled.
+	 *
+	 * @param source        id of the source node
+	 * @param starttime     start time in seconds after the beginning of the week
+	 * @param maxTime       absolute time bound of the search
+	 * @param avoidMotorway if true, arcs flagged as {@link CSRGraph#NO_WALKING}
+	 *                      are not used
+	 */
+	void run(int source, double starttime, double maxTime, boolean avoidMotorway);
+
+	/**
+	 * Assumes that the search has been executed before.
+	 *
+	 * @return absolute arrival time at the node in the last run,
+	 *         Double.MAX_VALUE if the node has not been reached
+	 */
+	double getDistance(int node);
+}
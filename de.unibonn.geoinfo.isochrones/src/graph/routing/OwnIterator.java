@@ -3,9 +3,11 @@ package graph.routing;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Objects;
 
 import graph.generic.DiGraph.DiGraphNode;
+import graph.routing.Dijkstra.NeighborVisitor;
 import graph.routing.Dijkstra.NodeIterator;
 import graph.types.ArrivalNode;
 import graph.types.IsoEdge;
@@ -19,14 +21,57 @@ public class OwnIterator implements NodeIterator<IsoVertex, IsoEdge> {
 
 	Dijkstra<IsoVertex, IsoEdge> dij;
 
-	private HashMap<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes;
+	// departures of each stop in seconds after the beginning of the week, sorted,
+	// and the corresponding transfer nodes
+	private HashMap<Integer, int[]> departures;
+	private HashMap<Integer, DiGraphNode<IsoVertex, IsoEdge>[]> transfers;
+	// departure of each transfer node by node id
+	private int[] departureOf;
 	private HashMap<Integer, Integer> transferTimes;
 
 	public OwnIterator(final HashMap<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes,
 			final HashMap<Integer, Integer> transferTimes, Dijkstra<IsoVertex, IsoEdge> dijkstra) {
 		this.dij = dijkstra;
-		this.transferNodes = transferNodes;
 		this.transferTimes = transferTimes;
+
+		int maxId = -1;
+		for (LinkedList<DiGraphNode<IsoVertex, IsoEdge>> list : transferNodes.values())
+			for (DiGraphNode<IsoVertex, IsoEdge> d : list)
+				maxId = Math.max(maxId, d.getId());
+		this.departureOf = new int[maxId + 1];
+
+		this.departures = new HashMap<>();
+		this.transfers = new HashMap<>();
+		for (Map.Entry<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> stop : transferNodes.entrySet()) {
+			int[] times = new int[stop.getValue().size()];
+			@SuppressWarnings("unchecked")
+			DiGraphNode<IsoVertex, IsoEdge>[] nodes =
+					(DiGraphNode<IsoVertex, IsoEdge>[]) new DiGraphNode<?, ?>[times.length];
+			int i = 0;
+			for (DiGraphNode<IsoVertex, IsoEdge> d : stop.getValue()) {
+				times[i] = (int) (((PublicTransportNode) d.getNodeData()).getTime().getTime() / 1000);
+				nodes[i] = d;
+				departureOf[d.getId()] = times[i];
+				++i;
+			}
+			departures.put(stop.getKey(), times);
+			transfers.put(stop.getKey(), nodes);
+		}
+	}
+
+	@Override
+	public void forEachNeighbor(DiGraphNode<IsoVertex, IsoEdge> s, NeighborVisitor<IsoVertex, IsoEdge> visitor) {
+		if (s.getNodeData() instanceof RoadNode && ((RoadNode) s.getNodeData()).isNextToStop()) {
+			DiGraphNode<IsoVertex, IsoEdge> nextTransfer = getNextTransfer((RoadNode) s.getNodeData(),
+					(long) this.dij.getDistance(s));
+			if (nextTransfer != null)
+				visitor.visit(nextTransfer, getWeightOfCurrentArc(s, nextTransfer));
+		} else if (s.getNodeData() instanceof ArrivalNode) {
+			DiGraphNode<IsoVertex, IsoEdge> street = ((ArrivalNode) s.getNodeData()).getNextStreetNode();
+			if (street != null
+					&& (dij.stamps[street.getId()] != dij.currentStamp || dij.pred[street.getId()] == null))
+				visitor.visit(street, getTransferTime(s.getNodeData().getId()));
+		}
 	}
 
 	@Override
@@ -57,8 +102,7 @@ public class OwnIterator implements NodeIterator<IsoVertex, IsoEdge> {
 		Objects.requireNonNull(t);
 		if (s.getNodeData() instanceof RoadNode && t.getNodeData() instanceof TransferNode) {
 			TransferNode tr = (TransferNode) t.getNodeData();
-			double transferTime = tr.getTime().getTime() / 1000.0; // in seconds
-			double time = transferTime - dij.getCurrDist() + getTransferTime(tr.getId());
+			double time = departureOf[t.getId()] - dij.getCurrDist() + getTransferTime(tr.getId());
 			// Transferzeit muss zwischen 0 und einer Woche liegen
 			return (time + 7 * 86400) % (7 * 86400);
 		}
@@ -82,23 +126,30 @@ public class OwnIterator implements NodeIterator<IsoVertex, IsoEdge> {
 	}
 
 	/**
+	 * Finds the first departure at the stop next to <code>arr</code> that can be
+	 * caught at the given time by a binary search on the sorted departures. If no
+	 * such departure exists, the first departure of the week is returned.
 	 * 
-	 * @param arrId
-	 * @param time  in ms
-	 * @return
-	 * @throws OutOfStreetNetworkException
+	 * @param arr  road node next to a stop
+	 * @param time in seconds after the beginning of the week
+	 * @return transfer node of the departure
 	 */
 	public DiGraphNode<IsoVertex, IsoEdge> getNextTransfer(RoadNode arr, long time) {
 		int arrId = arr.getNextStopId();
-		long transTime = this.getTransferTime(arrId);
-		LinkedList<DiGraphNode<IsoVertex, IsoEdge>> t = this.transferNodes.get(arrId);
+		int[] times = this.departures.get(arrId);
 
-		for (DiGraphNode<IsoVertex, IsoEdge> d : t) {
-			double transferTime = ((PublicTransportNode) d.getNodeData()).getTime().getTime() / 1000.0; // in seconds
-			if (time < transferTime + transTime) {
-				return d;
-			}
+		// first departure with time < departure + transfer time
+		long limit = time - this.getTransferTime(arrId);
+		int low = 0;
+		int high = times.length;
+		int mid;
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (times[mid] <= limit)
+				low = mid + 1;
+			else
+				high = mid;
 		}
-		return t.getFirst();
+		return this.transfers.get(arrId)[low < times.length ? low : 0];
 	}
 }
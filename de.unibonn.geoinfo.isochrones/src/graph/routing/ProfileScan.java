@@ -0,0 +1,504 @@
+package graph.routing;
+
+import java.util.Arrays;
+
+import util.structures.IndexedDaryHeap;
+import util.structures.IntPriorityQueue;
+
+/**
+ * Profile variant of the {@link ConnectionScan}: computes the arrival times at
+ * all road nodes for every departure from the source within a time window in
+ * one search, so that isochrones for any departure of the window can be
+ * derived without routing again.
+ *
+ * A departure from the source only changes the result when it is the latest
+ * departure to catch a connection at a stop reachable by walking. These
+ * critical departures are processed from the latest to the earliest. For each
+ * of them, only the newly caught connections are scanned and the road nodes
+ * reached by them are settled, a label that is not earlier than the one of a
+ * later departure is pruned. Hence, each road node stores the Pareto set of
+ * (departure, arrival) pairs of journeys using public transportation, with
+ * decreasing arrival for decreasing departure. Together with the walking time
+ * from the source, the arrival for a departure <code>t</code> is the minimum of
+ * <code>t</code> plus the walking time and the arrival of the first pair with a
+ * departure of at least <code>t</code>.
+ *
+ * The boarding and transfer rules are the ones of the {@link ConnectionScan},
+ * except that leaving a trip also improves road nodes reached before, see
+ * {@link ConnectionScan#ConnectionScan(CSRGraph, Timetable, boolean)}. Only
+ * then, an earlier departure never arrives later, which the profile relies on.
+ * Times are absolute times in seconds after the beginning of the week,
+ * departures are whole seconds. As for the other searches, the data structures
+ * are reused for multiple queries and an instance must not be shared between
+ * threads.
+ */
+public class ProfileScan {
+
+	private static final int WEEK = 7 * 86400;
+	private static final int DAY = 86400;
+
+	/**
+	 * distance between the departures evaluated for the statistics of
+	 * {@link #getTravelTime(int, Router.ProfileStatistic)} in seconds
+	 */
+	public static final int SAMPLE_INTERVAL = 60;
+
+	private final CSRGraph graph;
+	private final Timetable timetable;
+
+	private IntPriorityQueue queue;
+
+	// walking time from the source
+	private double walk[];
+	private int walkStamps[];
+
+	// labels of the current critical departure
+	private double dist[];
+	private int stamps[];
+	private int settled[];
+	private int numSettled;
+
+	// earliest arrival by public transportation of all departures processed so
+	// far and head of the node's list of profile entries
+	private double best[];
+	private int head[];
+	private int profileStamps[];
+
+	// profile entries, the list of a node starts with its earliest departure
+	private long entryDeparture[] = new long[1024];
+	private double entryArrival[] = new double[1024];
+	private int entryNext[] = new int[1024];
+	private int numEntries;
+
+	// offset of the trips and connection the trip is boarded at from the source,
+	// one entry per trip and week
+	private double tripOffset[];
+	private int tripStamps[];
+	private double seedOffset[];
+	private int seedConnection[];
+	private int seedStamps[];
+
+	// connections caught from the source, sorted by their latest departure
+	private long seedDeparture[] = new long[1024];
+	private int seeds[] = new int[1024];
+	private int numSeeds;
+
+	private int currentStamp = 0;
+	private int profileStamp = 0;
+	private int walkStamp = 0;
+
+	private long earliestDeparture;
+	private long latestDeparture;
+	private double maxTime;
+
+	// buffer for the sampled travel times of one node
+	private double samples[] = new double[0];
+
+	/**
+	 * @param graph     road network, the ids of the road nodes have to match the
+	 *                  street nodes of the timetable
+	 * @param timetable connections of the public transportation
+	 */
+	public ProfileScan(CSRGraph graph, Timetable timetable) {
+		this.graph = graph;
+		this.timetable = timetable;
+		this.queue = new IndexedDaryHeap(graph.n());
+		this.walk = new double[graph.n()];
+		this.walkStamps = new int[graph.n()];
+		this.dist = new double[graph.n()];
+		this.stamps = new int[graph.n()];
+		this.settled = new int[graph.n()];
+		this.best = new double[graph.n()];
+		this.head = new int[graph.n()];
+		this.profileStamps = new int[graph.n()];
+		ensureTripCapacity(1);
+	}
+
+	/**
+	 * Computes the profile of all departures from the source between
+	 * <code>earliestDeparture</code> and <code>latestDeparture</code>.
+	 *
+	 * @param source            id of the source node
+	 * @param earliestDeparture first departure of the window in seconds after the
+	 *                          beginning of the week
+	 * @param latestDeparture   last departure of the window
+	 * @param maxTime           travel time bound of each departure in seconds
+	 * @param avoidMotorway     if true, arcs flagged as
+	 *                          {@link CSRGraph#NO_WALKING} are not used
+	 */
+	public void run(int source, long earliestDeparture, long latestDeparture, double maxTime,
+			boolean avoidMotorway) {
+		if (latestDeparture < earliestDeparture)
+			throw new IllegalArgumentException(
+					"Latest departure " + latestDeparture + " before earliest departure " + earliestDeparture + ".");
+
+		this.earliestDeparture = earliestDeparture;
+		this.latestDeparture = latestDeparture;
+		this.maxTime = maxTime;
+		profileStamp++;
+		numEntries = 0;
+
+		int weeks = (int) ((latestDeparture + maxTime + DAY) / WEEK) + 1;
+		ensureTripCapacity(weeks);
+
+		walkFromSource(source, avoidMotorway);
+		collectSeeds(weeks);
+
+		// critical departures from the latest to the earliest
+		int i = 0;
+		while (i < numSeeds) {
+			long departure = seedDeparture[i];
+			int j = i;
+			while (j < numSeeds && seedDeparture[j] == departure)
+				++j;
+			// seeds boarding a trip that is already boarded by another seed are
+			// scanned separately
+			int k = j;
+			while (i < k)
+				k = scanDeparture(departure, i, k, weeks, avoidMotorway);
+			i = j;
+		}
+	}
+
+	/**
+	 * Walking times from the source up to the travel time bound.
+	 */
+	private void walkFromSource(int source, boolean avoidMotorway) {
+		walkStamp = ++currentStamp;
+		queue.clear();
+		walk[source] = 0;
+		walkStamps[source] = walkStamp;
+		queue.insert(source, 0);
+
+		while (!queue.isEmpty()) {
+			double d = queue.getMinKey();
+			if (d > maxTime)
+				break;
+			int u = queue.extractMin();
+
+			for (int arc = graph.firstOut(u); arc < graph.lastOut(u); ++arc) {
+				if (avoidMotorway && graph.hasFlag(arc, CSRGraph.NO_WALKING))
+					continue;
+				int v = graph.target(arc);
+				double alt = d + graph.weight(arc);
+				if (walkStamps[v] < walkStamp || alt < walk[v]) {
+					walk[v] = alt;
+					walkStamps[v] = walkStamp;
+					if (queue.contains(v))
+						queue.decreaseKey(v, alt);
+					else
+						queue.insert(v, alt);
+				}
+			}
+		}
+		// only labels up to the bound are final
+		while (!queue.isEmpty())
+			walkStamps[queue.extractMin()] = 0;
+	}
+
+	/**
+	 * Collects the connections that can be boarded by walking from the source
+	 * together with the latest departure from the source to catch them, i.e. the
+	 * last whole second <code>t</code> with <code>t</code> plus the walking time
+	 * being earlier than the departure plus half of the transfer time. Departures
+	 * after the window are processed at its end.
+	 */
+	private void collectSeeds(int weeks) {
+		numSeeds = 0;
+		for (int k = 0; k < weeks; ++k) {
+			long week = (long) k * WEEK;
+			for (int c = timetable.firstDeparture(
+					earliestDeparture - week - timetable.maxHalfTransferTime()); c < timetable.numConnections(); ++c) {
+				long departure = timetable.depTime(c) + week;
+				if (departure > latestDeparture + maxTime)
+					break;
+				int stop = timetable.depStop(c);
+				int boarding = timetable.boardingNode(stop);
+				if (boarding == Timetable.NONE || walkStamps[boarding] != walkStamp)
+					continue;
+
+				long latest = (long) Math.ceil(departure + timetable.halfTransferTime(stop) - walk[boarding]) - 1;
+				if (latest < earliestDeparture || departure > latest + maxTime)
+					continue;
+				addSeed(Math.min(latest, latestDeparture), k * timetable.numConnections() + c);
+			}
+		}
+
+		// sort by decreasing departure, ties keep the order of the connections
+		long[] order = new long[numSeeds];
+		for (int i = 0; i < numSeeds; ++i)
+			order[i] = ((latestDeparture - seedDeparture[i]) << 32) | i;
+		Arrays.sort(order);
+
+		long[] departures = Arrays.copyOf(seedDeparture, numSeeds);
+		int[] connections = Arrays.copyOf(seeds, numSeeds);
+		for (int i = 0; i < numSeeds; ++i) {
+			seedDeparture[i] = departures[(int) order[i]];
+			seeds[i] = connections[(int) order[i]];
+		}
+	}
+
+	private void addSeed(long departure, int connection) {
+		if (numSeeds == seeds.length) {
+			seedDeparture = Arrays.copyOf(seedDeparture, 2 * numSeeds);
+			seeds = Arrays.copyOf(seeds, 2 * numSeeds);
+		}
+		seedDeparture[numSeeds] = departure;
+		seeds[numSeeds] = connection;
+		++numSeeds;
+	}
+
+	/**
+	 * Scans the connections reachable from the seeds <code>from</code>
+	 * (inclusive) to <code>to</code> (exclusive), which share the same latest
+	 * departure, and adds the improved arrivals to the profile. Only one seed per
+	 * trip is used, the others are moved to the beginning of the range.
+	 *
+	 * @return end of the range of seeds that have not been used
+	 */
+	private int scanDeparture(long departure, int from, int to, int weeks, boolean avoidMotorway) {
+		currentStamp++;
+		queue.clear();
+		numSettled = 0;
+		double bound = departure + maxTime;
+
+		int deferred = from;
+		double first = Double.MAX_VALUE;
+		for (int i = from; i < to; ++i) {
+			int week = seeds[i] / timetable.numConnections();
+			int c = seeds[i] % timetable.numConnections();
+			int trip = week * timetable.numTrips() + timetable.trip(c);
+			int offset = timetable.halfTransferTime(timetable.depStop(c));
+			if (seedStamps[trip] == currentStamp) {
+				int seed = seeds[i];
+				seeds[i] = seeds[deferred];
+				seeds[deferred++] = seed;
+				continue;
+			}
+			seedStamps[trip] = currentStamp;
+			seedConnection[trip] = c;
+			seedOffset[trip] = offset;
+			first = Math.min(first, timetable.depTime(c) + (double) week * WEEK);
+		}
+
+		int[] next = new int[weeks];
+		for (int k = 0; k < weeks; ++k)
+			next[k] = timetable.firstDeparture(first - (double) k * WEEK);
+
+		int week;
+		double time;
+		while (true) {
+			week = -1;
+			time = Double.MAX_VALUE;
+			for (int k = 0; k < weeks; ++k) {
+				if (next[k] < timetable.numConnections() && timetable.depTime(next[k]) + (double) k * WEEK < time) {
+					week = k;
+					time = timetable.depTime(next[k]) + (double) k * WEEK;
+				}
+			}
+			if (week < 0 || time > bound)
+				break;
+
+			int c = next[week]++;
+			settle(time + timetable.halfTransferTime(timetable.depStop(c)), bound, avoidMotorway);
+			scan(c, week, time, bound);
+		}
+		settle(Double.MAX_VALUE, bound, avoidMotorway);
+
+		for (int i = 0; i < numSettled; ++i)
+			addEntry(settled[i], departure, dist[settled[i]]);
+		return deferred;
+	}
+
+	private void settle(double limit, double bound, boolean avoidMotorway) {
+		while (!queue.isEmpty()) {
+			double d = queue.getMinKey();
+			if (d >= limit || d > bound)
+				return;
+			int u = queue.extractMin();
+			settled[numSettled++] = u;
+
+			for (int arc = graph.firstOut(u); arc < graph.lastOut(u); ++arc) {
+				if (avoidMotorway && graph.hasFlag(arc, CSRGraph.NO_WALKING))
+					continue;
+				discoverNode(graph.target(arc), d + graph.weight(arc), bound);
+			}
+		}
+	}
+
+	private void scan(int c, int week, double departure, double bound) {
+		int trip = week * timetable.numTrips() + timetable.trip(c);
+		double offset = tripStamps[trip] == currentStamp ? tripOffset[trip] : Double.MAX_VALUE;
+
+		if (seedStamps[trip] == currentStamp && c >= seedConnection[trip])
+			offset = Math.min(offset, seedOffset[trip]);
+
+		int stop = timetable.depStop(c);
+		int boarding = timetable.boardingNode(stop);
+		int halfTransfer = timetable.halfTransferTime(stop);
+		if (boarding != Timetable.NONE && stamps[boarding] == currentStamp
+				&& (long) dist[boarding] < departure + halfTransfer)
+			offset = Math.min(offset, halfTransfer);
+
+		if (offset == Double.MAX_VALUE)
+			return;
+		tripOffset[trip] = offset;
+		tripStamps[trip] = currentStamp;
+
+		stop = timetable.arrStop(c);
+		int street = timetable.streetNode(stop);
+		if (street != Timetable.NONE) {
+			double arrival = timetable.arrTime(c) + (double) week * WEEK;
+			discoverNode(street, arrival + offset + timetable.halfTransferTime(stop), bound);
+		}
+	}
+
+	/**
+	 * Labels that are not earlier than the arrival of a later departure are
+	 * pruned, as every journey continuing from them is dominated.
+	 */
+	private void discoverNode(int target, double alt, double bound) {
+		if (alt > bound || (profileStamps[target] == profileStamp && alt >= best[target]))
+			return;
+		if (stamps[target] < currentStamp || alt < dist[target]) {
+			dist[target] = alt;
+			if (queue.contains(target)) {
+				queue.decreaseKey(target, alt);
+			} else {
+				queue.insert(target, alt);
+			}
+			stamps[target] = currentStamp;
+		}
+	}
+
+	private void addEntry(int node, long departure, double arrival) {
+		if (numEntries == entryNext.length) {
+			entryDeparture = Arrays.copyOf(entryDeparture, 2 * numEntries);
+			entryArrival = Arrays.copyOf(entryArrival, 2 * numEntries);
+			entryNext = Arrays.copyOf(entryNext, 2 * numEntries);
+		}
+		entryDeparture[numEntries] = departure;
+		entryArrival[numEntries] = arrival;
+		entryNext[numEntries] = profileStamps[node] == profileStamp ? head[node] : -1;
+		head[node] = numEntries;
+		best[node] = arrival;
+		profileStamps[node] = profileStamp;
+		++numEntries;
+	}
+
+	private void ensureTripCapacity(int weeks) {
+		int capacity = weeks * timetable.numTrips();
+		if (tripOffset == null || tripOffset.length < capacity) {
+			tripOffset = new double[capacity];
+			tripStamps = new int[capacity];
+			seedOffset = new double[capacity];
+			seedConnection = new int[capacity];
+			seedStamps = new int[capacity];
+		}
+	}
+
+	/**
+	 * Assumes that the profile has been computed before.
+	 *
+	 * @param node      id of the road node
+	 * @param departure departure from the source within the window of the last
+	 *                  run
+	 * @return absolute arrival time at the node, Double.MAX_VALUE if the node is
+	 *         not reached within the travel time bound
+	 */
+	public double getArrival(int node, double departure) {
+		double arrival = walkStamps[node] == walkStamp ? departure + walk[node] : Double.MAX_VALUE;
+		if (profileStamps[node] != profileStamp)
+			return arrival;
+
+		// departures and arrivals of the entries are increasing along the list
+		for (int e = head[node]; e >= 0; e = entryNext[e]) {
+			if (entryDeparture[e] >= departure)
+				return Math.min(arrival, entryArrival[e]);
+		}
+		return arrival;
+	}
+
+	/**
+	 * Assumes that the profile has been computed before.
+	 *
+	 * @return travel time from the source to the node for the departure,
+	 *         Double.MAX_VALUE if the node is not reached within the travel time
+	 *         bound
+	 */
+	public double getTravelTime(int node, double departure) {
+		double arrival = getArrival(node, departure);
+		return arrival == Double.MAX_VALUE || arrival - departure > maxTime ? Double.MAX_VALUE
+				: arrival - departure;
+	}
+
+	/**
+	 * Aggregates the travel times to the node of the departures in the window of
+	 * the last run, evaluated every {@link #SAMPLE_INTERVAL} seconds.
+	 *
+	 * @return best, median or worst travel time, Double.MAX_VALUE if the node is
+	 *         not reached within the travel time bound
+	 */
+	public double getTravelTime(int node, Router.ProfileStatistic statistic) {
+		return getTravelTime(node, statistic, latestDeparture - earliestDeparture);
+	}
+
+	/**
+	 * As {@link #getTravelTime(int, Router.ProfileStatistic)} for the departures
+	 * in the first <code>window</code> seconds of the window of the last run.
+	 */
+	public double getTravelTime(int node, Router.ProfileStatistic statistic, long window) {
+		int n = (int) (Math.min(window, latestDeparture - earliestDeparture) / SAMPLE_INTERVAL) + 1;
+		if (samples.length < n)
+			samples = new double[n];
+
+		boolean walking = walkStamps[node] == walkStamp;
+		boolean transit = profileStamps[node] == profileStamp;
+		if (!walking && !transit)
+			return Double.MAX_VALUE;
+
+		// the departures are increasing, so the list is traversed once
+		int e = transit ? head[node] : -1;
+		double departure, time;
+		for (int i = 0; i < n; ++i) {
+			departure = earliestDeparture + (long) i * SAMPLE_INTERVAL;
+			while (e >= 0 && entryDeparture[e] < departure)
+				e = entryNext[e];
+			time = walking ? walk[node] : Double.MAX_VALUE;
+			if (e >= 0)
+				time = Math.min(time, entryArrival[e] - departure);
+			samples[i] = time > maxTime ? Double.MAX_VALUE : time;
+		}
+
+		switch (statistic) {
+		case BEST:
+			double min = Double.MAX_VALUE;
+			for (int i = 0; i < n; ++i)
+				min = Math.min(min, samples[i]);
+			return min;
+		case WORST:
+			double max = 0;
+			for (int i = 0; i < n; ++i)
+				max = Math.max(max, samples[i]);
+			return max;
+		default:
+			Arrays.sort(samples, 0, n);
+			return samples[(n - 1) / 2];
+		}
+	}
+
+	public long getEarliestDeparture() {
+		return earliestDeparture;
+	}
+
+	public long getLatestDeparture() {
+		return latestDeparture;
+	}
+
+	/**
+	 * @return number of (departure, arrival) pairs of the last profile
+	 */
+	public int getNumEntries() {
+		return numEntries;
+	}
+}
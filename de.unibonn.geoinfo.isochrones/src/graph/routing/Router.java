@@ -2,12 +2,9 @@ package graph.routing;
 
 import java.util.List;
 
-import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphNode;
-import graph.types.ColoredNode;
 import graph.types.GeofabrikData;
-import graph.types.IsoEdge;
-import graph.types.IsoVertex;
+import graph.types.NodeColoring;
 import graph.types.WalkingData;
 
 public interface Router<V, E extends WalkingData> {
@@ -16,16 +13,107 @@ public interface Router<V, E extends WalkingData> {
 
 	public void run(DiGraphNode<V, E> originalSource, long time, long bufferTime);
 
-	public List<DiGraphNode<ColoredNode, E>> getSplitNodes();
+	/**
+	 * Computes the travel times from the source to all nodes reachable within
+	 * <code>maxTime</code>. The travel times are kept until the next call, so
+	 * that {@link #color(long, long)} can be called for all thresholds up to
+	 * <code>maxTime</code>.
+	 * 
+	 * @param originalSource source node
+	 * @param maxTime        time bound of the search, i.e. the largest threshold
+	 *                       plus its buffer time
+	 */
+	public void route(DiGraphNode<V, E> originalSource, long maxTime);
 
-	public DiGraph<ColoredNode, E> getColoredGraph();
+	/**
+	 * @return true if the last call of {@link #route(DiGraphNode, long)} started
+	 *         at the source at the current start time with a time bound of at
+	 *         least <code>maxTime</code>
+	 */
+	public boolean hasTravelTimes(DiGraphNode<V, E> originalSource, long maxTime);
 
-	public DiGraph<IsoVertex, IsoEdge> getRoutingGraph();
+	/**
+	 * Colors the nodes of the colored graph and finds the split nodes for the
+	 * given threshold based on the travel times of the last
+	 * {@link #route(DiGraphNode, long)}.
+	 * 
+	 * @param time       threshold of the isochrone
+	 * @param bufferTime buffer time for closing operation
+	 */
+	public void color(long time, long bufferTime);
 
-	public DiGraphNode<ColoredNode, E> getLastSource();
+	/**
+	 * Computes the profile of all departures from the source between the current
+	 * start time and the start time plus <code>window</code>, so that
+	 * {@link #colorProfile(long, long, long)} and
+	 * {@link #colorProfile(ProfileStatistic, long, long, long)} can be called for
+	 * all thresholds up to <code>maxTime</code>.
+	 * 
+	 * @param originalSource source node
+	 * @param window         length of the departure window in seconds
+	 * @param maxTime        time bound of the search, i.e. the largest threshold
+	 *                       plus its buffer time
+	 */
+	public void routeProfile(DiGraphNode<V, E> originalSource, long window, long maxTime);
+
+	/**
+	 * @return true if the last call of
+	 *         {@link #routeProfile(DiGraphNode, long, long)} started at the source
+	 *         at the current start time with at least the given window and time
+	 *         bound
+	 */
+	public boolean hasProfile(DiGraphNode<V, E> originalSource, long window, long maxTime);
+
+	/**
+	 * Colors the nodes as {@link #color(long, long)} for one departure of the
+	 * window of the last {@link #routeProfile(DiGraphNode, long, long)}. Unlike
+	 * in the time-expanded graph, leaving a trip also improves road nodes reached
+	 * before, so the travel times may be shorter than the ones of
+	 * {@link #route(DiGraphNode, long)}.
+	 * 
+	 * @param departure  departure from the source in seconds after the beginning
+	 *                   of the week
+	 * @param time       threshold of the isochrone
+	 * @param bufferTime buffer time for closing operation
+	 */
+	public void colorProfile(long departure, long time, long bufferTime);
+
+	/**
+	 * Colors the nodes as {@link #color(long, long)} based on the best, median or
+	 * worst travel time over all departures between the start time and the start
+	 * time plus <code>window</code>, which may be shorter than the window of the
+	 * last {@link #routeProfile(DiGraphNode, long, long)}.
+	 * 
+	 * @param statistic  aggregation of the travel times
+	 * @param window     length of the departure window in seconds
+	 * @param time       threshold of the isochrone
+	 * @param bufferTime buffer time for closing operation
+	 */
+	public void colorProfile(ProfileStatistic statistic, long window, long time, long bufferTime);
+
+	/**
+	 * @return nodes of the road graph colored last that are not unreachable but
+	 *         adjacent to unreachable ones
+	 */
+	public List<DiGraphNode<V, E>> getSplitNodes();
+
+	/**
+	 * @return colors of the last coloring, indexed by the ids of the nodes of the
+	 *         road graph
+	 */
+	public NodeColoring getColoring();
+
+	public DiGraphNode<V, E> getLastSource();
 
 	public void setStarttime(long starttime);
 
+	/**
+	 * Aggregation of the travel times of a departure window.
+	 */
+	public static enum ProfileStatistic {
+		BEST, MEDIAN, WORST
+	}
+
 	public static interface Factory<E_iso, E_road> {
 		E_road createEdgeData(E_road data);
 
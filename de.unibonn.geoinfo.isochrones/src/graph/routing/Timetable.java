@@ -0,0 +1,426 @@
+package graph.routing;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.snapshot.SnapshotReader;
+import io.snapshot.SnapshotWriter;
+
+/**
+ * Flat, read-only timetable for the {@link ConnectionScan}. Instead of nodes
+ * and arcs for every stop event, each ride of a trip between two consecutive
+ * stops is stored as one connection. Connections are sorted by their departure
+ * time and stored in parallel arrays, trips running on several weekdays are
+ * stored once per weekday.
+ *
+ * Times are seconds after the beginning of the week, as for the transfer nodes
+ * of the {@link io.gtfs.GTFSLoader}. Along a trip, the times are increasing,
+ * i.e. trips passing midnight continue on the next day. The connections of
+ * trips passing the end of the week are additionally stored at the beginning
+ * of the week as trips of their own.
+ *
+ * Additionally, the connections are indexed in order of their boarding
+ * deadline, i.e. the departure plus half of the transfer time of the departure
+ * stop, as a departure can be caught from the road network until then. The
+ * index is derived from the other arrays and not written to snapshots.
+ */
+public class Timetable {
+
+	public static final int NONE = -1;
+
+	private static final int WEEK = 7 * 86400;
+
+	// connections sorted by departure
+	private final int[] depStop;
+	private final int[] arrStop;
+	private final int[] depTime;
+	private final int[] arrTime;
+	private final int[] trip;
+
+	private final int numTrips;
+
+	// stops
+	private final int[] stopId;
+	private final int[] streetNode;
+	private final int[] boardingNode;
+	private final int[] halfTransferTime;
+	private final int maxHalfTransferTime;
+
+	// derived index: next connection of the same trip and connections sorted by
+	// their boarding deadline
+	private int[] nextInTrip;
+	private int[] byDeadline;
+
+	private Timetable(int numConnections, int numStops, int numTrips, int maxHalfTransferTime) {
+		this.depStop = new int[numConnections];
+		this.arrStop = new int[numConnections];
+		this.depTime = new int[numConnections];
+		this.arrTime = new int[numConnections];
+		this.trip = new int[numConnections];
+
+		this.numTrips = numTrips;
+
+		this.stopId = new int[numStops];
+		this.streetNode = new int[numStops];
+		this.boardingNode = new int[numStops];
+		this.halfTransferTime = new int[numStops];
+		this.maxHalfTransferTime = maxHalfTransferTime;
+	}
+
+	private Timetable(int[] depStop, int[] arrStop, int[] depTime, int[] arrTime, int[] trip, int numTrips,
+			int[] stopId, int[] streetNode, int[] boardingNode, int[] halfTransferTime, int maxHalfTransferTime) {
+		this.depStop = depStop;
+		this.arrStop = arrStop;
+		this.depTime = depTime;
+		this.arrTime = arrTime;
+		this.trip = trip;
+
+		this.numTrips = numTrips;
+
+		this.stopId = stopId;
+		this.streetNode = streetNode;
+		this.boardingNode = boardingNode;
+		this.halfTransferTime = halfTransferTime;
+		this.maxHalfTransferTime = maxHalfTransferTime;
+		indexConnections();
+	}
+
+	/**
+	 * Links the connections of each trip and sorts the connections by their
+	 * boarding deadline, ties keep the order of the departures.
+	 */
+	private void indexConnections() {
+		int numConnections = depTime.length;
+		nextInTrip = new int[numConnections];
+		int[] last = new int[numTrips];
+		Arrays.fill(last, NONE);
+		long[] order = new long[numConnections];
+		for (int c = 0; c < numConnections; ++c) {
+			nextInTrip[c] = NONE;
+			if (last[trip[c]] != NONE)
+				nextInTrip[last[trip[c]]] = c;
+			last[trip[c]] = c;
+			order[c] = ((long) deadline(c) << 32) | c;
+		}
+		Arrays.sort(order);
+		byDeadline = new int[numConnections];
+		for (int i = 0; i < numConnections; ++i)
+			byDeadline[i] = (int) order[i];
+	}
+
+	/**
+	 * Writes the arrays of the timetable, see {@link #read(SnapshotReader)}.
+	 */
+	public void write(SnapshotWriter out) throws IOException {
+		out.writeInts(depStop);
+		out.writeInts(arrStop);
+		out.writeInts(depTime);
+		out.writeInts(arrTime);
+		out.writeInts(trip);
+		out.writeInt(numTrips);
+		out.writeInts(stopId);
+		out.writeInts(streetNode);
+		out.writeInts(boardingNode);
+		out.writeInts(halfTransferTime);
+		out.writeInt(maxHalfTransferTime);
+	}
+
+	/**
+	 * Reads a timetable written by {@link #write(SnapshotWriter)}.
+	 */
+	public static Timetable read(SnapshotReader in) throws IOException {
+		return new Timetable(in.readInts(), in.readInts(), in.readInts(), in.readInts(), in.readInts(), in.readInt(),
+				in.readInts(), in.readInts(), in.readInts(), in.readInts(), in.readInt());
+	}
+
+	/**
+	 * Collects the trips of a GTFS feed, see {@link #addTrip(int[], int[], int[])}.
+	 */
+	public static class Builder {
+
+		private int size = 0;
+		private int[] depStop = new int[1024];
+		private int[] arrStop = new int[1024];
+		private int[] depTime = new int[1024];
+		private int[] arrTime = new int[1024];
+		private int[] trip = new int[1024];
+
+		private int numTrips = 0;
+		private final Map<Integer, Integer> stopIndex = new HashMap<>();
+
+		/**
+		 * Adds one trip on one day.
+		 *
+		 * @param stops      GTFS stop ids in order of the trip
+		 * @param arrivals   arrival time at each stop in seconds after the
+		 *                   beginning of the week
+		 * @param departures departure time at each stop in seconds after the
+		 *                   beginning of the week
+		 */
+		public void addTrip(int[] stops, int[] arrivals, int[] departures) {
+			for (int i = 0; i + 1 < stops.length; ++i) {
+				if (size == depStop.length)
+					grow();
+				depStop[size] = indexOf(stops[i]);
+				arrStop[size] = indexOf(stops[i + 1]);
+				depTime[size] = departures[i];
+				arrTime[size] = arrivals[i + 1];
+				trip[size] = numTrips;
+				++size;
+			}
+			++numTrips;
+		}
+
+		/**
+		 * Appends the trips of another builder as if they were added to this one
+		 * after its own trips. Stops are numbered in the order they are first seen,
+		 * hence, builders filled with consecutive parts of a feed and appended in
+		 * this order yield the same timetable as a single builder.
+		 */
+		public void addAll(Builder other) {
+			int[] stops = new int[other.stopIndex.size()];
+			for (Map.Entry<Integer, Integer> stop : other.stopIndex.entrySet())
+				stops[stop.getValue()] = stop.getKey();
+
+			for (int c = 0; c < other.size; ++c) {
+				if (size == depStop.length)
+					grow();
+				depStop[size] = indexOf(stops[other.depStop[c]]);
+				arrStop[size] = indexOf(stops[other.arrStop[c]]);
+				depTime[size] = other.depTime[c];
+				arrTime[size] = other.arrTime[c];
+				trip[size] = numTrips + other.trip[c];
+				++size;
+			}
+			numTrips += other.numTrips;
+		}
+
+		private int indexOf(int stop) {
+			Integer index = stopIndex.get(stop);
+			if (index == null) {
+				index = stopIndex.size();
+				stopIndex.put(stop, index);
+			}
+			return index;
+		}
+
+		private void grow() {
+			int capacity = 2 * depStop.length;
+			depStop = Arrays.copyOf(depStop, capacity);
+			arrStop = Arrays.copyOf(arrStop, capacity);
+			depTime = Arrays.copyOf(depTime, capacity);
+			arrTime = Arrays.copyOf(arrTime, capacity);
+			trip = Arrays.copyOf(trip, capacity);
+		}
+
+		/**
+		 * Creates the timetable. A stop can be boarded from its next street node if
+		 * the stop is the one stored for this node in <code>stopAtStreetNode</code>,
+		 * as for the transfer arcs of the time-expanded graph.
+		 *
+		 * @param streetNode          index of the next road node of each stop
+		 * @param stopAtStreetNode    stop id of each road node next to a stop
+		 * @param transferTimes       minimum transfer time of each stop in seconds
+		 * @param defaultTransferTime transfer time for stops without entry in
+		 *                            <code>transferTimes</code>
+		 * @return timetable with connections sorted by departure
+		 */
+		public Timetable build(Map<Integer, Integer> streetNode, Map<Integer, Integer> stopAtStreetNode,
+				Map<Integer, Integer> transferTimes, int defaultTransferTime) {
+			int maxHalfTransferTime = defaultTransferTime / 2;
+			for (int time : transferTimes.values())
+				maxHalfTransferTime = Math.max(maxHalfTransferTime, time / 2);
+
+			// connections departing after the end of the week are repeated at the
+			// beginning of the week, so that queries starting early on Monday find the
+			// trips of Sunday night without scanning the previous week
+			int[] foldedTrip = new int[numTrips];
+			Arrays.fill(foldedTrip, NONE);
+			int numFolded = 0;
+			int numFoldedTrips = 0;
+			for (int c = 0; c < size; ++c) {
+				if (depTime[c] >= WEEK) {
+					++numFolded;
+					if (foldedTrip[trip[c]] == NONE)
+						foldedTrip[trip[c]] = numTrips + numFoldedTrips++;
+				}
+			}
+
+			Timetable timetable = new Timetable(size + numFolded, stopIndex.size(), numTrips + numFoldedTrips,
+					maxHalfTransferTime);
+
+			for (Map.Entry<Integer, Integer> stop : stopIndex.entrySet()) {
+				int id = stop.getKey();
+				int index = stop.getValue();
+				timetable.stopId[index] = id;
+				timetable.streetNode[index] = NONE;
+				timetable.boardingNode[index] = NONE;
+				timetable.halfTransferTime[index] = transferTimes.getOrDefault(id, defaultTransferTime) / 2;
+
+				Integer street = streetNode.get(id);
+				if (street != null) {
+					timetable.streetNode[index] = street;
+					if (stopAtStreetNode.getOrDefault(street, NONE) == id)
+						timetable.boardingNode[index] = street;
+				}
+			}
+
+			// sort by departure, ties keep the order of the trips; folded connections
+			// are indexed after the original ones
+			long[] order = new long[size + numFolded];
+			int n = 0;
+			for (int i = 0; i < size; ++i)
+				order[n++] = ((long) depTime[i] << 32) | i;
+			for (int i = 0; i < size; ++i)
+				if (depTime[i] >= WEEK)
+					order[n++] = ((long) (depTime[i] - WEEK) << 32) | (size + i);
+			Arrays.sort(order);
+
+			int c;
+			int shift;
+			for (int i = 0; i < order.length; ++i) {
+				c = (int) order[i];
+				shift = 0;
+				if (c >= size) {
+					c -= size;
+					shift = WEEK;
+				}
+				timetable.depStop[i] = depStop[c];
+				timetable.arrStop[i] = arrStop[c];
+				timetable.depTime[i] = depTime[c] - shift;
+				timetable.arrTime[i] = arrTime[c] - shift;
+				timetable.trip[i] = shift == 0 ? trip[c] : foldedTrip[trip[c]];
+			}
+			timetable.indexConnections();
+			return timetable;
+		}
+	}
+
+	public int numConnections() {
+		return depTime.length;
+	}
+
+	public int numStops() {
+		return stopId.length;
+	}
+
+	public int numTrips() {
+		return numTrips;
+	}
+
+	/**
+	 * @return index of the first connection departing at or after
+	 *         <code>time</code>, {@link #numConnections()} if there is none
+	 */
+	public int firstDeparture(double time) {
+		int low = 0;
+		int high = depTime.length;
+		int mid;
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (depTime[mid] < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @return index of the first connection in order of the boarding deadline
+	 *         with a deadline at or after <code>time</code>,
+	 *         {@link #numConnections()} if there is none
+	 */
+	public int firstDeadline(double time) {
+		int low = 0;
+		int high = byDeadline.length;
+		int mid;
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (deadline(byDeadline[mid]) < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @param index position in order of the boarding deadline
+	 * @return connection at this position
+	 */
+	public int byDeadline(int index) {
+		return byDeadline[index];
+	}
+
+	/**
+	 * @return latest time the connection can be caught from the road node of its
+	 *         departure stop, exclusive
+	 */
+	public int deadline(int connection) {
+		return depTime[connection] + halfTransferTime[depStop[connection]];
+	}
+
+	/**
+	 * @return next connection of the same trip, {@link #NONE} for the last one
+	 */
+	public int nextInTrip(int connection) {
+		return nextInTrip[connection];
+	}
+
+	public int depStop(int connection) {
+		return depStop[connection];
+	}
+
+	public int arrStop(int connection) {
+		return arrStop[connection];
+	}
+
+	public int depTime(int connection) {
+		return depTime[connection];
+	}
+
+	public int arrTime(int connection) {
+		return arrTime[connection];
+	}
+
+	public int trip(int connection) {
+		return trip[connection];
+	}
+
+	/**
+	 * @return GTFS id of the stop
+	 */
+	public int stopId(int stop) {
+		return stopId[stop];
+	}
+
+	/**
+	 * @return road node reached when leaving the stop, {@link #NONE} if there is
+	 *         none
+	 */
+	public int streetNode(int stop) {
+		return streetNode[stop];
+	}
+
+	/**
+	 * @return road node the stop can be boarded from, {@link #NONE} if there is
+	 *         none
+	 */
+	public int boardingNode(int stop) {
+		return boardingNode[stop];
+	}
+
+	/**
+	 * @return half of the minimum transfer time of the stop in seconds
+	 */
+	public int halfTransferTime(int stop) {
+		return halfTransferTime[stop];
+	}
+
+	public int maxHalfTransferTime() {
+		return maxHalfTransferTime;
+	}
+}
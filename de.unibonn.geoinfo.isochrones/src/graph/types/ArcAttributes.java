@@ -0,0 +1,153 @@
+package graph.types;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap columnar store of the attributes of road arcs, see
+ * {@link GeofabrikData}. The road class is dictionary-encoded to a byte, the
+ * OSM id is stored as a number, maximum speed and layer as short and byte,
+ * bridge, tunnel and motorway as bit flags. Missing values are encoded by the
+ * smallest value of the column. Arcs with equal attributes may share a row.
+ */
+final class ArcAttributes {
+
+	static final ArcAttributes STORE = new ArcAttributes();
+
+	private static final int OSM_ID = 0, CODE = 1, MAXSPEED = 2, FCLASS = 3, ONEWAY = 4, LAYER = 5, FLAGS = 6;
+
+	private static final byte BRIDGE = 1, TUNNEL = 2, MOTORWAY = 4;
+
+	private static final long NULL_ID = Long.MIN_VALUE;
+	// OSM ids which are no plain numbers are kept in otherIds
+	private static final long OTHER_ID = Long.MIN_VALUE + 1;
+	private static final int NULL_CODE = Integer.MIN_VALUE;
+	private static final short NULL_MAXSPEED = Short.MIN_VALUE;
+	private static final byte NULL_LAYER = Byte.MIN_VALUE;
+
+	private final MappedColumns columns = new MappedColumns("arcs", 8, 4, 2, 1, 1, 1, 1);
+
+	// road classes by their byte, 0 is null
+	private volatile String[] fclasses = new String[] { null };
+	private final Map<String, Byte> fclassIndex = new HashMap<>();
+	private final Map<Integer, String> otherIds = new HashMap<>();
+
+	private ArcAttributes() {
+	}
+
+	/**
+	 * Adds a row of attributes.
+	 *
+	 * @return index of the row
+	 * @throws IllegalArgumentException if maxspeed or layer exceed the range of
+	 *                                  the column or there are more than 255 road
+	 *                                  classes
+	 */
+	int add(String osmId, Integer code, String fclass, byte oneway, Integer maxspeed, Integer layer, boolean bridge,
+			boolean tunnel) {
+		if (maxspeed != null && (maxspeed <= NULL_MAXSPEED || maxspeed > Short.MAX_VALUE))
+			throw new IllegalArgumentException("Maximum speed " + maxspeed + " of arc " + osmId + " out of range.");
+		if (layer != null && (layer <= NULL_LAYER || layer > Byte.MAX_VALUE))
+			throw new IllegalArgumentException("Layer " + layer + " of arc " + osmId + " out of range.");
+		byte fclassCode = encode(fclass);
+
+		int row = columns.add();
+		long id = parseId(osmId);
+		if (id == OTHER_ID) {
+			synchronized (otherIds) {
+				otherIds.put(row, osmId);
+			}
+		}
+		columns.putLong(OSM_ID, row, id);
+		columns.putInt(CODE, row, code == null ? NULL_CODE : code);
+		columns.putShort(MAXSPEED, row, maxspeed == null ? NULL_MAXSPEED : maxspeed.shortValue());
+		columns.putByte(FCLASS, row, fclassCode);
+		columns.putByte(ONEWAY, row, oneway);
+		columns.putByte(LAYER, row, layer == null ? NULL_LAYER : layer.byteValue());
+		columns.putByte(FLAGS, row,
+				(byte) ((bridge ? BRIDGE : 0) | (tunnel ? TUNNEL : 0) | (isMotorway(fclass) ? MOTORWAY : 0)));
+		return row;
+	}
+
+	private static long parseId(String osmId) {
+		if (osmId == null)
+			return NULL_ID;
+		try {
+			long id = Long.parseLong(osmId);
+			// ids with leading zeros or signs would not be restored
+			if (id > OTHER_ID && Long.toString(id).equals(osmId))
+				return id;
+		} catch (NumberFormatException e) {
+		}
+		return OTHER_ID;
+	}
+
+	private synchronized byte encode(String fclass) {
+		if (fclass == null)
+			return 0;
+		Byte code = fclassIndex.get(fclass);
+		if (code == null) {
+			if (fclasses.length > 255)
+				throw new IllegalArgumentException("More than 255 road classes, cannot add " + fclass + ".");
+			code = (byte) fclasses.length;
+			String[] grown = Arrays.copyOf(fclasses, fclasses.length + 1);
+			grown[fclasses.length] = fclass;
+			fclasses = grown;
+			fclassIndex.put(fclass, code);
+		}
+		return code;
+	}
+
+	private static boolean isMotorway(String fclass) {
+		return fclass != null && (fclass.equals("motorway_link") || fclass.equals("motorway")
+				|| fclass.equals("trunk") || fclass.equals("trunk_link"));
+	}
+
+	String getOsmId(int row) {
+		long id = columns.getLong(OSM_ID, row);
+		if (id == NULL_ID)
+			return null;
+		if (id == OTHER_ID) {
+			synchronized (otherIds) {
+				return otherIds.get(row);
+			}
+		}
+		return Long.toString(id);
+	}
+
+	Integer getCode(int row) {
+		int code = columns.getInt(CODE, row);
+		return code == NULL_CODE ? null : code;
+	}
+
+	String getFclass(int row) {
+		return fclasses[columns.getByte(FCLASS, row) & 0xFF];
+	}
+
+	byte getOneway(int row) {
+		return columns.getByte(ONEWAY, row);
+	}
+
+	Integer getMaxspeed(int row) {
+		short maxspeed = columns.getShort(MAXSPEED, row);
+		return maxspeed == NULL_MAXSPEED ? null : (int) maxspeed;
+	}
+
+	Integer getLayer(int row) {
+		byte layer = columns.getByte(LAYER, row);
+		return layer == NULL_LAYER ? null : (int) layer;
+	}
+
+	boolean isBridge(int row) {
+		return (columns.getByte(FLAGS, row) & BRIDGE) != 0;
+	}
+
+	boolean isTunnel(int row) {
+		return (columns.getByte(FLAGS, row) & TUNNEL) != 0;
+	}
+
+	boolean isMotorway(int row) {
+		return (columns.getByte(FLAGS, row) & MOTORWAY) != 0;
+	}
+}
@@ -1,75 +1,86 @@
 package graph.types;
 
+/**
+ * Attributes of a road arc of a Geofabrik shapefile. Apart from the value, the
+ * attributes are not held by this object, but by a row of the off-heap
+ * {@link ArcAttributes}, which is shared by copies.
+ */
 public class GeofabrikData extends RoadEdge implements WalkingData {
 
-	String osmId;
-	Integer code;
-	String fclass;
-	byte oneway;
-	Integer maxspeed;
-	Integer layer;
-	boolean bridge;
-	boolean tunnel;
+	// row of the attributes, NONE if the arc has no attributes
+	private static final int NONE = -1;
+	private final int row;
 
 	boolean valueIsDistance = true;
 
 	public GeofabrikData(double gemetricDist, String osmId, Integer code, String fclass, byte oneway, Integer maxspeed,
 			Integer layer, boolean bridge, boolean tunnel) {
 		super(gemetricDist);
-		this.osmId = osmId;
-		this.code = code;
-		this.fclass = fclass;
-		this.oneway = oneway;
-		this.maxspeed = maxspeed;
-		this.layer = layer;
-		this.bridge = bridge;
-		this.tunnel = tunnel;
+		this.row = ArcAttributes.STORE.add(osmId, code, fclass, oneway, maxspeed, layer, bridge, tunnel);
 	}
 
 	public GeofabrikData(double gemetricDist) {
 		super(gemetricDist);
+		this.row = NONE;
 	}
 
 	public GeofabrikData(double gemetricDist, String fclass) {
-		this(gemetricDist);
-		this.fclass = fclass;
+		super(gemetricDist);
+		this.row = fclass == null ? NONE
+				: ArcAttributes.STORE.add(null, null, fclass, (byte) 0, null, null, false, false);
+	}
+
+	/**
+	 * Arc of the given length sharing the attributes of another arc, e.g. of
+	 * another arc of the same feature.
+	 */
+	public GeofabrikData(double gemetricDist, GeofabrikData attributes) {
+		super(gemetricDist);
+		this.row = attributes.row;
 	}
 
 	public GeofabrikData(GeofabrikData copy) {
-		this(copy.getValueAsDist(), copy.getOsmId(), copy.getCode(), copy.fclass(), copy.getOneway(),
-				copy.getMaxspeed(), copy.getLayer(), copy.isBridge(), copy.isTunnel());
+		super(copy.getValueAsDist());
+		this.row = copy.row;
 	}
 
 	public String fclass() {
-		return fclass;
+		return row == NONE ? null : ArcAttributes.STORE.getFclass(row);
+	}
+
+	/**
+	 * @return true for motorways and trunk roads including their links
+	 */
+	public boolean isMotorway() {
+		return row != NONE && ArcAttributes.STORE.isMotorway(row);
 	}
 
 	public String getOsmId() {
-		return osmId;
+		return row == NONE ? null : ArcAttributes.STORE.getOsmId(row);
 	}
 
 	public Integer getCode() {
-		return code;
+		return row == NONE ? null : ArcAttributes.STORE.getCode(row);
 	}
 
 	public byte getOneway() {
-		return oneway;
+		return row == NONE ? 0 : ArcAttributes.STORE.getOneway(row);
 	}
 
 	public Integer getMaxspeed() {
-		return maxspeed;
+		return row == NONE ? null : ArcAttributes.STORE.getMaxspeed(row);
 	}
 
 	public Integer getLayer() {
-		return layer;
+		return row == NONE ? null : ArcAttributes.STORE.getLayer(row);
 	}
 
 	public boolean isBridge() {
-		return bridge;
+		return row != NONE && ArcAttributes.STORE.isBridge(row);
 	}
 
 	public boolean isTunnel() {
-		return tunnel;
+		return row != NONE && ArcAttributes.STORE.isTunnel(row);
 	}
 
 	public void valueIsDistance(boolean vid) {
@@ -0,0 +1,145 @@
+package graph.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only table of fixed-width columns stored off the heap. Rows are
+ * allocated in chunks of {@link #CHUNK_ROWS} rows, each chunk is a region of a
+ * temporary file in <code>java.io.tmpdir</code> mapped into memory, within
+ * which the columns are stored one after another. Hence, only the pages in use
+ * are held in memory and the operating system may page out the others. If no
+ * temporary file can be created, the chunks are allocated as direct buffers.
+ *
+ * Rows are added by a synchronized {@link #add()}; values may be read by
+ * several threads once the row has been written.
+ */
+class MappedColumns {
+
+	static final int CHUNK_SHIFT = 20;
+	static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+	private static final int ROW_MASK = CHUNK_ROWS - 1;
+
+	private final int[] width;
+	// offset of each column within a chunk
+	private final int[] offset;
+	private final int chunkBytes;
+
+	private FileChannel channel;
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+	private int size = 0;
+
+	/**
+	 * @param name   prefix of the temporary file
+	 * @param widths width of each column in bytes
+	 */
+	MappedColumns(String name, int... widths) {
+		this.width = widths.clone();
+		this.offset = new int[widths.length];
+		int bytes = 0;
+		for (int i = 0; i < widths.length; ++i) {
+			offset[i] = bytes;
+			bytes += widths[i] * CHUNK_ROWS;
+		}
+		this.chunkBytes = bytes;
+
+		try {
+			File file = File.createTempFile(name, ".bin");
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			// the mapping stays valid after the file is deleted
+			if (!file.delete())
+				file.deleteOnExit();
+		} catch (IOException e) {
+			System.err.println("Could not create temporary file for " + name + ", storing it in direct memory: "
+					+ e.getMessage());
+			channel = null;
+		}
+	}
+
+	/**
+	 * Appends a row, all values of which are zero.
+	 *
+	 * @return index of the row
+	 */
+	synchronized int add() {
+		if (size == Integer.MAX_VALUE)
+			throw new IllegalStateException("Too many rows.");
+		int chunk = size >>> CHUNK_SHIFT;
+		if (chunk == chunks.length) {
+			ByteBuffer buffer = null;
+			if (channel != null) {
+				try {
+					buffer = channel.map(MapMode.READ_WRITE, (long) chunk * chunkBytes, chunkBytes);
+				} catch (IOException e) {
+					System.err.println("Could not map chunk " + chunk + ", storing it in direct memory: "
+							+ e.getMessage());
+				}
+			}
+			if (buffer == null)
+				buffer = ByteBuffer.allocateDirect(chunkBytes);
+			buffer.order(ByteOrder.nativeOrder());
+			ByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+			grown[chunk] = buffer;
+			chunks = grown;
+		}
+		return size++;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	private ByteBuffer chunk(int row) {
+		return chunks[row >>> CHUNK_SHIFT];
+	}
+
+	private int index(int column, int row) {
+		return offset[column] + (row & ROW_MASK) * width[column];
+	}
+
+	byte getByte(int column, int row) {
+		return chunk(row).get(index(column, row));
+	}
+
+	void putByte(int column, int row, byte value) {
+		chunk(row).put(index(column, row), value);
+	}
+
+	short getShort(int column, int row) {
+		return chunk(row).getShort(index(column, row));
+	}
+
+	void putShort(int column, int row, short value) {
+		chunk(row).putShort(index(column, row), value);
+	}
+
+	int getInt(int column, int row) {
+		return chunk(row).getInt(index(column, row));
+	}
+
+	void putInt(int column, int row, int value) {
+		chunk(row).putInt(index(column, row), value);
+	}
+
+	long getLong(int column, int row) {
+		return chunk(row).getLong(index(column, row));
+	}
+
+	void putLong(int column, int row, long value) {
+		chunk(row).putLong(index(column, row), value);
+	}
+
+	double getDouble(int column, int row) {
+		return chunk(row).getDouble(index(column, row));
+	}
+
+	void putDouble(int column, int row, double value) {
+		chunk(row).putDouble(index(column, row), value);
+	}
+}
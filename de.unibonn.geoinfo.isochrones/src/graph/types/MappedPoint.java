@@ -0,0 +1,59 @@
+package graph.types;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Point whose coordinates are not held by the object, but stored as pair of
+ * doubles in an off-heap table indexed by the point, see
+ * {@link MappedColumns}. Used for the nodes of road networks, which make up
+ * the bulk of the coordinates of large extracts.
+ */
+public class MappedPoint extends Point2D {
+
+	private static final int X = 0, Y = 1;
+	private static final MappedColumns COORDINATES = new MappedColumns("nodes", 8, 8);
+
+	private final int index;
+
+	public MappedPoint(double x, double y) {
+		this.index = COORDINATES.add();
+		setLocation(x, y);
+	}
+
+	/**
+	 * Point sharing the coordinates of another one, no row is added. Changing the
+	 * location of either point moves both.
+	 */
+	protected MappedPoint(MappedPoint shared) {
+		this.index = shared.index;
+	}
+
+	@Override
+	public double getX() {
+		return COORDINATES.getDouble(X, index);
+	}
+
+	@Override
+	public double getY() {
+		return COORDINATES.getDouble(Y, index);
+	}
+
+	@Override
+	public void setLocation(double x, double y) {
+		COORDINATES.putDouble(X, index, x);
+		COORDINATES.putDouble(Y, index, y);
+	}
+
+	/**
+	 * @return copy of the point with its own coordinates
+	 */
+	@Override
+	public Object clone() {
+		return new MappedPoint(getX(), getY());
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + getX() + ", " + getY() + "]";
+	}
+}
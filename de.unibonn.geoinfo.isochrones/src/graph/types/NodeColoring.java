@@ -0,0 +1,42 @@
+package graph.types;
+
+import java.util.Arrays;
+
+/**
+ * Colors and remaining travel times of the nodes of a graph, indexed by the
+ * node ids. Keeps the result of a query apart from the graph, so that one
+ * read-only graph can be colored by several threads at once. The colors are the
+ * ones of {@link Colored}.
+ */
+public class NodeColoring {
+
+	private final byte[] color;
+	private final double[] remainingTime;
+
+	/**
+	 * @param n number of nodes, all nodes are {@link Colored#UNDEFINED}
+	 */
+	public NodeColoring(int n) {
+		this.color = new byte[n];
+		this.remainingTime = new double[n];
+		Arrays.fill(color, (byte) Colored.UNDEFINED);
+		Arrays.fill(remainingTime, Double.MAX_VALUE);
+	}
+
+	public int n() {
+		return color.length;
+	}
+
+	public int getColor(int node) {
+		return color[node];
+	}
+
+	public double getRemainingTime(int node) {
+		return remainingTime[node];
+	}
+
+	public void setReachability(int node, int color, double remainingTime) {
+		this.color[node] = (byte) color;
+		this.remainingTime[node] = remainingTime;
+	}
+}
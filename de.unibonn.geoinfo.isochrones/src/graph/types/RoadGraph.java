@@ -1,19 +1,75 @@
 package graph.types;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import graph.generic.GeometricGraph;
 import graph.generic.WeightedArcData;
 import util.geometry.Envelope;
+import util.structures.PointIndex;
 import util.structures.QuadTree;
 
 public class RoadGraph<V extends Point2D, E extends WeightedArcData> extends GeometricGraph<V, E> {
 
+	// static index of the node positions for nearest node queries, built on
+	// demand and dropped whenever nodes are added or removed
+	private PointIndex nodeIndex = null;
+
 	public RoadGraph(Envelope e) {
 		this.qt = new QuadTree<DiGraphNode<V, E>>(e);
 	}
 
+	/**
+	 * @return node next to the position, null if it is farther than eps
+	 */
 	public DiGraphNode<V, E> getDiGraphNode(Point2D position, double eps) {
-		return qt.getNode(position.getX(), position.getY(), eps);
+		PointIndex index = getNodeIndex();
+		int i = index.nearest(position.getX(), position.getY(), eps);
+		return i < 0 ? null : getNode(i);
+	}
+
+	/**
+	 * @return index of the node positions, point i of the index is the node with
+	 *         index i of {@link #getNodes()}; of several nodes at the same
+	 *         position, the first one is found
+	 */
+	public synchronized PointIndex getNodeIndex() {
+		if (nodeIndex == null) {
+			List<Point2D> positions = new ArrayList<>(n());
+			for (DiGraphNode<V, E> node : getNodes())
+				positions.add(node.getNodeData());
+			nodeIndex = new PointIndex(positions);
+		}
+		return nodeIndex;
+	}
+
+	@Override
+	public DiGraphNode<V, E> addNode(V v) {
+		dropNodeIndex();
+		return super.addNode(v);
+	}
+
+	@Override
+	public void removeNodes(HashSet<DiGraphNode<V, E>> nodesToBeRemoved) {
+		dropNodeIndex();
+		super.removeNodes(nodesToBeRemoved);
+	}
+
+	@Override
+	public void removeNode(DiGraphNode<V, E> nodeToBeRemoved) {
+		dropNodeIndex();
+		super.removeNode(nodeToBeRemoved);
+	}
+
+	@Override
+	public void setNodes(ArrayList<DiGraphNode<V, E>> nodes) {
+		dropNodeIndex();
+		super.setNodes(nodes);
+	}
+
+	private synchronized void dropNodeIndex() {
+		nodeIndex = null;
 	}
 }
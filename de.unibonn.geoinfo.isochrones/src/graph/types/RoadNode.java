@@ -2,25 +2,37 @@ package graph.types;
 
 import java.awt.geom.Point2D;
 
-public class RoadNode extends Point2D.Double implements IsoVertex {
+/**
+ * Node of the routing graph, its coordinates are stored off the heap, see
+ * {@link MappedPoint}.
+ */
+public class RoadNode extends MappedPoint implements IsoVertex {
 
 	private String name;
 	private int id;
 
 	private int nextStop = -1;
 
-	private static final long serialVersionUID = 708582318740278980L;
-
 	public RoadNode(Point2D p) {
 		this(p.getX(), p.getY(), "", -1);
 	}
 
 	public RoadNode(double x, double y, String name, int id) {
-		this.setLocation(x, y);
+		super(x, y);
 		this.name = name;
 		this.id = id;
 	}
 
+	/**
+	 * Node sharing the off-heap coordinates of the given point, e.g. of the road
+	 * graph the routing graph is created from.
+	 */
+	public RoadNode(MappedPoint location) {
+		super(location);
+		this.name = "";
+		this.id = -1;
+	}
+
 	public boolean isNextToStop() {
 		return nextStop != -1;
 	}
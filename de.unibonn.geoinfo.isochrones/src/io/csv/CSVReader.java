@@ -0,0 +1,404 @@
+package io.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader for large CSV files with header, e.g. the files of a GTFS
+ * feed. The file is read through a large buffer and tokenized on byte level;
+ * fields may be quoted with <code>"</code>, a quote inside a quoted field is
+ * escaped by doubling it. Columns are resolved by their name in the header.
+ *
+ * The fields of the current record are kept as bytes. Numbers and times are
+ * parsed directly from these bytes, strings are only created on request, so
+ * that reading a record does not allocate any objects. The bytes of the
+ * current record are kept in the buffer as well, so that it can be copied
+ * unchanged to another file.
+ */
+public class CSVReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileInputStream in;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	// start of the current record in the buffer, the bytes from there on are
+	// kept when the buffer is filled
+	private int recordStart = 0;
+	// file offset of the buffer, of the current record and of the end of the
+	// range to read
+	private long bufferOffset = 0;
+	private long recordOffset = 0;
+	private long rangeEnd = Long.MAX_VALUE;
+
+	// fields of the current record, field i is stored at line[start[i]] to
+	// line[end[i]] (exclusive)
+	private byte[] line = new byte[256];
+	private int[] start = new int[16];
+	private int[] end = new int[16];
+	private int numFields;
+
+	private final Map<String, Integer> columns = new HashMap<>();
+	private byte[] header = new byte[0];
+	private long lineNumber = 0;
+
+	/**
+	 * Opens the file and reads its header.
+	 *
+	 * @param file CSV file with header
+	 * @throws IOException if the file cannot be read
+	 */
+	public CSVReader(File file) throws IOException {
+		this(file, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Opens the file, reads its header and reads the records starting in the
+	 * range from <code>from</code> (inclusive) to <code>to</code> (exclusive). If
+	 * <code>from</code> is inside of a line, reading starts at the next line.
+	 * Splitting a file into consecutive ranges thus yields each record exactly
+	 * once, as long as no quoted field contains a line break.
+	 *
+	 * @param file CSV file with header
+	 * @param from file offset of the range
+	 * @param to   file offset of the end of the range
+	 * @throws IOException if the file cannot be read
+	 */
+	public CSVReader(File file, long from, long to) throws IOException {
+		this.in = new FileInputStream(file);
+		readHeader();
+		recordOffset = bufferOffset + position;
+		if (from > recordOffset) {
+			// the range starts at the line following the byte before it
+			in.getChannel().position(from - 1);
+			bufferOffset = from - 1;
+			position = 0;
+			limit = 0;
+			byte b;
+			do {
+				recordStart = position;
+				if (position == limit && !fill())
+					break;
+				b = buffer[position++];
+			} while (b != '\n');
+			recordOffset = bufferOffset + position;
+		}
+		this.rangeEnd = to;
+	}
+
+	private void readHeader() throws IOException {
+		if (readRecord()) {
+			// UTF-8 byte order mark
+			if (end[0] - start[0] >= 3 && line[start[0]] == (byte) 0xEF && line[start[0] + 1] == (byte) 0xBB
+					&& line[start[0] + 2] == (byte) 0xBF)
+				start[0] += 3;
+			for (int i = 0; i < numFields; ++i)
+				columns.put(getString(i).trim(), i);
+			header = Arrays.copyOfRange(buffer, recordStart, position);
+		}
+	}
+
+	/**
+	 * @param name column name of the header
+	 * @return index of the column, -1 if there is no such column
+	 */
+	public int column(String name) {
+		return columns.getOrDefault(name, -1);
+	}
+
+	/**
+	 * @param name column name of the header
+	 * @return index of the column
+	 * @throws IllegalArgumentException if there is no such column
+	 */
+	public int requireColumn(String name) {
+		int column = column(name);
+		if (column < 0)
+			throw new IllegalArgumentException("Column " + name + " missing in header.");
+		return column;
+	}
+
+	/**
+	 * Reads the next record. Empty lines are skipped.
+	 *
+	 * @return false if the end of the file is reached
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean next() throws IOException {
+		do {
+			if (bufferOffset + position >= rangeEnd || !readRecord())
+				return false;
+		} while (numFields == 1 && start[0] == end[0]);
+		return true;
+	}
+
+	/**
+	 * @return file offset of the current record, of the start of the range if no
+	 *         record has been read yet
+	 */
+	public long getRecordOffset() {
+		return recordOffset;
+	}
+
+	private boolean readRecord() throws IOException {
+		recordStart = position;
+		if (position == limit && !fill())
+			return false;
+		recordOffset = bufferOffset + position;
+		numFields = 0;
+		int length = 0;
+		int fieldStart = 0;
+		boolean quoted = false;
+		boolean any = false;
+		byte b;
+		while (true) {
+			if (position == limit && !fill()) {
+				if (!any)
+					return false;
+				break;
+			}
+			b = buffer[position++];
+			any = true;
+
+			if (quoted) {
+				if (b == '"') {
+					if (position == limit && !fill()) {
+						quoted = false;
+						continue;
+					}
+					if (buffer[position] == '"') {
+						++position;
+					} else {
+						quoted = false;
+						continue;
+					}
+				}
+			} else if (b == '"') {
+				quoted = true;
+				continue;
+			} else if (b == ',') {
+				addField(fieldStart, length);
+				fieldStart = length;
+				continue;
+			} else if (b == '\n') {
+				break;
+			} else if (b == '\r') {
+				continue;
+			}
+
+			if (length == line.length)
+				line = Arrays.copyOf(line, 2 * length);
+			line[length++] = b;
+		}
+		addField(fieldStart, length);
+		++lineNumber;
+		return true;
+	}
+
+	private void addField(int from, int to) {
+		if (numFields == start.length) {
+			start = Arrays.copyOf(start, 2 * numFields);
+			end = Arrays.copyOf(end, 2 * numFields);
+		}
+		start[numFields] = from;
+		end[numFields] = to;
+		++numFields;
+	}
+
+	/**
+	 * Reads the next bytes of the file behind the bytes of the current record,
+	 * which are moved to the front of the buffer.
+	 */
+	private boolean fill() throws IOException {
+		int kept = limit - recordStart;
+		if (recordStart > 0)
+			System.arraycopy(buffer, recordStart, buffer, 0, kept);
+		else if (kept == buffer.length)
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		bufferOffset += recordStart;
+		recordStart = 0;
+		position = kept;
+		limit = kept;
+		int read = in.read(buffer, kept, buffer.length - kept);
+		if (read <= 0)
+			return false;
+		limit += read;
+		return true;
+	}
+
+	/**
+	 * @return number of fields of the current record
+	 */
+	public int numFields() {
+		return numFields;
+	}
+
+	/**
+	 * @return number of the current record, the header is record 1
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return true if the column is missing in the current record or the field
+	 *         is empty or blank
+	 */
+	public boolean isEmpty(int column) {
+		if (column < 0 || column >= numFields)
+			return true;
+		for (int i = start[column]; i < end[column]; ++i)
+			if (line[i] != ' ')
+				return false;
+		return true;
+	}
+
+	public String getString(int column) {
+		checkColumn(column);
+		return new String(line, start[column], end[column] - start[column], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return copy of the bytes of the field
+	 */
+	public byte[] getBytes(int column) {
+		checkColumn(column);
+		return Arrays.copyOfRange(line, start[column], end[column]);
+	}
+
+	/**
+	 * @return true if the field consists of the given bytes
+	 */
+	public boolean fieldEquals(int column, byte[] value) {
+		checkColumn(column);
+		return Arrays.equals(line, start[column], end[column], value, 0, value.length);
+	}
+
+	/**
+	 * Parses an integer, surrounding blanks are ignored.
+	 *
+	 * @throws NumberFormatException if the field is not an integer
+	 */
+	public int getInt(int column) {
+		checkColumn(column);
+		int i = start[column];
+		int to = end[column];
+		while (i < to && line[i] == ' ')
+			++i;
+		while (to > i && line[to - 1] == ' ')
+			--to;
+
+		boolean negative = i < to && line[i] == '-';
+		if (negative || (i < to && line[i] == '+'))
+			++i;
+		if (i == to)
+			throw numberFormatException(column);
+
+		long value = 0;
+		for (; i < to; ++i) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw numberFormatException(column);
+			value = 10 * value + digit;
+			if (value > Integer.MAX_VALUE + 1l)
+				throw numberFormatException(column);
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+			throw numberFormatException(column);
+		return (int) value;
+	}
+
+	/**
+	 * @throws NumberFormatException if the field is not a number
+	 */
+	public double getDouble(int column) {
+		return Double.parseDouble(getString(column).trim());
+	}
+
+	/**
+	 * Parses a time of the form H:MM:SS or HH:MM:SS to seconds. Hours may exceed
+	 * 23, as in GTFS for trips running after midnight.
+	 *
+	 * @return seconds after midnight, -1 if the field is empty
+	 * @throws NumberFormatException if the field is no time
+	 */
+	public int getSeconds(int column) {
+		if (isEmpty(column))
+			return -1;
+		int i = start[column];
+		int to = end[column];
+		while (line[i] == ' ')
+			++i;
+		while (line[to - 1] == ' ')
+			--to;
+
+		int seconds = 0;
+		int value = 0;
+		int parts = 0;
+		int digits = 0;
+		for (; i <= to; ++i) {
+			if (i == to || line[i] == ':') {
+				if (digits == 0 || ++parts > 3 || (parts > 1 && value > 59))
+					throw numberFormatException(column);
+				seconds = 60 * seconds + value;
+				value = 0;
+				digits = 0;
+			} else {
+				int digit = line[i] - '0';
+				if (digit < 0 || digit > 9)
+					throw numberFormatException(column);
+				value = 10 * value + digit;
+				++digits;
+			}
+		}
+		if (parts != 3)
+			throw numberFormatException(column);
+		return seconds;
+	}
+
+	private void checkColumn(int column) {
+		if (column < 0 || column >= numFields)
+			throw new IllegalArgumentException(
+					"Column " + column + " missing in line " + lineNumber + " (" + numFields + " fields).");
+	}
+
+	private NumberFormatException numberFormatException(int column) {
+		return new NumberFormatException(
+				"Invalid value \"" + getString(column) + "\" in line " + lineNumber + ", column " + column + ".");
+	}
+
+	/**
+	 * Writes the header as it is in the file, including the byte order mark and
+	 * the line break.
+	 */
+	public void writeHeader(OutputStream out) throws IOException {
+		out.write(header);
+		if (header.length > 0 && header[header.length - 1] != '\n')
+			out.write('\n');
+	}
+
+	/**
+	 * Writes the current record as it is in the file, including its line break.
+	 * A line break is added if the record is the last one of the file and has
+	 * none.
+	 */
+	public void writeRecord(OutputStream out) throws IOException {
+		out.write(buffer, recordStart, position - recordStart);
+		if (position == recordStart || buffer[position - 1] != '\n')
+			out.write('\n');
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
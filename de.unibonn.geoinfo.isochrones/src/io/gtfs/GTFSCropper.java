@@ -1,30 +1,89 @@
 package io.gtfs;
 
 import java.awt.geom.Point2D;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+import io.csv.CSVReader;
 import main.AbstractMain;
 import util.geometry.Envelope;
+import util.structures.IntSet;
+import util.tools.Tasks;
 import util.tools.Util;
 
+/**
+ * Crops a GTFS feed to the stops inside of a boundary, e.g. a national feed to
+ * a city. Stop times and transfers of the stops outside are removed, as well as
+ * the trips, routes, services and agencies which are no longer used.
+ *
+ * The files are streamed in three stages, the files of a stage are cropped in
+ * parallel: stops and the trip table first, then stop times and transfers, at
+ * last trips, routes, agencies and the calendar. Stop times are split into
+ * chunks which are cropped in parallel and appended in the order of the file.
+ * Kept records are copied unchanged, ids are collected in primitive sets.
+ */
 public class GTFSCropper {
 
-	private File stopFile, stopTimesFile, transferFile, tripsFile, routesFile, agencyFile, calendarFile;
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private static final long MIN_CHUNK_SIZE = 1 << 22;
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+	private File stopFile, stopTimesFile, transferFile, tripsFile, routesFile, agencyFile, calendarFile,
+			calendarDatesFile;
 	private File outputDir;
+	private final int threads;
+
+	// ids of the kept stops
+	private IntSet stops;
+	// row of each trip in trips.txt and its route and service
+	private Map<String, Integer> tripIndex;
+	private int[] tripRoute;
+	private int[] tripService;
+	// rows of the kept trips
+	private BitSet trips;
 
 	public GTFSCropper(final File inputDir, final File outputDir, final Envelope boundingBox) {
+		this(inputDir, outputDir, toGeometry(boundingBox), 0,
+				AbstractMain.USE_PARALLEL_PROCESSING ? AbstractMain.THREADS : 1);
+	}
+
+	/**
+	 * @param boundary geometry in UTM coordinates, as the ones of
+	 *                 {@link Util#lonlat2utm(double, double)}; the stops covered
+	 *                 by it are kept
+	 * @param buffer   distance in meters the boundary is extended by, 0 to use it
+	 *                 as it is
+	 * @param threads  number of threads
+	 */
+	public GTFSCropper(final File inputDir, final File outputDir, final Geometry boundary, final double buffer,
+			final int threads) {
 		this.setFiles(inputDir);
 		this.outputDir = outputDir;
+		this.threads = threads;
 		if (outputDir.mkdir()) {
 			if (AbstractMain.VERBOSE) {
 				System.out.println(outputDir + " created");
@@ -35,7 +94,10 @@ public class GTFSCropper {
 			}
 		}
 
-		this.cropToBoundingbox(boundingBox);
+		long starttime = System.currentTimeMillis();
+		this.crop(buffer > 0 ? boundary.buffer(buffer) : boundary);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) + "ms");
 		System.out.println("GTFSCropper done!");
 	}
 
@@ -47,284 +109,368 @@ public class GTFSCropper {
 		this.routesFile = new File(inputDir + File.separator + "routes.txt");
 		this.agencyFile = new File(inputDir + File.separator + "agency.txt");
 		this.calendarFile = new File(inputDir + File.separator + "calendar.txt");
+		this.calendarDatesFile = new File(inputDir + File.separator + "calendar_dates.txt");
+	}
+
+	/**
+	 * @return polygon of the bounding box
+	 */
+	public static Geometry toGeometry(Envelope boundingBox) {
+		return GEOMETRY_FACTORY.toGeometry(new com.vividsolutions.jts.geom.Envelope(boundingBox.getxMin(),
+				boundingBox.getxMax(), boundingBox.getyMin(), boundingBox.getyMax()));
 	}
 
 	public void cropToBoundingbox(Envelope env) {
-		Set<Integer> stopsToRemove = processStops(env);
-		processTransfers(stopsToRemove);
-		Set<Integer> remainingTrips = processStopTimes(stopsToRemove);
-		Set<Integer> remainingServices = new HashSet<>();
-		Set<Integer> remainingRoutes = processTrips(remainingTrips, remainingServices);
-		Set<Integer> remainingAgencies = processRoutes(remainingRoutes);
-		processCalendar(remainingServices);
-		processAgencies(remainingAgencies);
+		crop(toGeometry(env));
 	}
 
-	private void processCalendar(final Set<Integer> remainingServices) {
-		int count = 0;
-		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(calendarFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "calendar.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
+	/**
+	 * Crops the feed to the stops covered by the boundary.
+	 */
+	public void crop(Geometry boundary) {
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			tasks.add(() -> {
+				processStops(boundary);
+				return null;
+			});
+			tasks.add(() -> {
+				readTrips();
+				return null;
+			});
+			Tasks.invokeAll(tasks, threads);
+
+			tasks.clear();
+			tasks.add(() -> {
+				processStopTimes();
+				return null;
+			});
+			if (transferFile.exists()) {
+				tasks.add(() -> {
+					processTransfers();
+					return null;
+				});
 			}
-			int serviceId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				serviceId = Integer.parseInt(fields[0]);
-				if (remainingServices.contains(serviceId)) {
-					bw.write(line);
-					bw.newLine();
-				} else {
-					removedCount++;
-				}
-				count++;
+			Tasks.invokeAll(tasks, threads);
+
+			IntSet remainingRoutes = new IntSet();
+			IntSet remainingServices = new IntSet();
+			for (int trip = trips.nextSetBit(0); trip >= 0; trip = trips.nextSetBit(trip + 1)) {
+				remainingRoutes.add(tripRoute[trip]);
+				remainingServices.add(tripService[trip]);
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
+
+			tasks.clear();
+			tasks.add(() -> {
+				processTrips();
+				return null;
+			});
+			tasks.add(() -> {
+				processAgencies(processRoutes(remainingRoutes));
+				return null;
+			});
+			if (calendarFile.exists()) {
+				tasks.add(() -> {
+					processServices(calendarFile, remainingServices);
+					return null;
+				});
+			}
+			if (calendarDatesFile.exists()) {
+				tasks.add(() -> {
+					processServices(calendarDatesFile, remainingServices);
+					return null;
+				});
+			}
+			Tasks.invokeAll(tasks, threads);
+		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			this.stops = null;
+			this.tripIndex = null;
+			this.tripRoute = null;
+			this.tripService = null;
+			this.trips = null;
 		}
+	}
+
+	private OutputStream openOutput(File file) throws IOException {
+		return new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE);
+	}
 
-		System.out.println("Removed services: " + removedCount + "/" + count + " ("
+	private File outputFile(File inputFile) {
+		return new File(outputDir + File.separator + inputFile.getName());
+	}
+
+	private static void printRemoved(String name, int removedCount, int count) {
+		System.out.println("Removed " + name + ": " + removedCount + "/" + count + " ("
 				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
 	}
 
-	private void processAgencies(final Set<Integer> remainingAgencies) {
+	private void processStops(final Geometry boundary) throws IOException {
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(boundary);
+		com.vividsolutions.jts.geom.Envelope bounds = boundary.getEnvelopeInternal();
+		IntSet remainingStops = new IntSet();
 		int count = 0;
-		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(agencyFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "agency.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
+		try (CSVReader reader = new CSVReader(stopFile); OutputStream out = openOutput(outputFile(stopFile))) {
+			reader.writeHeader(out);
+			int idColumn = reader.requireColumn("stop_id");
+			int latColumn = reader.requireColumn("stop_lat");
+			int lonColumn = reader.requireColumn("stop_lon");
+			while (reader.next()) {
+				++count;
+				Point2D utm = Util.lonlat2utm(reader.getDouble(lonColumn), reader.getDouble(latColumn));
+				if (!bounds.contains(utm.getX(), utm.getY())
+						|| !prepared.covers(GEOMETRY_FACTORY.createPoint(new Coordinate(utm.getX(), utm.getY()))))
+					continue;
+				remainingStops.add(reader.getInt(idColumn));
+				reader.writeRecord(out);
 			}
-			int agencyId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				agencyId = Integer.parseInt(fields[0]);
-				if (remainingAgencies.contains(agencyId)) {
-					bw.write(line);
-					bw.newLine();
-				} else {
-					removedCount++;
+		}
+		this.stops = remainingStops;
+		printRemoved("stops", count - remainingStops.size(), count);
+	}
+
+	/**
+	 * Reads route and service of each trip. The trips are identified by their row
+	 * in trips.txt from here on.
+	 */
+	private void readTrips() throws IOException {
+		Map<String, Integer> index = new HashMap<>();
+		int[] routes = new int[1024];
+		int[] services = new int[1024];
+		int n = 0;
+		try (CSVReader reader = new CSVReader(tripsFile)) {
+			int routeColumn = reader.requireColumn("route_id");
+			int serviceColumn = reader.requireColumn("service_id");
+			int tripColumn = reader.requireColumn("trip_id");
+			for (; reader.next(); ++n) {
+				if (n == routes.length) {
+					routes = Arrays.copyOf(routes, 2 * n);
+					services = Arrays.copyOf(services, 2 * n);
 				}
-				count++;
+				routes[n] = reader.getInt(routeColumn);
+				services[n] = reader.getInt(serviceColumn);
+				index.putIfAbsent(reader.getString(tripColumn), n);
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-
-		System.out.println("Removed agencies: " + removedCount + "/" + count + " ("
-				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
+		this.tripIndex = index;
+		this.tripRoute = routes;
+		this.tripService = services;
 	}
 
-	private Set<Integer> processRoutes(final Set<Integer> remainingRoutes) {
-		Set<Integer> remainingAgencies = new HashSet<>();
-		int count = 0;
-		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(routesFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "routes.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
-			}
-			int routeId, agencyId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				routeId = Integer.parseInt(fields[0]);
-				agencyId = Integer.parseInt(fields[1]);
-				if (remainingRoutes.contains(routeId)) {
-					remainingAgencies.add(agencyId);
-					bw.write(line);
-					bw.newLine();
-				} else {
-					removedCount++;
+	/**
+	 * Keeps the stop times at kept stops and marks their trips. Larger files are
+	 * split into chunks, each of them is cropped into a part file and the parts
+	 * are appended to the output in the order of the chunks.
+	 */
+	private void processStopTimes() throws Exception {
+		int numChunks = (int) Math.max(1,
+				Math.min((long) threads * CHUNKS_PER_THREAD, stopTimesFile.length() / MIN_CHUNK_SIZE));
+		if (threads <= 1)
+			numChunks = 1;
+		File output = outputFile(stopTimesFile);
+
+		List<Callable<int[]>> tasks = new ArrayList<>();
+		List<BitSet> chunkTrips = new ArrayList<>();
+		for (int i = 0; i < numChunks; ++i) {
+			long from = i * (stopTimesFile.length() / numChunks);
+			long to = i == numChunks - 1 ? Long.MAX_VALUE : (i + 1) * (stopTimesFile.length() / numChunks);
+			File part = numChunks == 1 ? output : new File(output + ".part" + i);
+			BitSet marked = new BitSet();
+			chunkTrips.add(marked);
+			boolean header = i == 0;
+			tasks.add(() -> cropStopTimes(from, to, part, header, marked));
+		}
+		List<int[]> counts = Tasks.invokeAll(tasks, threads);
+
+		if (numChunks > 1) {
+			try (FileChannel out = new FileOutputStream(output).getChannel()) {
+				for (int i = 0; i < numChunks; ++i) {
+					File part = new File(output + ".part" + i);
+					try (FileChannel in = new FileInputStream(part).getChannel()) {
+						long position = 0;
+						while (position < in.size())
+							position += in.transferTo(position, in.size() - position, out);
+					}
+					Files.delete(part.toPath());
 				}
-				count++;
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 
-		System.out.println("Removed routes: " + removedCount + "/" + count + " ("
-				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
-		return remainingAgencies;
+		BitSet remainingTrips = new BitSet();
+		int count = 0, removedCount = 0;
+		for (int i = 0; i < numChunks; ++i) {
+			remainingTrips.or(chunkTrips.get(i));
+			count += counts.get(i)[0];
+			removedCount += counts.get(i)[1];
+		}
+		this.trips = remainingTrips;
+		printRemoved("stop_times", removedCount, count);
 	}
 
-	private Set<Integer> processTrips(final Set<Integer> remainingTrips, Set<Integer> remainingServices) {
-		Set<Integer> remainingRoutes = new HashSet<>();
-		int count = 0;
-		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(tripsFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "trips.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
-			}
-			int routeId, tripId, serviceId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				routeId = Integer.parseInt(fields[0]);
-				serviceId = Integer.parseInt(fields[1]);
-				tripId = fields[2].hashCode();
-				if (remainingTrips.contains(tripId)) {
-					remainingRoutes.add(routeId);
-					remainingServices.add(serviceId);
-					bw.write(line);
-					bw.newLine();
-				} else {
-					removedCount++;
+	/**
+	 * Crops the stop times in the range of the file. The id of the trip is looked
+	 * up only when it changes, as the stop times of a trip are usually
+	 * consecutive.
+	 *
+	 * @return number of stop times and of removed ones
+	 */
+	private int[] cropStopTimes(long from, long to, File part, boolean withHeader, BitSet marked)
+			throws IOException {
+		int count = 0, removedCount = 0;
+		try (CSVReader reader = new CSVReader(stopTimesFile, from, to); OutputStream out = openOutput(part)) {
+			if (withHeader)
+				reader.writeHeader(out);
+			int tripColumn = reader.requireColumn("trip_id");
+			int stopColumn = reader.requireColumn("stop_id");
+			byte[] tripId = null;
+			int trip = -1;
+			while (reader.next()) {
+				++count;
+				if (!stops.contains(reader.getInt(stopColumn))) {
+					++removedCount;
+					continue;
+				}
+				if (tripId == null || !reader.fieldEquals(tripColumn, tripId)) {
+					tripId = reader.getBytes(tripColumn);
+					trip = tripIndex.getOrDefault(reader.getString(tripColumn), -1);
 				}
-				count++;
+				if (trip >= 0)
+					marked.set(trip);
+				reader.writeRecord(out);
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-
-		System.out.println("Removed trips: " + removedCount + "/" + count + " ("
-				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
-		return remainingRoutes;
+		return new int[] { count, removedCount };
 	}
 
-	private void processTransfers(final Set<Integer> stopsToRemove) {
+	private void processTransfers() throws IOException {
 		int count = 0;
 		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(transferFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "transfers.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
-			}
-			int fromId, toId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				fromId = Integer.parseInt(fields[0]);
-				toId = Integer.parseInt(fields[1]);
-				if (stopsToRemove.contains(fromId) || stopsToRemove.contains(toId)) {
-					removedCount++;
-				} else {
-					bw.write(line);
-					bw.newLine();
-				}
-				count++;
+		try (CSVReader reader = new CSVReader(transferFile);
+				OutputStream out = openOutput(outputFile(transferFile))) {
+			reader.writeHeader(out);
+			int fromColumn = reader.requireColumn("from_stop_id");
+			int toColumn = reader.requireColumn("to_stop_id");
+			while (reader.next()) {
+				++count;
+				if (stops.contains(reader.getInt(fromColumn)) && stops.contains(reader.getInt(toColumn)))
+					reader.writeRecord(out);
+				else
+					++removedCount;
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
+		printRemoved("transfers", removedCount, count);
+	}
 
-		System.out.println("Removed transfers: " + removedCount + "/" + count + " ("
-				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
+	private void processTrips() throws IOException {
+		int count = 0;
+		try (CSVReader reader = new CSVReader(tripsFile); OutputStream out = openOutput(outputFile(tripsFile))) {
+			reader.writeHeader(out);
+			for (; reader.next(); ++count)
+				if (trips.get(count))
+					reader.writeRecord(out);
+		}
+		printRemoved("trips", count - trips.cardinality(), count);
 	}
 
-	private Set<Integer> processStopTimes(final Set<Integer> stopsToRemove) {
-		Set<Integer> remainingTrips = new HashSet<>();
+	/**
+	 * @return ids of the agencies of the kept routes, null if the routes have no
+	 *         agency ids
+	 */
+	private IntSet processRoutes(final IntSet remainingRoutes) throws IOException {
+		IntSet remainingAgencies = new IntSet();
 		int count = 0;
 		int removedCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(stopTimesFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "stop_times.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
-			}
-			int stopId, tripId;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				tripId = fields[0].hashCode();
-				stopId = Integer.parseInt(fields[3]);
-				if (!stopsToRemove.contains(stopId)) {
-					remainingTrips.add(tripId);
-					bw.write(line);
-					bw.newLine();
+		try (CSVReader reader = new CSVReader(routesFile); OutputStream out = openOutput(outputFile(routesFile))) {
+			reader.writeHeader(out);
+			int routeColumn = reader.requireColumn("route_id");
+			int agencyColumn = reader.column("agency_id");
+			if (agencyColumn < 0)
+				remainingAgencies = null;
+			while (reader.next()) {
+				++count;
+				if (remainingRoutes.contains(reader.getInt(routeColumn))) {
+					if (remainingAgencies != null)
+						remainingAgencies.add(reader.getInt(agencyColumn));
+					reader.writeRecord(out);
 				} else {
-					removedCount++;
+					++removedCount;
 				}
-				count++;
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-
-		System.out.println("Removed stop_times: " + removedCount + "/" + count + " ("
-				+ String.format("%5.2f", removedCount * 100.0 / count) + "%)");
-		return remainingTrips;
+		printRemoved("routes", removedCount, count);
+		return remainingAgencies;
 	}
 
-	public Set<Integer> processStops(final Envelope env) {
+	/**
+	 * @param remainingAgencies ids of the kept agencies, null to keep all
+	 */
+	private void processAgencies(final IntSet remainingAgencies) throws IOException {
 		int count = 0;
-		Set<Integer> stopsToRemove = new HashSet<>();
-		try (BufferedReader br = new BufferedReader(new FileReader(stopFile));
-				BufferedWriter bw = new BufferedWriter(new FileWriter(outputDir + File.separator + "stops.txt"))) {
-			String line = br.readLine(); // header
-			if (line != null) {
-				bw.write(line); // write header
-				bw.newLine();
+		int removedCount = 0;
+		try (CSVReader reader = new CSVReader(agencyFile); OutputStream out = openOutput(outputFile(agencyFile))) {
+			reader.writeHeader(out);
+			int agencyColumn = remainingAgencies == null ? -1 : reader.requireColumn("agency_id");
+			while (reader.next()) {
+				++count;
+				if (remainingAgencies == null || remainingAgencies.contains(reader.getInt(agencyColumn)))
+					reader.writeRecord(out);
+				else
+					++removedCount;
 			}
-			int stopId;
-			double lon, lat;
-			Point2D utm;
-			String[] fields;
-			while ((line = br.readLine()) != null && !line.isBlank()) {
-				fields = line.split("(?=(?:(?:[^\"]*\"){2})*[^\"]*$)(?![^{]*})(?![^\\[]*\\]),");
-				stopId = Integer.parseInt(fields[0]);
-				lon = Double.parseDouble(fields[5]);
-				lat = Double.parseDouble(fields[4]);
-				utm = Util.lonlat2utm(lon, lat);
-				if (!env.contains(utm)) {
-					stopsToRemove.add(stopId);
-				} else {
-					bw.write(line);
-					bw.newLine();
-				}
-				count++;
+		}
+		printRemoved("agencies", removedCount, count);
+	}
+
+	/**
+	 * Crops calendar.txt or calendar_dates.txt to the services of the kept trips.
+	 */
+	private void processServices(final File file, final IntSet remainingServices) throws IOException {
+		int count = 0;
+		int removedCount = 0;
+		try (CSVReader reader = new CSVReader(file); OutputStream out = openOutput(outputFile(file))) {
+			reader.writeHeader(out);
+			int serviceColumn = reader.requireColumn("service_id");
+			while (reader.next()) {
+				++count;
+				if (remainingServices.contains(reader.getInt(serviceColumn)))
+					reader.writeRecord(out);
+				else
+					++removedCount;
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-		System.out.println("Removed stops: " + stopsToRemove.size() + "/" + count + " ("
-				+ String.format("%5.2f", stopsToRemove.size() * 100.0 / count) + "%)");
-		return stopsToRemove;
+		printRemoved(file == calendarFile ? "services" : "service dates", removedCount, count);
 	}
 
-	public static void main(String[] args) {
-		checkArguments(args, new String[] { "-i", "-o", "-bbox" });
+	public static void main(String[] args) throws IOException, ParseException {
+		checkArguments(args, new String[] { "-i", "-o" });
 
 		File inputDir = new File(getOptionalArg(args, "-i")); // input directory
 		File outputDir = new File(getOptionalArg(args, "-o")); // output directory
 
-		String[] bbIn = getOptionalArg(args, "-bbox").trim().split(",");
-		if (bbIn.length != 4)
-			throw new IllegalArgumentException("Bounding box needs to be given by: '[xMin],[xMax],[yMin],[yMax]'");
+		Geometry boundary;
+		if (containsOptionalArg(args, "-polygon")) {
+			// polygon or multipolygon as WKT in UTM coordinates
+			String wkt = new String(Files.readAllBytes(new File(getOptionalArg(args, "-polygon")).toPath()));
+			boundary = new WKTReader(GEOMETRY_FACTORY).read(wkt);
+		} else if (containsOptionalArg(args, "-bbox")) {
+			String[] bbIn = getOptionalArg(args, "-bbox").trim().split(",");
+			if (bbIn.length != 4)
+				throw new IllegalArgumentException(
+						"Bounding box needs to be given by: '[xMin],[xMax],[yMin],[yMax]'");
+
+			double[] bbox = Arrays.stream(bbIn).mapToDouble(Double::parseDouble).toArray();
+			boundary = toGeometry(new Envelope(bbox[0], bbox[1], bbox[2], bbox[3]));
+		} else {
+			throw new InvalidParameterException("-bbox or -polygon must be set");
+		}
 
-		double[] bbox = Arrays.stream(bbIn).mapToDouble(Double::parseDouble).toArray();
-		Envelope bb = new Envelope(bbox[0], bbox[1], bbox[2], bbox[3]);
+		double buffer = containsOptionalArg(args, "-buffer") ? Double.parseDouble(getOptionalArg(args, "-buffer"))
+				: 0;
+		int threads = containsOptionalArg(args, "-threads") ? Integer.parseInt(getOptionalArg(args, "-threads"))
+				: AbstractMain.THREADS;
 
-		new GTFSCropper(inputDir, outputDir, bb);
+		new GTFSCropper(inputDir, outputDir, boundary, buffer, threads);
 	}
 
 	protected static boolean containsOptionalArg(String[] args, String identifier) {
@@ -1,29 +1,28 @@
 package io.gtfs;
 
 import java.awt.geom.Point2D;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
 
 import com.vividsolutions.jump.io.IllegalParametersException;
 
-import edu.wlu.cs.levy.CG.KDTree;
-import edu.wlu.cs.levy.CG.KeyDuplicateException;
-import edu.wlu.cs.levy.CG.KeySizeException;
 import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphNode;
 import graph.routing.DiGraphNodeComparator;
+import graph.routing.Timetable;
 import graph.types.ArrivalNode;
 import graph.types.DepartureNode;
 import graph.types.IsoEdge;
@@ -32,37 +31,121 @@ import graph.types.PublicTransportEdge;
 import graph.types.PublicTransportNode;
 import graph.types.RoadNode;
 import graph.types.TransferNode;
+import io.csv.CSVReader;
 import main.AbstractMain;
+import util.tools.Tasks;
 import util.tools.Util;
 
 public class GTFSLoader {
 
-	private HashMap<Integer, IsoVertex> vertexMap; // all stops
+	private static final int WEEK = 7 * 86400;
+
+	// times used to be parsed by SimpleDateFormat in the default time zone, they
+	// are shifted by its offset so that start times keep their meaning
+	private static final int TIME_ZONE_OFFSET = TimeZone.getDefault().getOffset(0) / 1000;
+
+	// stop_times.txt is split into chunks for parallel loading if it is large
+	// enough, several chunks per thread balance the load
+	private static final long MIN_CHUNK_SIZE = 1 << 22;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private HashMap<Integer, String> stopNames; // key: stop_id, value: stop_name
 	private HashMap<String, Integer> trips; // key: trip_id, value: service_id
 	private HashMap<String, Integer> routeId; // key: trip_id, value: route_id
 	private HashMap<Integer, String> routes; // key: route id, value: route_name
-	private HashMap<Integer, Boolean[]> calendar = new HashMap<>();
+	private HashMap<Integer, Integer> serviceDays; // key: service_id, value: weekdays of its trips, bit 0 is monday
 	private HashMap<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> arrivalNodes;
 	private HashMap<Integer, LinkedList<DiGraphNode<IsoVertex, IsoEdge>>> transferNodes;
 	private HashMap<Integer, Integer> transferTimes = new HashMap<>();
 	private HashMap<Integer, DiGraphNode<IsoVertex, IsoEdge>> nextStreetNode; // key: stop id, value: next street node
 	private HashMap<DiGraphNode<IsoVertex, IsoEdge>, Integer> nextStop; // key: next street node, value: stop id
+	private HashMap<Integer, Integer> streetNodes; // key: stop id, value: index of the next street node
+	private HashMap<Integer, Integer> stopAtStreetNode; // key: index of a street node, value: stop id
 
 	private DiGraph<IsoVertex, IsoEdge> graph;
 
+	// number of threads for loading the files, 1 loads them one after another
+	private final int threads;
+
+	// collects the connections instead of expanding the graph, see loadTimetable
+	private Timetable.Builder timetable = null;
+
+	// snaps the stops to the road nodes, created from the graph if not given
+	private StopSnapper snapper;
+
+	// dates of the trips, null for the generic week of calendar.txt
+	private LocalDate firstDate = null;
+	private int numDates = 0;
+	// weekday of the day before the first date, of which only the trips passing
+	// midnight are created; -1 for the generic week
+	private int overnightWeekday = -1;
+
 	public GTFSLoader(DiGraph<IsoVertex, IsoEdge> roadGraph) {
+		this(roadGraph, 1);
+	}
+
+	/**
+	 * @param roadGraph graph the public transportation is added to
+	 * @param threads   number of threads for loading; with more than one thread,
+	 *                  stops, trips, routes and calendar are loaded concurrently
+	 *                  and large stop_times.txt files are loaded in chunks
+	 */
+	public GTFSLoader(DiGraph<IsoVertex, IsoEdge> roadGraph, int threads) {
+		this(roadGraph, null, threads);
+	}
+
+	/**
+	 * @param roadGraph graph the public transportation is added to, null if only
+	 *                  a {@link #loadTimetable(File) timetable} is loaded
+	 * @param snapper   snaps the stops to the road nodes, whose indices are the
+	 *                  ones of the nodes of <code>roadGraph</code>; null to create
+	 *                  it from <code>roadGraph</code>
+	 * @param threads   number of threads for loading
+	 */
+	public GTFSLoader(DiGraph<IsoVertex, IsoEdge> roadGraph, StopSnapper snapper, int threads) {
+		if (roadGraph == null && snapper == null)
+			throw new IllegalArgumentException("Either the graph or the stop snapper is needed.");
 		this.graph = roadGraph;
+		this.snapper = snapper;
+		this.threads = threads;
 
-		this.vertexMap = new HashMap<>();
+		this.stopNames = new HashMap<>();
 		this.trips = new HashMap<>();
 		this.routeId = new HashMap<>();
 		this.routes = new HashMap<>();
-		this.calendar = new HashMap<>();
+		this.serviceDays = new HashMap<>();
 		this.arrivalNodes = new HashMap<>();
 		this.transferNodes = new HashMap<>();
 		this.transferTimes = new HashMap<>();
 		this.nextStreetNode = new HashMap<>();
 		this.nextStop = new HashMap<>();
+		this.streetNodes = new HashMap<>();
+		this.stopAtStreetNode = new HashMap<>();
+	}
+
+	/**
+	 * Creates the trips running on the given dates instead of the ones of the
+	 * generic week of calendar.txt, taking the date ranges of calendar.txt and
+	 * the exceptions of calendar_dates.txt into account. Of the day before the
+	 * first date, the trips passing midnight are created as well.
+	 * 
+	 * Times remain seconds after the beginning of the week, each date is mapped
+	 * to its weekday. Hence, at most six dates fit into the week besides the day
+	 * before.
+	 * 
+	 * @param date first date
+	 * @param days number of dates, from 1 to 6
+	 */
+	public void setServiceDates(LocalDate date, int days) {
+		if (days < 1 || days > 6)
+			throw new IllegalArgumentException("Number of service days has to be between 1 and 6, is " + days + ".");
+		this.firstDate = date;
+		this.numDates = days;
+		this.overnightWeekday = weekday(date.minusDays(1));
+	}
+
+	private static int weekday(LocalDate date) {
+		return date.getDayOfWeek().getValue() - 1;
 	}
 
 	/**
@@ -73,21 +156,20 @@ public class GTFSLoader {
 	 * @throws IllegalParametersException
 	 */
 	public void loadGTFS(File directory) throws IllegalParametersException, Exception {
+		if (graph == null)
+			throw new IllegalArgumentException("The time-expanded graph needs the road graph.");
 
-		this.loadStop(directory);
-		this.loadTrips(directory);
-		this.loadRoutes(directory);
-		this.loadCalendar(directory);
+		this.loadTables(directory, true);
 		this.loadStopTimes(directory);
 		this.loadTransfers(directory);
 
 		this.edgeTransferTransfer();
 
-		this.vertexMap = null;
+		this.stopNames = null;
 		this.trips = null;
 		this.routeId = null;
 		this.routes = null;
-		this.calendar = null;
+		this.serviceDays = null;
 		this.arrivalNodes = null;
 
 		// Connect Graphs
@@ -95,79 +177,143 @@ public class GTFSLoader {
 	}
 
 	/**
-	 * Loading stop names and positions.
+	 * Loads the GTFS data as flat {@link Timetable} for the
+	 * {@link graph.routing.ConnectionScan}. In contrast to
+	 * {@link #loadGTFS(File)}, no nodes or arcs are added to the graph; only the
+	 * road nodes next to a stop are marked, if there is a graph.
+	 * 
+	 * Transfers between different stops of <code>transfers.txt</code> are not
+	 * part of the timetable, the minimum transfer times of the stops are.
+	 * 
+	 * @param directory directory of the GTFS data
+	 * @return timetable with the connections of all trips on all weekdays
+	 * @throws Exception
+	 * @throws IllegalParametersException
+	 */
+	public Timetable loadTimetable(File directory) throws IllegalParametersException, Exception {
+		this.timetable = new Timetable.Builder();
+
+		this.loadTables(directory, false);
+		this.loadStopTimes(directory);
+		this.loadTransfers(directory);
+
+		long starttime = System.currentTimeMillis();
+		Timetable result = this.timetable.build(streetNodes, stopAtStreetNode, transferTimes, AbstractMain.DEFAULT_TRANSFER_TIME);
+		if (AbstractMain.VERBOSE) {
+			System.out.println("Timetable created: " + result.numConnections() + " connections, "
+					+ result.numTrips() + " trips, " + result.numStops() + " stops");
+			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) + "ms");
+		}
+
+		this.timetable = null;
+		this.stopNames = null;
+		this.trips = null;
+		this.routeId = null;
+		this.routes = null;
+		this.serviceDays = null;
+		this.arrivalNodes = null;
+		this.transferNodes = null;
+		return result;
+	}
+
+	/**
+	 * Loads stops, trips, calendar and optionally routes. Each of them fills its
+	 * own maps, so that they can be loaded concurrently.
+	 */
+	private void loadTables(File directory, boolean withRoutes) throws Exception {
+		List<Callable<Void>> loaders = new ArrayList<>();
+		loaders.add(() -> {
+			loadStop(directory);
+			return null;
+		});
+		loaders.add(() -> {
+			loadTrips(directory);
+			return null;
+		});
+		if (withRoutes) {
+			loaders.add(() -> {
+				loadRoutes(directory);
+				return null;
+			});
+		}
+		loaders.add(() -> {
+			loadCalendar(directory);
+			return null;
+		});
+		Tasks.invokeAll(loaders, threads);
+	}
+
+	/**
+	 * Loading stop names and positions. The stops are snapped to their road
+	 * nodes by the {@link StopSnapper} in one batch, in parallel if there are
+	 * several threads.
 	 * 
-	 * @param graph Graph which will load the data
-	 * @throws ParseException Exception, if parsing fails
 	 * @author Jim
-	 * @throws KeyDuplicateException
-	 * @throws KeySizeException
 	 */
-	private void loadStop(File directory) throws ParseException, KeySizeException, KeyDuplicateException {
+	private void loadStop(File directory) {
 		if (AbstractMain.VERBOSE) {
 			System.out.println();
 			System.out.println("Start loading stops");
 		}
 		long starttime = System.currentTimeMillis();
-		// Create and fill KDTree
-		KDTree<DiGraphNode<IsoVertex, IsoEdge>> nextStreetNodeTree = new KDTree<>(2);
-		for (DiGraphNode<IsoVertex, IsoEdge> v : graph.getNodes()) {
-			double[] key = { ((RoadNode) v.getNodeData()).getX(), ((RoadNode) v.getNodeData()).getY() };
-			if (nextStreetNodeTree.search(key) == null)
-				nextStreetNodeTree.insert(key, v);
-			else
-				System.out.println("Did not insert key: " + key[0] + " " + key[1]);
+		if (snapper == null) {
+			List<Point2D> roadNodes = new ArrayList<>(graph.n());
+			for (DiGraphNode<IsoVertex, IsoEdge> v : graph.getNodes())
+				roadNodes.add((RoadNode) v.getNodeData());
+			snapper = new StopSnapper(roadNodes);
 		}
 
 		// Read stops
-		try {
-			FileReader fr = new FileReader(directory + "/stops.txt");
-			BufferedReader br = new BufferedReader(fr);
-			String currentLine;
-			br.readLine();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit;
-				if (currentLine.equals("")) {
-					continue;
-				}
-				String[] namesplit = currentLine.split("\"");
-
-				if (namesplit.length != 1) {
-					String[] firstPart = namesplit[0].split(",", 2);
-					String[] middlePart = { namesplit[1] };
-					String[] lastPart = namesplit[2].split(",");
-					for (int i = 0; i < lastPart.length - 1; i++) {
-						lastPart[i] = lastPart[i + 1];
-					}
-					String[] temp = Stream.concat(Arrays.stream(firstPart), Arrays.stream(middlePart))
-							.toArray(String[]::new);
-					lineSplit = Stream.concat(Arrays.stream(temp), Arrays.stream(lastPart)).toArray(String[]::new);
-
-				} else {
-					lineSplit = currentLine.split(",");
-				}
-				int id = Integer.parseInt(lineSplit[0]);
-				Point2D asUTM = Util.lonlat2utm(Double.parseDouble(lineSplit[5]), Double.parseDouble(lineSplit[4]));
+		List<Integer> ids = new ArrayList<>();
+		List<Point2D> positions = new ArrayList<>();
+		try (CSVReader reader = new CSVReader(new File(directory, "stops.txt"))) {
+			int idColumn = reader.requireColumn("stop_id");
+			int nameColumn = reader.requireColumn("stop_name");
+			int latColumn = reader.requireColumn("stop_lat");
+			int lonColumn = reader.requireColumn("stop_lon");
+			while (reader.next()) {
+				int id = reader.getInt(idColumn);
+				Point2D asUTM = Util.lonlat2utm(reader.getDouble(lonColumn), reader.getDouble(latColumn));
+
+				// the timetable does not need the stop names
+				if (this.timetable == null)
+					this.stopNames.put(id, reader.getString(nameColumn));
+				ids.add(id);
+				positions.add(asUTM);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
-				RoadNode v = new RoadNode(asUTM.getX(), asUTM.getY(), lineSplit[2], id);
-				double[] key = { v.getX(), v.getY() };
+		int n = ids.size();
+		int[] stopIds = new int[n];
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; ++i) {
+			stopIds[i] = ids.get(i);
+			x[i] = positions.get(i).getX();
+			y[i] = positions.get(i).getY();
+		}
+		int[] indices = snapper.snapAll(stopIds, x, y, threads);
 
-				this.vertexMap.put(id, v);
+		for (int i = 0; i < n; ++i) {
+			int id = stopIds[i];
+			int index = indices[i];
+			this.streetNodes.put(id, index);
+			this.stopAtStreetNode.put(index, id);
 
-				DiGraphNode<IsoVertex, IsoEdge> nod = nextStreetNodeTree.nearest(key);
+			if (graph != null) {
+				DiGraphNode<IsoVertex, IsoEdge> nod = graph.getNode(index);
 
 				((RoadNode) nod.getNodeData()).setNextStop(id);
 
 				this.nextStreetNode.put(id, nod);
 				this.nextStop.put(nod, id);
 			}
-			br.close();
-			fr.close();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 		if (AbstractMain.VERBOSE) {
-			System.out.println("Finished loading stops");
+			System.out.println("Finished loading " + streetNodes.size() + " stops, " + snapper.resetNumSearched()
+					+ " of them snapped anew");
 			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) / 1000 + "s");
 		}
 	}
@@ -179,23 +325,19 @@ public class GTFSLoader {
 	private void loadTrips(File directory) {
 		long starttime = System.currentTimeMillis();
 		// Trips einlesen
-		try {
-			if (AbstractMain.VERBOSE)
-				System.out.println("Start loading trips.");
-			FileReader fr = new FileReader(directory + "/trips.txt");
-			BufferedReader br = new BufferedReader(fr);
-			String currentLine;
-			br.readLine();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit = currentLine.split(",");
-				int route_id = Integer.parseInt(lineSplit[0]);
-				int service_id = Integer.parseInt(lineSplit[1]);
-				String trip_id = lineSplit[2];
+		if (AbstractMain.VERBOSE)
+			System.out.println("Start loading trips.");
+		try (CSVReader reader = new CSVReader(new File(directory, "trips.txt"))) {
+			int routeColumn = reader.requireColumn("route_id");
+			int serviceColumn = reader.requireColumn("service_id");
+			int tripColumn = reader.requireColumn("trip_id");
+			while (reader.next()) {
+				int route_id = reader.getInt(routeColumn);
+				int service_id = reader.getInt(serviceColumn);
+				String trip_id = reader.getString(tripColumn);
 				this.trips.put(trip_id, service_id);
 				this.routeId.put(trip_id, route_id);
 			}
-			br.close();
-			fr.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -212,23 +354,19 @@ public class GTFSLoader {
 	private void loadRoutes(File directory) {
 		long starttime = System.currentTimeMillis();
 		// Trips einlesen
-		try {
-			if (AbstractMain.VERBOSE)
-				System.out.println("Start loading routes.");
-			FileReader fr = new FileReader(directory + "/routes.txt");
-			BufferedReader br = new BufferedReader(fr);
-			String currentLine;
-			br.readLine();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit = currentLine.split(",");
-				int route_id = Integer.parseInt(lineSplit[0]);
-				String route_name = lineSplit[2];
-				if (route_name.isEmpty())
-					route_name = lineSplit[3];
+		if (AbstractMain.VERBOSE)
+			System.out.println("Start loading routes.");
+		try (CSVReader reader = new CSVReader(new File(directory, "routes.txt"))) {
+			int routeColumn = reader.requireColumn("route_id");
+			int shortNameColumn = reader.column("route_short_name");
+			int longNameColumn = reader.column("route_long_name");
+			while (reader.next()) {
+				int route_id = reader.getInt(routeColumn);
+				String route_name = reader.isEmpty(shortNameColumn) ? "" : reader.getString(shortNameColumn);
+				if (route_name.isEmpty() && !reader.isEmpty(longNameColumn))
+					route_name = reader.getString(longNameColumn);
 				this.routes.put(route_id, route_name);
 			}
-			br.close();
-			fr.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -239,95 +377,111 @@ public class GTFSLoader {
 	}
 
 	/**
+	 * Resolves the services of calendar.txt and calendar_dates.txt to the
+	 * weekdays their trips are created on, see {@link ServiceCalendar}.
+	 * 
 	 * @author Peter
-	 * @param calendar
 	 */
 	private void loadCalendar(File directory) {
 		long starttime = System.currentTimeMillis();
-		// Trips einlesen
 		try {
 			if (AbstractMain.VERBOSE) {
 				System.out.println();
 				System.out.println("Start loading calendar.");
 			}
-			FileReader fr = new FileReader(directory + "/calendar.txt");
-			BufferedReader br = new BufferedReader(fr);
-			String currentLine;
-			br.readLine();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit = currentLine.split(",");
-				int service_id = Integer.parseInt(lineSplit[0]);
-				Boolean[] days = new Boolean[7];
-				for (int i = 0; i < days.length; i++) {
-					int temp = Integer.parseInt(lineSplit[i + 1]);
-					if (temp == 0)
-						days[i] = false;
-					else
-						days[i] = true;
+			ServiceCalendar calendar = ServiceCalendar.load(directory);
+			if (firstDate != null && calendar.hasDates() && (firstDate.minusDays(1).isBefore(calendar.getFirstDate())
+					|| firstDate.plusDays(numDates - 1).isAfter(calendar.getLastDate())))
+				System.err.println("Service dates from " + firstDate + " (" + numDates + " days) exceed the feed from "
+						+ calendar.getFirstDate() + " to " + calendar.getLastDate() + ".");
+
+			for (int service : calendar.getServices()) {
+				int days = 0;
+				if (firstDate == null) {
+					days = calendar.getWeekdays(service);
+				} else {
+					for (LocalDate date = firstDate.minusDays(1); date
+							.isBefore(firstDate.plusDays(numDates)); date = date.plusDays(1))
+						if (calendar.isActive(service, date))
+							days |= 1 << weekday(date);
 				}
-				this.calendar.put(service_id, days);
+				this.serviceDays.put(service, days);
 			}
-			br.close();
-			fr.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		if (AbstractMain.VERBOSE) {
-			System.out.println("Number of calendars loaded: " + this.calendar.size());
+			System.out.println("Number of calendars loaded: " + this.serviceDays.size());
 			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) + "ms");
 		}
 	}
 
 	/**
-	 * Loading stop times using given names and coordinates
+	 * @return true if the trip of the service is created on the weekday: the
+	 *         service runs on it and, on the day before the service dates, the
+	 *         trip passes midnight
+	 */
+	private boolean runsOn(int days, int weekday, int[] arrivalTime, int[] departureTime, int n) {
+		if ((days >> weekday & 1) == 0)
+			return false;
+		return weekday != overnightWeekday || passesMidnight(arrivalTime, departureTime, n);
+	}
+
+	/**
+	 * @return true if the trip arrives at a stop after midnight of the day it
+	 *         starts, times along the trip being increasing as in
+	 *         {@link #erstelleConnections(String, int[], int[], int[], int, Timetable.Builder)}
+	 */
+	private static boolean passesMidnight(int[] arrivalTime, int[] departureTime, int n) {
+		int prev = arrivalTime[0];
+		int arrival = prev;
+		for (int i = 0; i < n; ++i) {
+			arrival = arrivalTime[i];
+			while (arrival < prev)
+				arrival += 86400;
+			prev = departureTime[i];
+			while (prev < arrival)
+				prev += 86400;
+		}
+		// times are shifted by the offset of the time zone
+		return arrival >= 86400 - TIME_ZONE_OFFSET;
+	}
+
+	/**
+	 * Loading stop times using given names and coordinates. With several threads,
+	 * larger files are split into chunks which are parsed and turned into nodes or
+	 * connections in parallel. The chunks are merged in the order of the file, so
+	 * that the ids of the nodes are the same as when loading sequentially.
 	 * 
 	 * @param vertexMap Mapping the Id of the nodes to its vertices
 	 * @param graph     Actual Graph, which loads stop times
-	 * @throws ParseException Exception if parsing fails
 	 * @author Peter
 	 */
-	private void loadStopTimes(File directory) {
+	private void loadStopTimes(File directory) throws Exception {
 		if (AbstractMain.VERBOSE) {
 			System.out.println();
 			System.out.println("Start loading stop times.");
 		}
 		long starttime = System.currentTimeMillis();
-		try (BufferedReader br = new BufferedReader(new FileReader(directory + "/stop_times.txt"))) {
-			String currentLine;
-			br.readLine();
-
-			/*
-			 * Initialization
-			 */
-			SimpleDateFormat format = new SimpleDateFormat("kk:mm:ss");
-			String tripId = "";
-
-			LinkedList<Integer> stopId = new LinkedList<>();
-			LinkedList<Date> arrivalTime = new LinkedList<>();
-			LinkedList<Date> departureTime = new LinkedList<>();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit = currentLine.split(",");
-				if (!tripId.equals(lineSplit[0]) && tripId != "") {
-					erstelleTrip(tripId, arrivalTime, departureTime, stopId);
-					arrivalTime.clear();
-					departureTime.clear();
-					stopId.clear();
-				}
-				tripId = lineSplit[0];
-				arrivalTime.add(format.parse(lineSplit[1]));
-				departureTime.add(format.parse(lineSplit[2]));
-				stopId.add(Integer.parseInt(lineSplit[3]));
-			}
-			if (!arrivalTime.isEmpty()) {
-				erstelleTrip(tripId, arrivalTime, departureTime, stopId);
-				arrivalTime.clear();
-				departureTime.clear();
-				stopId.clear();
+		File file = new File(directory, "stop_times.txt");
+		int numChunks = threads > 1 ? (int) Math.min(CHUNKS_PER_THREAD * threads, file.length() / MIN_CHUNK_SIZE)
+				: 1;
+		try {
+			if (numChunks > 1) {
+				loadStopTimesParallel(file, numChunks);
+			} else if (timetable != null) {
+				readStopTimes(file, 0, Long.MAX_VALUE, (tripId, stopId, arrivalTime, departureTime,
+						n) -> erstelleConnections(tripId, arrivalTime, departureTime, stopId, n, timetable));
+			} else {
+				List<StopEvent> events = new ArrayList<>();
+				readStopTimes(file, 0, Long.MAX_VALUE, (tripId, stopId, arrivalTime, departureTime, n) -> {
+					erstelleTrip(tripId, arrivalTime, departureTime, stopId, n, events);
+					addStopEvents(events);
+					events.clear();
+				});
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
-		} catch (ParseException e) {
-			e.printStackTrace();
 		}
 		if (AbstractMain.VERBOSE) {
 			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) / 1000 + "s");
@@ -341,123 +495,365 @@ public class GTFSLoader {
 			System.out.println("Elapsed time: " + (System.currentTimeMillis() - starttime) + "ms");
 	}
 
-	private void erstelleTrip(String tripId, LinkedList<Date> arrivalTime, LinkedList<Date> departureTime,
-			LinkedList<Integer> stopId) {
+	/**
+	 * Each chunk of stop_times.txt collects its connections in an own builder or
+	 * its nodes and arcs as {@link StopEvent}s, the results are appended to the
+	 * timetable or added to the graph in the order of the chunks.
+	 */
+	private void loadStopTimesParallel(File file, int numChunks) throws Exception {
+		long[] bounds = chunkBounds(file, numChunks);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Loading " + numChunks + " chunks with " + threads + " threads.");
+
+		if (timetable != null) {
+			List<Callable<Timetable.Builder>> tasks = new ArrayList<>();
+			for (int i = 0; i < numChunks; ++i) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				tasks.add(() -> {
+					Timetable.Builder chunk = new Timetable.Builder();
+					readStopTimes(file, from, to, (tripId, stopId, arrivalTime, departureTime,
+							n) -> erstelleConnections(tripId, arrivalTime, departureTime, stopId, n, chunk));
+					return chunk;
+				});
+			}
+			for (Timetable.Builder chunk : Tasks.invokeAll(tasks, threads))
+				timetable.addAll(chunk);
+		} else {
+			List<Callable<List<StopEvent>>> tasks = new ArrayList<>();
+			for (int i = 0; i < numChunks; ++i) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				tasks.add(() -> {
+					List<StopEvent> events = new ArrayList<>();
+					readStopTimes(file, from, to, (tripId, stopId, arrivalTime, departureTime,
+							n) -> erstelleTrip(tripId, arrivalTime, departureTime, stopId, n, events));
+					return events;
+				});
+			}
+			for (List<StopEvent> events : Tasks.invokeAll(tasks, threads))
+				addStopEvents(events);
+		}
+	}
 
-		Boolean[] day = this.calendar.get(this.trips.get(tripId));
+	/**
+	 * Splits the file into ranges of about equal size. Each range starts where
+	 * the trip id changes, i.e. the stop times of a trip are in one range as long
+	 * as they are consecutive in the file.
+	 * 
+	 * @return file offsets of the ranges, range i is from bounds[i] to
+	 *         bounds[i + 1]
+	 */
+	private static long[] chunkBounds(File file, int numChunks) throws IOException {
+		long[] bounds = new long[numChunks + 1];
+		bounds[numChunks] = file.length();
+		for (int i = 1; i < numChunks; ++i)
+			bounds[i] = Math.max(bounds[i - 1], nextTripStart(file, i * (file.length() / numChunks)));
+		return bounds;
+	}
 
-		for (int weekday = 0; weekday < day.length; weekday++) {
-			if (!day[weekday])
-				continue;
-			long days = weekday * 86400L * 1000;
-			Iterator<Date> arrTime = arrivalTime.iterator();
-			Iterator<Date> depTime = departureTime.iterator();
-			Iterator<Integer> id = stopId.iterator();
-			erstelleTripDay(tripId, arrTime, depTime, id, days);
+	/**
+	 * @return offset of the first stop time after <code>offset</code> whose trip
+	 *         differs from the one of the line at <code>offset</code>
+	 */
+	private static long nextTripStart(File file, long offset) throws IOException {
+		try (CSVReader reader = new CSVReader(file, offset, Long.MAX_VALUE)) {
+			int tripColumn = reader.requireColumn("trip_id");
+			if (!reader.next())
+				return file.length();
+			byte[] tripId = reader.getBytes(tripColumn);
+			while (reader.next())
+				if (!reader.fieldEquals(tripColumn, tripId))
+					return reader.getRecordOffset();
 		}
+		return file.length();
 	}
 
-	private void erstelleTripDay(String tripId, Iterator<Date> arrTime, Iterator<Date> depTime, Iterator<Integer> id,
-			long days) {
-		int stopSequence = 0;
-		DiGraphNode<IsoVertex, IsoEdge> departure = null;
-		Date departureTime = null;
-		while (id.hasNext()) {
-			stopSequence++;
-			Date arrivalTime = arrTime.next();
-			Integer stopId = id.next();
-			IsoVertex stop = this.vertexMap.get(stopId);
+	/**
+	 * Receives the stop times of one trip, sorted by their stop sequence. The
+	 * arrays are reused for the next trip.
+	 */
+	private interface TripConsumer {
+		void accept(String tripId, int[] stopId, int[] arrivalTime, int[] departureTime, int n);
+	}
 
-			int currentID = stop.getId();
+	/**
+	 * Reads the stop times in the given range of stop_times.txt and passes the
+	 * stop times of each trip to <code>consumer</code>. The stop times of a trip
+	 * are collected until the trip id changes and sorted by their stop sequence if
+	 * they are not in order.
+	 */
+	private static void readStopTimes(File file, long from, long to, TripConsumer consumer) throws IOException {
+		try (CSVReader reader = new CSVReader(file, from, to)) {
+			int tripColumn = reader.requireColumn("trip_id");
+			int arrivalColumn = reader.requireColumn("arrival_time");
+			int departureColumn = reader.requireColumn("departure_time");
+			int stopColumn = reader.requireColumn("stop_id");
+			int sequenceColumn = reader.column("stop_sequence");
+
+			byte[] tripId = null;
+			int n = 0;
+			int[] stopId = new int[64];
+			int[] arrivalTime = new int[64];
+			int[] departureTime = new int[64];
+			int[] sequence = new int[64];
+			int arrival, departure;
+			while (reader.next()) {
+				if (tripId == null || !reader.fieldEquals(tripColumn, tripId)) {
+					if (n > 0) {
+						sortBySequence(stopId, arrivalTime, departureTime, sequence, n);
+						consumer.accept(new String(tripId, StandardCharsets.UTF_8), stopId, arrivalTime, departureTime,
+								n);
+					}
+					tripId = reader.getBytes(tripColumn);
+					n = 0;
+				}
 
-			// ----------- Arrival Node -----------
-			ArrivalNode arrival = new ArrivalNode(stop.getName(), currentID, new Date(arrivalTime.getTime() + days),
-					tripId, stopSequence, this.routes.get(this.routeId.get(tripId)));
+				// times of stops without timepoint are taken from the other one
+				arrival = reader.getSeconds(arrivalColumn);
+				departure = reader.getSeconds(departureColumn);
+				if (arrival < 0 && departure < 0) {
+					System.err.println("No time for stop of trip " + new String(tripId, StandardCharsets.UTF_8)
+							+ " in stop_times.txt");
+					continue;
+				}
 
-			if (!this.arrivalNodes.containsKey(currentID)) {
-				this.arrivalNodes.put(currentID, new LinkedList<>());
+				if (n == stopId.length) {
+					stopId = Arrays.copyOf(stopId, 2 * n);
+					arrivalTime = Arrays.copyOf(arrivalTime, 2 * n);
+					departureTime = Arrays.copyOf(departureTime, 2 * n);
+					sequence = Arrays.copyOf(sequence, 2 * n);
+				}
+				stopId[n] = reader.getInt(stopColumn);
+				arrivalTime[n] = (arrival < 0 ? departure : arrival) - TIME_ZONE_OFFSET;
+				departureTime[n] = (departure < 0 ? arrival : departure) - TIME_ZONE_OFFSET;
+				sequence[n] = reader.isEmpty(sequenceColumn) ? n : reader.getInt(sequenceColumn);
+				++n;
+			}
+			if (n > 0) {
+				sortBySequence(stopId, arrivalTime, departureTime, sequence, n);
+				consumer.accept(new String(tripId, StandardCharsets.UTF_8), stopId, arrivalTime, departureTime, n);
 			}
+		}
+	}
 
-			if (nextStreetNode.containsKey(currentID)) {
-				arrival.setNextStreetNode(nextStreetNode.get(currentID));
-			} else {
-				System.err.println("no next street node " + arrival);
+	private static void sortBySequence(int[] stopId, int[] arrivalTime, int[] departureTime, int[] sequence, int n) {
+		for (int i = 1; i < n; ++i) {
+			// insertion sort, stop times are usually sorted already
+			for (int j = i; j > 0 && sequence[j - 1] > sequence[j]; --j) {
+				swap(sequence, j);
+				swap(stopId, j);
+				swap(arrivalTime, j);
+				swap(departureTime, j);
+			}
+		}
+	}
+
+	private static void swap(int[] values, int j) {
+		int temp = values[j];
+		values[j] = values[j - 1];
+		values[j - 1] = temp;
+	}
+
+	/**
+	 * Creates the nodes and arcs of the trip for each weekday it is running, see
+	 * {@link #erstelleTripDay(String, int[], int[], int[], int, int, List)}.
+	 */
+	private void erstelleTrip(String tripId, int[] arrivalTime, int[] departureTime, int[] stopId, int n,
+			List<StopEvent> events) {
+
+		int days = this.serviceDays.getOrDefault(this.trips.get(tripId), 0);
+
+		for (int weekday = 0; weekday < 7; weekday++) {
+			if (!runsOn(days, weekday, arrivalTime, departureTime, n))
+				continue;
+			erstelleTripDay(tripId, arrivalTime, departureTime, stopId, n, weekday * 86400, events);
+		}
+	}
+
+	/**
+	 * Adds the trip to the builder for each weekday it is running. As for the
+	 * arcs of the time-expanded graph, negative travel and dwell times are
+	 * shifted by a day, i.e. the times along the trip are increasing.
+	 */
+	private void erstelleConnections(String tripId, int[] arrivalTime, int[] departureTime, int[] stopId, int n,
+			Timetable.Builder builder) {
+
+		int days = this.serviceDays.getOrDefault(this.trips.get(tripId), 0);
+		if (days == 0)
+			return;
+
+		int[] stops = Arrays.copyOf(stopId, n);
+		int[] arrivals = new int[n];
+		int[] departures = new int[n];
+
+		int prev = 0;
+		int time;
+		for (int i = 0; i < n; ++i) {
+			time = arrivalTime[i];
+			if (i > 0)
+				while (time < prev)
+					time += 86400;
+			arrivals[i] = time;
+			prev = time;
+
+			time = departureTime[i];
+			while (time < prev)
+				time += 86400;
+			departures[i] = time;
+			prev = time;
+		}
+
+		int[] dayArrivals = new int[n];
+		int[] dayDepartures = new int[n];
+		for (int weekday = 0; weekday < 7; weekday++) {
+			if (!runsOn(days, weekday, arrivalTime, departureTime, n))
+				continue;
+			int offset = weekday * 86400;
+			for (int i = 0; i < n; ++i) {
+				dayArrivals[i] = arrivals[i] + offset;
+				dayDepartures[i] = departures[i] + offset;
 			}
+			builder.addTrip(stops, dayArrivals, dayDepartures);
+		}
+	}
+
+	/**
+	 * Nodes and arcs of a trip at one stop on one day. They are created before
+	 * being added to the graph, so that trips can be created in parallel while
+	 * the ids of the nodes are assigned in the order of the trips.
+	 */
+	private static class StopEvent {
+		private final int stop;
+		private final ArrivalNode arrival;
+		private final TransferNode transfer;
+		private final DepartureNode departure;
+		// ride from the previous stop of the trip, null at its first stop
+		private final PublicTransportEdge ride;
+		private final PublicTransportEdge dwell;
+
+		private StopEvent(int stop, ArrivalNode arrival, TransferNode transfer, DepartureNode departure,
+				PublicTransportEdge ride, PublicTransportEdge dwell) {
+			this.stop = stop;
+			this.arrival = arrival;
+			this.transfer = transfer;
+			this.departure = departure;
+			this.ride = ride;
+			this.dwell = dwell;
+		}
+	}
+
+	/**
+	 * Creates the nodes and arcs of the trip on one day. Times after the end of
+	 * the week are moved to its beginning.
+	 */
+	private void erstelleTripDay(String tripId, int[] arrivalTimes, int[] departureTimes, int[] stopIds, int n,
+			int days, List<StopEvent> events) {
+		int departureTime = 0;
+		for (int i = 0; i < n; ++i) {
+			int stopSequence = i + 1;
+			int arrivalTime = arrivalTimes[i];
+			int currentID = stopIds[i];
+			String stopName = this.stopNames.get(currentID);
 
-			DiGraphNode<IsoVertex, IsoEdge> arrivalNode = this.graph.addNode(arrival);
-			this.arrivalNodes.get(currentID).add(arrivalNode);
+			// ----------- Arrival Node -----------
+			ArrivalNode arrival = new ArrivalNode(stopName, currentID, toDate(arrivalTime + days), tripId,
+					stopSequence, this.routes.get(this.routeId.get(tripId)));
+			arrival.setNextStreetNode(nextStreetNode.get(currentID));
 
-			PublicTransportEdge e;
 			/*
 			 * If the new station in part of the route -> add edge between the departure
 			 * visited before and the new arrival
 			 */
-			if (departure != null) {
-				long time = (arrivalTime.getTime() - departureTime.getTime()) / 1000;
+			PublicTransportEdge ride = null;
+			if (i > 0) {
+				long time = arrivalTime - departureTime;
 				if (time < 0)
 					time += 86400;
-				e = new PublicTransportEdge(time, -1);
-				this.graph.addArc(departure, arrivalNode, e);
+				ride = new PublicTransportEdge(time, -1);
 			}
 
 			// ----------- TransferNode -----------
-			departureTime = depTime.next();
-			TransferNode transfer = new TransferNode(stop.getName(), currentID,
-					new Date(departureTime.getTime() + days), tripId, stopSequence);
-
-			if (!this.transferNodes.containsKey(currentID)) {
-				this.transferNodes.put(currentID, new LinkedList<>());
-			}
-
-			DiGraphNode<IsoVertex, IsoEdge> transferNode = this.graph.addNode(transfer);
-			this.transferNodes.get(currentID).add(transferNode);
+			departureTime = departureTimes[i];
+			TransferNode transfer = new TransferNode(stopName, currentID, toDate(departureTime + days), tripId,
+					stopSequence);
 
 			// ----------- Update departure node -----------
-			DepartureNode dep = new DepartureNode(stop.getName(), currentID, new Date(departureTime.getTime() + days),
-					tripId, stopSequence);
-			departure = this.graph.addNode(dep);
+			DepartureNode dep = new DepartureNode(stopName, currentID, toDate(departureTime + days), tripId,
+					stopSequence);
 
 			// Adding the Edge for direct connection
-			long time = (departureTime.getTime() - arrivalTime.getTime()) / 1000;
+			long time = departureTime - arrivalTime;
 			if (time < 0) {
 				time += 86400;
 			}
-			e = new PublicTransportEdge(time, -1);
-			this.graph.addArc(arrivalNode, departure, e);
+			events.add(new StopEvent(currentID, arrival, transfer, dep, ride, new PublicTransportEdge(time, -1)));
+		}
+	}
+
+	/**
+	 * Adds the nodes and arcs of the events to the graph, in the order of the
+	 * events.
+	 */
+	private void addStopEvents(List<StopEvent> events) {
+		DiGraphNode<IsoVertex, IsoEdge> departure = null;
+		for (StopEvent event : events) {
+			if (event.arrival.getNextStreetNode() == null)
+				System.err.println("no next street node " + event.arrival);
+
+			DiGraphNode<IsoVertex, IsoEdge> arrivalNode = this.graph.addNode(event.arrival);
+			this.arrivalNodes.computeIfAbsent(event.stop, k -> new LinkedList<>()).add(arrivalNode);
+			if (event.ride != null)
+				this.graph.addArc(departure, arrivalNode, event.ride);
+
+			DiGraphNode<IsoVertex, IsoEdge> transferNode = this.graph.addNode(event.transfer);
+			this.transferNodes.computeIfAbsent(event.stop, k -> new LinkedList<>()).add(transferNode);
+
+			departure = this.graph.addNode(event.departure);
+			this.graph.addArc(arrivalNode, departure, event.dwell);
 
 			// Adding Edge between transfer and departure
-			PublicTransportEdge n = new PublicTransportEdge(0, 0);
-			this.graph.addArc(transferNode, departure, n);
+			this.graph.addArc(transferNode, departure, new PublicTransportEdge(0, 0));
 		}
 	}
 
+	/**
+	 * @param seconds seconds after the beginning of the week, may exceed the week
+	 * @return date of the node
+	 */
+	private static Date toDate(int seconds) {
+		if (seconds >= WEEK)
+			seconds -= WEEK;
+		return new Date(seconds * 1000l);
+	}
+
 	/**
 	 * Loading Transfers and adding them into the Graph
 	 * 
 	 * @param graph
 	 * @param arrivalNodes
 	 * @param transferNodes
-	 * @throws ParseException
 	 */
-	private void loadTransfers(File directory) throws ParseException {
+	private void loadTransfers(File directory) {
 		if (AbstractMain.VERBOSE) {
 			System.out.println();
 			System.out.println("Start loading transfers.");
 		}
 		long starttime = System.currentTimeMillis();
 		int counterTransfers = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(directory + "/transfers.txt"))) {
-			String currentLine;
-			br.readLine();
-			while ((currentLine = br.readLine()) != null) {
-				String[] lineSplit = currentLine.split(",");
-				int fromStop = Integer.parseInt(lineSplit[0]);
-				int toStop = Integer.parseInt(lineSplit[1]);
-				int transferType = Integer.parseInt(lineSplit[2]);
+		try (CSVReader reader = new CSVReader(new File(directory, "transfers.txt"))) {
+			int fromColumn = reader.requireColumn("from_stop_id");
+			int toColumn = reader.requireColumn("to_stop_id");
+			int typeColumn = reader.requireColumn("transfer_type");
+			int timeColumn = reader.column("min_transfer_time");
+			while (reader.next()) {
+				int fromStop = reader.getInt(fromColumn);
+				int toStop = reader.getInt(toColumn);
+				int transferType = reader.getInt(typeColumn);
 				int transferTime;
 
 				try {
-					transferTime = Integer.parseInt(lineSplit[3]);
+					transferTime = reader.getInt(timeColumn);
 				} catch (Exception e) {
 					transferTime = AbstractMain.DEFAULT_TRANSFER_TIME;
 				}
@@ -467,6 +863,10 @@ public class GTFSLoader {
 					continue;
 				}
 
+				// the timetable has no arrival and transfer nodes to connect
+				if (this.timetable != null)
+					continue;
+
 				// Get lists of all transfers and arrivals
 				LinkedList<DiGraphNode<IsoVertex, IsoEdge>> arrivals = this.arrivalNodes.get(fromStop);
 				LinkedList<DiGraphNode<IsoVertex, IsoEdge>> transfers = this.transferNodes.get(toStop);
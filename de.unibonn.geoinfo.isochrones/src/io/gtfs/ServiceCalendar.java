@@ -0,0 +1,222 @@
+package io.gtfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.csv.CSVReader;
+
+/**
+ * Days on which the services of a GTFS feed run. The weekdays and date ranges
+ * of <code>calendar.txt</code> and the exceptions of
+ * <code>calendar_dates.txt</code> are resolved to a bitset of days for each
+ * service, bit i standing for the i-th day after the first date of the feed.
+ * Both files are optional, but one of them has to exist.
+ *
+ * Feeds without any dates, i.e. with a <code>calendar.txt</code> without
+ * start and end dates, describe a generic week; their services run on their
+ * weekdays on every date.
+ */
+public class ServiceCalendar {
+
+	private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+	private static final String[] WEEKDAYS = { "monday", "tuesday", "wednesday", "thursday", "friday", "saturday",
+			"sunday" };
+
+	// weekdays of each service, bit 0 is monday
+	private final Map<Integer, Integer> weekdays = new HashMap<>();
+	// days of each service by day since firstDay, only if the feed has dates
+	private final Map<Integer, BitSet> days = new HashMap<>();
+	// epoch days of the first and last date of the feed, firstDay > lastDay if
+	// it has none
+	private long firstDay = Long.MAX_VALUE;
+	private long lastDay = Long.MIN_VALUE;
+
+	private ServiceCalendar() {
+	}
+
+	/**
+	 * Service of a line of calendar.txt, the dates are epoch days, null if not
+	 * given.
+	 */
+	private static class Range {
+		private final int service;
+		private final int weekdays;
+		private final Long start;
+		private final Long end;
+
+		private Range(int service, int weekdays, Long start, Long end) {
+			this.service = service;
+			this.weekdays = weekdays;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Reads calendar.txt and calendar_dates.txt of the feed.
+	 *
+	 * @param directory directory of the GTFS data
+	 * @throws IOException if none of the files exists or they cannot be read
+	 */
+	public static ServiceCalendar load(File directory) throws IOException {
+		File calendarFile = new File(directory, "calendar.txt");
+		File datesFile = new File(directory, "calendar_dates.txt");
+		if (!calendarFile.exists() && !datesFile.exists())
+			throw new IOException("Neither calendar.txt nor calendar_dates.txt in " + directory + ".");
+
+		ServiceCalendar calendar = new ServiceCalendar();
+		List<Range> ranges = new ArrayList<>();
+		if (calendarFile.exists()) {
+			try (CSVReader reader = new CSVReader(calendarFile)) {
+				int serviceColumn = reader.requireColumn("service_id");
+				int[] dayColumns = new int[WEEKDAYS.length];
+				for (int i = 0; i < dayColumns.length; i++)
+					dayColumns[i] = reader.requireColumn(WEEKDAYS[i]);
+				int startColumn = reader.column("start_date");
+				int endColumn = reader.column("end_date");
+				while (reader.next()) {
+					int service = reader.getInt(serviceColumn);
+					int mask = 0;
+					for (int i = 0; i < dayColumns.length; i++)
+						if (reader.getInt(dayColumns[i]) != 0)
+							mask |= 1 << i;
+					Range range = new Range(service, mask, parseDate(reader, startColumn),
+							parseDate(reader, endColumn));
+					ranges.add(range);
+					calendar.weekdays.merge(service, mask, (a, b) -> a | b);
+					calendar.include(range.start);
+					calendar.include(range.end);
+				}
+			}
+		}
+
+		// exceptions: service, epoch day and exception type
+		List<long[]> exceptions = new ArrayList<>();
+		if (datesFile.exists()) {
+			try (CSVReader reader = new CSVReader(datesFile)) {
+				int serviceColumn = reader.requireColumn("service_id");
+				int dateColumn = reader.requireColumn("date");
+				int typeColumn = reader.requireColumn("exception_type");
+				while (reader.next()) {
+					long day = parseDate(reader, dateColumn);
+					exceptions.add(new long[] { reader.getInt(serviceColumn), day, reader.getInt(typeColumn) });
+					calendar.include(day);
+				}
+			}
+		}
+
+		if (calendar.hasDates()) {
+			for (Range range : ranges) {
+				BitSet bits = calendar.days.computeIfAbsent(range.service, k -> new BitSet());
+				long start = range.start == null ? calendar.firstDay : range.start;
+				long end = range.end == null ? calendar.lastDay : range.end;
+				for (long day = start; day <= end; ++day)
+					if ((range.weekdays >> weekday(day) & 1) != 0)
+						bits.set((int) (day - calendar.firstDay));
+			}
+		}
+		Set<Integer> ranged = new HashSet<>();
+		for (Range range : ranges)
+			ranged.add(range.service);
+		for (long[] exception : exceptions) {
+			int service = (int) exception[0];
+			long day = exception[1];
+			BitSet bits = calendar.days.computeIfAbsent(service, k -> new BitSet());
+			if (exception[2] == 1) {
+				bits.set((int) (day - calendar.firstDay));
+				// services of calendar_dates.txt only run on the weekdays of their dates
+				if (!ranged.contains(service))
+					calendar.weekdays.merge(service, 1 << weekday(day), (x, y) -> x | y);
+			} else if (exception[2] == 2) {
+				bits.clear((int) (day - calendar.firstDay));
+			} else {
+				System.err.println("Unknown exception type " + exception[2] + " of service " + service
+						+ " in calendar_dates.txt");
+			}
+		}
+		return calendar;
+	}
+
+	private static Long parseDate(CSVReader reader, int column) {
+		if (reader.isEmpty(column))
+			return null;
+		String value = reader.getString(column).trim();
+		try {
+			return LocalDate.parse(value, DATE).toEpochDay();
+		} catch (DateTimeParseException e) {
+			throw new NumberFormatException(
+					"Invalid date \"" + value + "\" in line " + reader.getLineNumber() + ", column " + column + ".");
+		}
+	}
+
+	private void include(Long day) {
+		if (day != null) {
+			firstDay = Math.min(firstDay, day);
+			lastDay = Math.max(lastDay, day);
+		}
+	}
+
+	/**
+	 * @return weekday of the epoch day, 0 is monday
+	 */
+	private static int weekday(long day) {
+		return LocalDate.ofEpochDay(day).getDayOfWeek().getValue() - 1;
+	}
+
+	/**
+	 * @return false if the feed describes a generic week
+	 */
+	public boolean hasDates() {
+		return firstDay <= lastDay;
+	}
+
+	/**
+	 * @return first date of the feed, null if it has no dates
+	 */
+	public LocalDate getFirstDate() {
+		return hasDates() ? LocalDate.ofEpochDay(firstDay) : null;
+	}
+
+	/**
+	 * @return last date of the feed, null if it has no dates
+	 */
+	public LocalDate getLastDate() {
+		return hasDates() ? LocalDate.ofEpochDay(lastDay) : null;
+	}
+
+	public Set<Integer> getServices() {
+		return weekdays.keySet();
+	}
+
+	/**
+	 * @return weekdays of the generic week the service runs on as bits, bit 0 is
+	 *         monday; for services only given by calendar_dates.txt, the weekdays
+	 *         of their added dates
+	 */
+	public int getWeekdays(int service) {
+		return weekdays.getOrDefault(service, 0);
+	}
+
+	/**
+	 * @return true if the service runs on the date
+	 */
+	public boolean isActive(int service, LocalDate date) {
+		if (!hasDates())
+			return (getWeekdays(service) >> (date.getDayOfWeek().getValue() - 1) & 1) != 0;
+		long day = date.toEpochDay();
+		if (day < firstDay || day > lastDay)
+			return false;
+		BitSet bits = days.get(service);
+		return bits != null && bits.get((int) (day - firstDay));
+	}
+}
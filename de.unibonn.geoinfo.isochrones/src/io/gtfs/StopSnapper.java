@@ -0,0 +1,184 @@
+package io.gtfs;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import main.AbstractMain;
+import util.structures.PointIndex;
+import util.structures.SegmentIndex;
+
+/**
+ * Snaps stops to road nodes, either to the road node next to the stop or to
+ * the end point of the road arc next to the stop that is closer to the
+ * projection of the stop onto the arc. The latter avoids snapping a stop
+ * along a long road to a node of a side road that happens to be closer.
+ *
+ * The indices of the road nodes and arcs are built once, and the road node of
+ * each stop is cached with the coordinates of the stop, so that loading
+ * another feed only searches the road nodes of stops which are new or have
+ * moved.
+ */
+public class StopSnapper {
+
+	// maximum length of the pieces of the arcs in the arc index, in meters
+	private static final double ARC_PIECE_LENGTH = 50;
+
+	private final PointIndex nodes;
+
+	// arcs as pairs of road node indices, null if stops are snapped to nodes
+	private final int[] arcSources;
+	private final int[] arcTargets;
+	private final SegmentIndex arcs;
+
+	// key: stop id, value: coordinates and road node of the stop
+	private final Map<Integer, Snap> cache = new HashMap<>();
+
+	private int numSearched = 0;
+
+	private static class Snap {
+		private final double x;
+		private final double y;
+		private final int node;
+
+		private Snap(double x, double y, int node) {
+			this.x = x;
+			this.y = y;
+			this.node = node;
+		}
+	}
+
+	/**
+	 * @param roadNodes coordinates of the road nodes, in the order of their
+	 *                  indices; of several nodes at the same position, the first
+	 *                  one is used
+	 */
+	public StopSnapper(List<? extends Point2D> roadNodes) {
+		this(createIndex(roadNodes));
+	}
+
+	/**
+	 * Snaps the stops to the next road node.
+	 *
+	 * @param roadNodes index of the road nodes, e.g.
+	 *                  {@link graph.types.RoadGraph#getNodeIndex()}
+	 */
+	public StopSnapper(PointIndex roadNodes) {
+		this.nodes = roadNodes;
+		this.arcSources = null;
+		this.arcTargets = null;
+		this.arcs = null;
+	}
+
+	/**
+	 * Snaps the stops to the closer end point of the next road arc.
+	 *
+	 * @param roadNodes  coordinates of the road nodes, in the order of their
+	 *                   indices
+	 * @param arcSources index of the first road node of each arc
+	 * @param arcTargets index of the second road node of each arc
+	 */
+	public StopSnapper(List<? extends Point2D> roadNodes, int[] arcSources, int[] arcTargets) {
+		if (arcSources.length != arcTargets.length)
+			throw new IllegalArgumentException(
+					arcSources.length + " source nodes, but " + arcTargets.length + " target nodes.");
+		long starttime = System.currentTimeMillis();
+		int m = arcSources.length;
+		double[] x1 = new double[m], y1 = new double[m], x2 = new double[m], y2 = new double[m];
+		for (int a = 0; a < m; ++a) {
+			Point2D source = roadNodes.get(arcSources[a]);
+			Point2D target = roadNodes.get(arcTargets[a]);
+			x1[a] = source.getX();
+			y1[a] = source.getY();
+			x2[a] = target.getX();
+			y2[a] = target.getY();
+		}
+		this.nodes = null;
+		this.arcSources = arcSources.clone();
+		this.arcTargets = arcTargets.clone();
+		this.arcs = new SegmentIndex(x1, y1, x2, y2, ARC_PIECE_LENGTH);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Index of " + m + " road arcs for stops created ("
+					+ (System.currentTimeMillis() - starttime) + "ms)");
+	}
+
+	private static PointIndex createIndex(List<? extends Point2D> roadNodes) {
+		long starttime = System.currentTimeMillis();
+		PointIndex index = new PointIndex(roadNodes);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Index of " + roadNodes.size() + " road nodes for stops created ("
+					+ (System.currentTimeMillis() - starttime) + "ms)");
+		return index;
+	}
+
+	/**
+	 * @return index of the road node of the stop, taken from the cache if the
+	 *         stop has not moved since it was last snapped
+	 */
+	public synchronized int snap(int stopId, double x, double y) {
+		Snap snap = cache.get(stopId);
+		if (snap == null || snap.x != x || snap.y != y) {
+			snap = new Snap(x, y, search(x, y));
+			cache.put(stopId, snap);
+			++numSearched;
+		}
+		return snap.node;
+	}
+
+	/**
+	 * Snaps a batch of stops, searching the road nodes of the stops which are
+	 * not cached in parallel.
+	 *
+	 * @param threads number of threads, 1 searches one stop after another
+	 * @return index of the road node of each stop
+	 */
+	public synchronized int[] snapAll(int[] stopIds, double[] x, double[] y, int threads) {
+		int[] result = new int[stopIds.length];
+		List<Integer> missing = new ArrayList<>();
+		for (int i = 0; i < stopIds.length; ++i) {
+			Snap snap = cache.get(stopIds[i]);
+			if (snap == null || snap.x != x[i] || snap.y != y[i])
+				missing.add(i);
+			else
+				result[i] = snap.node;
+		}
+
+		IntStream searches = IntStream.range(0, missing.size());
+		if (threads > 1)
+			searches = searches.parallel();
+		searches.forEach(j -> {
+			int i = missing.get(j);
+			result[i] = search(x[i], y[i]);
+		});
+
+		for (int i : missing)
+			cache.put(stopIds[i], new Snap(x[i], y[i], result[i]));
+		numSearched += missing.size();
+		return result;
+	}
+
+	/**
+	 * @return index of the road node for the position, does not touch the cache
+	 */
+	private int search(double x, double y) {
+		if (arcs == null)
+			return nodes.nearest(x, y);
+		int arc = arcs.nearest(x, y);
+		if (arc < 0)
+			return -1;
+		return arcs.fraction(arc, x, y) <= 0.5 ? arcSources[arc] : arcTargets[arc];
+	}
+
+	/**
+	 * @return number of stops whose road node has been searched, i.e. was not
+	 *         cached, since the last call
+	 */
+	public synchronized int resetNumSearched() {
+		int searched = numSearched;
+		numSearched = 0;
+		return searched;
+	}
+}
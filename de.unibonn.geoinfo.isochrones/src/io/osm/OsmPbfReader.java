@@ -0,0 +1,370 @@
+package io.osm;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.generic.DiGraph.DiGraphNode;
+import graph.types.GeofabrikData;
+import graph.types.MappedPoint;
+import graph.types.RoadGraph;
+import main.AbstractMain;
+import util.geometry.Envelope;
+import util.tools.Util;
+
+/**
+ * Imports the road network of an OpenStreetMap PBF file into a
+ * {@link RoadGraph}, as {@link io.shp.ShapeFileReader} does for the roads
+ * shapefiles of Geofabrik. The highway ways are classified like in these
+ * shapefiles, so the arc data is the same {@link GeofabrikData}; each way
+ * becomes a path of arcs between its nodes, projected by
+ * {@link Util#lonlat2utm(double, double)}.
+ *
+ * The file is read twice, decoding its blocks in parallel: the first pass
+ * collects the highway ways, the second one the coordinates of their nodes
+ * only, skipping all blocks without nodes. Ways and coordinates are kept in
+ * primitive arrays.
+ */
+public class OsmPbfReader {
+
+	/**
+	 * Road class of Geofabrik for a highway tag, with its code.
+	 */
+	private static class RoadClass {
+		private final String fclass;
+		private final int code;
+		private final boolean motorway;
+
+		private RoadClass(String fclass, int code) {
+			this.fclass = fclass;
+			this.code = code;
+			this.motorway = fclass.equals("motorway") || fclass.equals("motorway_link") || fclass.equals("trunk")
+					|| fclass.equals("trunk_link");
+		}
+	}
+
+	private static final Map<String, RoadClass> HIGHWAYS = new HashMap<>();
+	// tracks are classified by their tracktype, key: grade1 to grade5
+	private static final Map<String, RoadClass> TRACKS = new HashMap<>();
+	private static final RoadClass[] CLASSES;
+
+	static {
+		String[] fclasses = { "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+				"living_street", "pedestrian", "busway", "motorway_link", "trunk_link", "primary_link",
+				"secondary_link", "tertiary_link", "service", "track", "bridleway", "cycleway", "footway", "path",
+				"steps" };
+		int[] codes = { 5111, 5112, 5113, 5114, 5115, 5121, 5122, 5123, 5124, 5125, 5131, 5132, 5133, 5134, 5135,
+				5141, 5142, 5151, 5152, 5153, 5154, 5155 };
+		for (int i = 0; i < fclasses.length; ++i)
+			HIGHWAYS.put(fclasses[i], new RoadClass(fclasses[i], codes[i]));
+		HIGHWAYS.put("road", new RoadClass("unknown", 5199));
+		for (int grade = 1; grade <= 5; ++grade)
+			TRACKS.put("grade" + grade, new RoadClass("track_grade" + grade, 5142 + grade));
+
+		CLASSES = new RoadClass[HIGHWAYS.size() + TRACKS.size()];
+		int i = 0;
+		for (RoadClass c : HIGHWAYS.values())
+			CLASSES[i++] = c;
+		for (RoadClass c : TRACKS.values())
+			CLASSES[i++] = c;
+		Arrays.sort(CLASSES, (a, b) -> Integer.compare(a.code, b.code));
+	}
+
+	private static final byte BRIDGE = 1, TUNNEL = 2;
+
+	/**
+	 * Highway ways of a block with their attributes and node ids.
+	 */
+	private static class Ways {
+		private int n = 0;
+		private long[] ids = new long[16];
+		private byte[] roadClass = new byte[16]; // index in CLASSES
+		private byte[] oneway = new byte[16];
+		private short[] maxspeed = new short[16];
+		private byte[] layer = new byte[16];
+		private byte[] flags = new byte[16];
+		private int[] start = new int[17]; // refs of way i are start[i] to start[i + 1]
+		private long[] refs = new long[256];
+		private boolean hasNodes = false;
+
+		private void add(long id, int roadClass, byte oneway, short maxspeed, byte layer, byte flags, long[] refs,
+				int numRefs) {
+			if (n == ids.length) {
+				int capacity = 2 * n;
+				this.ids = Arrays.copyOf(this.ids, capacity);
+				this.roadClass = Arrays.copyOf(this.roadClass, capacity);
+				this.oneway = Arrays.copyOf(this.oneway, capacity);
+				this.maxspeed = Arrays.copyOf(this.maxspeed, capacity);
+				this.layer = Arrays.copyOf(this.layer, capacity);
+				this.flags = Arrays.copyOf(this.flags, capacity);
+				this.start = Arrays.copyOf(this.start, capacity + 1);
+			}
+			int numAll = start[n] + numRefs;
+			if (numAll > this.refs.length)
+				this.refs = Arrays.copyOf(this.refs, Math.max(numAll, 2 * this.refs.length));
+			System.arraycopy(refs, 0, this.refs, start[n], numRefs);
+			this.ids[n] = id;
+			this.roadClass[n] = (byte) roadClass;
+			this.oneway[n] = oneway;
+			this.maxspeed[n] = maxspeed;
+			this.layer[n] = layer;
+			this.flags[n] = flags;
+			start[++n] = numAll;
+		}
+	}
+
+	private OsmPbfReader() {
+	}
+
+	/**
+	 * @param path       OpenStreetMap PBF file
+	 * @param withOneway if true, ways tagged as oneway only get arcs in their
+	 *                   direction, as with the oneway column of
+	 *                   {@link io.shp.GeofabrikFactory}
+	 * @param threads    number of threads decoding the blocks of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static RoadGraph<Point2D, GeofabrikData> importFromPBF(File path, boolean withOneway, int threads)
+			throws IOException {
+		long starttime = System.currentTimeMillis();
+
+		// first pass: highway ways
+		List<Ways> blocks = PbfFile.decode(path, threads, null, (index, block) -> readWays(block, withOneway));
+		BitSet nodeBlocks = new BitSet();
+		long numRefs = 0;
+		for (int i = 0; i < blocks.size(); ++i) {
+			if (blocks.get(i).hasNodes)
+				nodeBlocks.set(i);
+			numRefs += blocks.get(i).start[blocks.get(i).n];
+		}
+		if (numRefs > Integer.MAX_VALUE - 8)
+			throw new IOException("Too many way nodes in " + path + ": " + numRefs);
+
+		// ids of the nodes of the ways, sorted and without duplicates
+		long[] nodeIds = new long[(int) numRefs];
+		int numNodes = 0;
+		for (Ways ways : blocks) {
+			System.arraycopy(ways.refs, 0, nodeIds, numNodes, ways.start[ways.n]);
+			numNodes += ways.start[ways.n];
+		}
+		Arrays.parallelSort(nodeIds);
+		numNodes = 0;
+		for (int i = 0; i < nodeIds.length; ++i)
+			if (i == 0 || nodeIds[i] != nodeIds[i - 1])
+				nodeIds[numNodes++] = nodeIds[i];
+		long[] ids = Arrays.copyOf(nodeIds, numNodes);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Highway ways of " + path + " read: " + numNodes + " nodes ("
+					+ (System.currentTimeMillis() - starttime) + "ms)");
+
+		// second pass: coordinates of the nodes of the ways
+		double[] x = new double[numNodes];
+		double[] y = new double[numNodes];
+		Arrays.fill(x, Double.NaN);
+		PbfFile.decode(path, threads, nodeBlocks, (index, block) -> {
+			block.forEachNode((id, lon, lat) -> {
+				int i = Arrays.binarySearch(ids, id);
+				if (i >= 0) {
+					Point2D utm = Util.lonlat2utm(lon, lat);
+					y[i] = utm.getY();
+					x[i] = utm.getX();
+				}
+			});
+			return null;
+		});
+
+		RoadGraph<Point2D, GeofabrikData> g = createGraph(ids, x, y, blocks, withOneway);
+		if (AbstractMain.VERBOSE)
+			System.out.println("RoadGraph with " + g.n() + " nodes and " + g.m() + " arcs loaded successfully ("
+					+ (System.currentTimeMillis() - starttime) + "ms)");
+		return g;
+	}
+
+	/**
+	 * @return the highway ways of the block
+	 */
+	private static Ways readWays(PbfBlock block, boolean withOneway) throws IOException {
+		Ways ways = new Ways();
+		ways.hasNodes = block.hasNodes();
+		if (!block.hasWays())
+			return ways;
+		int highwayKey = block.indexOf("highway");
+		if (highwayKey < 0)
+			return ways;
+		int trackTypeKey = block.indexOf("tracktype");
+		int areaKey = block.indexOf("area");
+		int onewayKey = block.indexOf("oneway");
+		int maxspeedKey = block.indexOf("maxspeed");
+		int layerKey = block.indexOf("layer");
+		int bridgeKey = block.indexOf("bridge");
+		int tunnelKey = block.indexOf("tunnel");
+
+		block.forEachWay((id, keys, values, numTags, refs, numRefs) -> {
+			String highway = null, trackType = null, area = null, oneway = null, maxspeed = null, layer = null,
+					bridge = null, tunnel = null;
+			for (int i = 0; i < numTags; ++i) {
+				int key = keys[i];
+				if (key == highwayKey)
+					highway = block.getString(values[i]);
+				else if (key == trackTypeKey)
+					trackType = block.getString(values[i]);
+				else if (key == areaKey)
+					area = block.getString(values[i]);
+				else if (key == onewayKey)
+					oneway = block.getString(values[i]);
+				else if (key == maxspeedKey)
+					maxspeed = block.getString(values[i]);
+				else if (key == layerKey)
+					layer = block.getString(values[i]);
+				else if (key == bridgeKey)
+					bridge = block.getString(values[i]);
+				else if (key == tunnelKey)
+					tunnel = block.getString(values[i]);
+			}
+			if (highway == null || numRefs < 2 || "yes".equals(area))
+				return;
+			RoadClass roadClass = HIGHWAYS.get(highway);
+			if (roadClass == null)
+				return;
+			if (highway.equals("track") && trackType != null && TRACKS.containsKey(trackType))
+				roadClass = TRACKS.get(trackType);
+			if (!AbstractMain.KEEP_MOTORWAY && roadClass.motorway)
+				return;
+
+			byte flags = (byte) ((isSet(bridge) ? BRIDGE : 0) | (isSet(tunnel) ? TUNNEL : 0));
+			ways.add(id, Arrays.binarySearch(CLASSES, roadClass, (a, b) -> Integer.compare(a.code, b.code)),
+					withOneway ? parseOneway(oneway) : 0, parseMaxspeed(maxspeed), parseLayer(layer), flags, refs,
+					numRefs);
+		});
+		return ways;
+	}
+
+	private static boolean isSet(String value) {
+		return value != null && !value.equals("no");
+	}
+
+	/**
+	 * @return 1 for ways in their direction only, -1 for ways against it, 0 else
+	 */
+	private static byte parseOneway(String value) {
+		if (value == null)
+			return 0;
+		switch (value) {
+		case "yes":
+		case "true":
+		case "1":
+			return 1;
+		case "-1":
+		case "reverse":
+			return -1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return speed limit in km/h, 0 if it is not given as number
+	 */
+	private static short parseMaxspeed(String value) {
+		if (value == null)
+			return 0;
+		int i = 0;
+		long speed = 0;
+		while (i < value.length() && Character.isDigit(value.charAt(i)) && speed <= Short.MAX_VALUE)
+			speed = 10 * speed + (value.charAt(i++) - '0');
+		if (i == 0)
+			return 0;
+		if (value.endsWith("mph"))
+			speed = Math.round(speed * 1.609344);
+		return (short) Math.min(speed, Short.MAX_VALUE);
+	}
+
+	/**
+	 * @return layer, 0 if it is no number
+	 */
+	private static byte parseLayer(String value) {
+		if (value == null)
+			return 0;
+		try {
+			int layer = Integer.parseInt(value.trim());
+			return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, layer));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Creates the graph from the ways in the order of the file. Nodes missing in
+	 * the file split their ways.
+	 */
+	private static RoadGraph<Point2D, GeofabrikData> createGraph(long[] ids, double[] x, double[] y, List<Ways> blocks,
+			boolean withOneway) {
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		int missing = 0;
+		for (int i = 0; i < ids.length; ++i) {
+			if (Double.isNaN(x[i])) {
+				++missing;
+				continue;
+			}
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		if (missing > 0)
+			System.err.println(missing + " nodes of highway ways are missing in the file, their ways are split.");
+		if (minX > maxX)
+			minX = maxX = minY = maxY = 0;
+
+		RoadGraph<Point2D, GeofabrikData> g = new RoadGraph<>(new Envelope(minX, maxX, minY, maxY));
+		int[] graphNode = new int[ids.length];
+		Arrays.fill(graphNode, -1);
+
+		for (Ways ways : blocks) {
+			for (int w = 0; w < ways.n; ++w) {
+				GeofabrikData attributes = null;
+				DiGraphNode<Point2D, GeofabrikData> q = null;
+				int qi = -1;
+				for (int r = ways.start[w]; r < ways.start[w + 1]; ++r) {
+					DiGraphNode<Point2D, GeofabrikData> p = q;
+					int pi = qi;
+					qi = Arrays.binarySearch(ids, ways.refs[r]);
+					if (Double.isNaN(x[qi])) {
+						q = null;
+						continue;
+					}
+					if (graphNode[qi] < 0) {
+						DiGraphNode<Point2D, GeofabrikData> node = g.addNode(new MappedPoint(x[qi], y[qi]));
+						// the graph rejects points closer than its precision to an existing node
+						if (node == null)
+							node = g.getDiGraphNode(x[qi], y[qi]);
+						graphNode[qi] = node.getId();
+					}
+					q = g.getNode(graphNode[qi]);
+					if (p == null || p == q)
+						continue;
+
+					if (attributes == null) {
+						RoadClass roadClass = CLASSES[ways.roadClass[w]];
+						attributes = new GeofabrikData(0, Long.toString(ways.ids[w]), roadClass.code,
+								roadClass.fclass, ways.oneway[w], (int) ways.maxspeed[w], (int) ways.layer[w],
+								(ways.flags[w] & BRIDGE) != 0, (ways.flags[w] & TUNNEL) != 0);
+					}
+					double distance = Math.sqrt((x[qi] - x[pi]) * (x[qi] - x[pi]) + (y[qi] - y[pi]) * (y[qi] - y[pi]));
+					byte oneway = withOneway ? ways.oneway[w] : 0;
+					if (oneway >= 0 && p.getFirstOutgoingArcTo(q) == null)
+						g.addArc(p, q, new GeofabrikData(distance, attributes));
+					if (oneway <= 0 && q.getFirstOutgoingArcTo(p) == null)
+						g.addArc(q, p, new GeofabrikData(distance, attributes));
+				}
+			}
+		}
+		return g;
+	}
+}
@@ -0,0 +1,261 @@
+package io.osm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decompressed primitive block of an OpenStreetMap PBF file. The string table
+ * and the ranges of the primitive groups are read on creation; nodes and ways
+ * are decoded on demand and passed to a visitor one after another. Relations
+ * and changesets are ignored.
+ */
+final class PbfBlock {
+
+	interface NodeVisitor {
+		void node(long id, double lon, double lat);
+	}
+
+	/**
+	 * Gets the tags as indices into the string table, see
+	 * {@link PbfBlock#getString(int)}. The arrays are reused for the next way.
+	 */
+	interface WayVisitor {
+		void way(long id, int[] keys, int[] values, int numTags, long[] refs, int numRefs);
+	}
+
+	private final String[] strings;
+	private int granularity = 100;
+	private long latOffset = 0;
+	private long lonOffset = 0;
+
+	private final List<ProtobufInput> nodes = new ArrayList<>();
+	private final List<ProtobufInput> denseNodes = new ArrayList<>();
+	private final List<ProtobufInput> ways = new ArrayList<>();
+
+	PbfBlock(byte[] data) throws IOException {
+		List<String> strings = new ArrayList<>();
+		List<ProtobufInput> groups = new ArrayList<>();
+		ProtobufInput block = new ProtobufInput(data);
+		while (block.hasMore()) {
+			int tag = block.readTag();
+			switch (ProtobufInput.fieldNumber(tag)) {
+			case 1: // string table
+				ProtobufInput table = block.readMessage();
+				while (table.hasMore()) {
+					int stringTag = table.readTag();
+					if (ProtobufInput.fieldNumber(stringTag) == 1)
+						strings.add(table.readString());
+					else
+						table.skip(ProtobufInput.wireType(stringTag));
+				}
+				break;
+			case 2:
+				groups.add(block.readMessage());
+				break;
+			case 17:
+				granularity = block.readInt32();
+				break;
+			case 19:
+				latOffset = block.readVarint();
+				break;
+			case 20:
+				lonOffset = block.readVarint();
+				break;
+			default:
+				block.skip(ProtobufInput.wireType(tag));
+			}
+		}
+		this.strings = strings.toArray(new String[strings.size()]);
+
+		for (ProtobufInput group : groups) {
+			while (group.hasMore()) {
+				int tag = group.readTag();
+				switch (ProtobufInput.fieldNumber(tag)) {
+				case 1:
+					nodes.add(group.readMessage());
+					break;
+				case 2:
+					denseNodes.add(group.readMessage());
+					break;
+				case 3:
+					ways.add(group.readMessage());
+					break;
+				default:
+					group.skip(ProtobufInput.wireType(tag));
+				}
+			}
+		}
+	}
+
+	String getString(int index) {
+		return strings[index];
+	}
+
+	/**
+	 * @return index of the string in the string table, -1 if it is missing
+	 */
+	int indexOf(String value) {
+		for (int i = 0; i < strings.length; ++i)
+			if (strings[i].equals(value))
+				return i;
+		return -1;
+	}
+
+	boolean hasNodes() {
+		return !nodes.isEmpty() || !denseNodes.isEmpty();
+	}
+
+	boolean hasWays() {
+		return !ways.isEmpty();
+	}
+
+	private double lon(long value) {
+		return 1e-9 * (lonOffset + granularity * value);
+	}
+
+	private double lat(long value) {
+		return 1e-9 * (latOffset + granularity * value);
+	}
+
+	void forEachNode(NodeVisitor visitor) throws IOException {
+		for (ProtobufInput message : nodes) {
+			ProtobufInput node = message.duplicate();
+			long id = 0, lat = 0, lon = 0;
+			while (node.hasMore()) {
+				int tag = node.readTag();
+				switch (ProtobufInput.fieldNumber(tag)) {
+				case 1:
+					id = node.readSInt64();
+					break;
+				case 8:
+					lat = node.readSInt64();
+					break;
+				case 9:
+					lon = node.readSInt64();
+					break;
+				default:
+					node.skip(ProtobufInput.wireType(tag));
+				}
+			}
+			visitor.node(id, lon(lon), lat(lat));
+		}
+
+		for (ProtobufInput message : denseNodes) {
+			ProtobufInput dense = message.duplicate();
+			long[] ids = null, lats = null, lons = null;
+			while (dense.hasMore()) {
+				int tag = dense.readTag();
+				switch (ProtobufInput.fieldNumber(tag)) {
+				case 1:
+					ids = readDeltas(dense, tag);
+					break;
+				case 8:
+					lats = readDeltas(dense, tag);
+					break;
+				case 9:
+					lons = readDeltas(dense, tag);
+					break;
+				default:
+					dense.skip(ProtobufInput.wireType(tag));
+				}
+			}
+			if (ids == null)
+				continue;
+			if (lats == null || lons == null || lats.length != ids.length || lons.length != ids.length)
+				throw new IOException("Dense nodes with " + ids.length + " ids, but other numbers of coordinates.");
+			for (int i = 0; i < ids.length; ++i)
+				visitor.node(ids[i], lon(lons[i]), lat(lats[i]));
+		}
+	}
+
+	void forEachWay(WayVisitor visitor) throws IOException {
+		int[] keys = new int[16];
+		int[] values = new int[16];
+		long[] refs = new long[256];
+		for (ProtobufInput message : ways) {
+			ProtobufInput way = message.duplicate();
+			long id = 0;
+			int numKeys = 0, numValues = 0, numRefs = 0;
+			while (way.hasMore()) {
+				int tag = way.readTag();
+				switch (ProtobufInput.fieldNumber(tag)) {
+				case 1:
+					id = way.readVarint();
+					break;
+				case 2: {
+					ProtobufInput packed = packed(way, tag);
+					for (; packed.hasMore(); ++numKeys) {
+						if (numKeys == keys.length)
+							keys = Arrays.copyOf(keys, 2 * numKeys);
+						keys[numKeys] = packed.readInt32();
+					}
+					break;
+				}
+				case 3: {
+					ProtobufInput packed = packed(way, tag);
+					for (; packed.hasMore(); ++numValues) {
+						if (numValues == values.length)
+							values = Arrays.copyOf(values, 2 * numValues);
+						values[numValues] = packed.readInt32();
+					}
+					break;
+				}
+				case 8: {
+					ProtobufInput packed = packed(way, tag);
+					long ref = numRefs > 0 ? refs[numRefs - 1] : 0;
+					for (; packed.hasMore(); ++numRefs) {
+						if (numRefs == refs.length)
+							refs = Arrays.copyOf(refs, 2 * numRefs);
+						ref += packed.readSInt64();
+						refs[numRefs] = ref;
+					}
+					break;
+				}
+				default:
+					way.skip(ProtobufInput.wireType(tag));
+				}
+			}
+			if (numKeys != numValues)
+				throw new IOException("Way " + id + " has " + numKeys + " keys, but " + numValues + " values.");
+			visitor.way(id, keys, values, numKeys, refs, numRefs);
+		}
+	}
+
+	/**
+	 * @return input on the values of a repeated field, which are usually packed,
+	 *         but may be given one per field
+	 */
+	private static ProtobufInput packed(ProtobufInput message, int tag) throws IOException {
+		if (ProtobufInput.wireType(tag) == ProtobufInput.LENGTH_DELIMITED)
+			return message.readMessage();
+		// a single unpacked varint: decode it through a copy of its bytes
+		long value = message.readVarint();
+		byte[] bytes = new byte[10];
+		int n = 0;
+		do {
+			byte b = (byte) (value & 0x7F);
+			value >>>= 7;
+			bytes[n++] = value != 0 ? (byte) (b | 0x80) : b;
+		} while (value != 0);
+		return new ProtobufInput(bytes, 0, n);
+	}
+
+	/**
+	 * @return delta-coded values of a packed field, e.g. the ids of dense nodes
+	 */
+	private static long[] readDeltas(ProtobufInput message, int tag) throws IOException {
+		ProtobufInput packed = packed(message, tag);
+		long[] values = new long[16];
+		int n = 0;
+		long value = 0;
+		while (packed.hasMore()) {
+			if (n == values.length)
+				values = Arrays.copyOf(values, 2 * n);
+			value += packed.readSInt64();
+			values[n++] = value;
+		}
+		return Arrays.copyOf(values, n);
+	}
+}
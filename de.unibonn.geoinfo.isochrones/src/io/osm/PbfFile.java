@@ -0,0 +1,204 @@
+package io.osm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Block-parallel decoder of OpenStreetMap PBF files. The blobs of the file are
+ * read one after another, while decompressing and decoding the primitive blocks
+ * runs on several threads. Only a bounded number of blocks is decoded ahead of
+ * the reader, so the memory needed does not depend on the size of the file.
+ */
+final class PbfFile {
+
+	// maximum sizes of blob headers and blobs given by the format
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	// blocks decoded ahead of the reader per thread
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	private static final String[] SUPPORTED_FEATURES = { "OsmSchema-V0.6", "DenseNodes" };
+
+	interface BlockDecoder<T> {
+		/**
+		 * @param index index of the block among the data blocks of the file
+		 */
+		T decode(int index, PbfBlock block) throws IOException;
+	}
+
+	private PbfFile() {
+	}
+
+	/**
+	 * Decodes the data blocks of the file, on several threads if there are more
+	 * than one.
+	 *
+	 * @param blocks indices of the data blocks to decode, null to decode all;
+	 *               other blocks are skipped without decompressing them
+	 * @return results of the decoded blocks in the order of the file
+	 * @throws IOException if the file cannot be read or is no PBF file
+	 */
+	static <T> List<T> decode(File file, int threads, BitSet blocks, BlockDecoder<T> decoder) throws IOException {
+		List<T> results = new ArrayList<>();
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		Deque<Future<T>> pending = new ArrayDeque<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20))) {
+			int index = 0;
+			while (true) {
+				int headerSize;
+				try {
+					headerSize = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE)
+					throw new IOException("Invalid blob header size " + headerSize + " in " + file + ".");
+				byte[] header = new byte[headerSize];
+				in.readFully(header);
+
+				String type = null;
+				int dataSize = -1;
+				ProtobufInput blobHeader = new ProtobufInput(header);
+				while (blobHeader.hasMore()) {
+					int tag = blobHeader.readTag();
+					if (ProtobufInput.fieldNumber(tag) == 1)
+						type = blobHeader.readString();
+					else if (ProtobufInput.fieldNumber(tag) == 3)
+						dataSize = blobHeader.readInt32();
+					else
+						blobHeader.skip(ProtobufInput.wireType(tag));
+				}
+				if (dataSize < 0 || dataSize > MAX_BLOB_SIZE)
+					throw new IOException("Invalid blob size " + dataSize + " in " + file + ".");
+
+				if ("OSMHeader".equals(type)) {
+					byte[] blob = new byte[dataSize];
+					in.readFully(blob);
+					checkFeatures(inflate(blob), file);
+				} else if ("OSMData".equals(type)) {
+					int blockIndex = index++;
+					if (blocks != null && !blocks.get(blockIndex)) {
+						in.skipNBytes(dataSize);
+						continue;
+					}
+					byte[] blob = new byte[dataSize];
+					in.readFully(blob);
+					if (executor == null) {
+						results.add(decoder.decode(blockIndex, new PbfBlock(inflate(blob))));
+					} else {
+						pending.add(executor.submit(() -> decoder.decode(blockIndex, new PbfBlock(inflate(blob)))));
+						if (pending.size() >= BLOCKS_PER_THREAD * threads)
+							results.add(get(pending.poll()));
+					}
+				} else {
+					// unknown blobs are to be skipped
+					in.skipNBytes(dataSize);
+				}
+			}
+			while (!pending.isEmpty())
+				results.add(get(pending.poll()));
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+		return results;
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @return uncompressed data of the blob
+	 */
+	private static byte[] inflate(byte[] blob) throws IOException {
+		ProtobufInput input = new ProtobufInput(blob);
+		int rawSize = -1;
+		byte[] compressed = null;
+		while (input.hasMore()) {
+			int tag = input.readTag();
+			switch (ProtobufInput.fieldNumber(tag)) {
+			case 1: // uncompressed
+				return input.readBytes();
+			case 2:
+				rawSize = input.readInt32();
+				break;
+			case 3:
+				compressed = input.readBytes();
+				break;
+			case 4:
+			case 5:
+			case 6:
+			case 7:
+				throw new IOException("Unsupported compression of PBF blob, only zlib is supported.");
+			default:
+				input.skip(ProtobufInput.wireType(tag));
+			}
+		}
+		if (compressed == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE)
+			throw new IOException("PBF blob without data.");
+
+		byte[] data = new byte[rawSize];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int n = 0;
+			while (n < rawSize && !inflater.finished()) {
+				int inflated = inflater.inflate(data, n, rawSize - n);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				n += inflated;
+			}
+			if (n != rawSize)
+				throw new IOException("PBF blob of " + n + " bytes instead of " + rawSize + ".");
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt PBF blob.", e);
+		} finally {
+			inflater.end();
+		}
+		return data;
+	}
+
+	private static void checkFeatures(byte[] headerBlock, File file) throws IOException {
+		ProtobufInput header = new ProtobufInput(headerBlock);
+		while (header.hasMore()) {
+			int tag = header.readTag();
+			if (ProtobufInput.fieldNumber(tag) == 4) {
+				String feature = header.readString();
+				boolean supported = false;
+				for (String s : SUPPORTED_FEATURES)
+					supported |= s.equals(feature);
+				if (!supported)
+					throw new IOException(file + " requires unsupported feature " + feature + ".");
+			} else {
+				header.skip(ProtobufInput.wireType(tag));
+			}
+		}
+	}
+}
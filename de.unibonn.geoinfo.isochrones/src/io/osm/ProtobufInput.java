@@ -0,0 +1,148 @@
+package io.osm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decoder of the protocol buffer wire format on a range of a byte array, just
+ * as much as needed for the messages of OpenStreetMap PBF files. Nested
+ * messages and packed fields are read through inputs on their subrange, so
+ * that no bytes are copied.
+ */
+final class ProtobufInput {
+
+	static final int VARINT = 0;
+	static final int FIXED64 = 1;
+	static final int LENGTH_DELIMITED = 2;
+	static final int FIXED32 = 5;
+
+	private final byte[] data;
+	private int position;
+	private final int limit;
+
+	ProtobufInput(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	ProtobufInput(byte[] data, int offset, int length) {
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * @return input on the remaining bytes, which can be read independently
+	 */
+	ProtobufInput duplicate() {
+		return new ProtobufInput(data, position, limit - position);
+	}
+
+	boolean hasMore() {
+		return position < limit;
+	}
+
+	/**
+	 * @return key of the next field, i.e. field number times 8 plus wire type
+	 */
+	int readTag() throws IOException {
+		return (int) readVarint();
+	}
+
+	static int fieldNumber(int tag) {
+		return tag >>> 3;
+	}
+
+	static int wireType(int tag) {
+		return tag & 7;
+	}
+
+	long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (position >= limit)
+				throw malformed();
+			byte b = data[position++];
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw malformed();
+	}
+
+	int readInt32() throws IOException {
+		return (int) readVarint();
+	}
+
+	/**
+	 * @return zigzag-encoded signed integer
+	 */
+	long readSInt64() throws IOException {
+		long value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * @return input on the next length-delimited field, e.g. a nested message or
+	 *         packed values
+	 */
+	ProtobufInput readMessage() throws IOException {
+		int length = readLength();
+		ProtobufInput message = new ProtobufInput(data, position, length);
+		position += length;
+		return message;
+	}
+
+	/**
+	 * @return copy of the bytes of the next length-delimited field
+	 */
+	byte[] readBytes() throws IOException {
+		int length = readLength();
+		byte[] value = Arrays.copyOfRange(data, position, position + length);
+		position += length;
+		return value;
+	}
+
+	String readString() throws IOException {
+		int length = readLength();
+		String value = new String(data, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	private int readLength() throws IOException {
+		long length = readVarint();
+		if (length < 0 || length > limit - position)
+			throw malformed();
+		return (int) length;
+	}
+
+	void skip(int wireType) throws IOException {
+		switch (wireType) {
+		case VARINT:
+			readVarint();
+			break;
+		case FIXED64:
+			skipBytes(8);
+			break;
+		case LENGTH_DELIMITED:
+			skipBytes(readLength());
+			break;
+		case FIXED32:
+			skipBytes(4);
+			break;
+		default:
+			throw malformed();
+		}
+	}
+
+	private void skipBytes(int n) throws IOException {
+		if (n > limit - position)
+			throw malformed();
+		position += n;
+	}
+
+	private IOException malformed() {
+		return new IOException("Malformed protocol buffer at byte " + position + ".");
+	}
+}
@@ -0,0 +1,266 @@
+package io.shp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader for the attribute table (.dbf) of an ESRI shapefile. The
+ * fixed-width records are read one after another from a memory-mapped buffer,
+ * numbers are parsed directly from their bytes and strings are only created
+ * on request, as in {@link io.csv.CSVReader}. Columns are resolved by their
+ * name, ignoring case.
+ *
+ * Strings are decoded in the charset of the .cpg file next to the table if
+ * there is one, and in ISO-8859-1 otherwise.
+ */
+public class DbfReader implements Closeable {
+
+	private static final int HEADER_SIZE = 32;
+	private static final int FIELD_DESCRIPTOR_SIZE = 32;
+	private static final byte DESCRIPTOR_END = 0x0D;
+	private static final byte FILE_END = 0x1A;
+	private static final byte DELETED = '*';
+
+	private final MappedFile file;
+	private final Charset charset;
+	private final long numRecords;
+	private final int headerLength;
+	private final int recordLength;
+
+	// fields are stored at start[i] to start[i] + length[i] (exclusive) of a record
+	private final Map<String, Integer> columns = new HashMap<>();
+	private final int[] start;
+	private final int[] length;
+
+	private final byte[] record;
+	private long recordNumber = 0;
+
+	/**
+	 * Opens the table and reads its header.
+	 *
+	 * @throws IOException if the file cannot be read or is no dBASE table
+	 */
+	public DbfReader(File dbf) throws IOException {
+		this.file = new MappedFile(dbf);
+		try {
+			if (file.size() < HEADER_SIZE)
+				throw new IOException(dbf + " is no dBASE table.");
+			MappedByteBuffer header = file.map(0, HEADER_SIZE);
+			numRecords = header.getInt(file.offset(4)) & 0xFFFFFFFFl;
+			headerLength = header.getShort(file.offset(8)) & 0xFFFF;
+			recordLength = header.getShort(file.offset(10)) & 0xFFFF;
+			if (headerLength < HEADER_SIZE + 1 || recordLength < 1)
+				throw new IOException(dbf + " is no dBASE table.");
+
+			MappedByteBuffer descriptors = file.map(0, headerLength);
+			int numFields = (headerLength - HEADER_SIZE - 1) / FIELD_DESCRIPTOR_SIZE;
+			int[] start = new int[numFields];
+			int[] length = new int[numFields];
+			int fieldStart = 1; // after the deletion flag
+			int n = 0;
+			for (; n < numFields; ++n) {
+				int descriptor = file.offset(HEADER_SIZE + n * FIELD_DESCRIPTOR_SIZE);
+				if (descriptors.get(descriptor) == DESCRIPTOR_END)
+					break;
+				byte[] name = new byte[11];
+				descriptors.get(descriptor, name);
+				int nameLength = 0;
+				while (nameLength < name.length && name[nameLength] != 0)
+					++nameLength;
+				columns.put(new String(name, 0, nameLength, StandardCharsets.US_ASCII).trim().toLowerCase(), n);
+				start[n] = fieldStart;
+				length[n] = descriptors.get(descriptor + 16) & 0xFF;
+				fieldStart += length[n];
+			}
+			if (fieldStart > recordLength)
+				throw new IOException("Fields of " + dbf + " exceed its records.");
+			this.start = Arrays.copyOf(start, n);
+			this.length = Arrays.copyOf(length, n);
+			this.record = new byte[recordLength];
+			this.charset = readCharset(dbf);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return charset given by the .cpg file next to the table, ISO-8859-1 if
+	 *         there is none or it is unknown
+	 */
+	private static Charset readCharset(File dbf) {
+		String name = dbf.getName();
+		int dot = name.lastIndexOf('.');
+		File cpg = new File(dbf.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + ".cpg");
+		if (cpg.exists()) {
+			try {
+				String value = new String(Files.readAllBytes(cpg.toPath()), StandardCharsets.US_ASCII).trim();
+				return Charset.forName(value.equalsIgnoreCase("UTF8") ? "UTF-8" : value);
+			} catch (IOException | IllegalArgumentException e) {
+				System.err.println("Unknown charset in " + cpg + ", using ISO-8859-1.");
+			}
+		}
+		return StandardCharsets.ISO_8859_1;
+	}
+
+	/**
+	 * @param name column name of the table, case is ignored
+	 * @return index of the column, -1 if there is no such column
+	 */
+	public int column(String name) {
+		return columns.getOrDefault(name.toLowerCase(), -1);
+	}
+
+	/**
+	 * @param name column name of the table, case is ignored
+	 * @return index of the column
+	 * @throws IllegalArgumentException if there is no such column
+	 */
+	public int requireColumn(String name) {
+		int column = column(name);
+		if (column < 0)
+			throw new IllegalArgumentException("Column " + name + " missing in table.");
+		return column;
+	}
+
+	/**
+	 * Reads the next record, including deleted ones, see {@link #isDeleted()}.
+	 *
+	 * @return false if the end of the table is reached
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean next() throws IOException {
+		if (recordNumber >= numRecords)
+			return false;
+		long position = headerLength + recordNumber * recordLength;
+		if (position + recordLength > file.size())
+			return false;
+		MappedByteBuffer buffer = file.map(position, recordLength);
+		buffer.get(file.offset(position), record);
+		if (record[0] == FILE_END)
+			return false;
+		++recordNumber;
+		return true;
+	}
+
+	/**
+	 * @return number of the current record, the first record is 1
+	 */
+	public long getRecordNumber() {
+		return recordNumber;
+	}
+
+	/**
+	 * @return true if the current record is marked as deleted
+	 */
+	public boolean isDeleted() {
+		return record[0] == DELETED;
+	}
+
+	/**
+	 * @return true if the column is missing or the field is blank
+	 */
+	public boolean isEmpty(int column) {
+		if (column < 0 || column >= start.length)
+			return true;
+		for (int i = start[column]; i < start[column] + length[column]; ++i)
+			if (record[i] != ' ' && record[i] != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return field without surrounding blanks
+	 */
+	public String getString(int column) {
+		checkColumn(column);
+		int from = trimStart(column);
+		return new String(record, from, trimEnd(column) - from, charset);
+	}
+
+	/**
+	 * @return true if the field consists of the given bytes, surrounding blanks
+	 *         are ignored
+	 */
+	public boolean fieldEquals(int column, byte[] value) {
+		checkColumn(column);
+		return Arrays.equals(record, trimStart(column), trimEnd(column), value, 0, value.length);
+	}
+
+	/**
+	 * Parses an integer, surrounding blanks are ignored.
+	 *
+	 * @throws NumberFormatException if the field is not an integer
+	 */
+	public int getInt(int column) {
+		checkColumn(column);
+		int i = trimStart(column);
+		int to = trimEnd(column);
+
+		boolean negative = i < to && record[i] == '-';
+		if (negative || (i < to && record[i] == '+'))
+			++i;
+		if (i == to)
+			throw numberFormatException(column);
+
+		long value = 0;
+		for (; i < to; ++i) {
+			int digit = record[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw numberFormatException(column);
+			value = 10 * value + digit;
+			if (value > Integer.MAX_VALUE + 1l)
+				throw numberFormatException(column);
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+			throw numberFormatException(column);
+		return (int) value;
+	}
+
+	/**
+	 * @throws NumberFormatException if the field is not a number
+	 */
+	public double getDouble(int column) {
+		return Double.parseDouble(getString(column));
+	}
+
+	private int trimStart(int column) {
+		int i = start[column];
+		int to = start[column] + length[column];
+		while (i < to && (record[i] == ' ' || record[i] == 0))
+			++i;
+		return i;
+	}
+
+	private int trimEnd(int column) {
+		int from = start[column];
+		int to = start[column] + length[column];
+		while (to > from && (record[to - 1] == ' ' || record[to - 1] == 0))
+			--to;
+		return to;
+	}
+
+	private void checkColumn(int column) {
+		if (column < 0 || column >= start.length)
+			throw new IllegalArgumentException("Column " + column + " missing in table (" + start.length + " fields).");
+	}
+
+	private NumberFormatException numberFormatException(int column) {
+		return new NumberFormatException(
+				"Invalid value \"" + getString(column) + "\" in record " + recordNumber + ", column " + column + ".");
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -1,11 +1,10 @@
 package io.shp;
 
 import java.awt.geom.Point2D;
-
-import com.vividsolutions.jump.feature.Feature;
-import com.vividsolutions.jump.feature.FeatureCollection;
+import java.nio.charset.StandardCharsets;
 
 import graph.types.GeofabrikData;
+import graph.types.MappedPoint;
 import graph.types.RoadGraph;
 import main.AbstractMain;
 import util.geometry.Envelope;
@@ -13,8 +12,20 @@ import util.geometry.Envelope;
 public class GeofabrikFactory
 		implements ShapeFileReader.Factory<RoadGraph<Point2D, GeofabrikData>, Point2D, GeofabrikData> {
 
+	private static final byte[][] MOTORWAY_CLASSES = { bytes("motorway_link"), bytes("motorway"), bytes("trunk"),
+			bytes("trunk_link") };
+	private static final byte[] TRUE = bytes("T");
+
 	private String colOneway;
 
+	// columns of the attribute table, -1 if missing
+	private int osmIdColumn, codeColumn, fclassColumn, onewayColumn, maxspeedColumn, layerColumn, bridgeColumn,
+			tunnelColumn;
+
+	// attributes of the last record arcs were created for, shared by its arcs
+	private long attributesRecord = -1;
+	private GeofabrikData attributes;
+
 	public GeofabrikFactory() {
 		this(false);
 	}
@@ -29,21 +40,38 @@ public class GeofabrikFactory
 		this.colOneway = colOneway;
 	}
 
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+
 	@Override
-	public boolean includeFeature(Feature f) {
+	public void setColumns(DbfReader table) {
+		osmIdColumn = table.requireColumn("osm_id");
+		codeColumn = table.column("code");
+		fclassColumn = table.requireColumn("fclass");
+		onewayColumn = colOneway == null ? -1 : table.requireColumn(colOneway);
+		maxspeedColumn = table.column("maxspeed");
+		layerColumn = table.column("layer");
+		bridgeColumn = table.column("bridge");
+		tunnelColumn = table.column("tunnel");
+		attributesRecord = -1;
+		attributes = null;
+	}
+
+	@Override
+	public boolean includeFeature(DbfReader record) {
 		if (!AbstractMain.KEEP_MOTORWAY) {
-			String type = f.getAttribute("fclass").toString().trim();
-			if (type.equals("motorway_link") || type.equals("motorway") || type.equals("trunk")
-					|| type.equals("trunk_link"))
-				return false;
+			for (byte[] type : MOTORWAY_CLASSES)
+				if (record.fieldEquals(fclassColumn, type))
+					return false;
 		}
 		return true;
 	}
 
 	@Override
-	public byte getOneway(Feature f) {
-		if (colOneway != null) {
-			String onewayTag = (String) f.getAttribute(colOneway);
+	public byte getOneway(DbfReader record) {
+		if (onewayColumn >= 0) {
+			String onewayTag = record.getString(onewayColumn);
 			switch (onewayTag) {
 			case "B":
 				return 0;
@@ -59,30 +87,34 @@ public class GeofabrikFactory
 	}
 
 	@Override
-	public RoadGraph<Point2D, GeofabrikData> getGraph(FeatureCollection fc) {
-		return new RoadGraph<Point2D, GeofabrikData>(getEnvelopeFromShape(fc.getEnvelope()));
+	public RoadGraph<Point2D, GeofabrikData> getGraph(Envelope envelope) {
+		return new RoadGraph<Point2D, GeofabrikData>(envelope);
 	}
 
 	@Override
-	public GeofabrikData createArcData(double distance, Feature f) {
-		String osmId = ((String) f.getAttribute("osm_id")).trim();
-		Integer code = (Integer) f.getAttribute("code");
-		String fclass = ((String) f.getAttribute("fclass")).trim();
-		byte oneway = getOneway(f);
-		Integer maxspeed = (Integer) f.getAttribute("maxspeed");
-		Integer layer = (Integer) f.getAttribute("layer");
-		boolean bridge = ((String) f.getAttribute("bridge")).equals("T");
-		boolean tunnel = ((String) f.getAttribute("tunnel")).equals("T");
-
-		return new GeofabrikData(distance, osmId, code, fclass, oneway, maxspeed, layer, bridge, tunnel);
+	public GeofabrikData createArcData(double distance, DbfReader record) {
+		if (record.getRecordNumber() != attributesRecord) {
+			String osmId = record.getString(osmIdColumn);
+			Integer code = getInteger(record, codeColumn);
+			String fclass = record.getString(fclassColumn);
+			byte oneway = getOneway(record);
+			Integer maxspeed = getInteger(record, maxspeedColumn);
+			Integer layer = getInteger(record, layerColumn);
+			boolean bridge = bridgeColumn >= 0 && record.fieldEquals(bridgeColumn, TRUE);
+			boolean tunnel = tunnelColumn >= 0 && record.fieldEquals(tunnelColumn, TRUE);
+
+			attributes = new GeofabrikData(0, osmId, code, fclass, oneway, maxspeed, layer, bridge, tunnel);
+			attributesRecord = record.getRecordNumber();
+		}
+		return new GeofabrikData(distance, attributes);
 	}
 
-	@Override
-	public Point2D createNodeData(double x, double y) {
-		return new Point2D.Double(x, y);
+	private static Integer getInteger(DbfReader record, int column) {
+		return record.isEmpty(column) ? null : record.getInt(column);
 	}
 
-	public static Envelope getEnvelopeFromShape(com.vividsolutions.jts.geom.Envelope e) {
-		return new Envelope(e.getMinX(), e.getMaxX(), e.getMinY(), e.getMaxY());
+	@Override
+	public Point2D createNodeData(double x, double y) {
+		return new MappedPoint(x, y);
 	}
 }
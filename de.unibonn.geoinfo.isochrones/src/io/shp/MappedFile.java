@@ -0,0 +1,67 @@
+package io.shp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only file accessed through a memory-mapped window. The window is moved
+ * along the file on demand, so files larger than a single mapping can be read
+ * as long as each access fits into a window. The buffer is little-endian.
+ */
+class MappedFile implements Closeable {
+
+	private static final long WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer buffer = null;
+	private long windowStart = 0;
+	private long windowEnd = 0;
+
+	MappedFile(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Makes sure that the window contains the given range of the file.
+	 *
+	 * @return buffer of the window, see {@link #offset(long)}
+	 * @throws IOException if the range exceeds the file
+	 */
+	MappedByteBuffer map(long position, int length) throws IOException {
+		if (position < 0 || position + length > size)
+			throw new IOException("Range " + position + " to " + (position + length) + " exceeds file of " + size
+					+ " bytes.");
+		if (position < windowStart || position + length > windowEnd) {
+			windowStart = position;
+			windowEnd = Math.min(size, position + Math.max(WINDOW_SIZE, length));
+			buffer = channel.map(MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return offset of the file position in the buffer of the window
+	 */
+	int offset(long position) {
+		return (int) (position - windowStart);
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		channel.close();
+	}
+}
@@ -2,19 +2,9 @@ package io.shp;
 
 import java.awt.geom.Point2D;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
-
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.MultiLineString;
-import com.vividsolutions.jump.feature.Feature;
-import com.vividsolutions.jump.feature.FeatureCollection;
-import com.vividsolutions.jump.io.DriverProperties;
-import com.vividsolutions.jump.io.IllegalParametersException;
-import com.vividsolutions.jump.io.ShapefileReader;
 
 import graph.algorithms.GraphSearch;
 import graph.algorithms.GraphSearch.BFSQueue;
@@ -23,78 +13,104 @@ import graph.generic.DiGraph.DiGraphNode;
 import graph.generic.GeometricGraph;
 import graph.generic.WeightedArcData;
 import main.AbstractMain;
-
+import util.geometry.Envelope;
+import util.structures.CoordinateMap;
+
+/**
+ * Imports road networks from ESRI line-feature shapefiles. The geometries of
+ * the .shp file and the attributes of the .dbf file next to it are streamed
+ * record by record, and the graph is created in the same pass: each polyline
+ * becomes a path of arcs between its points, points at the same position are
+ * merged into one node.
+ */
 public class ShapeFileReader {
 
 	public static <G extends GeometricGraph<V, E>, V extends Point2D, E extends WeightedArcData> G importFromSHP(
-			File path, Factory<G, V, E> factory) throws IllegalParametersException, Exception {
-		ShapefileReader shpIn = new ShapefileReader();
-		DriverProperties dp = new DriverProperties(path.getAbsolutePath());
-		FeatureCollection fc = shpIn.read(dp);
-
-		G g = factory.getGraph(fc);
-
-		Iterator<?> it = fc.iterator();
-		while (it.hasNext()) {
-			Feature f = (Feature) it.next();
-
-			if (!factory.includeFeature(f))
-				continue;
-
-			Geometry geom = f.getGeometry();
-			if (geom instanceof LineString) {
-				processLineString((LineString) geom, f, g, factory);
-			} else if (geom instanceof MultiLineString) {
-				Geometry subgeom;
-				for (int i = 0; i < geom.getNumGeometries(); ++i) {
-					subgeom = geom.getGeometryN(i);
-					if (subgeom instanceof LineString) {
-						processLineString((LineString) subgeom, f, g, factory);
-					} else {
-						System.err.println("unable to handle geometry of type " + subgeom.getGeometryType());
-						return null;
-					}
+			File path, Factory<G, V, E> factory) throws IOException {
+		long starttime = System.currentTimeMillis();
+		try (ShpReader shp = new ShpReader(path); DbfReader dbf = new DbfReader(getTable(path))) {
+			factory.setColumns(dbf);
+			G g = factory.getGraph(shp.getEnvelope());
+			CoordinateMap nodes = new CoordinateMap();
+
+			while (shp.next()) {
+				if (!dbf.next())
+					throw new IOException("Attribute table of " + path + " ends before record " + shp.getRecordNumber()
+							+ " of the shapes.");
+				if (dbf.isDeleted() || shp.getShapeType() == ShpReader.NULL_SHAPE || !factory.includeFeature(dbf))
+					continue;
+
+				if (!shp.isPolyLine()) {
+					System.err.println("unable to handle geometry of shape type " + shp.getShapeType());
+					return null;
 				}
-			} else {
-				System.err.println("unable to handle geometry of type " + geom.getGeometryType());
-				return null;
+				for (int part = 0; part < shp.getNumParts(); ++part)
+					processLineString(shp, shp.getPartStart(part), shp.getPartEnd(part), dbf, g, nodes, factory);
 			}
+			if (AbstractMain.VERBOSE) {
+				System.out.println("RoadGraph with " + g.n() + " nodes and " + g.m() + " arcs loaded successfully ("
+						+ (System.currentTimeMillis() - starttime) + "ms)");
+			}
+			return g;
 		}
-		if (AbstractMain.VERBOSE) {
-			System.out.println("RoadGraph with " + g.n() + " nodes and " + g.m() + " arcs loaded successfully");
-		}
-		return g;
 	}
 
+	/**
+	 * @return the .dbf file of the shapefile
+	 */
+	private static File getTable(File shp) {
+		String name = shp.getName();
+		int dot = name.lastIndexOf('.');
+		String base = dot < 0 ? name : name.substring(0, dot);
+		String extension = dot >= 0 && name.substring(dot).equals(".SHP") ? ".DBF" : ".dbf";
+		return new File(shp.getParentFile(), base + extension);
+	}
+
+	/**
+	 * Adds the arcs between the points <code>from</code> to <code>to</code>
+	 * (exclusive) of the current record.
+	 */
 	private static <G extends GeometricGraph<V, E>, V extends Point2D, E extends WeightedArcData> void processLineString(
-			LineString geom, Feature f, G g, Factory<G, V, E> factory) {
-		int oneway = factory.getOneway(f);
-		Coordinate[] c = geom.getCoordinates();
-		DiGraphNode<V, E> q = g.getDiGraphNode(c[0].x, c[0].y);
-		if (q == null) {
-			q = g.addNode(factory.createNodeData(c[0].x, c[0].y));
-		}
+			ShpReader shp, int from, int to, DbfReader record, G g, CoordinateMap nodes, Factory<G, V, E> factory) {
+		if (from >= to)
+			return;
+		int oneway = factory.getOneway(record);
+		double x = shp.getX(from), y = shp.getY(from);
+		DiGraphNode<V, E> q = getOrAddNode(x, y, g, nodes, factory);
 		double distance;
-		for (int i = 1; i < c.length; ++i) {
+		for (int i = from + 1; i < to; ++i) {
 			DiGraphNode<V, E> p = q;
-			q = g.getDiGraphNode(c[i].x, c[i].y);
-			if (q == null) {
-				q = g.addNode(factory.createNodeData(c[i].x, c[i].y));
-			}
-			distance = c[i - 1].distance(c[i]);
+			double px = x, py = y;
+			x = shp.getX(i);
+			y = shp.getY(i);
+			q = getOrAddNode(x, y, g, nodes, factory);
+			distance = Math.sqrt((x - px) * (x - px) + (y - py) * (y - py));
 			if (oneway >= 0) // both directions or just forward
 				if (p.getFirstOutgoingArcTo(q) == null)
-					g.addArc(p, q, factory.createArcData(distance, f));
+					g.addArc(p, q, factory.createArcData(distance, record));
 				else if (AbstractMain.DEBUG)
 					System.out.println("Arc already present, skipping. " + p.getNodeData() + " -> " + q.getNodeData());
 			if (oneway <= 0) // both directions or just backwards
 				if (q.getFirstOutgoingArcTo(p) == null)
-					g.addArc(q, p, factory.createArcData(distance, f));
+					g.addArc(q, p, factory.createArcData(distance, record));
 				else if (AbstractMain.DEBUG)
 					System.out.println("Arc already present, skipping. " + q.getNodeData() + " -> " + p.getNodeData());
 		}
 	}
 
+	private static <G extends GeometricGraph<V, E>, V extends Point2D, E extends WeightedArcData> DiGraphNode<V, E> getOrAddNode(
+			double x, double y, G g, CoordinateMap nodes, Factory<G, V, E> factory) {
+		int index = nodes.get(x, y);
+		if (index >= 0)
+			return g.getNode(index);
+		DiGraphNode<V, E> node = g.addNode(factory.createNodeData(x, y));
+		// the graph rejects points closer than its precision to an existing node
+		if (node == null)
+			node = g.getDiGraphNode(x, y);
+		nodes.putIfAbsent(x, y, node.getId());
+		return node;
+	}
+
 	public static <G extends GeometricGraph<V, E>, V extends Point2D, E extends WeightedArcData> void reduceToBiggestComponent(
 			G g) {
 		GraphSearch<V, E> searcher = new GraphSearch<>(g);
@@ -127,14 +143,24 @@ public class ShapeFileReader {
 
 	public interface Factory<G extends DiGraph<V, E>, V, E extends WeightedArcData> {
 
-		boolean includeFeature(Feature f);
+		/**
+		 * Looks up the columns of the attribute table, called before the first
+		 * record is read.
+		 */
+		void setColumns(DbfReader table);
+
+		boolean includeFeature(DbfReader record);
 
-		byte getOneway(Feature f);
+		byte getOneway(DbfReader record);
 
-		G getGraph(FeatureCollection fc);
+		G getGraph(Envelope envelope);
 
-		E createArcData(double distance, Feature f);
+		/**
+		 * Called for each arc of a feature, the attributes of a feature may be
+		 * shared by its arcs.
+		 */
+		E createArcData(double distance, DbfReader record);
 
 		V createNodeData(double x, double y);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package io.shp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+import util.geometry.Envelope;
+
+/**
+ * Streaming reader for the geometries of an ESRI shapefile (.shp). Records are
+ * decoded one after another straight from a memory-mapped buffer; the
+ * coordinates of the current record are read from the buffer on access, so
+ * that no geometry objects are created.
+ *
+ * Only null shapes and polylines, optionally with z or m values, are decoded.
+ * Records of other shape types can be skipped by their type.
+ */
+public class ShpReader implements Closeable {
+
+	public static final int NULL_SHAPE = 0;
+	public static final int POLYLINE = 3;
+	public static final int POLYLINE_Z = 13;
+	public static final int POLYLINE_M = 23;
+
+	private static final int FILE_CODE = 9994;
+	private static final int HEADER_SIZE = 100;
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private final MappedFile file;
+	private final long fileLength;
+	private final Envelope envelope;
+
+	// current record: file position of its content, shape type, parts and points
+	private long position = HEADER_SIZE;
+	private long recordNumber = 0;
+	private int shapeType = NULL_SHAPE;
+	private MappedByteBuffer buffer;
+	private int parts; // buffer offset of the indices of the first points of the parts
+	private int points; // buffer offset of the coordinates
+	private int numParts = 0;
+	private int numPoints = 0;
+
+	/**
+	 * Opens the file and reads its header.
+	 *
+	 * @throws IOException if the file cannot be read or is no shapefile
+	 */
+	public ShpReader(File shp) throws IOException {
+		this.file = new MappedFile(shp);
+		if (file.size() < HEADER_SIZE) {
+			file.close();
+			throw new IOException(shp + " is no shapefile.");
+		}
+		MappedByteBuffer header = file.map(0, HEADER_SIZE);
+		if (Integer.reverseBytes(header.getInt(file.offset(0))) != FILE_CODE) {
+			file.close();
+			throw new IOException(shp + " is no shapefile.");
+		}
+		// the length is given in 16-bit words
+		fileLength = Math.min(file.size(), 2l * Integer.reverseBytes(header.getInt(file.offset(24))));
+		envelope = new Envelope(header.getDouble(file.offset(36)), header.getDouble(file.offset(52)),
+				header.getDouble(file.offset(44)), header.getDouble(file.offset(60)));
+	}
+
+	/**
+	 * @return bounding box of all shapes of the file, as given by its header
+	 */
+	public Envelope getEnvelope() {
+		return envelope;
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return false if the end of the file is reached
+	 * @throws IOException if the record is truncated
+	 */
+	public boolean next() throws IOException {
+		if (position + RECORD_HEADER_SIZE > fileLength)
+			return false;
+		MappedByteBuffer header = file.map(position, RECORD_HEADER_SIZE);
+		long length = 2l * Integer.reverseBytes(header.getInt(file.offset(position) + 4));
+		long content = position + RECORD_HEADER_SIZE;
+		if (length < 4 || content + length > fileLength)
+			throw new IOException("Record " + (recordNumber + 1) + " at " + position + " is truncated.");
+		position = content + length;
+		++recordNumber;
+
+		buffer = file.map(content, (int) length);
+		int offset = file.offset(content);
+		shapeType = buffer.getInt(offset);
+		numParts = 0;
+		numPoints = 0;
+		if (isPolyLine()) {
+			// shape type and bounding box precede the numbers of parts and points
+			numParts = buffer.getInt(offset + 36);
+			numPoints = buffer.getInt(offset + 40);
+			parts = offset + 44;
+			points = parts + 4 * numParts;
+			if (numParts < 0 || numPoints < 0 || 44 + 4l * numParts + 16l * numPoints > length)
+				throw new IOException("Record " + recordNumber + " has invalid numbers of parts and points.");
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of the current record, the first record is 1
+	 */
+	public long getRecordNumber() {
+		return recordNumber;
+	}
+
+	public int getShapeType() {
+		return shapeType;
+	}
+
+	/**
+	 * @return true if the current record is a polyline, with or without z or m
+	 *         values
+	 */
+	public boolean isPolyLine() {
+		return shapeType == POLYLINE || shapeType == POLYLINE_Z || shapeType == POLYLINE_M;
+	}
+
+	public int getNumParts() {
+		return numParts;
+	}
+
+	public int getNumPoints() {
+		return numPoints;
+	}
+
+	/**
+	 * @return index of the first point of the part
+	 */
+	public int getPartStart(int part) {
+		return buffer.getInt(parts + 4 * part);
+	}
+
+	/**
+	 * @return index after the last point of the part
+	 */
+	public int getPartEnd(int part) {
+		return part + 1 < numParts ? getPartStart(part + 1) : numPoints;
+	}
+
+	public double getX(int point) {
+		return buffer.getDouble(points + 16 * point);
+	}
+
+	public double getY(int point) {
+		return buffer.getDouble(points + 16 * point + 8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		file.close();
+	}
+}
@@ -0,0 +1,503 @@
+package io.snapshot;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+import graph.generic.GeometricGraph;
+import graph.planarizer.PlanarGraph;
+import graph.routing.CSRGraph;
+import graph.routing.Timetable;
+import graph.types.GeofabrikData;
+import graph.types.MappedPoint;
+import graph.types.RoadGraph;
+import main.AbstractMain;
+import util.geometry.Envelope;
+
+/**
+ * Binary snapshot of the preprocessed network: the road graph reduced to its
+ * biggest component, the planarized graph with its crossings, the frozen
+ * routing graph and the timetable of the connection scan. Loading a snapshot
+ * replaces reading the shapefile, the planarization and the loading of the GTFS
+ * data.
+ *
+ * The graphs are stored as primitive arrays. The order of the nodes, of the
+ * arcs and of the adjacency lists as well as the ids are kept, so that the
+ * loaded graphs behave exactly like the original ones. Edge data shared by
+ * several arcs is stored once and shared again after loading.
+ */
+public class NetworkSnapshot {
+
+	/**
+	 * version of the format, has to be increased with every change of it
+	 */
+	public static final int VERSION = 3;
+
+	private static final int NULL = Integer.MIN_VALUE;
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final byte VALUE_IS_DISTANCE = 1;
+	private static final byte BRIDGE = 2;
+	private static final byte TUNNEL = 4;
+
+	private final RoadGraph<Point2D, GeofabrikData> roadGraph;
+	private final PlanarGraph<Point2D, GeofabrikData> planarGraph;
+	private final CSRGraph routingGraph;
+	private final Timetable timetable;
+
+	// preprocessing options the snapshot was compiled with
+	private final boolean keepMotorway;
+	private final byte filterRoads;
+	private final LocalDate serviceDate;
+	private final int serviceDays;
+
+	private NetworkSnapshot(RoadGraph<Point2D, GeofabrikData> roadGraph,
+			PlanarGraph<Point2D, GeofabrikData> planarGraph, CSRGraph routingGraph, Timetable timetable,
+			boolean keepMotorway, byte filterRoads, LocalDate serviceDate, int serviceDays) {
+		this.roadGraph = roadGraph;
+		this.planarGraph = planarGraph;
+		this.routingGraph = routingGraph;
+		this.timetable = timetable;
+		this.keepMotorway = keepMotorway;
+		this.filterRoads = filterRoads;
+		this.serviceDate = serviceDate;
+		this.serviceDays = serviceDays;
+	}
+
+	/**
+	 * Writes the snapshot. The ids of the nodes of both graphs have to match their
+	 * position in the node list.
+	 *
+	 * @param file         snapshot file, an existing file is overwritten
+	 * @param roadGraph    road graph
+	 * @param planarGraph  planarized road graph
+	 * @param routingGraph routing graph, its road nodes are the nodes of
+	 *                     <code>roadGraph</code>
+	 * @param timetable    timetable of the connection scan, null if the public
+	 *                     transportation is part of the routing graph
+	 * @param keepMotorway true if motorways have been kept during the import
+	 * @param filterRoads  degree of the road filter applied before the
+	 *                     planarization
+	 * @param serviceDate  first day of the timetable, null for the generic week
+	 * @param serviceDays  number of days of the timetable
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File file, RoadGraph<Point2D, GeofabrikData> roadGraph,
+			PlanarGraph<Point2D, GeofabrikData> planarGraph, CSRGraph routingGraph, Timetable timetable,
+			boolean keepMotorway, byte filterRoads, LocalDate serviceDate, int serviceDays) throws IOException {
+		long starttime = System.currentTimeMillis();
+
+		// arcs of the crossings, which have been replaced during the planarization
+		List<DiGraphArc<Point2D, GeofabrikData>> crossedArcs = new ArrayList<>();
+		if (planarGraph.getCrossPoints() != null)
+			for (List<DiGraphArc<Point2D, GeofabrikData>> arcs : planarGraph.getCrossPoints().values())
+				crossedArcs.addAll(arcs);
+		if (planarGraph.getCrossedLines() != null)
+			crossedArcs.addAll(planarGraph.getCrossedLines().keySet());
+
+		Map<GeofabrikData, Integer> edgeIndex = new IdentityHashMap<>();
+		List<GeofabrikData> edges = new ArrayList<>();
+		indexEdges(roadGraph.getArcs(), edgeIndex, edges);
+		indexEdges(planarGraph.getArcs(), edgeIndex, edges);
+		indexEdges(crossedArcs, edgeIndex, edges);
+
+		try (SnapshotWriter out = new SnapshotWriter(file, VERSION)) {
+			out.writeBoolean(keepMotorway);
+			out.writeByte(filterRoads);
+			out.writeLong(serviceDate == null ? NO_DATE : serviceDate.toEpochDay());
+			out.writeInt(serviceDays);
+
+			writeEdges(out, edges);
+			writeGraph(out, roadGraph, Collections.emptyList(), edgeIndex);
+			Map<DiGraphArc<Point2D, GeofabrikData>, Integer> arcIndex = writeGraph(out, planarGraph, crossedArcs,
+					edgeIndex);
+			writeCrossings(out, planarGraph, arcIndex);
+
+			routingGraph.write(out);
+			out.writeBoolean(timetable != null);
+			if (timetable != null)
+				timetable.write(out);
+		}
+
+		if (AbstractMain.VERBOSE)
+			System.out.println("Network snapshot written: " + file.length() / (1 << 20) + " MiB ("
+					+ (System.currentTimeMillis() - starttime) + "ms)");
+	}
+
+	/**
+	 * Reads a snapshot written by
+	 * {@link #write(File, RoadGraph, PlanarGraph, CSRGraph, Timetable, boolean, byte, LocalDate, int)}.
+	 *
+	 * @param file snapshot file
+	 * @return the loaded snapshot
+	 * @throws IOException if the file cannot be read, has another version or is
+	 *                     corrupt
+	 */
+	public static NetworkSnapshot read(File file) throws IOException {
+		long starttime = System.currentTimeMillis();
+		NetworkSnapshot snapshot;
+		try (SnapshotReader in = new SnapshotReader(file, VERSION)) {
+			boolean keepMotorway = in.readBoolean();
+			byte filterRoads = in.readByte();
+			long serviceDay = in.readLong();
+			int serviceDays = in.readInt();
+
+			GeofabrikData[] edges = readEdges(in);
+			RoadGraph<Point2D, GeofabrikData> roadGraph = new RoadGraph<>(readEnvelope(in));
+			readGraph(in, roadGraph, edges);
+			PlanarGraph<Point2D, GeofabrikData> planarGraph = new PlanarGraph<>(readEnvelope(in));
+			List<DiGraphArc<Point2D, GeofabrikData>> arcs = readGraph(in, planarGraph, edges);
+			readCrossings(in, planarGraph, arcs);
+
+			CSRGraph routingGraph = CSRGraph.read(in);
+			Timetable timetable = in.readBoolean() ? Timetable.read(in) : null;
+
+			snapshot = new NetworkSnapshot(roadGraph, planarGraph, routingGraph, timetable, keepMotorway,
+					filterRoads, serviceDay == NO_DATE ? null : LocalDate.ofEpochDay(serviceDay), serviceDays);
+		}
+
+		if (AbstractMain.VERBOSE)
+			System.out.println("Network snapshot loaded: " + snapshot.roadGraph.n() + " road nodes, "
+					+ snapshot.routingGraph.n() + " routing nodes (" + (System.currentTimeMillis() - starttime)
+					+ "ms)");
+		return snapshot;
+	}
+
+	private static void indexEdges(List<DiGraphArc<Point2D, GeofabrikData>> arcs,
+			Map<GeofabrikData, Integer> edgeIndex, List<GeofabrikData> edges) {
+		for (DiGraphArc<Point2D, GeofabrikData> arc : arcs) {
+			if (!edgeIndex.containsKey(arc.getArcData())) {
+				edgeIndex.put(arc.getArcData(), edges.size());
+				edges.add(arc.getArcData());
+			}
+		}
+	}
+
+	private static void writeEdges(SnapshotWriter out, List<GeofabrikData> edges) throws IOException {
+		int k = edges.size();
+		double[] value = new double[k];
+		byte[] flags = new byte[k];
+		byte[] oneway = new byte[k];
+		int[] code = new int[k];
+		int[] maxspeed = new int[k];
+		int[] layer = new int[k];
+		int[] osmId = new int[k];
+		int[] fclass = new int[k];
+
+		Map<String, Integer> stringIndex = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		GeofabrikData edge;
+		for (int i = 0; i < k; ++i) {
+			edge = edges.get(i);
+			value[i] = edge.getValue();
+			flags[i] = (byte) ((edge.isValueDistance() ? VALUE_IS_DISTANCE : 0) | (edge.isBridge() ? BRIDGE : 0)
+					| (edge.isTunnel() ? TUNNEL : 0));
+			oneway[i] = edge.getOneway();
+			code[i] = edge.getCode() == null ? NULL : edge.getCode();
+			maxspeed[i] = edge.getMaxspeed() == null ? NULL : edge.getMaxspeed();
+			layer[i] = edge.getLayer() == null ? NULL : edge.getLayer();
+			osmId[i] = indexOf(edge.getOsmId(), stringIndex, strings);
+			fclass[i] = indexOf(edge.fclass(), stringIndex, strings);
+		}
+
+		out.writeInt(strings.size());
+		for (String string : strings)
+			out.writeString(string);
+		out.writeDoubles(value);
+		out.writeBytes(flags);
+		out.writeBytes(oneway);
+		out.writeInts(code);
+		out.writeInts(maxspeed);
+		out.writeInts(layer);
+		out.writeInts(osmId);
+		out.writeInts(fclass);
+	}
+
+	private static int indexOf(String string, Map<String, Integer> stringIndex, List<String> strings) {
+		if (string == null)
+			return -1;
+		Integer index = stringIndex.get(string);
+		if (index == null) {
+			index = strings.size();
+			stringIndex.put(string, index);
+			strings.add(string);
+		}
+		return index;
+	}
+
+	private static GeofabrikData[] readEdges(SnapshotReader in) throws IOException {
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; ++i)
+			strings[i] = in.readString();
+		double[] value = in.readDoubles();
+		byte[] flags = in.readBytes();
+		byte[] oneway = in.readBytes();
+		int[] code = in.readInts();
+		int[] maxspeed = in.readInts();
+		int[] layer = in.readInts();
+		int[] osmId = in.readInts();
+		int[] fclass = in.readInts();
+
+		GeofabrikData[] edges = new GeofabrikData[value.length];
+		for (int i = 0; i < edges.length; ++i) {
+			edges[i] = new GeofabrikData(value[i], osmId[i] < 0 ? null : strings[osmId[i]],
+					code[i] == NULL ? null : code[i], fclass[i] < 0 ? null : strings[fclass[i]], oneway[i],
+					maxspeed[i] == NULL ? null : maxspeed[i], layer[i] == NULL ? null : layer[i],
+					(flags[i] & BRIDGE) != 0, (flags[i] & TUNNEL) != 0);
+			edges[i].valueIsDistance((flags[i] & VALUE_IS_DISTANCE) != 0);
+		}
+		return edges;
+	}
+
+	private static Envelope readEnvelope(SnapshotReader in) throws IOException {
+		double xMin = in.readDouble();
+		double xMax = in.readDouble();
+		double yMin = in.readDouble();
+		double yMax = in.readDouble();
+		return new Envelope(xMin, xMax, yMin, yMax);
+	}
+
+	/**
+	 * Writes nodes, arcs and adjacency lists of the graph. The additional arcs
+	 * are not part of the graph but referenced by it; they are stored after the
+	 * arcs of the graph.
+	 *
+	 * @return index of each arc in the snapshot
+	 */
+	private static Map<DiGraphArc<Point2D, GeofabrikData>, Integer> writeGraph(SnapshotWriter out,
+			GeometricGraph<Point2D, GeofabrikData> graph, List<DiGraphArc<Point2D, GeofabrikData>> additionalArcs,
+			Map<GeofabrikData, Integer> edgeIndex) throws IOException {
+		Envelope envelope = graph.getQuadTree().getEnvelope();
+		out.writeDouble(envelope.getxMin());
+		out.writeDouble(envelope.getxMax());
+		out.writeDouble(envelope.getyMin());
+		out.writeDouble(envelope.getyMax());
+
+		int n = graph.n();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; ++i) {
+			DiGraphNode<Point2D, GeofabrikData> node = graph.getNode(i);
+			if (node.getId() != i)
+				throw new IllegalArgumentException("Node ids do not match node positions, call updateIDs() first.");
+			x[i] = node.getNodeData().getX();
+			y[i] = node.getNodeData().getY();
+		}
+		out.writeDoubles(x);
+		out.writeDoubles(y);
+
+		Map<DiGraphArc<Point2D, GeofabrikData>, Integer> arcIndex = new IdentityHashMap<>();
+		List<DiGraphArc<Point2D, GeofabrikData>> arcs = new ArrayList<>(graph.getArcs());
+		for (DiGraphArc<Point2D, GeofabrikData> arc : graph.getArcs())
+			arcIndex.put(arc, arcIndex.size());
+		for (DiGraphArc<Point2D, GeofabrikData> arc : additionalArcs) {
+			if (!arcIndex.containsKey(arc)) {
+				arcIndex.put(arc, arcIndex.size());
+				arcs.add(arc);
+			}
+		}
+
+		int[] source = new int[arcs.size()];
+		int[] target = new int[arcs.size()];
+		int[] id = new int[arcs.size()];
+		int[] edge = new int[arcs.size()];
+		for (int i = 0; i < arcs.size(); ++i) {
+			DiGraphArc<Point2D, GeofabrikData> arc = arcs.get(i);
+			source[i] = arc.getSource().getId();
+			target[i] = arc.getTarget().getId();
+			id[i] = arc.getId();
+			edge[i] = edgeIndex.get(arc.getArcData());
+		}
+		out.writeInt(graph.m());
+		out.writeInts(source);
+		out.writeInts(target);
+		out.writeInts(id);
+		out.writeInts(edge);
+
+		// adjacency lists, as they may have been sorted
+		int[] firstOut = new int[n + 1];
+		int[] firstIn = new int[n + 1];
+		int[] outArcs = new int[graph.m()];
+		int[] inArcs = new int[graph.m()];
+		int o = 0, k = 0;
+		for (int i = 0; i < n; ++i) {
+			DiGraphNode<Point2D, GeofabrikData> node = graph.getNode(i);
+			firstOut[i] = o;
+			for (DiGraphArc<Point2D, GeofabrikData> arc : node.getOutgoingArcs())
+				outArcs[o++] = arcIndex.get(arc);
+			firstIn[i] = k;
+			for (DiGraphArc<Point2D, GeofabrikData> arc : node.getIncomingArcs())
+				inArcs[k++] = arcIndex.get(arc);
+		}
+		firstOut[n] = o;
+		firstIn[n] = k;
+		out.writeInts(firstOut);
+		out.writeInts(outArcs);
+		out.writeInts(firstIn);
+		out.writeInts(inArcs);
+		return arcIndex;
+	}
+
+	/**
+	 * Reads a graph written by
+	 * {@link #writeGraph(SnapshotWriter, GeometricGraph, List, Map)} into the
+	 * empty graph.
+	 *
+	 * @return all arcs by their index in the snapshot, including the additional
+	 *         ones
+	 */
+	private static List<DiGraphArc<Point2D, GeofabrikData>> readGraph(SnapshotReader in,
+			GeometricGraph<Point2D, GeofabrikData> graph, GeofabrikData[] edges) throws IOException {
+		double[] x = in.readDoubles();
+		double[] y = in.readDoubles();
+		for (int i = 0; i < x.length; ++i)
+			if (graph.addNode(new MappedPoint(x[i], y[i])) == null)
+				throw new IOException("Duplicate node " + i + " in network snapshot.");
+
+		int m = in.readInt();
+		int[] source = in.readInts();
+		int[] target = in.readInts();
+		int[] id = in.readInts();
+		int[] edge = in.readInts();
+		List<DiGraphArc<Point2D, GeofabrikData>> arcs = new ArrayList<>(source.length);
+		DiGraphArc<Point2D, GeofabrikData> arc;
+		for (int i = 0; i < source.length; ++i) {
+			arc = graph.addArc(graph.getNode(source[i]), graph.getNode(target[i]), edges[edge[i]]);
+			arc.setId(id[i]);
+			arcs.add(arc);
+		}
+		// the additional arcs are not part of the graph
+		graph.getArcs().subList(m, source.length).clear();
+
+		int[] firstOut = in.readInts();
+		int[] outArcs = in.readInts();
+		int[] firstIn = in.readInts();
+		int[] inArcs = in.readInts();
+		for (int i = 0; i < x.length; ++i) {
+			DiGraphNode<Point2D, GeofabrikData> node = graph.getNode(i);
+			node.getOutgoingArcs().clear();
+			for (int j = firstOut[i]; j < firstOut[i + 1]; ++j)
+				node.getOutgoingArcs().add(arcs.get(outArcs[j]));
+			node.getIncomingArcs().clear();
+			for (int j = firstIn[i]; j < firstIn[i + 1]; ++j)
+				node.getIncomingArcs().add(arcs.get(inArcs[j]));
+		}
+		return arcs;
+	}
+
+	private static void writeCrossings(SnapshotWriter out, PlanarGraph<Point2D, GeofabrikData> planarGraph,
+			Map<DiGraphArc<Point2D, GeofabrikData>, Integer> arcIndex) throws IOException {
+		Map<Point2D, List<DiGraphArc<Point2D, GeofabrikData>>> crossPoints = planarGraph.getCrossPoints();
+		out.writeInt(crossPoints == null ? -1 : crossPoints.size());
+		if (crossPoints != null) {
+			for (Map.Entry<Point2D, List<DiGraphArc<Point2D, GeofabrikData>>> crossing : crossPoints.entrySet()) {
+				out.writeDouble(crossing.getKey().getX());
+				out.writeDouble(crossing.getKey().getY());
+				out.writeInt(crossing.getValue().size());
+				for (DiGraphArc<Point2D, GeofabrikData> arc : crossing.getValue())
+					out.writeInt(arcIndex.get(arc));
+			}
+		}
+
+		Map<DiGraphArc<Point2D, GeofabrikData>, List<Point2D>> crossedLines = planarGraph.getCrossedLines();
+		out.writeInt(crossedLines == null ? -1 : crossedLines.size());
+		if (crossedLines != null) {
+			for (Map.Entry<DiGraphArc<Point2D, GeofabrikData>, List<Point2D>> line : crossedLines.entrySet()) {
+				out.writeInt(arcIndex.get(line.getKey()));
+				out.writeInt(line.getValue().size());
+				for (Point2D point : line.getValue()) {
+					out.writeDouble(point.getX());
+					out.writeDouble(point.getY());
+				}
+			}
+		}
+	}
+
+	private static void readCrossings(SnapshotReader in, PlanarGraph<Point2D, GeofabrikData> planarGraph,
+			List<DiGraphArc<Point2D, GeofabrikData>> arcs) throws IOException {
+		int k = in.readInt();
+		if (k >= 0) {
+			Map<Point2D, List<DiGraphArc<Point2D, GeofabrikData>>> crossPoints = new HashMap<>();
+			for (int i = 0; i < k; ++i) {
+				Point2D point = new Point2D.Double(in.readDouble(), in.readDouble());
+				List<DiGraphArc<Point2D, GeofabrikData>> crossed = new LinkedList<>();
+				for (int j = in.readInt(); j > 0; --j)
+					crossed.add(arcs.get(in.readInt()));
+				crossPoints.put(point, crossed);
+			}
+			planarGraph.setCrosspoints(crossPoints);
+		}
+
+		k = in.readInt();
+		if (k >= 0) {
+			Map<DiGraphArc<Point2D, GeofabrikData>, List<Point2D>> crossedLines = new HashMap<>();
+			for (int i = 0; i < k; ++i) {
+				DiGraphArc<Point2D, GeofabrikData> arc = arcs.get(in.readInt());
+				List<Point2D> points = new LinkedList<>();
+				for (int j = in.readInt(); j > 0; --j)
+					points.add(new Point2D.Double(in.readDouble(), in.readDouble()));
+				crossedLines.put(arc, points);
+			}
+			planarGraph.setCrossedLines(crossedLines);
+		}
+	}
+
+	public RoadGraph<Point2D, GeofabrikData> getRoadGraph() {
+		return roadGraph;
+	}
+
+	public PlanarGraph<Point2D, GeofabrikData> getPlanarGraph() {
+		return planarGraph;
+	}
+
+	public CSRGraph getRoutingGraph() {
+		return routingGraph;
+	}
+
+	/**
+	 * @return timetable of the connection scan, null if the public transportation
+	 *         is part of the routing graph
+	 */
+	public Timetable getTimetable() {
+		return timetable;
+	}
+
+	/**
+	 * @return true if motorways were kept when the snapshot was compiled
+	 */
+	public boolean isKeepMotorway() {
+		return keepMotorway;
+	}
+
+	/**
+	 * @return degree of road filtering for the planarization the snapshot was
+	 *         compiled with
+	 */
+	public byte getFilterRoads() {
+		return filterRoads;
+	}
+
+	/**
+	 * @return first date of the trips of the snapshot, null for the generic week
+	 */
+	public LocalDate getServiceDate() {
+		return serviceDate;
+	}
+
+	/**
+	 * @return number of dates of the trips of the snapshot
+	 */
+	public int getServiceDays() {
+		return serviceDays;
+	}
+}
@@ -0,0 +1,169 @@
+package io.snapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a snapshot file written by the {@link SnapshotWriter}. The file is
+ * memory-mapped in windows of up to 1 GiB, arrays are copied from the mapping
+ * by bulk transfers. The header and the checksum of the payload are verified
+ * when the file is opened.
+ */
+public class SnapshotReader implements Closeable {
+
+	private static final long WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int version;
+
+	// mapped part of the file, the next value is read at its position
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	/**
+	 * @param file    snapshot file
+	 * @param version expected version of the format of the payload
+	 * @throws IOException if the file cannot be read, is no snapshot, has
+	 *                     another version or is corrupt
+	 */
+	public SnapshotReader(File file, int version) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+		try {
+			if (size < SnapshotWriter.HEADER_SIZE)
+				throw new IOException(file + " is no network snapshot.");
+			map(0);
+			if (window.getInt() != SnapshotWriter.MAGIC)
+				throw new IOException(file + " is no network snapshot.");
+			this.version = window.getInt();
+			if (this.version != version)
+				throw new IOException("Network snapshot " + file + " has version " + this.version + ", expected "
+						+ version + ". Compile the network again.");
+			long length = window.getLong();
+			long checksum = window.getLong();
+			if (length != size - SnapshotWriter.HEADER_SIZE)
+				throw new IOException("Network snapshot " + file + " is truncated.");
+
+			CRC32 crc = new CRC32();
+			for (long position = SnapshotWriter.HEADER_SIZE; position < size; position += window.limit()) {
+				map(position);
+				crc.update(window);
+			}
+			if (crc.getValue() != checksum)
+				throw new IOException("Checksum of network snapshot " + file + " does not match.");
+
+			map(SnapshotWriter.HEADER_SIZE);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void map(long position) throws IOException {
+		windowStart = position;
+		window = channel.map(MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+	}
+
+	/**
+	 * Moves the window to the next value if less than <code>bytes</code> bytes
+	 * are left in it.
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (window.remaining() < bytes) {
+			map(windowStart + window.position());
+			if (window.remaining() < bytes)
+				throw new IOException("Unexpected end of network snapshot.");
+		}
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public byte readByte() throws IOException {
+		ensure(1);
+		return window.get();
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public int readInt() throws IOException {
+		ensure(4);
+		return window.getInt();
+	}
+
+	public long readLong() throws IOException {
+		ensure(8);
+		return window.getLong();
+	}
+
+	public double readDouble() throws IOException {
+		ensure(8);
+		return window.getDouble();
+	}
+
+	public String readString() throws IOException {
+		byte[] bytes = readBytes();
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public byte[] readBytes() throws IOException {
+		int n = readInt();
+		if (n < 0)
+			return null;
+		byte[] values = new byte[n];
+		int i = 0;
+		int k;
+		while (i < n) {
+			ensure(1);
+			k = Math.min(n - i, window.remaining());
+			window.get(values, i, k);
+			i += k;
+		}
+		return values;
+	}
+
+	public int[] readInts() throws IOException {
+		int[] values = new int[readInt()];
+		int i = 0;
+		int k;
+		while (i < values.length) {
+			ensure(4);
+			k = Math.min(values.length - i, window.remaining() / 4);
+			window.asIntBuffer().get(values, i, k);
+			window.position(window.position() + 4 * k);
+			i += k;
+		}
+		return values;
+	}
+
+	public double[] readDoubles() throws IOException {
+		double[] values = new double[readInt()];
+		int i = 0;
+		int k;
+		while (i < values.length) {
+			ensure(8);
+			k = Math.min(values.length - i, window.remaining() / 8);
+			window.asDoubleBuffer().get(values, i, k);
+			window.position(window.position() + 8 * k);
+			i += k;
+		}
+		return values;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+}
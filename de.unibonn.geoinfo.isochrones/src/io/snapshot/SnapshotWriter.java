@@ -0,0 +1,159 @@
+package io.snapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a binary snapshot file of primitive values and arrays. The file starts
+ * with a header of magic number, format version, length and CRC32 checksum of
+ * the payload, which is written on {@link #close()}. Arrays are stored with
+ * their length, all values in big-endian byte order, see
+ * {@link SnapshotReader}.
+ */
+public class SnapshotWriter implements Closeable {
+
+	static final int MAGIC = 0x49534F4E; // "ISON"
+	static final int HEADER_SIZE = 24;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final int version;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CRC32 crc = new CRC32();
+	private long length = 0;
+
+	/**
+	 * @param file    file to write, an existing file is overwritten
+	 * @param version version of the format of the payload
+	 * @throws IOException if the file cannot be written
+	 */
+	public SnapshotWriter(File file, int version) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.version = version;
+		channel.position(HEADER_SIZE);
+	}
+
+	public void writeByte(byte value) throws IOException {
+		ensure(1);
+		buffer.put(value);
+	}
+
+	public void writeBoolean(boolean value) throws IOException {
+		writeByte(value ? (byte) 1 : (byte) 0);
+	}
+
+	public void writeInt(int value) throws IOException {
+		ensure(4);
+		buffer.putInt(value);
+	}
+
+	public void writeLong(long value) throws IOException {
+		ensure(8);
+		buffer.putLong(value);
+	}
+
+	public void writeDouble(double value) throws IOException {
+		ensure(8);
+		buffer.putDouble(value);
+	}
+
+	/**
+	 * Writes the string as UTF-8 bytes, null is allowed.
+	 */
+	public void writeString(String value) throws IOException {
+		writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes the array with its length, null is stored as length -1.
+	 */
+	public void writeBytes(byte[] values) throws IOException {
+		if (values == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(values.length);
+		int i = 0;
+		int k;
+		while (i < values.length) {
+			ensure(1);
+			k = Math.min(values.length - i, buffer.remaining());
+			buffer.put(values, i, k);
+			i += k;
+		}
+	}
+
+	/**
+	 * Writes the array with its length.
+	 */
+	public void writeInts(int[] values) throws IOException {
+		writeInt(values.length);
+		int i = 0;
+		int k;
+		while (i < values.length) {
+			ensure(4);
+			k = Math.min(values.length - i, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, i, k);
+			buffer.position(buffer.position() + 4 * k);
+			i += k;
+		}
+	}
+
+	/**
+	 * Writes the array with its length.
+	 */
+	public void writeDoubles(double[] values) throws IOException {
+		writeInt(values.length);
+		int i = 0;
+		int k;
+		while (i < values.length) {
+			ensure(8);
+			k = Math.min(values.length - i, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(values, i, k);
+			buffer.position(buffer.position() + 8 * k);
+			i += k;
+		}
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (buffer.remaining() < bytes)
+			flush();
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		length += buffer.remaining();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the remaining payload and the header and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(version);
+			header.putLong(length);
+			header.putLong(crc.getValue());
+			header.flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		} finally {
+			channel.close();
+		}
+	}
+}
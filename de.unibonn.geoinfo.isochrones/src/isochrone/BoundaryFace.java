@@ -27,13 +27,14 @@ import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
 import isochrone.FaceIdentifier.FaceFactory;
 import main.AbstractMain;
+import main.QueryConfig;
 import util.tools.Util;
 
 public class BoundaryFace extends IsoFace {
 
-	public BoundaryFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen)
-			throws InvalidParameterException {
-		super(incidentFaceBoundary, isInner, pred, idGen);
+	public BoundaryFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen,
+			QueryConfig config) throws InvalidParameterException {
+		super(incidentFaceBoundary, isInner, pred, idGen, config);
 	}
 
 	@Override
@@ -179,12 +180,12 @@ public class BoundaryFace extends IsoFace {
 			if (del.contains(e)) {
 				continue;
 			}
-//			System.out.println("Gibt es Limit?  " + (IsoFace.polygon_limit != null));
-			if (IsoFace.polygon_limit != null) {
+//			System.out.println("Gibt es Limit?  " + (config.getPolygonLimit() != null));
+			if (config.getPolygonLimit() != null) {
 				boolean covered = false;
 				Point2D s1 = e.getSource().getNodeData();
 				Point2D s2 = e.getTarget().getNodeData();
-				for (IsoPolygon<Point2D> poly : IsoFace.polygon_limit.getPolyList()) {
+				for (IsoPolygon<Point2D> poly : config.getPolygonLimit().getPolyList()) {
 					if (poly.covers(s1, s2)) {
 						covered = true;
 						break;
@@ -206,24 +207,35 @@ public class BoundaryFace extends IsoFace {
 //			showVisualizationGraph(AbstractMain.GUI, "face " + getId() + " after cut");
 	}
 
-	public static final FaceFactory<BoundaryFace> FACTORY = new FaceFactory<BoundaryFace>() {
+	/**
+	 * @param config configuration of the query the faces are created for
+	 * @return factory creating faces of this type using the given configuration
+	 */
+	public static FaceFactory<BoundaryFace> createFactory(QueryConfig config) {
+		return new FaceFactory<BoundaryFace>() {
 
-		@Override
-		public BoundaryFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
-				IdGenerator idGen) {
-			return new BoundaryFace(incidentFaceBoundary, isInner, pred, idGen);
-		}
+			@Override
+			public BoundaryFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
+					IdGenerator idGen) {
+				return new BoundaryFace(incidentFaceBoundary, isInner, pred, idGen, config);
+			}
 
-		@Override
-		public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
-				PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
-				Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
-			return new SplitNodeFactory(0.1, coloredGraph, componentSplit);
-		}
+			@Override
+			public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
+					PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
+					Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
+				return new SplitNodeFactory(0.1, coloredGraph, componentSplit, config);
+			}
+
+			@Override
+			public QueryConfig getConfig() {
+				return config;
+			}
 
-		@Override
-		public String getName() {
-			return "Boundary";
+			@Override
+			public String getName() {
+				return "Boundary";
+			};
 		};
-	};
+	}
 }
@@ -3,14 +3,15 @@ package isochrone;
 import java.awt.geom.Point2D;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
-import DCEL.Dcel;
-import DCEL.Dcel.Face;
-import DCEL.Dcel.HalfEdge;
-import DCEL.Dcel.Vertex;
+import DCEL.PlanarDcel;
 import graph.algorithms.GraphSearch;
 import graph.algorithms.GraphSearch.BFSQueue;
 import graph.algorithms.GraphSearch.CollectingVisitor;
@@ -19,6 +20,7 @@ import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
 import graph.generic.LD.LinearDualCreator.LinearDualFactory;
+import graph.planarizer.NodeInserter;
 import graph.planarizer.PlanarGraph;
 import graph.types.Colored;
 import graph.types.ColoredNode;
@@ -26,28 +28,80 @@ import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
 import graph.types.WalkingData;
 import main.AbstractMain;
+import main.QueryConfig;
 import tools.Stopwatch;
-
+import util.tools.Tasks;
+
+/**
+ * Identifies the faces of the colored graph containing the boundary of the
+ * reachable region. The faces are taken from the {@link PlanarDcel} of the
+ * uncolored planar graph, which is shared by all queries. The arcs split by the
+ * {@link NodeInserter} are overlaid on its half-edges: a half-edge is walked as
+ * the chain of arcs replacing it, whose nodes are addressed by their ids in the
+ * colored graph. Half-edges of the walk are encoded as <code>long</code>
+ * holding the id of the half-edge in the upper and the index of the arc in its
+ * chain in the lower bits.
+ */
 public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 
-	private PlanarGraph<ColoredNode, E> planarGraph;
-	private Dcel<ColoredNode, E, F> dcel;
-	private List<List<Vertex<ColoredNode, E, F>>> seperatedSplitVertices;
+	private static final long NO_EDGE = -1;
+
+	private final PlanarDcel dcel;
+	private final PlanarGraph<ColoredNode, E> planarGraph;
+
+	// arcs of the colored graph replacing the split half-edges, null if not split
+	private final int[][] splitArcs;
+	// for the nodes inserted on half-edges, indexed by their id minus the number
+	// of vertices of the DCEL: half-edge and index of the arc starting at the node
+	private final int[] splitEdge;
+	private final int[] splitIndex;
+
+	private int[] color;
+	private List<List<Integer>> seperatedSplitVertices;
 
 	private ArrayList<ColoredNode> savedColor;
 
-	public FaceIdentifier(PlanarGraph<ColoredNode, E> planarGraph, Stopwatch sw) {
+	/**
+	 * @param dcel     DCEL of the planar graph the colored graph has been created
+	 *                 from
+	 * @param inserter node inserter which created the colored graph
+	 * @param sw       stop watch to time the algorithm
+	 */
+	public FaceIdentifier(PlanarDcel dcel, NodeInserter<?, E> inserter, Stopwatch sw) {
 		long dcelTime = System.currentTimeMillis();
 		if (AbstractMain.VERBOSE)
-			System.out.println("Creating DCEL...");
-		this.dcel = new Dcel<>(planarGraph, planarGraph.getOuterArc());
+			System.out.println("Overlaying split arcs on DCEL...");
+		this.dcel = dcel;
+		this.planarGraph = inserter.getResultGraph();
+		this.splitArcs = inserter.getSplitArcs();
+
+		int n = dcel.numVertices();
+		splitEdge = new int[planarGraph.n() - n];
+		splitIndex = new int[splitEdge.length];
+		Arrays.fill(splitEdge, -1);
+		for (int h = 0; h < splitArcs.length; ++h) {
+			if (splitArcs[h] == null)
+				continue;
+			int source = dcel.origin(h);
+			for (int k = 0; k < splitArcs[h].length; ++k) {
+				DiGraphArc<ColoredNode, E> arc = planarGraph.getArc(splitArcs[h][k]);
+				if (arc.getSource().getId() != source)
+					throw new IllegalArgumentException("Arcs replacing half-edge " + h + " do not form a chain.");
+				if (k > 0 && source >= n) {
+					splitEdge[source - n] = h;
+					splitIndex[source - n] = k;
+				}
+				source = arc.getTarget().getId();
+			}
+			if (source != dcel.target(h))
+				throw new IllegalArgumentException("Arcs replacing half-edge " + h + " do not form a chain.");
+		}
 
 		dcelTime = System.currentTimeMillis() - dcelTime;
 		sw.add("dcel", dcelTime);
 		if (AbstractMain.VERBOSE)
-			System.out.println("DCEL created. (" + dcelTime / 1000.0 + "s)");
+			System.out.println("Split arcs overlaid. (" + dcelTime / 1000.0 + "s)");
 
-		this.planarGraph = planarGraph;
 		this.initialize(sw);
 	}
 
@@ -58,6 +112,10 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 		if (AbstractMain.VERBOSE)
 			System.out.println("Seperating splitnodes...");
 
+		color = new int[planarGraph.n()];
+		for (int i = 0; i < color.length; ++i)
+			color[i] = planarGraph.getNode(i).getNodeData().getColor();
+
 		ArrayList<ArrayList<Integer>> components = seperateGraphColors(planarGraph);
 
 		seperatedSplitVertices = seperatedSplitVertices(splitNodes, components);
@@ -83,148 +141,301 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 			return null;
 		}
 
+		// the components are traced independently, the faces of each component get
+		// the ids they would get if all components were traced one after another
+		// the tasks of all concurrent queries share one pool
+		ExecutorService executor = factory.getConfig().useParallelProcessing() ? Tasks.sharedPool(AbstractMain.THREADS)
+				: null;
+		List<Callable<List<FaceStep>>> traceTasks = new ArrayList<>(seperatedSplitVertices.size());
+		for (List<Integer> splitVertices : seperatedSplitVertices)
+			traceTasks.add(() -> traceComponent(splitVertices));
+		List<List<FaceStep>> steps = Tasks.invokeAllUnchecked(traceTasks, executor);
+
+		List<Callable<List<IsoFace>>> faceTasks = new ArrayList<>(steps.size());
+		for (List<FaceStep> componentSteps : steps) {
+			if (componentSteps == null)
+				continue;
+			IdGenerator componentIds = idGen.reserveFaceIds(componentSteps.size());
+			faceTasks.add(() -> createFaces(componentSteps, factory, componentIds, isInner));
+		}
+
 		int count = 0;
 		List<List<IsoFace>> seperatedFaces = new LinkedList<>();
-		List<IsoFace> facesRedGreen = null;
-//		Set<Face<ColoredNode, E, F>> incidentFaces;
+		for (List<IsoFace> facesRedGreen : Tasks.invokeAllUnchecked(faceTasks, executor)) {
+			if (!facesRedGreen.isEmpty()) {
+				seperatedFaces.add(facesRedGreen);
+				count += facesRedGreen.size();
+			} else
+				System.err.println("No face found. Is that correct?");
+		}
 
-		for (List<Vertex<ColoredNode, E, F>> splitVertices : seperatedSplitVertices) {
-			if (splitVertices.isEmpty()) {
-				System.err.println("Empty split vertices. Should not happen!");
-				continue;
-			}
+		identifyTime = System.currentTimeMillis() - identifyTime;
+		sw.add("faceIdentification", identifyTime);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Faces identified. " + count + " faces found. (" + identifyTime / 1000.0 + "s)");
+
+		return seperatedFaces;
+	}
 
-//			incidentFaces = new HashSet<>();
+	/**
+	 * Face of the walk around a reachable component, entered and left by the walk
+	 * at the given vertices.
+	 */
+	private static class FaceStep {
+		final int face;
+		final ColoredNode origin; // origin of the edge the face is entered by
+		final ColoredNode input;
+		final ColoredNode inputNext;
+		ColoredNode output = null; // null if the walk ends in this face
+		ColoredNode outputNext = null;
+
+		FaceStep(int face, ColoredNode origin, ColoredNode input, ColoredNode inputNext) {
+			this.face = face;
+			this.origin = origin;
+			this.input = input;
+			this.inputNext = inputNext;
+		}
+	}
 
-			IsoFace predecessor = null;
-			IsoFace activeFace = null;
-			IsoFace firstFace = null;
-			Vertex<ColoredNode, E, F> nextVertex = null;
-			HalfEdge<ColoredNode, E, F> activeEdge = null;
+	/**
+	 * Walks around the reachable component of the split vertices. Only reads the
+	 * DCEL and the colors, so components can be traced concurrently.
+	 * 
+	 * @return faces of the walk in their order, null if there are no split
+	 *         vertices
+	 */
+	private List<FaceStep> traceComponent(List<Integer> splitVertices) {
+		if (splitVertices.isEmpty()) {
+			System.err.println("Empty split vertices. Should not happen!");
+			return null;
+		}
 
-			facesRedGreen = new ArrayList<>();
+		List<FaceStep> steps = new ArrayList<>();
+		FaceStep activeStep = null;
+		int nextVertex = -1;
+		long activeEdge = NO_EDGE;
+
+		int leftSplit = splitVertices.get(0);
+		for (int sn : splitVertices) {
+			if (degree(leftSplit) > 2 && degree(sn) == 2)
+				leftSplit = sn;
+			else if (vertexData(leftSplit).getX() > vertexData(sn).getX())
+				leftSplit = sn;
+		}
 
-			Vertex<ColoredNode, E, F> leftSplit = splitVertices.get(0);
-			for (Vertex<ColoredNode, E, F> sn : splitVertices) {
-				if (leftSplit.getAdjacentVertices().size() > 2 && sn.getAdjacentVertices().size() == 2)
-					leftSplit = sn;
-				else if (leftSplit.getVertexData().getX() > sn.getVertexData().getX())
-					leftSplit = sn;
-			}
+		int activeVertex = leftSplit;
 
-//			if (leftSplit.getAdjacentVertices().size() != 2) {
-//				System.err.println("No valid split point " + leftSplit.getVertexData());
-//			}
-
-			Vertex<ColoredNode, E, F> activeVertex = leftSplit;
-
-			// search edge to reachable node and start first face
-			for (HalfEdge<ColoredNode, E, F> e : activeVertex.getOutgoingEdges()) {
-				nextVertex = e.getTarget();
-				if (nextVertex.getVertexData().getColor() == Colored.REACHABLE) {
-					activeEdge = e;
-
-					while (activeEdge.getOrigin().getVertexData().getColor() == Colored.UNREACHABLE
-							&& activeEdge.getNext().getTarget().getVertexData().getColor() == Colored.UNREACHABLE) {
-//						System.out.println("Skipped face.");
-						activeEdge = activeEdge.getNext().getTwin();
-					}
-
-					try {
-						activeFace = factory.createFace(getBoundary(activeEdge.getIncidentFace()), isInner, predecessor,
-								idGen);
-						activeFace.setInput(activeVertex.getVertexData(), nextVertex.getVertexData());
-//						incidentFaces.add(activeEdge.getIncidentFace());
-
-						// update pointers to next and previous
-						predecessor = activeFace;
-						firstFace = activeFace;
-					} catch (InvalidParameterException ex) {
-						System.err.println("Zone touches outer face! " + activeEdge.getOrigin().getVertexData());
-					}
+		// search edge to reachable node and start first face
+		for (long e : outgoingEdges(activeVertex)) {
+			nextVertex = target(e);
+			if (color[nextVertex] == Colored.REACHABLE) {
+				activeEdge = e;
 
-					break;
+				while (color[origin(activeEdge)] == Colored.UNREACHABLE
+						&& color[target(next(activeEdge))] == Colored.UNREACHABLE) {
+					activeEdge = twin(next(activeEdge));
 				}
+
+				activeStep = new FaceStep(face(activeEdge), vertexData(origin(activeEdge)), vertexData(activeVertex),
+						vertexData(nextVertex));
+				steps.add(activeStep);
+				break;
 			}
+		}
+
+		long startEdge = activeEdge;
+		if (activeEdge == NO_EDGE) {
+			throw new RuntimeException("Active edge is null");
+		} else {
+			activeEdge = next(activeEdge);
+		}
+		while (activeEdge != startEdge) {
+			activeVertex = origin(activeEdge);
+			nextVertex = target(activeEdge);
+			if (color[nextVertex] == Colored.UNREACHABLE) {
+				// same in- and output
+				activeStep.output = vertexData(activeVertex);
+				activeStep.outputNext = vertexData(nextVertex);
+
+				// This next-twin-next-step is needed in case that a crossing point is split
+				// node. Otherwise a twin-step would be enough.
+				activeEdge = twin(activeEdge);
+
+				while (color[origin(activeEdge)] == Colored.UNREACHABLE
+						&& color[target(next(activeEdge))] == Colored.UNREACHABLE) {
+					activeEdge = twin(next(activeEdge));
+				}
 
-			HalfEdge<ColoredNode, E, F> startEdge = activeEdge;
-			if (activeEdge == null) {
-				throw new RuntimeException("Active edge is null");
+				activeStep = new FaceStep(face(activeEdge), vertexData(origin(activeEdge)), vertexData(activeVertex),
+						vertexData(target(next(activeEdge))));
+				steps.add(activeStep);
 			} else {
-				activeEdge = activeEdge.getNext();
+				activeEdge = next(activeEdge);
 			}
-			while (activeEdge != startEdge) {
-				activeVertex = activeEdge.getOrigin();
-				nextVertex = activeEdge.getTarget();
-				if (nextVertex.getVertexData().getColor() == Colored.UNREACHABLE) {
-					// same in- and output
-					if (activeFace != null) {
-						activeFace.setOutput(activeVertex.getVertexData(), nextVertex.getVertexData());
-						facesRedGreen.add(activeFace);
-					} else {
-						System.err.println("Active face is null!! Should not happen.");
-					}
-
-					// This next-twin-next-step is needed in case that a crossing point is split
-					// node. Otherwise a twin-step would be enough.
-					activeEdge = activeEdge.getTwin();
-
-					while (activeEdge.getOrigin().getVertexData().getColor() == Colored.UNREACHABLE
-							&& activeEdge.getNext().getTarget().getVertexData().getColor() == Colored.UNREACHABLE) {
-//						System.out.println("Skipped face.");
-						activeEdge = activeEdge.getNext().getTwin();
-					}
-
-					try {
-						activeFace = factory.createFace(getBoundary(activeEdge.getIncidentFace()), isInner, predecessor,
-								idGen);
-						activeFace.setInput(activeVertex.getVertexData(),
-								activeEdge.getNext().getTarget().getVertexData());
-//						incidentFaces.add(activeEdge.getIncidentFace());
-
-						// update pointers to next and previous
-						if (predecessor != null)
-							predecessor.setNext(activeFace);
-						predecessor = activeFace;
-						if (firstFace == null)
-							firstFace = activeFace;
-					} catch (InvalidParameterException ex) {
-						System.err.println("Zone touches outer face! " + activeEdge.getOrigin().getVertexData());
-						activeFace = null;
-					}
+		}
+		return steps;
+	}
 
+	/**
+	 * Creates the faces of a traced component and links them to a ring.
+	 * 
+	 * @param idGen generator for the ids of the faces, creates one face per step
+	 * @return faces the walk leaves to an unreachable vertex
+	 */
+	private List<IsoFace> createFaces(List<FaceStep> steps, FaceFactory<?> factory, IdGenerator idGen,
+			boolean isInner) {
+		List<IsoFace> facesRedGreen = new ArrayList<>();
+		IsoFace predecessor = null;
+		IsoFace activeFace = null;
+		IsoFace firstFace = null;
+
+		for (FaceStep step : steps) {
+			try {
+				activeFace = factory.createFace(getBoundary(step.face), isInner, predecessor, idGen);
+				activeFace.setInput(step.input, step.inputNext);
+
+				// update pointers to next and previous
+				if (predecessor != null)
+					predecessor.setNext(activeFace);
+				predecessor = activeFace;
+				if (firstFace == null)
+					firstFace = activeFace;
+			} catch (InvalidParameterException ex) {
+				System.err.println("Zone touches outer face! " + step.origin);
+				activeFace = null;
+			}
+
+			if (step.output != null) {
+				if (activeFace != null) {
+					activeFace.setOutput(step.output, step.outputNext);
+					facesRedGreen.add(activeFace);
 				} else {
-					activeEdge = activeEdge.getNext();
+					System.err.println("Active face is null!! Should not happen.");
 				}
 			}
+		}
 
-			// update pointers
-			firstFace.setPred(activeFace);
-			activeFace.setNext(firstFace);
+		// update pointers
+		firstFace.setPred(activeFace);
+		activeFace.setNext(firstFace);
 
-			if (!facesRedGreen.isEmpty())
+		return facesRedGreen;
+	}
 
-			{
-				seperatedFaces.add(facesRedGreen);
-				count += facesRedGreen.size();
-			} else
-				System.err.println("No face found. Is that correct?");
-		}
+	/**
+	 * @return corner points of the face, starting at the one which the face would
+	 *         have as first corner in a DCEL of the colored graph; empty for the
+	 *         outer face
+	 */
+	private List<ColoredNode> getBoundary(int face) {
+		List<ColoredNode> boundary = new LinkedList<>();
+		if (face == PlanarDcel.OUTER_FACE)
+			return boundary;
+
+		// arcs of the planar graph which are not split keep their order and precede
+		// all inserted arcs
+		long first = edge(dcel.faceEdge(face), 0);
+		long start = first;
+		long e = first;
+		do {
+			if (rank(e) < rank(start))
+				start = e;
+			e = next(e);
+		} while (e != first);
+
+		e = start;
+		do {
+			boundary.add(vertexData(origin(e)));
+			e = next(e);
+		} while (e != start);
+		return boundary;
+	}
 
-		identifyTime = System.currentTimeMillis() - identifyTime;
-		sw.add("faceIdentification", identifyTime);
-		if (AbstractMain.VERBOSE)
-			System.out.println("Faces identified. " + count + " faces found. (" + identifyTime / 1000.0 + "s)");
+	private long rank(long edge) {
+		int h = halfEdge(edge);
+		return splitArcs[h] == null ? h : (long) dcel.numHalfEdges() + splitArcs[h][index(edge)];
+	}
 
-		return seperatedFaces;
+	private static long edge(int halfEdge, int index) {
+		return ((long) halfEdge << 32) | index;
 	}
 
-	private List<ColoredNode> getBoundary(Face<ColoredNode, E, F> face) {
-		List<ColoredNode> boundary = new LinkedList<>();
-		for (Vertex<ColoredNode, E, F> node : face.getOuterVertices()) {
-			boundary.add(node.getVertexData());
+	private static int halfEdge(long edge) {
+		return (int) (edge >>> 32);
+	}
+
+	private static int index(long edge) {
+		return (int) edge;
+	}
+
+	private int chainLength(int halfEdge) {
+		return splitArcs[halfEdge] == null ? 1 : splitArcs[halfEdge].length;
+	}
+
+	private int origin(long edge) {
+		int h = halfEdge(edge);
+		int k = index(edge);
+		return k == 0 ? dcel.origin(h) : planarGraph.getArc(splitArcs[h][k]).getSource().getId();
+	}
+
+	private int target(long edge) {
+		int h = halfEdge(edge);
+		int k = index(edge);
+		return k == chainLength(h) - 1 ? dcel.target(h) : planarGraph.getArc(splitArcs[h][k]).getTarget().getId();
+	}
+
+	private long next(long edge) {
+		int h = halfEdge(edge);
+		int k = index(edge);
+		return k < chainLength(h) - 1 ? edge(h, k + 1) : edge(dcel.next(h), 0);
+	}
+
+	private long twin(long edge) {
+		int h = halfEdge(edge);
+		int twin = dcel.twin(h);
+		return edge(twin, chainLength(twin) - 1 - index(edge));
+	}
+
+	private int face(long edge) {
+		return dcel.face(halfEdge(edge));
+	}
+
+	private ColoredNode vertexData(int vertex) {
+		return planarGraph.getNode(vertex).getNodeData();
+	}
+
+	private int degree(int vertex) {
+		return vertex < dcel.numVertices() ? dcel.degree(vertex) : 2;
+	}
+
+	/**
+	 * @return outgoing edges of the vertex in the order of the colored graph
+	 */
+	private List<Long> outgoingEdges(int vertex) {
+		List<Long> edges = new ArrayList<>(degree(vertex));
+		if (vertex < dcel.numVertices()) {
+			for (int i = 0, e = dcel.outgoing(vertex); i < dcel.degree(vertex); ++i, e = dcel.nextOutgoing(e))
+				edges.add(edge(e, 0));
+		} else {
+			int h = splitEdge[vertex - dcel.numVertices()];
+			int k = splitIndex[vertex - dcel.numVertices()];
+			edges.add(edge(h, k));
+			edges.add(twin(edge(h, k - 1)));
 		}
-		return boundary;
+
+		// start with the first outgoing arc of the node as a DCEL of the colored
+		// graph would do
+		List<DiGraphArc<ColoredNode, E>> arcs = planarGraph.getNode(vertex).getOutgoingArcs();
+		if (!arcs.isEmpty()) {
+			int first = arcs.get(0).getTarget().getId();
+			for (int i = 0; i < edges.size(); ++i) {
+				if (target(edges.get(i)) == first) {
+					Collections.rotate(edges, -i);
+					break;
+				}
+			}
+		}
+		return edges;
 	}
 
 	public void recolor(Set<Integer> reachableNodeIDs, Stopwatch sw) {
@@ -237,10 +448,8 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 
 		for (int i = 0; i < planarGraph.n(); ++i) {
 			if (reachableNodeIDs.contains(i)) {
-				dcel.getVertex(i).getVertexData().setReachability(Colored.REACHABLE, 0);
 				planarGraph.getNode(i).getNodeData().setReachability(Colored.REACHABLE, 0);
 			} else {
-				dcel.getVertex(i).getVertexData().setReachability(Colored.UNREACHABLE, -1);
 				planarGraph.getNode(i).getNodeData().setReachability(Colored.UNREACHABLE, -1);
 			}
 		}
@@ -269,7 +478,6 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 			System.out.println("Restoring color...");
 
 		for (int i = 0; i < planarGraph.n(); ++i) {
-			dcel.getVertex(i).getVertexData().setReachability(savedColor.get(i));
 			planarGraph.getNode(i).getNodeData().setReachability(savedColor.get(i));
 		}
 
@@ -283,27 +491,34 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 		this.initialize(sw);
 	}
 
-	private List<List<Vertex<ColoredNode, E, F>>> seperatedSplitVertices(List<DiGraphNode<ColoredNode, E>> splitNodes,
+	private List<List<Integer>> seperatedSplitVertices(List<DiGraphNode<ColoredNode, E>> splitNodes,
 			ArrayList<ArrayList<Integer>> seperateGraphColors) {
-		List<List<Vertex<ColoredNode, E, F>>> seperatedSplitNodes = new ArrayList<>();
+		// index of the component of each node, -1 if not in a component with more
+		// than one point (no (proper) visualization possible anyways)
+		int[] componentId = new int[planarGraph.n()];
+		Arrays.fill(componentId, -1);
 		for (int i = 0; i < seperateGraphColors.size(); ++i) {
-
-			// if only one point is in this separated component, skip it (no (proper)
-			// visualization possible anyways)
-			if (seperateGraphColors.get(i).size() == 1) {
+			if (seperateGraphColors.get(i).size() == 1)
 				continue;
-			}
+			for (int id : seperateGraphColors.get(i))
+				componentId[id] = i;
+		}
 
-			List<Vertex<ColoredNode, E, F>> component = new LinkedList<>();
-			for (DiGraphNode<ColoredNode, E> splitnode : splitNodes) {
-				if (seperateGraphColors.get(i).contains(splitnode.getId()))
-					component.add(dcel.getVertex(splitnode.getId()));
-			}
+		List<List<Integer>> components = new ArrayList<>(Collections.nCopies(seperateGraphColors.size(), null));
+		for (DiGraphNode<ColoredNode, E> splitnode : splitNodes) {
+			int c = componentId[splitnode.getId()];
+			if (c < 0)
+				continue;
+			if (components.get(c) == null)
+				components.set(c, new ArrayList<>());
+			components.get(c).add(splitnode.getId());
+		}
 
-			if (!component.isEmpty())
+		List<List<Integer>> seperatedSplitNodes = new ArrayList<>();
+		for (List<Integer> component : components) {
+			if (component != null)
 				seperatedSplitNodes.add(component);
 		}
-
 		return seperatedSplitNodes;
 	}
 
@@ -381,6 +596,11 @@ public class FaceIdentifier<F extends IsoFace, E extends WalkingData> {
 				PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
 				Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit);
 
+		/**
+		 * @return configuration of the query the faces are created for
+		 */
+		QueryConfig getConfig();
+
 		String getName();
 	}
 }
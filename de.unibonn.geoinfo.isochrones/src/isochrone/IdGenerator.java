@@ -14,6 +14,21 @@ public class IdGenerator {
 		return nextFaceId++;
 	}
 
+	/**
+	 * Reserves a block of consecutive face ids, e.g. for faces created on another
+	 * thread which should get the same ids as if created one after another.
+	 * 
+	 * @param count number of face ids to reserve
+	 * @return generator handing out the reserved face ids, only to be used for
+	 *         face ids
+	 */
+	public synchronized IdGenerator reserveFaceIds(int count) {
+		IdGenerator block = new IdGenerator();
+		block.nextFaceId = nextFaceId;
+		nextFaceId += count;
+		return block;
+	}
+
 	public synchronized int nextTimezoneId() {
 		return nextTimezoneId++;
 	}
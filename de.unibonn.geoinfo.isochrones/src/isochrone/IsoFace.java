@@ -20,6 +20,7 @@ import graph.planarizer.PlanarGraph;
 import graph.routing.Dijkstra;
 import graph.types.ColoredNode;
 import graph.types.VisualizationEdge;
+import main.QueryConfig;
 import util.geometry.Envelope;
 import viewer.IsochronePanel;
 import viewer.ResultFrame;
@@ -27,7 +28,7 @@ import viewer.ResultFrame;
 public abstract class IsoFace {
 
 	protected Polygon facePoly = null;
-	protected static Timezone<Point2D> polygon_limit = null;
+	protected final QueryConfig config;
 
 	private int id;
 
@@ -49,9 +50,10 @@ public abstract class IsoFace {
 	IsoFace pred;
 	IsoFace next;
 
-	public IsoFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen)
-			throws InvalidParameterException {
+	public IsoFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen,
+			QueryConfig config) throws InvalidParameterException {
 		this.id = idGen.nextFaceId();
+		this.config = config;
 		this.setInner(isInner);
 		this.boundary = incidentFaceBoundary;
 		this.calculateBoundingBox();
@@ -133,8 +135,9 @@ public abstract class IsoFace {
 
 	private Envelope calculateBoundingBox() {
 		boundingBox = new Envelope();
+		Timezone<Point2D> limit = config.getPolygonLimit();
 		for (ColoredNode boundaryVertex : boundary) {
-			if (polygon_limit == null || polygon_limit.covers(boundaryVertex))
+			if (limit == null || limit.covers(boundaryVertex))
 				boundingBox.expandToInclude(boundaryVertex.x, boundaryVertex.y);
 		}
 		return boundingBox;
@@ -236,10 +239,6 @@ public abstract class IsoFace {
 		return visualizationGraph;
 	}
 
-	public static void setPolygonLimit(Timezone<Point2D> limit) {
-		IsoFace.polygon_limit = limit;
-	}
-
 	public void addMessage(String message) {
 		if (debugMessage == null || debugMessage.isBlank())
 			debugMessage = "[face " + id + ":";
@@ -3,6 +3,7 @@ package isochrone;
 import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -12,7 +13,6 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import gisviewer.LineMapObject;
@@ -34,7 +34,9 @@ import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
 import isochrone.FaceIdentifier.FaceFactory;
 import main.AbstractMain;
+import main.QueryConfig;
 import tools.Stopwatch;
+import util.tools.Tasks;
 import viewer.IsochronePanel;
 import viewer.ResultFrame;
 
@@ -47,9 +49,11 @@ public class IsoMap {
 	private List<Set<DiGraphNode<Point2D, VisualizationEdge>>> componentSplits;
 
 	private IdGenerator idGenerator;
+	private final QueryConfig config;
 
-	public IsoMap(List<List<IsoFace>> seperatedFaces, Stopwatch sw, IdGenerator idGen) {
+	public IsoMap(List<List<IsoFace>> seperatedFaces, Stopwatch sw, IdGenerator idGen, QueryConfig config) {
 		this.idGenerator = idGen;
+		this.config = config;
 
 		long faceProcessingTime = System.currentTimeMillis();
 		if (AbstractMain.VERBOSE)
@@ -59,12 +63,12 @@ public class IsoMap {
 			return;
 
 		numComponents = seperatedFaces.size();
-		componentGraphs = new ArrayList<>(numComponents);
-		componentST = new ArrayList<>(numComponents);
-		componentMessage = new ArrayList<>(numComponents);
-		componentSplits = new ArrayList<>(numComponents);
+		componentGraphs = new ArrayList<>(Collections.nCopies(numComponents, null));
+		componentST = new ArrayList<>(Collections.nCopies(numComponents, null));
+		componentMessage = new ArrayList<>(Collections.nCopies(numComponents, null));
+		componentSplits = new ArrayList<>(Collections.nCopies(numComponents, null));
 
-		if (AbstractMain.USE_PARALLEL_PROCESSING) {
+		if (config.useParallelProcessing()) {
 			List<Callable<String>> callables = new LinkedList<>();
 			for (List<IsoFace> faceList : seperatedFaces) {
 				for (IsoFace face : faceList) {
@@ -78,9 +82,8 @@ public class IsoMap {
 				}
 			}
 
-			ExecutorService executor = Executors.newWorkStealingPool();
 			try {
-				List<Future<String>> futures = executor.invokeAll(callables);
+				List<Future<String>> futures = executor().invokeAll(callables);
 				for (Future<String> future : futures) {
 					future.get();
 				}
@@ -89,7 +92,6 @@ public class IsoMap {
 			} catch (ExecutionException e) {
 				e.printStackTrace();
 			}
-			executor.shutdown();
 
 			faceProcessingTime = System.currentTimeMillis() - faceProcessingTime;
 			sw.add("faceProcessing", faceProcessingTime);
@@ -99,15 +101,16 @@ public class IsoMap {
 			long combineTime = System.currentTimeMillis();
 			if (AbstractMain.VERBOSE)
 				System.out.println("Combining face graphs...");
-			List<DiGraphNode<Point2D, VisualizationEdge>> st;
-			Set<DiGraphNode<Point2D, VisualizationEdge>> splits;
-			for (List<IsoFace> faceList : seperatedFaces) {
-				st = new LinkedList<>();
-				splits = new HashSet<>();
-				componentGraphs.add(combineFacesOrdered(faceList, st, splits));
-				componentST.add(st);
-				componentSplits.add(splits);
+			List<Callable<Void>> combineTasks = new ArrayList<>(numComponents);
+			for (int i = 0; i < numComponents; ++i) {
+				List<IsoFace> faceList = seperatedFaces.get(i);
+				int component = i;
+				combineTasks.add(() -> {
+					combineFacesOrdered(faceList, component);
+					return null;
+				});
 			}
+			Tasks.invokeAllUnchecked(combineTasks, executor());
 
 			combineTime = System.currentTimeMillis() - combineTime;
 			sw.add("graphCombine", combineTime);
@@ -115,9 +118,8 @@ public class IsoMap {
 				System.out.println("Face graphs combined. (" + combineTime / 1000.0 + "s)");
 
 		} else {
-			List<DiGraphNode<Point2D, VisualizationEdge>> st;
-			Set<DiGraphNode<Point2D, VisualizationEdge>> splits;
-			for (List<IsoFace> faceList : seperatedFaces) {
+			for (int i = 0; i < numComponents; ++i) {
+				List<IsoFace> faceList = seperatedFaces.get(i);
 				for (IsoFace face : faceList) {
 					face.createVisualizationGraph();
 				}
@@ -130,11 +132,7 @@ public class IsoMap {
 				long combineTime = System.currentTimeMillis();
 				if (AbstractMain.VERBOSE)
 					System.out.println("Combining face graphs...");
-				st = new LinkedList<>();
-				splits = new HashSet<>();
-				componentGraphs.add(this.combineFacesOrdered(faceList, st, splits));
-				componentST.add(st);
-				componentSplits.add(splits);
+				this.combineFacesOrdered(faceList, i);
 
 				combineTime = System.currentTimeMillis() - combineTime;
 				sw.add("graphCombine", combineTime);
@@ -144,43 +142,32 @@ public class IsoMap {
 		}
 	}
 
+	/**
+	 * Routes around each component. The components are routed in parallel if
+	 * enabled by the configuration, their rings are added to the time zone in the
+	 * order of the components.
+	 */
 	public Timezone<Point2D> route(PlanarGraph<ColoredNode, GeofabrikData> coloredGraph, FaceFactory<?> faceFactory,
 			Stopwatch sw) {
 		long routingTime = System.currentTimeMillis();
 		if (AbstractMain.VERBOSE)
 			System.out.println("Routing...");
-		DiGraph<Point2D, VisualizationEdge> componentGraph;
-		Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit;
-		DiGraphNode<Point2D, VisualizationEdge> originalSource;
-		DiGraphNode<Point2D, VisualizationEdge> originalTarget;
 
-		LinearDualCreator<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldc;
-		DiGraph<Point2D, VisualizationEdge> graphR;
+		List<Callable<List<Point2D>>> routingTasks = new ArrayList<>(numComponents);
+		for (int i = 0; i < numComponents; ++i) {
+			int component = i;
+			routingTasks.add(() -> routeComponent(component, coloredGraph, faceFactory));
+		}
+		List<List<Point2D>> rings = Tasks.invokeAllUnchecked(routingTasks, executor());
 
 		Timezone<Point2D> timezone = new Timezone<>(idGenerator);
-		List<Point2D> ring;
-		String message;
 		for (int i = 0; i < numComponents; ++i) {
-			componentGraph = componentGraphs.get(i);
-			componentSplit = componentSplits.get(i);
-			originalSource = componentST.get(i).get(0);
-			originalTarget = componentST.get(i).get(1);
-			message = componentMessage.get(i);
-
-			LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldFactory = faceFactory
-					.getLDFactory(coloredGraph, componentSplit);
-
-			ldc = new LinearDualCreator<>(componentGraph, ldFactory);
-			graphR = ldc.getLinearDualGraph();
-
-//			if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG)
-//				showRoutingGraph(AbstractMain.GUI, graphR, "LD");
-
-			DiGraphNode<Point2D, VisualizationEdge> source = graphR.addNode(originalSource.getNodeData());
-			DiGraphNode<Point2D, VisualizationEdge> target = graphR.addNode(originalTarget.getNodeData());
-
-			ring = this.createRing(graphR, originalSource, originalTarget, source, target, ldc.getIdentifier(),
-					coloredGraph);
+			List<Point2D> ring = rings.get(i);
+			if (ring.size() < 3) {
+				String message = componentMessage.get(i);
+				componentMessage.set(i,
+						message == null || message.isEmpty() ? "Zone missing?" : message + " Zone missing?");
+			}
 
 			if (ring.size() == 0)
 				continue;
@@ -188,7 +175,7 @@ public class IsoMap {
 			if (ring.get(0).distance(ring.get(ring.size() - 1)) > 1e-10)
 				ring.add(ring.get(0));
 
-			timezone.addPolygon(ring, message);
+			timezone.addPolygon(ring, componentMessage.get(i));
 		}
 
 		routingTime = System.currentTimeMillis() - routingTime;
@@ -198,6 +185,45 @@ public class IsoMap {
 		return timezone;
 	}
 
+	/**
+	 * Routes around the component on the linear dual of its combined graph. Only
+	 * reads the data of the component and the colored graph, so components can be
+	 * routed concurrently.
+	 * 
+	 * @return ring around the component
+	 */
+	private List<Point2D> routeComponent(int component, PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
+			FaceFactory<?> faceFactory) {
+		DiGraph<Point2D, VisualizationEdge> componentGraph = componentGraphs.get(component);
+		Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit = componentSplits.get(component);
+		DiGraphNode<Point2D, VisualizationEdge> originalSource = componentST.get(component).get(0);
+		DiGraphNode<Point2D, VisualizationEdge> originalTarget = componentST.get(component).get(1);
+
+		LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldFactory = faceFactory
+				.getLDFactory(coloredGraph, componentSplit);
+
+		LinearDualCreator<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> ldc = new LinearDualCreator<>(
+				componentGraph, ldFactory);
+		DiGraph<Point2D, VisualizationEdge> graphR = ldc.getLinearDualGraph();
+
+//		if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG)
+//			showRoutingGraph(AbstractMain.GUI, graphR, "LD");
+
+		DiGraphNode<Point2D, VisualizationEdge> source = graphR.addNode(originalSource.getNodeData());
+		DiGraphNode<Point2D, VisualizationEdge> target = graphR.addNode(originalTarget.getNodeData());
+
+		return this.createRing(graphR, originalSource, originalTarget, source, target, ldc.getIdentifier(),
+				coloredGraph);
+	}
+
+	/**
+	 * @return shared pool of all queries if parallel processing is enabled by the
+	 *         configuration, null to run the tasks one after another
+	 */
+	private ExecutorService executor() {
+		return config.useParallelProcessing() ? Tasks.sharedPool(AbstractMain.THREADS) : null;
+	}
+
 	// Creating a circular path around the given graph and given start/end node
 	private List<Point2D> createRing(DiGraph<Point2D, VisualizationEdge> graph,
 			DiGraphNode<Point2D, VisualizationEdge> originalSource,
@@ -211,7 +237,7 @@ public class IsoMap {
 
 		// Run the Dijkstra with the given nodes
 		LDVisitor visitor = new LDVisitor(target);
-		LDIterator iterator = new LDIterator(originalSource, originalTarget, source, target, ldi);
+		LDIterator iterator = new LDIterator(originalSource, originalTarget, source, target, ldi, config);
 		iterator.setColoredGraph(coloredGraph);
 		d.run(source, visitor, iterator);
 
@@ -237,9 +263,7 @@ public class IsoMap {
 		}
 
 		if (streetNodePath.size() < 3) {
-			String err = "Zone missing?";
-			componentMessage.add(err);
-			System.err.println(err);
+			System.err.println("Zone missing?");
 			if (AbstractMain.SHOW_RESULTS) {
 				var visitedNodes = visitor.getVisitedNodes();
 				if (!visitedNodes.isEmpty()) {
@@ -257,17 +281,27 @@ public class IsoMap {
 		return streetNodePath;
 	}
 
-	private DiGraph<Point2D, VisualizationEdge> combineFacesOrdered(List<IsoFace> faces,
-			List<DiGraphNode<Point2D, VisualizationEdge>> startEnde,
-			Set<DiGraphNode<Point2D, VisualizationEdge>> splits) {
+	/**
+	 * Combines the graphs of the faces of a component and stores the combined
+	 * graph, its start and end node, split nodes and message at the index of the
+	 * component. Only writes the entries of the component, so components can be
+	 * combined concurrently.
+	 */
+	private void combineFacesOrdered(List<IsoFace> faces, int component) {
+		List<DiGraphNode<Point2D, VisualizationEdge>> startEnde = new LinkedList<>();
+		Set<DiGraphNode<Point2D, VisualizationEdge>> splits = new HashSet<>();
+		componentST.set(component, startEnde);
+		componentSplits.set(component, splits);
+
 		if (faces.size() == 1) {
 			IsoFace face = faces.get(0);
 			startEnde.add(face.getInput());
 			startEnde.add(face.getOutput());
 			splits.add(face.getInput());
 			splits.add(face.getOutput());
-			componentMessage.add("[component " + componentMessage.size() + ":" + face.getMessage() + "]");
-			return face.getVisualizationGraph();
+			componentMessage.set(component, "[component " + component + ":" + face.getMessage() + "]");
+			componentGraphs.set(component, face.getVisualizationGraph());
+			return;
 		}
 
 		String collectedMessage = null;
@@ -281,7 +315,7 @@ public class IsoMap {
 		for (IsoFace face : faces) {
 			if (!face.getMessage().isBlank()) {
 				if (collectedMessage == null)
-					collectedMessage = "[component " + componentMessage.size() + ":";
+					collectedMessage = "[component " + component + ":";
 				else
 					collectedMessage += ";";
 				collectedMessage += face.getMessage();
@@ -356,15 +390,15 @@ public class IsoMap {
 			if (collectedMessage != null && !collectedMessage.isBlank())
 				collectedMessage += sb.toString();
 			else
-				collectedMessage = "[component " + componentMessage.size() + ": " + sb.toString() + "]";
+				collectedMessage = "[component " + component + ": " + sb.toString() + "]";
 			System.err.println(collectedMessage);
 		}
 
 		if (collectedMessage != null && !collectedMessage.isBlank())
-			componentMessage.add(collectedMessage + "]");
+			componentMessage.set(component, collectedMessage + "]");
 		else
-			componentMessage.add("");
-		return combinedGraph;
+			componentMessage.set(component, "");
+		componentGraphs.set(component, combinedGraph);
 	}
 
 	@SuppressWarnings("unused")
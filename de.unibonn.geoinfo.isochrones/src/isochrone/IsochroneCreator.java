@@ -6,6 +6,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -13,6 +14,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -27,6 +29,7 @@ import com.vividsolutions.jts.geom.TopologyException;
 import com.vividsolutions.jump.io.IllegalParametersException;
 
 import DCEL.Dcel;
+import DCEL.PlanarDcel;
 import gisviewer.LineMapObject;
 import gisviewer.ListLayer;
 import gisviewer.MapObject;
@@ -43,19 +46,23 @@ import graph.planarizer.NodeInserter;
 import graph.planarizer.PlanarGraph;
 import graph.planarizer.Planarizer;
 import graph.planarizer.Planarizer.PlanarizerFactory;
-import graph.planarizer.sweep.SweepPlanarizer;
+import graph.planarizer.sweep.TiledSweepPlanarizer;
 import graph.routing.MultiModalRouter;
 import graph.routing.Router;
 import graph.types.Colored;
 import graph.types.ColoredNode;
 import graph.types.GeofabrikData;
+import graph.types.MappedPoint;
 import graph.types.RoadGraph;
 import io.csv.PointToCSV;
 import io.kml.KmlPolygon;
+import io.osm.OsmPbfReader;
 import io.shp.GeofabrikFactory;
 import io.shp.ShapeFileReader;
+import io.snapshot.NetworkSnapshot;
 import isochrone.FaceIdentifier.FaceFactory;
 import main.AbstractMain;
+import main.QueryConfig;
 import tools.Stopwatch;
 import util.geometry.Envelope;
 import viewer.EdgeMapObject;
@@ -74,68 +81,162 @@ public class IsochroneCreator {
 
 	private RoadGraph<Point2D, GeofabrikData> roadGraph;
 	private PlanarGraph<Point2D, GeofabrikData> planarGraph;
+	private PlanarDcel planarDcel;
 	private Router<Point2D, GeofabrikData> router;
-	private KmlPolygon kml_saver;
 
-	private String lastType;
-	private long lastTime;
-	private Stopwatch lastTiming;
+	// preprocessing options of the network, written to snapshots
+	private final boolean keepMotorway;
+	private final byte filterRoads;
+	private final LocalDate serviceDate;
+	private final int serviceDays;
+
+	// per-thread results, the creator can be used by multiple threads at once
+	private final ThreadLocal<Stopwatch> lastTiming = new ThreadLocal<>();
+	private final ThreadLocal<Long> pendingRouteTime = ThreadLocal.withInitial(() -> 0l);
 
 	private static ListLayer reachableEdges;
 	private static ListLayer unreachableEdges;
 	private static ListLayer bufferEdges;
 
-	private File currentOutputDir;
-
 	private IdGenerator idGenerator;
 
+	private boolean exportKml = true;
+
 	/**
 	 * Creates an instance of the IsochroneCreator, given the location of the input
 	 * data files. For the road network, an ESRI line-feature shapefile is needed,
 	 * while for the public transportation data a directory containing all the files
 	 * of the GTFS-specification is needed.
 	 * 
-	 * @param roadShape ESRI line-feature shapefile containing the road network
+	 * @param roadShape ESRI line-feature shapefile or OpenStreetMap PBF file
+	 *                  containing the road network
 	 * @param gtfsDir   GTFS directory of the public transportation data
 	 * @throws IllegalParametersException
 	 * @throws Exception
 	 */
 	public IsochroneCreator(File roadShape, File gtfsDir) throws IllegalParametersException, Exception {
 		idGenerator = new IdGenerator();
+		keepMotorway = AbstractMain.KEEP_MOTORWAY;
+		filterRoads = AbstractMain.FILTER_ROADS;
+		serviceDate = AbstractMain.SERVICE_DATE;
+		serviceDays = AbstractMain.SERVICE_DAYS;
 
 		loadRoadGraph(roadShape);
 
-		if (AbstractMain.FILTER_ROADS > 0) {
-			RoadGraph<Point2D, GeofabrikData> filtered = filterRoadGraph(AbstractMain.FILTER_ROADS);
+		if (filterRoads > 0) {
+			RoadGraph<Point2D, GeofabrikData> filtered = filterRoadGraph(filterRoads);
 			planarizeGraph(filtered);
 		} else {
 			planarizeGraph(roadGraph);
 		}
 
-		router = new MultiModalRouter<>(roadGraph, gtfsDir, Router.GEOFABRIK_FACTORY);
+		router = new MultiModalRouter<>(roadGraph, gtfsDir, Router.GEOFABRIK_FACTORY,
+				AbstractMain.USE_CONNECTION_SCAN);
+	}
+
+	/**
+	 * Creates an instance of the IsochroneCreator from a network snapshot written
+	 * by {@link #writeSnapshot(File)}. Loading the shapefile, the planarization
+	 * and loading the GTFS data are skipped; the options they depend on are taken
+	 * from the snapshot.
+	 * 
+	 * @param snapshotFile network snapshot
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	public IsochroneCreator(File snapshotFile) throws IOException {
+		idGenerator = new IdGenerator();
+
+		NetworkSnapshot snapshot = NetworkSnapshot.read(snapshotFile);
+		keepMotorway = snapshot.isKeepMotorway();
+		filterRoads = snapshot.getFilterRoads();
+		serviceDate = snapshot.getServiceDate();
+		serviceDays = snapshot.getServiceDays();
+		if (keepMotorway != AbstractMain.KEEP_MOTORWAY)
+			System.err.println("Network snapshot was compiled " + (keepMotorway ? "with" : "without")
+					+ " motorways, using its setting.");
+		if ((snapshot.getTimetable() != null) != AbstractMain.USE_CONNECTION_SCAN)
+			System.err.println("Network snapshot was compiled " + (snapshot.getTimetable() != null ? "with" : "without")
+					+ " connection scan, using its setting.");
+		if (filterRoads != AbstractMain.FILTER_ROADS)
+			System.err.println("Network snapshot was compiled with road filter " + filterRoads + ", using its setting.");
+		if (!Objects.equals(serviceDate, AbstractMain.SERVICE_DATE)
+				|| (serviceDate != null && serviceDays != AbstractMain.SERVICE_DAYS))
+			System.err.println("Network snapshot was compiled for "
+					+ (serviceDate == null ? "the generic week" : serviceDays + " service days from " + serviceDate)
+					+ ", using its setting.");
+
+		roadGraph = snapshot.getRoadGraph();
+		planarGraph = snapshot.getPlanarGraph();
+		planarGraph.freeze();
+		router = new MultiModalRouter<>(roadGraph, snapshot.getRoutingGraph(), snapshot.getTimetable(),
+				Router.GEOFABRIK_FACTORY, keepMotorway);
+
+		if (AbstractMain.SHOW_RESULTS) {
+			AbstractMain.GUI.initializeRoadLayer(roadGraph);
+			IsochronePanel.showRoadGraph(AbstractMain.GUI, "Road Graph");
+		}
 	}
 
 	/**
-	 * Loads the line-feature shapefile into a directed graph. The graph is reduced
-	 * to its biggest connected component by removing all topological islands.
+	 * Writes the preprocessed network to a snapshot, which can be loaded by
+	 * {@link #IsochroneCreator(File)}.
 	 * 
-	 * @param roadShape ESRI line-feature shapefile containing the road network
+	 * @param snapshotFile file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeSnapshot(File snapshotFile) throws IOException {
+		MultiModalRouter<?, GeofabrikData> multiModalRouter = (MultiModalRouter<?, GeofabrikData>) router;
+		NetworkSnapshot.write(snapshotFile, roadGraph, planarGraph, multiModalRouter.getSnapshot(),
+				multiModalRouter.getTimetable(), keepMotorway, filterRoads, serviceDate, serviceDays);
+	}
+
+	/**
+	 * @return first day of the timetable of the network, null for the generic
+	 *         week
+	 */
+	public LocalDate getServiceDate() {
+		return serviceDate;
+	}
+
+	/**
+	 * Replaces the public transportation by the one of another GTFS feed while
+	 * keeping the road network, see {@link MultiModalRouter#updateTimetable(File)}.
+	 *
+	 * @param gtfsDir directory of the new GTFS data
+	 * @throws IllegalArgumentException if the connection scan is not used
+	 */
+	public void updateGTFS(File gtfsDir) throws IllegalParametersException, Exception {
+		((MultiModalRouter<?, GeofabrikData>) router).updateTimetable(gtfsDir);
+	}
+
+	/**
+	 * Loads the line-feature shapefile or the OpenStreetMap PBF file into a
+	 * directed graph. The graph is reduced to its biggest connected component by
+	 * removing all topological islands.
+	 * 
+	 * @param roadShape ESRI line-feature shapefile containing the road network,
+	 *                  or OpenStreetMap PBF file (*.pbf)
 	 */
 	private void loadRoadGraph(File roadShape) {
 		try {
-			GeofabrikFactory gff = new GeofabrikFactory();
-			roadGraph = ShapeFileReader.importFromSHP(roadShape, gff);
+			if (roadShape.getName().toLowerCase().endsWith(".pbf")) {
+				roadGraph = OsmPbfReader.importFromPBF(roadShape, false,
+						AbstractMain.USE_PARALLEL_PROCESSING ? AbstractMain.THREADS : 1);
+			} else {
+				GeofabrikFactory gff = new GeofabrikFactory();
+				roadGraph = ShapeFileReader.importFromSHP(roadShape, gff);
+			}
 			ShapeFileReader.reduceToBiggestComponent(roadGraph);
 
 			if (AbstractMain.SHOW_RESULTS) {
 				AbstractMain.GUI.initializeRoadLayer(roadGraph);
 				IsochronePanel.showRoadGraph(AbstractMain.GUI, "Road Graph");
 			}
-		} catch (IllegalParametersException e) {
-			System.err.println("IllegalParametersException while loading road shapefile.");
+		} catch (IOException e) {
+			System.err.println("IOException while loading road data.");
 			e.printStackTrace();
 		} catch (Exception e) {
-			System.err.println("Exception while loading road shapefile.");
+			System.err.println("Exception while loading road data.");
 			e.printStackTrace();
 		}
 	}
@@ -203,14 +304,16 @@ public class IsochroneCreator {
 
 		RoadGraph<Point2D, GeofabrikData> filtered = GraphFilterer.filterArcs(roadGraph, filter, new GraphFactory<>() {
 
+			// nodes and arcs of the filtered graph keep the off-heap rows of the
+			// road graph instead of adding new ones
 			@Override
 			public Point2D createNodeData(Point2D in) {
-				return new Point2D.Double(in.getX(), in.getY());
+				return in;
 			}
 
 			@Override
 			public GeofabrikData createEdgeData(GeofabrikData in) {
-				return new GeofabrikData(in.getValue(), in.fclass());
+				return new GeofabrikData(in.getValue(), in);
 			}
 
 			@Override
@@ -239,6 +342,8 @@ public class IsochroneCreator {
 	 * JTS-union and one based on an own implementation of a sweep-line algorithm.
 	 * Unfortunatelym, both methods suffer from inconsistencies. The optional
 	 * parameter <code>useUnion</code> can be used to toggle between both methods.
+	 * The sweep-line runs on vertical strips of the graph in parallel, see
+	 * {@link TiledSweepPlanarizer}.
 	 * 
 	 * @param graphToPlanarize (non-planar) input graph to be planarized
 	 * @param useUnion         if true, JTS-union is used to planarize, else a
@@ -255,7 +360,7 @@ public class IsochroneCreator {
 
 			@Override
 			public Point2D createNodeData(double x, double y) {
-				return new Point2D.Double(x, y);
+				return new MappedPoint(x, y);
 			}
 
 			@Override
@@ -269,10 +374,13 @@ public class IsochroneCreator {
 		if (useUnion)
 			planarizer = new UnionPlanarizer<>(planFac, true);
 		else
-			planarizer = new SweepPlanarizer<>(planFac);
+			planarizer = new TiledSweepPlanarizer<>(planFac,
+					AbstractMain.USE_PARALLEL_PROCESSING ? AbstractMain.THREADS : 1);
 		planarizer.setInputGraph(graphToPlanarize);
 		planarizer.planarize();
 		planarGraph = planarizer.getPlanarGraph();
+		// shared read-only by all queries
+		planarGraph.freeze();
 
 		if (AbstractMain.VERBOSE)
 			System.out.println("Planarization finished: #crosspoints (" + (useUnion ? "union" : "sweep") + ") = "
@@ -298,25 +406,69 @@ public class IsochroneCreator {
 	}
 
 	/**
-	 * Performs the routing step of the isochrone creation.
+	 * Performs the routing step of the isochrone creation. If the configuration
+	 * has a profile window, the profile of all departures of the window is used
+	 * instead of the single departure at the start time.
 	 * 
 	 * @param startid    id of the road node to start the travel
-	 * @param starttime  start time in seconds after Monday, 1am
 	 * @param time       travel time for the isochrone in seconds
 	 * @param bufferTime buffer time for closing operation in seconds
+	 * @param config     configuration of the query
 	 * @param sw         stop watch to time the algorithm
 	 */
-	private void route(int startid, long starttime, long time, long bufferTime, Stopwatch sw) {
+	private void route(int startid, long time, long bufferTime, QueryConfig config, Stopwatch sw) {
+		DiGraphNode<Point2D, GeofabrikData> roadSource = roadGraph.getNode(startid);
+		long starttime = config.getStarttime();
+		long window = config.getProfileWindow();
+		router.setStarttime(starttime);
+		long colorTime;
+		if (window > 0) {
+			if (!router.hasProfile(roadSource, window, time + bufferTime))
+				computeTravelTimes(startid, starttime, time + bufferTime, window);
+
+			colorTime = System.currentTimeMillis();
+			router.colorProfile(config.getProfileStatistic(), window, time, bufferTime);
+		} else {
+			if (!router.hasTravelTimes(roadSource, time + bufferTime))
+				computeTravelTimes(startid, starttime, time + bufferTime, 0);
+
+			colorTime = System.currentTimeMillis();
+			router.color(time, bufferTime);
+		}
+		colorTime = System.currentTimeMillis() - colorTime;
+
+		// the time of a shared search is added to the first zone using it
+		sw.add("travelTimes", pendingRouteTime.get() + colorTime);
+		pendingRouteTime.set(0l);
+	}
+
+	/**
+	 * Computes the travel times from the start node once for all zones with a
+	 * time plus buffer time of at most <code>maxTime</code>. Subsequent calls of
+	 * {@link #createIsochrone(int, long, long, QueryConfig)} with the same
+	 * start node, start time and profile window only derive the coloring from
+	 * these travel times instead of routing again. If <code>profileWindow</code>
+	 * is positive, the profile of all departures of the window is computed
+	 * instead.
+	 * 
+	 * @param startid       id of the road node to start the travel
+	 * @param starttime     start time in seconds after Monday, 1am
+	 * @param maxTime       largest travel time plus its buffer time in seconds
+	 * @param profileWindow length of the departure window in seconds, 0 for a
+	 *                      single departure
+	 */
+	public void computeTravelTimes(int startid, long starttime, long maxTime, long profileWindow) {
 		long routeTime = System.currentTimeMillis();
-		lastTime = time;
 		if (AbstractMain.VERBOSE)
 			System.out.println("Computing traveltimes...");
-		DiGraphNode<Point2D, GeofabrikData> roadSource = roadGraph.getNode(startid);
 		router.setStarttime(starttime);
-		router.run(roadSource, time, bufferTime);
+		if (profileWindow > 0)
+			router.routeProfile(roadGraph.getNode(startid), profileWindow, maxTime);
+		else
+			router.route(roadGraph.getNode(startid), maxTime);
 
 		routeTime = System.currentTimeMillis() - routeTime;
-		sw.add("travelTimes", routeTime);
+		pendingRouteTime.set(pendingRouteTime.get() + routeTime);
 		if (AbstractMain.VERBOSE)
 			System.out.println("Travel times computed. (" + routeTime / 1000.0 + "s)");
 	}
@@ -329,9 +481,9 @@ public class IsochroneCreator {
 	 * treated equivalently.
 	 * 
 	 * @param sw stop watch to time the algorithm
-	 * @return road graph with colored nodes
+	 * @return node inserter holding the road graph with colored nodes
 	 */
-	private PlanarGraph<ColoredNode, GeofabrikData> createColoredPlanarGraph(Stopwatch sw) {
+	private NodeInserter<Point2D, GeofabrikData> createColoredPlanarGraph(Stopwatch sw) {
 		long time = System.currentTimeMillis();
 		if (AbstractMain.VERBOSE)
 			System.out.println("Creating visualization graph...");
@@ -339,7 +491,7 @@ public class IsochroneCreator {
 		NodeInserter<Point2D, GeofabrikData> ni = new NodeInserter<>(planarGraph);
 		ni.setArcDataSplitter(NodeInserter.GEOFABRIK_SPLITTER);
 
-		ni.colorGraph(router.getColoredGraph());
+		ni.colorGraph(roadGraph, router.getColoring());
 		List<DiGraphNode<ColoredNode, GeofabrikData>> newSplitNodes = ni.insertSplitNodes();
 
 		if (AbstractMain.SHOW_RESULTS) {
@@ -368,7 +520,22 @@ public class IsochroneCreator {
 		if (AbstractMain.VERBOSE)
 			System.out.println("Visualization graph created. (" + time / 1000.0 + "s)");
 
-		return result;
+		return ni;
+	}
+
+	/**
+	 * @return DCEL of the planar graph, created on first use and shared by all
+	 *         queries
+	 */
+	private synchronized PlanarDcel getPlanarDcel() {
+		if (planarDcel == null) {
+			long time = System.currentTimeMillis();
+			planarDcel = new PlanarDcel(planarGraph, planarGraph.getOuterArc());
+			if (AbstractMain.VERBOSE)
+				System.out.println("DCEL of planar graph created: " + planarDcel.numFaces() + " faces. ("
+						+ (System.currentTimeMillis() - time) / 1000.0 + "s)");
+		}
+		return planarDcel;
 	}
 
 	/**
@@ -414,23 +581,24 @@ public class IsochroneCreator {
 	/**
 	 * Creates a single-travel-time time zone for a visualization type operating on
 	 * a per-face basis. The visualization type is defined by the
-	 * <code>factory</code>, see {@link OctilinearFace#FACTORY} or
-	 * {@link MinimumDistFace#FACTORY}.
+	 * <code>factory</code>, see {@link OctilinearFace#createFactory(QueryConfig)}
+	 * or {@link MinimumDistFace#createFactory(QueryConfig)}.
 	 * 
-	 * @param planarColoredGraph planar, colored road graph
-	 * @param factory            factory for the visualization type
-	 * @param sw                 stop watch to time the algorithm
+	 * @param inserter node inserter holding the planar, colored road graph
+	 * @param factory  factory for the visualization type
+	 * @param sw       stop watch to time the algorithm
 	 * @return time zone for the last routing result
 	 */
-	private Timezone<Point2D> createTimezoneFaces(PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph,
+	private Timezone<Point2D> createTimezoneFaces(NodeInserter<Point2D, GeofabrikData> inserter,
 			FaceFactory<?> factory, Stopwatch sw) {
-		FaceIdentifier<?, GeofabrikData> faceIdentifier = new FaceIdentifier<>(planarColoredGraph, sw);
+		PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph = inserter.getResultGraph();
+		FaceIdentifier<?, GeofabrikData> faceIdentifier = new FaceIdentifier<>(getPlanarDcel(), inserter, sw);
 		List<List<IsoFace>> faces = faceIdentifier.identifyFaces(factory, sw, idGenerator);
 
 		if (AbstractMain.SHOW_RESULTS)
 			showFaces(AbstractMain.GUI, "Faces", faces);
 
-		IsoMap iMap = new IsoMap(faces, sw, idGenerator);
+		IsoMap iMap = new IsoMap(faces, sw, idGenerator, factory.getConfig());
 
 		if (AbstractMain.SHOW_RESULTS)
 			showFaceGraphs(AbstractMain.GUI, "Lines", faces, planarColoredGraph);
@@ -455,7 +623,7 @@ public class IsochroneCreator {
 			if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG)
 				showFaces(AbstractMain.GUI, "Inner Faces", faces);
 
-			iMap = new IsoMap(faces, sw, idGenerator);
+			iMap = new IsoMap(faces, sw, idGenerator, factory.getConfig());
 
 			if (AbstractMain.SHOW_RESULTS && AbstractMain.DEBUG)
 				showFaceGraphs(AbstractMain.GUI, "Inner lines " + poly.getKey().getComponentId(), faces,
@@ -481,15 +649,17 @@ public class IsochroneCreator {
 	 * Creates a single-travel-time time zone for the temporal buffer visualization.
 	 * 
 	 * @param planarColoredGraph planar, colored road graph
+	 * @param bufferFactor       factor of the remaining distance used as buffer
+	 *                           radius
 	 * @param sw                 stop watch to time the algorithm
 	 * @return time zone for the last routing result
 	 */
 	private Timezone<Point2D> createTimezoneBuffer(PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph,
-			Stopwatch sw) {
+			double bufferFactor, Stopwatch sw) {
 
 		GeometryFactory gf = new GeometryFactory();
 
-		IsoBufferedCreator creator = new IsoBufferedCreator(AbstractMain.TIMED_BUFFER_FACTOR);
+		IsoBufferedCreator creator = new IsoBufferedCreator(bufferFactor);
 
 		Timezone<Point2D> zone = new Timezone<>(idGenerator);
 		LinkedList<Polygon> buffers = new LinkedList<>();
@@ -565,60 +735,53 @@ public class IsochroneCreator {
 
 	/**
 	 * Creates a single-travel-time time zone. The visualization type is defined by
-	 * the <code>factory</code>, see {@link OctilinearFace#FACTORY} or
-	 * {@link MinimumDistFace#FACTORY}. If <code>factory</code> is
-	 * <code>null</code>, the temporal buffer visualization is used.
+	 * the <code>factory</code>, see {@link QueryConfig#createFaceFactory()}. If
+	 * <code>factory</code> is <code>null</code>, the temporal buffer
+	 * visualization is used.
 	 * 
-	 * @param planarColoredGraph planar, colored road graph
-	 * @param factory            factory for the visualization type
-	 * @param sw                 stop watch to time the algorithm
+	 * @param inserter node inserter holding the planar, colored road graph
+	 * @param factory  factory for the visualization type
+	 * @param config   configuration of the query
+	 * @param time     travel time of the time zone in seconds
+	 * @param sw       stop watch to time the algorithm
 	 * @return time zone for the last routing result
 	 */
-	private Timezone<Point2D> createTimezone(PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph,
-			FaceFactory<?> factory, Stopwatch sw) {
+	private Timezone<Point2D> createTimezone(NodeInserter<Point2D, GeofabrikData> inserter, FaceFactory<?> factory,
+			QueryConfig config, long time, Stopwatch sw) {
 		Timezone<Point2D> timezone;
 		if (factory != null)
-			timezone = createTimezoneFaces(planarColoredGraph, factory, sw);
+			timezone = createTimezoneFaces(inserter, factory, sw);
 		else
-			timezone = createTimezoneBuffer(planarColoredGraph, sw);
-		timezone.setTime(lastTime);
+			timezone = createTimezoneBuffer(inserter.getResultGraph(), config.getTimedBufferFactor(), sw);
+		timezone.setTime(time);
 		return timezone;
 	}
 
 	/**
+	 * Creates the time zone of one travel time. All parameters of the
+	 * visualization are taken from <code>config</code>, hence, queries with
+	 * different configurations can run concurrently.
 	 * 
-	 * @param startid
-	 * @param starttime
-	 * @param time
-	 * @param bufferTime
-	 * @param factory
-	 * @return
+	 * @param startid    id of the road node to start the travel
+	 * @param time       travel time of the time zone in seconds
+	 * @param bufferTime additional travel time of the buffer in seconds
+	 * @param config     configuration of the query
+	 * @return the time zone
 	 */
-	public Timezone<Point2D> createIsochrone(int startid, long starttime, long time, long bufferTime,
-			FaceFactory<?> factory) {
-		currentOutputDir = new File(AbstractMain.OUTPUT_DIRECTORY + File.separator + startid + File.separator);
-		if (currentOutputDir.mkdir())
-			System.out.println(currentOutputDir + " created");
+	public Timezone<Point2D> createIsochrone(int startid, long time, long bufferTime, QueryConfig config) {
+		FaceFactory<?> factory = config.createFaceFactory();
 
+		File outputDir = new File(AbstractMain.OUTPUT_DIRECTORY + File.separator + startid + File.separator);
+		if (outputDir.mkdir())
+			System.out.println(outputDir + " created");
+
+		String type;
 		if (factory != null)
-			lastType = factory.getName();
+			type = factory.getName();
 		else
-			lastType = FaceFactory.TIMED_BUFFER;
-
-		PointToCSV.write(new File(currentOutputDir, "startpoint.csv"), roadGraph.getNode(startid).getNodeData(), false);
-		PointToCSV.write(new File(AbstractMain.OUTPUT_DIRECTORY, "startpoints.csv"),
-				roadGraph.getNode(startid).getNodeData(), startid, new PointToCSV.DataFactory<Integer>() {
+			type = FaceFactory.TIMED_BUFFER;
 
-					@Override
-					public String[] getColumTitles() {
-						return new String[] { "startid" };
-					}
-
-					@Override
-					public String[] getDataTerms(Integer in) {
-						return new String[] { in.toString() };
-					}
-				}, true);
+		writeStartpoint(startid, outputDir);
 
 		if (AbstractMain.VERBOSE)
 			System.out.println("Starting timezone " + time + " for start node " + startid);
@@ -626,27 +789,48 @@ public class IsochroneCreator {
 		Stopwatch sw = new Stopwatch();
 		long alg_starttime = System.currentTimeMillis();
 
-		route(startid, starttime, time, bufferTime, sw);
+		route(startid, time, bufferTime, config, sw);
 
-		PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph = createColoredPlanarGraph(sw);
+		NodeInserter<Point2D, GeofabrikData> inserter = createColoredPlanarGraph(sw);
+		PlanarGraph<ColoredNode, GeofabrikData> planarColoredGraph = inserter.getResultGraph();
 
-		Timezone<Point2D> timezone = createTimezone(planarColoredGraph, factory, sw);
-		timezone.setType(lastType);
+		Timezone<Point2D> timezone = createTimezone(inserter, factory, config, time, sw);
+		timezone.setType(type);
 
 		IsochronePanel endresultPanel = null;
 		if (AbstractMain.SHOW_RESULTS)
-			endresultPanel = showEndresult(AbstractMain.GUI, "Result " + lastType + " " + lastTime, planarColoredGraph,
+			endresultPanel = showEndresult(AbstractMain.GUI, "Result " + type + " " + time, planarColoredGraph,
 					timezone);
 
 		try {
-			validateResult(timezone, planarColoredGraph, endresultPanel, currentOutputDir, sw);
+			validateResult(timezone, planarColoredGraph, endresultPanel, outputDir, sw);
 		} catch (TopologyException ex) {
 			System.err.println("TopologyException while validating! " + ex.getMessage());
 		}
 
-		// export as KML
-		File successDir = new File(currentOutputDir + File.separator + "success");
-		File failDir = new File(currentOutputDir + File.separator + "fail");
+		if (exportKml)
+			saveKml(startid, timezone);
+
+		// save timing
+		System.out.println(sw);
+		lastTiming.set(sw);
+		System.out
+				.println("Timezone finished in " + (System.currentTimeMillis() - alg_starttime) / 1000.0 + "seconds.");
+
+		return timezone;
+	}
+
+	/**
+	 * Exports the time zone as KML into the output directory of the start node,
+	 * separated by the success of the validation.
+	 * 
+	 * @param startid  id of the start node of the time zone
+	 * @param timezone time zone to export
+	 */
+	public void saveKml(int startid, Timezone<Point2D> timezone) {
+		File outputDir = new File(AbstractMain.OUTPUT_DIRECTORY + File.separator + startid + File.separator);
+		File successDir = new File(outputDir + File.separator + "success");
+		File failDir = new File(outputDir + File.separator + "fail");
 		File kmlDir;
 		if (timezone.isSuccess()) {
 			if (successDir.mkdir() && AbstractMain.VERBOSE)
@@ -657,17 +841,39 @@ public class IsochroneCreator {
 				System.out.println(failDir + " created.");
 			kmlDir = failDir;
 		}
-		kml_saver = new KmlPolygon(
-				kmlDir + File.separator + "Iso" + lastType + "_time_" + String.format("%05d", lastTime) + "s");
+		KmlPolygon kml_saver = new KmlPolygon(kmlDir + File.separator + "Iso" + timezone.getType() + "_time_"
+				+ String.format("%05d", timezone.getTime()) + "s");
 		kml_saver.saveSingleZone(timezone);
+	}
 
-		// save timing
-		System.out.println(sw);
-		lastTiming = sw;
-		System.out
-				.println("Timezone finished in " + (System.currentTimeMillis() - alg_starttime) / 1000.0 + "seconds.");
+	/**
+	 * @param exportKml if false, {@link #createIsochrone(int, long, long, QueryConfig)}
+	 *                  does not export the time zone, e.g. if it is done by a
+	 *                  separate writer via {@link #saveKml(int, Timezone)}
+	 */
+	public void setKmlExport(boolean exportKml) {
+		this.exportKml = exportKml;
+	}
 
-		return timezone;
+	/**
+	 * Writes the start point to its output directory and appends it to the list
+	 * of all start points. Synchronized, as the list is shared by all queries.
+	 */
+	private synchronized void writeStartpoint(int startid, File outputDir) {
+		PointToCSV.write(new File(outputDir, "startpoint.csv"), roadGraph.getNode(startid).getNodeData(), false);
+		PointToCSV.write(new File(AbstractMain.OUTPUT_DIRECTORY, "startpoints.csv"),
+				roadGraph.getNode(startid).getNodeData(), startid, new PointToCSV.DataFactory<Integer>() {
+
+					@Override
+					public String[] getColumTitles() {
+						return new String[] { "startid" };
+					}
+
+					@Override
+					public String[] getDataTerms(Integer in) {
+						return new String[] { in.toString() };
+					}
+				}, true);
 	}
 
 	public void validateResult(Timezone<Point2D> resultZone, PlanarGraph<ColoredNode, GeofabrikData> resultRouting,
@@ -730,7 +936,7 @@ public class IsochroneCreator {
 		if (fn > 0 || fp > 0) {
 			try (BufferedWriter bw = new BufferedWriter(
 					new FileWriter(new File(directory,
-							"wrongPoints_" + lastType + String.format("_%05d", resultZone.getTime()) + ".csv")),
+							"wrongPoints_" + resultZone.getType() + String.format("_%05d", resultZone.getTime()) + ".csv")),
 					32768)) {
 				bw.write("type,x,y");
 				bw.newLine();
@@ -1006,8 +1212,11 @@ public class IsochroneCreator {
 		return (IsochronePanel) frame.addTab(title, mapPanel);
 	}
 
+	/**
+	 * @return timing of the last time zone created by the calling thread
+	 */
 	public Stopwatch getLastTiming() {
-		return lastTiming;
+		return lastTiming.get();
 	}
 
 	public IsoPolygon<Point2D> jtsPolygonToIsoPolygon(Polygon jtsPoly) {
@@ -27,13 +27,14 @@ import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
 import isochrone.FaceIdentifier.FaceFactory;
 import main.AbstractMain;
+import main.QueryConfig;
 import util.tools.Util;
 
 public class MinimumDistFace extends IsoFace {
 
-	public MinimumDistFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen)
-			throws InvalidParameterException {
-		super(incidentFaceBoundary, isInner, pred, idGen);
+	public MinimumDistFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen,
+			QueryConfig config) throws InvalidParameterException {
+		super(incidentFaceBoundary, isInner, pred, idGen, config);
 	}
 
 	@Override
@@ -252,26 +253,37 @@ public class MinimumDistFace extends IsoFace {
 		}
 	}
 
-	public static final FaceFactory<MinimumDistFace> FACTORY = new FaceFactory<MinimumDistFace>() {
+	/**
+	 * @param config configuration of the query the faces are created for
+	 * @return factory creating faces of this type using the given configuration
+	 */
+	public static FaceFactory<MinimumDistFace> createFactory(QueryConfig config) {
+		return new FaceFactory<MinimumDistFace>() {
+
+			@Override
+			public MinimumDistFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
+					IdGenerator idGen) {
+				return new MinimumDistFace(incidentFaceBoundary, isInner, pred, idGen, config);
+			}
 
-		@Override
-		public MinimumDistFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
-				IdGenerator idGen) {
-			return new MinimumDistFace(incidentFaceBoundary, isInner, pred, idGen);
-		}
+			@Override
+			public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
+					PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
+					Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
+//				return new MinimumLinkLDFactory(0.1, coloredGraph);
+//				return new SplitNodeFactory(0.1, coloredGraph, componentSplit, config);
+				return new DistanceFactory(0.1, coloredGraph, componentSplit, config);
+			}
 
-		@Override
-		public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
-				PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
-				Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
-//			return new MinimumLinkLDFactory(0.1, coloredGraph);
-//			return new SplitNodeFactory(0.1, coloredGraph, componentSplit);
-			return new DistanceFactory(0.1, coloredGraph, componentSplit);
-		}
+			@Override
+			public QueryConfig getConfig() {
+				return config;
+			}
 
-		@Override
-		public String getName() {
-			return "MinDist";
-		}
-	};
+			@Override
+			public String getName() {
+				return "MinDist";
+			}
+		};
+	}
 }
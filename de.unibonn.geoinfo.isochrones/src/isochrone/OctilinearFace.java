@@ -34,17 +34,18 @@ import graph.types.GeofabrikData;
 import graph.types.VisualizationEdge;
 import isochrone.FaceIdentifier.FaceFactory;
 import main.AbstractMain;
+import main.QueryConfig;
 import util.tools.Util;
 
 public class OctilinearFace extends IsoFace {
 
-	public OctilinearFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen)
-			throws InvalidParameterException {
-		super(incidentFaceBoundary, isInner, pred, idGen);
+	public OctilinearFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred, IdGenerator idGen,
+			QueryConfig config) throws InvalidParameterException {
+		super(incidentFaceBoundary, isInner, pred, idGen, config);
 	}
 
 	private boolean needsIteration() {
-		return !nodesConnected() || !AbstractMain.ITERATE_DoR || input == output;
+		return !nodesConnected() || !config.iterDoR() || input == output;
 	}
 
 	@Override
@@ -78,14 +79,14 @@ public class OctilinearFace extends IsoFace {
 	 * @throws NoOutputException
 	 */
 	public void octilinearLines() {
-		int pointsPerSide = AbstractMain.ITERATE_DoR ? 4 : AbstractMain.MAX_DoR;
+		int pointsPerSide = config.iterDoR() ? 4 : config.getMaxDoR();
 		this.iterate(pointsPerSide);
 	}
 
 	private void iterate(int pointsPerSide) {
 		boolean finished = false;
 		do {
-			if (pointsPerSide >= AbstractMain.MAX_DoR || input == output) {
+			if (pointsPerSide >= config.getMaxDoR() || input == output) {
 				if (needsIteration())
 					this.boundaryAndOctiLines();
 				finished = true;
@@ -193,7 +194,7 @@ public class OctilinearFace extends IsoFace {
 		if (needsIteration()) {
 			this.resetGraph();
 
-			this.startVerdichten(AbstractMain.MAX_DoR);
+			this.startVerdichten(config.getMaxDoR());
 
 			DiGraphNode<Point2D, VisualizationEdge> prevNode = null;
 			DiGraphNode<Point2D, VisualizationEdge> currNode = null;
@@ -318,12 +319,12 @@ public class OctilinearFace extends IsoFace {
 			if (del.contains(e)) {
 				continue;
 			}
-//			System.out.println("Gibt es Limit?  " + (IsoFace.polygon_limit != null));
-			if (IsoFace.polygon_limit != null) {
+//			System.out.println("Gibt es Limit?  " + (config.getPolygonLimit() != null));
+			if (config.getPolygonLimit() != null) {
 				boolean covered = false;
 				Point2D s1 = e.getSource().getNodeData();
 				Point2D s2 = e.getTarget().getNodeData();
-				for (IsoPolygon<Point2D> poly : IsoFace.polygon_limit.getPolyList()) {
+				for (IsoPolygon<Point2D> poly : config.getPolygonLimit().getPolyList()) {
 					if (poly.covers(s1, s2)) {
 						covered = true;
 						break;
@@ -554,25 +555,36 @@ public class OctilinearFace extends IsoFace {
 		newArcs.get(node).add(q4);
 	}
 
-	public static final FaceFactory<OctilinearFace> FACTORY = new FaceFactory<OctilinearFace>() {
+	/**
+	 * @param config configuration of the query the faces are created for
+	 * @return factory creating faces of this type using the given configuration
+	 */
+	public static FaceFactory<OctilinearFace> createFactory(QueryConfig config) {
+		return new FaceFactory<OctilinearFace>() {
 
-		@Override
-		public OctilinearFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
-				IdGenerator idGen) {
-			return new OctilinearFace(incidentFaceBoundary, isInner, pred, idGen);
-		}
+			@Override
+			public OctilinearFace createFace(List<ColoredNode> incidentFaceBoundary, boolean isInner, IsoFace pred,
+					IdGenerator idGen) {
+				return new OctilinearFace(incidentFaceBoundary, isInner, pred, idGen, config);
+			}
 
-		@Override
-		public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
-				PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
-				Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
-			return new TurncostFactory(0.1);
-//			return new SplitNodeFactory(0.1, coloredGraph, componentSplit);
-		}
+			@Override
+			public LinearDualFactory<DiGraph<Point2D, VisualizationEdge>, Point2D, VisualizationEdge> getLDFactory(
+					PlanarGraph<ColoredNode, GeofabrikData> coloredGraph,
+					Set<DiGraphNode<Point2D, VisualizationEdge>> componentSplit) {
+				return new TurncostFactory(0.1, config);
+//				return new SplitNodeFactory(0.1, coloredGraph, componentSplit, config);
+			}
+
+			@Override
+			public QueryConfig getConfig() {
+				return config;
+			}
 
-		@Override
-		public String getName() {
-			return "Octi";
+			@Override
+			public String getName() {
+				return "Octi";
+			};
 		};
-	};
+	}
 }
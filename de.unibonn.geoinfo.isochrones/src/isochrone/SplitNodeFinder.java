@@ -8,6 +8,7 @@ import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
 import graph.types.Colored;
 import graph.types.ColoredNode;
+import graph.types.NodeColoring;
 import main.AbstractMain;
 import tools.Stopwatch;
 
@@ -53,4 +54,47 @@ public class SplitNodeFinder {
 	public static <V extends ColoredNode, E> List<DiGraphNode<V, E>> findSplitNodes(DiGraph<V, E> g, Stopwatch sw) {
 		return findSplitNodes(g, sw, false);
 	}
+
+	/**
+	 * Finds the split nodes of a graph whose colors are kept apart from it, see
+	 * {@link #findSplitNodes(DiGraph, Stopwatch, boolean)}.
+	 * 
+	 * @param coloring colors of the nodes of <code>g</code>, indexed by their ids
+	 */
+	public static <V, E> List<DiGraphNode<V, E>> findSplitNodes(DiGraph<V, E> g, NodeColoring coloring, Stopwatch sw,
+			boolean withBuffer) {
+		long time = System.currentTimeMillis();
+		if (AbstractMain.VERBOSE)
+			System.out.println("Finding splitnodes...");
+
+		List<DiGraphNode<V, E>> splitNodes = new LinkedList<>();
+
+		int color;
+		for (DiGraphNode<V, E> n : g.getNodes()) {
+			color = coloring.getColor(n.getId());
+			if (color == Colored.UNREACHABLE) {
+				continue;
+			}
+
+			if (!withBuffer && color == Colored.BUFFER) {
+				System.err.println("ERROR!!!");
+				continue;
+			}
+
+			for (DiGraphArc<V, E> arc : n.getOutgoingArcs()) {
+				if (coloring.getColor(arc.getTarget().getId()) == Colored.UNREACHABLE) {
+					assert color == Colored.REACHABLE || (withBuffer && color == Colored.BUFFER);
+					splitNodes.add(n);
+					break;
+				}
+			}
+		}
+
+		time = System.currentTimeMillis() - time;
+		sw.add("findSplitnodes", time);
+		if (AbstractMain.VERBOSE)
+			System.out.println("Splitnodes found. (" + time / 1000.0 + "s)");
+
+		return splitNodes;
+	}
 }
@@ -3,11 +3,13 @@ package main;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.security.InvalidParameterException;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Optional;
 
+import graph.routing.Router.ProfileStatistic;
 import viewer.ResultFrame;
 
 public abstract class AbstractMain {
@@ -26,7 +28,11 @@ public abstract class AbstractMain {
 	public static final int LOG_LEVEL = 1;
 
 	public static int[] START_IDS;
+	public static File START_ID_FILE = null;
+	public static int THREADS = Runtime.getRuntime().availableProcessors();
 	public static long STARTTIME = Long.valueOf(35999);
+	public static LocalDate SERVICE_DATE = null;
+	public static int SERVICE_DAYS = 1;
 	public static Long[] TIMEZONES = { 600l };
 	public static boolean INDIVIDUAL_RESULTS = false;
 
@@ -44,7 +50,13 @@ public abstract class AbstractMain {
 	public static File STATS_DIRECTORY;
 	public static File ROAD;
 	public static File GTFS;
+	public static File NETWORK = null;
+	public static File COMPILE_NETWORK = null;
 	public static boolean KEEP_MOTORWAY = true;
+	public static boolean USE_CONNECTION_SCAN = false;
+	public static boolean SNAP_TO_ARCS = false;
+	public static long PROFILE_WINDOW = 0l;
+	public static ProfileStatistic PROFILE_STATISTIC = ProfileStatistic.MEDIAN;
 
 	public static boolean WEIGHT_TURNS = true;
 	public static double NON_OCTI_MALUS = 10000; // no final as it is change in case of no-octilinear visualization
@@ -74,6 +86,8 @@ public abstract class AbstractMain {
 		public static final String CALCULATE_INDIVIDUAL_ZONES = "-i";
 		public static final String DISABLE_PARALLEL_PROCESSING = "-noPP";
 		public static final String START_ID = "-s";
+		public static final String START_ID_FILE = "-sf";
+		public static final String THREADS = "-threads";
 		public static final String VISUALIZATION_TYPE = "-type";
 		public static final String COLOR_STYLE = "-c";
 
@@ -82,9 +96,13 @@ public abstract class AbstractMain {
 		public static final String STATS_DIR = "-os";
 		public static final String ROAD_DATA_PATH = "-dr";
 		public static final String GTFS_DATA_PATH = "-dg";
+		public static final String NETWORK_PATH = "-net";
+		public static final String COMPILE_NETWORK = "-compile";
 
 		// run configuration
 		public static final String STARTTIME = "-st";
+		public static final String SERVICE_DATE = "-date";
+		public static final String SERVICE_DAYS = "-days";
 		public static final String TIMEZONES = "-t";
 		public static final String LINEAR_ZONES = "-lz";
 		public static final String DILATION = "-dil";
@@ -93,6 +111,10 @@ public abstract class AbstractMain {
 		public static final String ROAD_FILTER = "-filter";
 		public static final String TIMED_BUFFER_FACTOR = "-tbf";
 		public static final String KEEP_MOTORWAY = "-km";
+		public static final String CONNECTION_SCAN = "-csa";
+		public static final String SNAP_TO_ARCS = "-snaparcs";
+		public static final String PROFILE_WINDOW = "-pw";
+		public static final String PROFILE_STATISTIC = "-ps";
 
 		public static Iterator<String> iterator() {
 			return new Iterator<String>() {
@@ -169,10 +191,16 @@ public abstract class AbstractMain {
 			return IDENTIFIER.SHOW_RESULTS + "\t\t" + "-\t" + "-\t" + "Set to show results in GUI.";
 		case IDENTIFIER.DISABLE_PARALLEL_PROCESSING:
 			return IDENTIFIER.DISABLE_PARALLEL_PROCESSING + "\t\t" + "-\t" + "-\t"
-					+ "Parallel processing of faces is enabled by default. In case this causes errors it can be diables by this flag.";
+					+ "Parallel processing of faces and GTFS loading is enabled by default. In case this causes errors it can be diables by this flag.";
 		case IDENTIFIER.START_ID:
 			return IDENTIFIER.START_ID + "\t\t" + "int\t" + "-\t"
 					+ "Enables fast-mode. Select start node in road graph by its ID. If no start id is given, start node can be selected on map.";
+		case IDENTIFIER.START_ID_FILE:
+			return IDENTIFIER.START_ID_FILE + "\t\t" + "string\t" + "-\t"
+					+ "Batch mode. CSV file with the start node IDs in column 'startid' or in the first column.";
+		case IDENTIFIER.THREADS:
+			return IDENTIFIER.THREADS + "\t" + "int\t" + "-\t"
+					+ "Number of threads for the batch mode and for loading the GTFS data. Default: number of available processors.";
 		case IDENTIFIER.VISUALIZATION_TYPE:
 			return IDENTIFIER.VISUALIZATION_TYPE + "\t\t" + "-\t" + "-\t"
 					+ "Set to disable calculation of octilinear timezones. Boundary of faces is used for visualization instead.";
@@ -180,9 +208,34 @@ public abstract class AbstractMain {
 			return IDENTIFIER.OUTPUT_PATH + "\t\t" + "string\t" + "m\t" + "File path of output folder. Default: ."
 					+ File.separator + "output" + File.separator + "[start_id]" + File.separator;
 		case IDENTIFIER.ROAD_DATA_PATH:
-			return IDENTIFIER.ROAD_DATA_PATH + "\t\t" + "string\t" + "m\t" + "Input shapefile for road network data.";
+			return IDENTIFIER.ROAD_DATA_PATH + "\t\t" + "string\t" + "m\t" + "Input shapefile or OpenStreetMap PBF file (*.osm.pbf) for road network data.";
 		case IDENTIFIER.GTFS_DATA_PATH:
 			return IDENTIFIER.GTFS_DATA_PATH + "\t\t" + "string\t" + "m\t" + "Input directory with GTFS data.";
+		case IDENTIFIER.NETWORK_PATH:
+			return IDENTIFIER.NETWORK_PATH + "\t\t" + "string\t" + "-\t"
+					+ "Network snapshot written by " + IDENTIFIER.COMPILE_NETWORK + ", replaces "
+					+ IDENTIFIER.ROAD_DATA_PATH + " and " + IDENTIFIER.GTFS_DATA_PATH + ".";
+		case IDENTIFIER.COMPILE_NETWORK:
+			return IDENTIFIER.COMPILE_NETWORK + "\t" + "string\t" + "-\t"
+					+ "Writes the preprocessed network to the given snapshot file and exits.";
+		case IDENTIFIER.SERVICE_DATE:
+			return IDENTIFIER.SERVICE_DATE + "\t\t" + "string\t" + "-\t"
+					+ "Date of the public transportation as yyyyMMdd, using calendar.txt and calendar_dates.txt. The start time is given in seconds after its midnight. Default: generic week of calendar.txt, start time in seconds after Monday midnight.";
+		case IDENTIFIER.SERVICE_DAYS:
+			return IDENTIFIER.SERVICE_DAYS + "\t\t" + "int\t" + "-\t"
+					+ "Number of days from " + IDENTIFIER.SERVICE_DATE + " whose trips are loaded, at most 6. Default: 1.";
+		case IDENTIFIER.CONNECTION_SCAN:
+			return IDENTIFIER.CONNECTION_SCAN + "\t\t" + "-\t" + "-\t"
+					+ "Route public transportation by connection scan on a flat timetable instead of the time-expanded graph.";
+		case IDENTIFIER.SNAP_TO_ARCS:
+			return IDENTIFIER.SNAP_TO_ARCS + "\t" + "-\t" + "-\t"
+					+ "Snap each stop to the closer end point of the next road arc instead of the next road node.";
+		case IDENTIFIER.PROFILE_WINDOW:
+			return IDENTIFIER.PROFILE_WINDOW + "\t\t" + "long\t" + "-\t"
+					+ "Length of a departure window in seconds after the start time. Isochrones are computed from one profile search for all departures of the window. Implies " + IDENTIFIER.CONNECTION_SCAN + ".";
+		case IDENTIFIER.PROFILE_STATISTIC:
+			return IDENTIFIER.PROFILE_STATISTIC + "\t\t" + "string\t" + "-\t"
+					+ "Travel time of the departure window used for the isochrones: best, median or worst. Default: median.";
 		default:
 			return "unknown identifier";
 		}
@@ -213,6 +266,26 @@ public abstract class AbstractMain {
 		}
 	}
 
+	/**
+	 * @return largest time zone plus its buffer time, i.e. the time bound of a
+	 *         search covering all time zones
+	 */
+	protected static long getMaxTotalTime() {
+		long maxTime = 0;
+		for (long time : TIMEZONES)
+			maxTime = Math.max(maxTime, time + (long) (time * DILATION_FACTOR) + DILATION_VALUE);
+		return maxTime;
+	}
+
+	/**
+	 * @return true if <code>type</code> is one of the visualization types
+	 *         {@link #OCTILINEAR}, {@link #BOUNDARY}, {@link #MIN_LINK} or
+	 *         {@link #TIMED_BUFFER}
+	 */
+	protected static boolean isVisualizationType(byte type) {
+		return type >= OCTILINEAR && type <= TIMED_BUFFER;
+	}
+
 	protected static void createStartIds(String ids) {
 		String[] values = ids.split(",");
 		START_IDS = new int[values.length];
@@ -0,0 +1,255 @@
+package main;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.csv.CSVReader;
+import isochrone.IsochroneCreator;
+import isochrone.Timezone;
+import util.tools.Tasks;
+
+/**
+ * Computes the time zones of many start nodes on a work-stealing pool sharing
+ * one {@link IsochroneCreator}. For each start node and visualization type,
+ * the time zones are computed by one task in the order of
+ * {@link AbstractMain#TIMEZONES}, as nested zones are limited by the previous
+ * one. As each task carries its own {@link QueryConfig}, all visualization
+ * types are processed concurrently. Results are passed through a bounded queue
+ * to a single writer thread exporting the KML files and statistics.
+ */
+public class BatchRunner {
+
+	private static final long REPORT_INTERVAL = 10000; // ms
+	private static final long OFFER_TIMEOUT = 500; // ms
+
+	private final IsochroneCreator creator;
+	private final int threads;
+
+	private final OutputWriter ow;
+	private final BlockingQueue<Result> results;
+	private volatile boolean writerAlive;
+
+	private int total;
+	private int finished;
+	private long batchStart;
+	private long lastReport;
+
+	private static class Result {
+		private final ResultSet rs;
+		private final int startId;
+
+		private Result(ResultSet rs, int startId) {
+			this.rs = rs;
+			this.startId = startId;
+		}
+	}
+
+	// marks the end of the result stream
+	private static final Result END = new Result(null, -1);
+
+	public BatchRunner(IsochroneCreator creator, int threads) {
+		this.creator = creator;
+		this.threads = threads;
+		this.ow = new OutputWriter(AbstractMain.STATS_DIRECTORY);
+		this.results = new ArrayBlockingQueue<>(4 * threads);
+	}
+
+	/**
+	 * Reads the start node ids from a csv file with header. The ids are taken
+	 * from the column <code>startid</code>, e.g. of the startpoints.csv of a
+	 * previous run, or from the first column if there is no such column.
+	 *
+	 * @param file csv file with start node ids
+	 * @return start node ids in order of the file
+	 * @throws IOException              if the file cannot be read
+	 * @throws IllegalArgumentException if a line has no id, giving its number
+	 * @throws NumberFormatException    if an id is no integer, giving its line
+	 */
+	public static int[] readStartIds(File file) throws IOException {
+		List<Integer> ids = new ArrayList<>();
+		try (CSVReader reader = new CSVReader(file)) {
+			int column = Math.max(0, reader.column("startid"));
+			while (reader.next())
+				ids.add(reader.getInt(column));
+		}
+		return ids.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Computes all time zones of {@link AbstractMain#TIMEZONES} for all
+	 * visualization types of {@link AbstractMain#VISUALIZATION_TYPES} for the
+	 * given start nodes.
+	 *
+	 * @param startIds ids of the start nodes
+	 */
+	public void run(int[] startIds) {
+		List<Byte> types = new LinkedList<>();
+		for (byte type : AbstractMain.VISUALIZATION_TYPES) {
+			if (AbstractMain.isVisualizationType(type))
+				types.add(type);
+			else
+				System.err.println("Unknown visualization type! " + type);
+		}
+
+		total = startIds.length * types.size() * AbstractMain.TIMEZONES.length;
+		finished = 0;
+		batchStart = System.currentTimeMillis();
+		lastReport = batchStart;
+
+		creator.setKmlExport(false);
+
+		writerAlive = true;
+		Thread writer = new Thread(this::write, "batch-writer");
+		writer.start();
+
+		// the start nodes are processed in parallel instead of the faces of one zone
+		boolean parallelFaces = AbstractMain.USE_PARALLEL_PROCESSING && threads <= 1;
+
+		List<Callable<Void>> callables = new LinkedList<>();
+		for (int startId : startIds) {
+			for (byte type : types) {
+				callables.add(new Callable<>() {
+					@Override
+					public Void call() throws InterruptedException {
+						computeZones(startId, type, parallelFaces);
+						return null;
+					}
+				});
+			}
+		}
+
+		ExecutorService executor = Executors.newWorkStealingPool(threads);
+		try {
+			Tasks.invokeAll(callables, executor);
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+
+		try {
+			enqueue(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		creator.setKmlExport(true);
+
+		System.out.println("Batch finished: " + finished + " zones in "
+				+ (System.currentTimeMillis() - batchStart) / 1000.0 + " seconds.");
+	}
+
+	/**
+	 * Computes all time zones of one start node and visualization type. In case
+	 * of nested time zones, each zone is limited by the previous one.
+	 */
+	private void computeZones(int startId, byte type, boolean parallelFaces) throws InterruptedException {
+		try {
+			creator.computeTravelTimes(startId, AbstractMain.STARTTIME, AbstractMain.getMaxTotalTime(),
+					AbstractMain.PROFILE_WINDOW);
+		} catch (Exception e) {
+			System.err.println("Error: routing from " + startId + ", " + e.getMessage());
+			e.printStackTrace();
+		}
+
+		ResultSet rs;
+		long bufferTime;
+		QueryConfig config;
+		Timezone<Point2D> timezone;
+		Timezone<Point2D> limit = null;
+		for (long time : AbstractMain.TIMEZONES) {
+			rs = new ResultSet(RunConfig.getCurrentRunConfig(startId, time, type));
+			try {
+				bufferTime = (long) (time * AbstractMain.DILATION_FACTOR) + AbstractMain.DILATION_VALUE;
+
+				config = QueryConfig.of(rs.getConfig()).withParallelProcessing(parallelFaces);
+				if (!AbstractMain.INDIVIDUAL_RESULTS)
+					config = config.withPolygonLimit(limit);
+
+				timezone = creator.createIsochrone(startId, time, bufferTime, config);
+				rs.setStopwatch(creator.getLastTiming());
+				rs.setTimezone(timezone);
+				limit = timezone;
+			} catch (Exception e) {
+				String message = "Error: " + type + ", " + startId + ", " + time + ", " + e.getMessage();
+				System.err.println(message);
+				System.out.println(message);
+				e.printStackTrace();
+			}
+			if (!enqueue(new Result(rs, startId)))
+				return;
+		}
+	}
+
+	/**
+	 * Passes a result to the writer thread. Waits as long as the queue is full
+	 * and the writer is still alive.
+	 *
+	 * @return <code>false</code> if the writer has died and the result was
+	 *         dropped
+	 */
+	private boolean enqueue(Result result) throws InterruptedException {
+		while (writerAlive) {
+			if (results.offer(result, OFFER_TIMEOUT, TimeUnit.MILLISECONDS))
+				return true;
+		}
+		System.err.println("Error: batch writer is not running, dropping result of " + result.startId);
+		return false;
+	}
+
+	/**
+	 * Writes the results of the queue until the end of the stream is reached.
+	 * Runs in its own thread. A failing result is reported and skipped, so the
+	 * queue keeps being drained.
+	 */
+	private void write() {
+		try {
+			ow.open();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		try {
+			Result result;
+			while ((result = results.take()) != END) {
+				if (result.rs.getTimezone() != null) {
+					try {
+						creator.saveKml(result.startId, result.rs.getTimezone());
+						ow.writeResult(result.rs);
+					} catch (RuntimeException e) {
+						System.err.println("Error: writing result of " + result.startId + ", " + e.getMessage());
+						e.printStackTrace();
+					}
+				}
+				++finished;
+				reportProgress();
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			writerAlive = false;
+			ow.close();
+		}
+	}
+
+	private void reportProgress() {
+		long now = System.currentTimeMillis();
+		if (now - lastReport < REPORT_INTERVAL && finished < total)
+			return;
+		lastReport = now;
+
+		double seconds = (now - batchStart) / 1000.0;
+		System.out.println(String.format("Progress: %d/%d zones (%.1f%%), %.2f zones/s", finished, total,
+				100.0 * finished / total, finished / seconds));
+	}
+}
@@ -7,15 +7,13 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 
 import com.vividsolutions.jump.io.IllegalParametersException;
 
-import isochrone.BoundaryFace;
-import isochrone.FaceIdentifier.FaceFactory;
-import isochrone.IsoFace;
+import graph.routing.Router.ProfileStatistic;
 import isochrone.IsochroneCreator;
-import isochrone.MinimumDistFace;
-import isochrone.OctilinearFace;
 import isochrone.Timezone;
 import viewer.ResultFrame;
 
@@ -37,11 +35,17 @@ public class Main extends AbstractMain {
 		INDIVIDUAL_RESULTS = containsOptionalArg(args, IDENTIFIER.CALCULATE_INDIVIDUAL_ZONES);
 		USE_PARALLEL_PROCESSING = !containsOptionalArg(args, IDENTIFIER.DISABLE_PARALLEL_PROCESSING);
 
-		checkArguments(args, new String[] { IDENTIFIER.ROAD_DATA_PATH, IDENTIFIER.GTFS_DATA_PATH });
-		ROAD = new File(getOptionalArg(args, IDENTIFIER.ROAD_DATA_PATH).get());
-		GTFS = new File(getOptionalArg(args, IDENTIFIER.GTFS_DATA_PATH).get());
+		getOptionalArg(args, IDENTIFIER.NETWORK_PATH).ifPresent(x -> NETWORK = new File(x));
+		getOptionalArg(args, IDENTIFIER.COMPILE_NETWORK).ifPresent(x -> COMPILE_NETWORK = new File(x));
+		if (NETWORK == null) {
+			checkArguments(args, new String[] { IDENTIFIER.ROAD_DATA_PATH, IDENTIFIER.GTFS_DATA_PATH });
+			ROAD = new File(getOptionalArg(args, IDENTIFIER.ROAD_DATA_PATH).get());
+			GTFS = new File(getOptionalArg(args, IDENTIFIER.GTFS_DATA_PATH).get());
+		}
 
 		getOptionalArg(args, IDENTIFIER.START_ID).ifPresent(AbstractMain::createStartIds);
+		getOptionalArg(args, IDENTIFIER.START_ID_FILE).ifPresent(x -> START_ID_FILE = new File(x));
+		getOptionalArg(args, IDENTIFIER.THREADS).ifPresent(x -> THREADS = Integer.parseInt(x));
 
 		if (containsOptionalArg(args, IDENTIFIER.OUTPUT_PATH))
 			OUTPUT_DIRECTORY = new File(getOptionalArg(args, IDENTIFIER.OUTPUT_PATH).get());
@@ -63,8 +67,20 @@ public class Main extends AbstractMain {
 		}
 
 		KEEP_MOTORWAY = containsOptionalArg(args, IDENTIFIER.KEEP_MOTORWAY);
+		USE_CONNECTION_SCAN = containsOptionalArg(args, IDENTIFIER.CONNECTION_SCAN);
+		SNAP_TO_ARCS = containsOptionalArg(args, IDENTIFIER.SNAP_TO_ARCS);
+		getOptionalArg(args, IDENTIFIER.PROFILE_WINDOW).ifPresent(x -> PROFILE_WINDOW = Long.parseLong(x));
+		getOptionalArg(args, IDENTIFIER.PROFILE_STATISTIC)
+				.ifPresent(x -> PROFILE_STATISTIC = ProfileStatistic.valueOf(x.trim().toUpperCase()));
+		if (PROFILE_WINDOW > 0 && !USE_CONNECTION_SCAN) {
+			System.err.println("Profile queries need the connection scan, " + IDENTIFIER.CONNECTION_SCAN + " is set.");
+			USE_CONNECTION_SCAN = true;
+		}
 
 		getOptionalArg(args, IDENTIFIER.STARTTIME).ifPresent(x -> STARTTIME = Long.parseLong(x));
+		getOptionalArg(args, IDENTIFIER.SERVICE_DATE)
+				.ifPresent(x -> SERVICE_DATE = LocalDate.parse(x.trim(), DateTimeFormatter.BASIC_ISO_DATE));
+		getOptionalArg(args, IDENTIFIER.SERVICE_DAYS).ifPresent(x -> SERVICE_DAYS = Integer.parseInt(x));
 		if (containsOptionalArg(args, IDENTIFIER.TIMEZONES))
 			createTimezones(getOptionalArg(args, IDENTIFIER.TIMEZONES).get(),
 					getOptionalArg(args, IDENTIFIER.LINEAR_ZONES));
@@ -156,14 +172,30 @@ public class Main extends AbstractMain {
 				}
 			});
 
-		IsochroneCreator creator = new IsochroneCreator(ROAD, GTFS);
+		IsochroneCreator creator = NETWORK != null ? new IsochroneCreator(NETWORK) : new IsochroneCreator(ROAD, GTFS);
+
+		if (COMPILE_NETWORK != null) {
+			creator.writeSnapshot(COMPILE_NETWORK);
+			System.out.println("Network snapshot written to " + COMPILE_NETWORK + ".");
+			System.exit(0);
+		}
 
 		if (FIND_NODE_FILE != null) {
 			getRoadNodeIds(FIND_NODE_FILE, creator);
 			System.exit(0);
 		}
 
-		if (START_IDS != null) {
+		// times are seconds after the beginning of the week, the service date of the
+		// network is mapped to its weekday
+		if (creator.getServiceDate() != null)
+			STARTTIME += (creator.getServiceDate().getDayOfWeek().getValue() - 1) * 86400l;
+
+		if (START_ID_FILE != null) {
+			logConfig(args);
+			new BatchRunner(creator, THREADS).run(BatchRunner.readStartIds(START_ID_FILE));
+			System.out.println("Done. Time needed for everything: " + (System.currentTimeMillis() - starttime) / 1000.0
+					+ " seconds.");
+		} else if (START_IDS != null) {
 			logConfig(args);
 			File startpoints = new File(OUTPUT_DIRECTORY, "startpoints.csv");
 			if (startpoints.exists())
@@ -175,51 +207,39 @@ public class Main extends AbstractMain {
 
 			long bufferTime;
 			Timezone<Point2D> timezone;
-			FaceFactory<?> faceFactory;
+			Timezone<Point2D> limit;
+			QueryConfig config;
 
-			int originalMaxDoR = MAX_DoR;
-			double originalNonOctiMalus = NON_OCTI_MALUS;
-			boolean originalWeightTurns = WEIGHT_TURNS;
+			long maxTime = getMaxTotalTime();
 
 			for (int startId : START_IDS) {
+				// one search for all time zones and visualization types
+				try {
+					creator.computeTravelTimes(startId, STARTTIME, maxTime, PROFILE_WINDOW);
+				} catch (Exception e) {
+					System.err.println("Error: routing from " + startId + ", " + e.getMessage());
+					e.printStackTrace();
+				}
 				for (byte type : VISUALIZATION_TYPES) {
-					switch (type) {
-					case OCTILINEAR:
-						faceFactory = OctilinearFace.FACTORY;
-						MAX_DoR = originalMaxDoR;
-						NON_OCTI_MALUS = originalNonOctiMalus;
-						WEIGHT_TURNS = originalWeightTurns;
-						break;
-					case BOUNDARY:
-						faceFactory = BoundaryFace.FACTORY;
-						MAX_DoR = -1;
-						NON_OCTI_MALUS = 1;
-						WEIGHT_TURNS = false;
-						break;
-					case MIN_LINK:
-						faceFactory = MinimumDistFace.FACTORY;
-						MAX_DoR = -1;
-						NON_OCTI_MALUS = 1;
-						WEIGHT_TURNS = false;
-						break;
-					case TIMED_BUFFER:
-						faceFactory = null;
-						break;
-					default:
+					if (!isVisualizationType(type)) {
 						System.err.println("Unknown visualization type! " + type);
 						continue;
 					}
+					// nested time zones are limited by the next larger one of the same type
+					limit = null;
 					for (long time : TIMEZONES) {
 						rs = new ResultSet(RunConfig.getCurrentRunConfig(startId, time, type));
 						try {
 							bufferTime = (long) (time * DILATION_FACTOR) + DILATION_VALUE;
 
-							timezone = creator.createIsochrone(startId, STARTTIME, time, bufferTime, faceFactory);
+							config = QueryConfig.of(rs.getConfig());
+							if (!AbstractMain.INDIVIDUAL_RESULTS)
+								config = config.withPolygonLimit(limit);
+
+							timezone = creator.createIsochrone(startId, time, bufferTime, config);
 							rs.setStopwatch(creator.getLastTiming());
 							rs.setTimezone(timezone);
-
-							if (!AbstractMain.INDIVIDUAL_RESULTS)
-								IsoFace.setPolygonLimit(timezone);
+							limit = timezone;
 
 							ow.writeResult(rs);
 						} catch (Exception e) {
@@ -9,11 +9,15 @@ import java.io.IOException;
 import isochrone.IsoPolygon;
 import isochrone.Timezone;
 
-public class OutputWriter {
+public class OutputWriter implements AutoCloseable {
 
 	private File fileZone;
 	private File fileComponent;
 
+	// kept open between results after calling open()
+	private BufferedWriter zoneWriter;
+	private BufferedWriter componentWriter;
+
 	private int nBins = 16;
 
 	public OutputWriter(File statsDir) {
@@ -21,10 +25,57 @@ public class OutputWriter {
 		this.fileComponent = new File(statsDir, "stats_component.csv");
 	}
 
+	/**
+	 * Opens the statistic files once for all following results instead of
+	 * reopening them for each result. Has to be closed with {@link #close()}.
+	 * Not synchronized, use from a single writer thread.
+	 */
+	public void open() throws IOException {
+		boolean writeHeader = !fileZone.exists();
+		zoneWriter = new BufferedWriter(new FileWriter(fileZone, true));
+		if (writeHeader) {
+			zoneWriter.write(generateZoneHeader());
+			zoneWriter.newLine();
+		}
+
+		writeHeader = !fileComponent.exists();
+		componentWriter = new BufferedWriter(new FileWriter(fileComponent, true));
+		if (writeHeader) {
+			componentWriter.write(generateComponentHeader());
+			componentWriter.newLine();
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (zoneWriter != null)
+				zoneWriter.close();
+			if (componentWriter != null)
+				componentWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		zoneWriter = null;
+		componentWriter = null;
+	}
+
 	public void writeResult(ResultSet result) {
 		if (result.getTimezone() == null)
 			return;
 
+		if (zoneWriter != null) {
+			try {
+				zoneWriter.write(generateZoneString(result));
+				zoneWriter.newLine();
+				componentWriter.write(generateComponentsString(result));
+				componentWriter.newLine();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		boolean writeHeader = !fileZone.exists();
 		try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileZone, true))) {
 			if (writeHeader)
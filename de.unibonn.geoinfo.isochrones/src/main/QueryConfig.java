@@ -0,0 +1,149 @@
+package main;
+
+import java.awt.geom.Point2D;
+
+import graph.routing.Router.ProfileStatistic;
+import isochrone.BoundaryFace;
+import isochrone.FaceIdentifier.FaceFactory;
+import isochrone.MinimumDistFace;
+import isochrone.OctilinearFace;
+import isochrone.Timezone;
+
+/**
+ * Immutable configuration of a single isochrone query. In contrast to the
+ * static configuration of {@link AbstractMain}, queries with different
+ * configurations, e.g. different visualization types, can be run concurrently.
+ * Use {@link #of(RunConfig)} to create the configuration of a run.
+ */
+public class QueryConfig {
+
+	private final byte visualizationType;
+	private final long starttime;
+	private final int maxDoR;
+	private final boolean iterDoR;
+	private final double nonOctiMalus;
+	private final boolean weightTurns;
+	private final double dilationFactor;
+	private final boolean useParallelProcessing;
+	private final double timedBufferFactor;
+	private final long profileWindow;
+	private final ProfileStatistic profileStatistic;
+
+	// zone limiting the result in case of nested time zones, null if unlimited
+	private final Timezone<Point2D> polygonLimit;
+
+	private QueryConfig(byte visualizationType, long starttime, int maxDoR, boolean iterDoR, double nonOctiMalus,
+			boolean weightTurns, double dilationFactor, boolean useParallelProcessing, double timedBufferFactor,
+			long profileWindow, ProfileStatistic profileStatistic, Timezone<Point2D> polygonLimit) {
+		this.visualizationType = visualizationType;
+		this.starttime = starttime;
+		this.maxDoR = maxDoR;
+		this.iterDoR = iterDoR;
+		this.nonOctiMalus = nonOctiMalus;
+		this.weightTurns = weightTurns;
+		this.dilationFactor = dilationFactor;
+		this.useParallelProcessing = useParallelProcessing;
+		this.timedBufferFactor = timedBufferFactor;
+		this.profileWindow = profileWindow;
+		this.profileStatistic = profileStatistic;
+		this.polygonLimit = polygonLimit;
+	}
+
+	public static QueryConfig of(RunConfig rc) {
+		return new QueryConfig(rc.getVisualizationType(), rc.getStarttime(), rc.getMaxDoR(), rc.iterDoR(),
+				rc.getNonOctiMalus(), rc.weightTurns(), rc.getDilationFactor(), rc.useParallelProcessing(),
+				rc.getTimedBufferFactor(), rc.getProfileWindow(), rc.getProfileStatistic(), null);
+	}
+
+	/**
+	 * @param limit time zone limiting the result, e.g. the next larger zone of
+	 *              nested time zones
+	 * @return copy of this configuration with the given limit
+	 */
+	public QueryConfig withPolygonLimit(Timezone<Point2D> limit) {
+		return new QueryConfig(visualizationType, starttime, maxDoR, iterDoR, nonOctiMalus, weightTurns,
+				dilationFactor, useParallelProcessing, timedBufferFactor, profileWindow, profileStatistic, limit);
+	}
+
+	/**
+	 * @return copy of this configuration with (dis-)abled parallel processing of
+	 *         faces
+	 */
+	public QueryConfig withParallelProcessing(boolean useParallelProcessing) {
+		return new QueryConfig(visualizationType, starttime, maxDoR, iterDoR, nonOctiMalus, weightTurns,
+				dilationFactor, useParallelProcessing, timedBufferFactor, profileWindow, profileStatistic,
+				polygonLimit);
+	}
+
+	/**
+	 * @return face factory of the visualization type using this configuration,
+	 *         <code>null</code> for the timed buffer visualization
+	 * @throws IllegalArgumentException if the visualization type is unknown
+	 */
+	public FaceFactory<?> createFaceFactory() {
+		switch (visualizationType) {
+		case AbstractMain.OCTILINEAR:
+			return OctilinearFace.createFactory(this);
+		case AbstractMain.BOUNDARY:
+			return BoundaryFace.createFactory(this);
+		case AbstractMain.MIN_LINK:
+			return MinimumDistFace.createFactory(this);
+		case AbstractMain.TIMED_BUFFER:
+			return null;
+		default:
+			throw new IllegalArgumentException("Unknown visualization type! " + visualizationType);
+		}
+	}
+
+	public byte getVisualizationType() {
+		return visualizationType;
+	}
+
+	public long getStarttime() {
+		return starttime;
+	}
+
+	public int getMaxDoR() {
+		return maxDoR;
+	}
+
+	public boolean iterDoR() {
+		return iterDoR;
+	}
+
+	public double getNonOctiMalus() {
+		return nonOctiMalus;
+	}
+
+	public boolean weightTurns() {
+		return weightTurns;
+	}
+
+	public double getDilationFactor() {
+		return dilationFactor;
+	}
+
+	public boolean useParallelProcessing() {
+		return useParallelProcessing;
+	}
+
+	public double getTimedBufferFactor() {
+		return timedBufferFactor;
+	}
+
+	/**
+	 * @return length of the departure window of a profile query in seconds, 0 for
+	 *         a query with a single departure
+	 */
+	public long getProfileWindow() {
+		return profileWindow;
+	}
+
+	public ProfileStatistic getProfileStatistic() {
+		return profileStatistic;
+	}
+
+	public Timezone<Point2D> getPolygonLimit() {
+		return polygonLimit;
+	}
+}
@@ -2,6 +2,8 @@ package main;
 
 import java.io.File;
 
+import graph.routing.Router.ProfileStatistic;
+
 public class RunConfig {
 	private int startId;
 	private File road;
@@ -18,13 +20,20 @@ public class RunConfig {
 	private double nonOctiMalus;
 	private int maxDoR;
 	private boolean iterDoR;
+	private boolean weightTurns;
+	private boolean useParallelProcessing;
+	private double timedBufferFactor;
 	private byte filter;
+	private long profileWindow;
+	private ProfileStatistic profileStatistic;
 
 	private int numberOfZone;
 
 	public RunConfig(int startId, File road, File train, byte visualizationType, long starttime, long timezone,
 			double distanceFactor, double dilationFactor, double faceBoundaryBuffer, int maxDoR,
-			int defaultTransferTime, double nonOctiMalus, int numberOfZone, boolean iterDoR, byte filter) {
+			int defaultTransferTime, double nonOctiMalus, int numberOfZone, boolean iterDoR, boolean weightTurns,
+			boolean useParallelProcessing, double timedBufferFactor, byte filter, long profileWindow,
+			ProfileStatistic profileStatistic) {
 		super();
 		this.startId = startId;
 		this.road = road;
@@ -40,10 +49,22 @@ public class RunConfig {
 		else
 			this.maxDoR = -1;
 		this.defaultTransferTime = defaultTransferTime;
-		this.nonOctiMalus = nonOctiMalus;
+		// turns and non-octilinear edges are only penalized for octilinear
+		// visualizations
+		if (visualizationType == AbstractMain.OCTILINEAR) {
+			this.nonOctiMalus = nonOctiMalus;
+			this.weightTurns = weightTurns;
+		} else {
+			this.nonOctiMalus = 1;
+			this.weightTurns = false;
+		}
 		this.numberOfZone = numberOfZone;
 		this.iterDoR = iterDoR;
+		this.useParallelProcessing = useParallelProcessing;
+		this.timedBufferFactor = timedBufferFactor;
 		this.filter = filter;
+		this.profileWindow = profileWindow;
+		this.profileStatistic = profileStatistic;
 	}
 
 	public static RunConfig getCurrentRunConfig(int startId, long zoneTime, byte visualizationType) {
@@ -56,7 +77,9 @@ public class RunConfig {
 		return new RunConfig(startId, AbstractMain.ROAD, AbstractMain.GTFS, visualizationType, AbstractMain.STARTTIME,
 				zoneTime, AbstractMain.DISTANCE_FACTOR, AbstractMain.DILATION_FACTOR, AbstractMain.FACE_BOUNDARY_BUFFER,
 				AbstractMain.MAX_DoR, AbstractMain.DEFAULT_TRANSFER_TIME, AbstractMain.NON_OCTI_MALUS, numberOfZone,
-				AbstractMain.ITERATE_DoR, AbstractMain.FILTER_ROADS);
+				AbstractMain.ITERATE_DoR, AbstractMain.WEIGHT_TURNS, AbstractMain.USE_PARALLEL_PROCESSING,
+				AbstractMain.TIMED_BUFFER_FACTOR, AbstractMain.FILTER_ROADS, AbstractMain.PROFILE_WINDOW,
+				AbstractMain.PROFILE_STATISTIC);
 	}
 
 	public int getStartId() {
@@ -115,7 +138,27 @@ public class RunConfig {
 		return iterDoR;
 	}
 
+	public boolean weightTurns() {
+		return weightTurns;
+	}
+
+	public boolean useParallelProcessing() {
+		return useParallelProcessing;
+	}
+
+	public double getTimedBufferFactor() {
+		return timedBufferFactor;
+	}
+
 	public byte getFilter() {
 		return filter;
 	}
+
+	public long getProfileWindow() {
+		return profileWindow;
+	}
+
+	public ProfileStatistic getProfileStatistic() {
+		return profileStatistic;
+	}
 }
@@ -0,0 +1,215 @@
+package tests;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import graph.generic.DiGraph;
+import graph.routing.CSRDijkstra;
+import graph.routing.CSRGraph;
+import graph.routing.ConnectionScan;
+import graph.routing.ProfileScan;
+import graph.routing.Router;
+import graph.routing.Timetable;
+import graph.types.GeofabrikData;
+import graph.types.IsoEdge;
+import graph.types.IsoVertex;
+import graph.types.RoadNode;
+import io.gtfs.GTFSLoader;
+import util.tools.Util;
+
+/**
+ * Compares the arrival times at the road nodes, including the ones next to the
+ * stops, of the connection scan with the ones of the time-expanded graph on a
+ * grid with random trips, and the ones of the profile with the ones of the
+ * connection scan. Any difference throws an exception. Trips do not pass
+ * midnight, as the time-expanded graph assigns departures after midnight to the
+ * previous day.
+ */
+public class Test_ConnectionScan {
+
+	private static final int SIZE = 40;
+	private static final double SPACING = 150;
+
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(42);
+		Point2D origin = Util.lonlat2utm(7.1, 50.7);
+		File gtfs = Files.createTempDirectory("gtfs").toFile();
+		writeGTFS(gtfs, random, 60, 400);
+
+		DiGraph<IsoVertex, IsoEdge> graph = createGrid(origin);
+		GTFSLoader loader = new GTFSLoader(graph);
+		loader.loadGTFS(gtfs);
+		CSRGraph expanded = CSRGraph.freeze(graph, SIZE * SIZE, loader.getTransferNodes(), loader.getTransferTimes(),
+				120);
+		CSRDijkstra dijkstra = new CSRDijkstra(expanded);
+
+		graph = createGrid(origin);
+		loader = new GTFSLoader(graph);
+		Timetable timetable = loader.loadTimetable(gtfs);
+		CSRGraph road = CSRGraph.freeze(graph, SIZE * SIZE, Collections.emptyMap(), loader.getTransferTimes(), 120);
+		ConnectionScan scan = new ConnectionScan(road, timetable);
+
+		System.out.println("Expanded graph: " + expanded.n() + " nodes, " + expanded.m() + " arcs; timetable: "
+				+ timetable.numConnections() + " connections");
+
+		int compared = 0;
+		for (int q = 0; q < 200; ++q) {
+			int source = random.nextInt(SIZE * SIZE);
+			double starttime = q % 10 == 0 ? 7 * 86400 - 1800 : random.nextInt(7 * 86400);
+			double maxTime = starttime + 3600;
+			dijkstra.run(source, starttime, maxTime, true);
+			scan.run(source, starttime, maxTime, true);
+
+			for (int i = 0; i < SIZE * SIZE; ++i) {
+				double expected = dijkstra.getDistance(i);
+				double actual = scan.getDistance(i);
+				if (expected > maxTime && actual > maxTime)
+					continue;
+				++compared;
+				// walking times summed up in a different order may differ in the last
+				// digits
+				if (Math.abs(actual - expected) > 1e-6)
+					throw new IllegalStateException("Arrival at node " + i + " from " + source + " at " + starttime
+							+ ": " + actual + " by the connection scan, " + expected + " in the expanded graph.");
+			}
+		}
+		System.out.println("Compared " + compared + " arrival times.");
+
+		// the profile relies on the arrival times of the scan improving road nodes
+		// reached before
+		compareProfile(new ConnectionScan(road, timetable, true), new ProfileScan(road, timetable), random);
+		checkWeekWrap(road);
+	}
+
+	/**
+	 * Routes early on Monday over a trip of Sunday night, which is stored after
+	 * the end of the week.
+	 */
+	private static void checkWeekWrap(CSRGraph road) {
+		int sunday = 6 * 86400;
+		int monday = 7 * 86400;
+		int target = SIZE * SIZE - 1;
+		Timetable.Builder builder = new Timetable.Builder();
+		builder.addTrip(new int[] { 1, 2, 3 }, new int[] { sunday + 85800, monday + 2040, monday + 3000 },
+				new int[] { sunday + 85800, monday + 2100, monday + 3000 });
+		Timetable timetable = builder.build(Map.of(1, 0, 2, 1, 3, target), Map.of(0, 1, 1, 2, target, 3),
+				Collections.emptyMap(), 120);
+
+		// boarding at 00:35 and leaving at 00:50, each adds half of the transfer time
+		ConnectionScan scan = new ConnectionScan(road, timetable);
+		scan.run(1, 1800, 1800 + 3600, true);
+		double arrival = scan.getDistance(target);
+		if (Math.abs(arrival - 3120) > 1e-6)
+			throw new IllegalStateException("Sunday night trip not used on Monday 00:30, arrival " + arrival);
+		System.out.println("Week wrap: arrival " + arrival + " at the target.");
+	}
+
+	/**
+	 * Compares the arrival times of the profile with the ones of the connection
+	 * scan for departures within the window, which have to be equal.
+	 */
+	private static void compareProfile(ConnectionScan scan, ProfileScan profile, Random random) {
+		int compared = 0, entries = 0;
+		for (int q = 0; q < 20; ++q) {
+			int source = random.nextInt(SIZE * SIZE);
+			long from = q % 5 == 0 ? 7 * 86400 - 1800 : random.nextInt(7 * 86400);
+			long to = from + 3600;
+			double maxTime = 3600;
+			profile.run(source, from, to, maxTime, true);
+			entries += profile.getNumEntries();
+
+			for (long departure = from; departure <= to; departure += 97) {
+				scan.run(source, departure, departure + maxTime, true);
+				for (int i = 0; i < SIZE * SIZE; ++i) {
+					double expected = scan.getDistance(i);
+					double actual = profile.getArrival(i, departure);
+					// walking times summed up from zero may differ in the last digits
+					if (expected > departure + maxTime - 1e-6 && actual > departure + maxTime - 1e-6)
+						continue;
+					++compared;
+					if (Math.abs(actual - expected) > 1e-6)
+						throw new IllegalStateException("Arrival at node " + i + " from " + source + " at "
+								+ departure + ": " + actual + " by the profile, " + expected + " by the scan.");
+				}
+			}
+		}
+		System.out.println("Profile: " + entries + " entries, compared " + compared + " arrival times.");
+	}
+
+	private static DiGraph<IsoVertex, IsoEdge> createGrid(Point2D origin) {
+		Random random = new Random(1);
+		DiGraph<IsoVertex, IsoEdge> graph = new DiGraph<>();
+		for (int y = 0; y < SIZE; ++y)
+			for (int x = 0; x < SIZE; ++x)
+				graph.addNode(new RoadNode(new Point2D.Double(origin.getX() + x * SPACING + random.nextDouble(),
+						origin.getY() + y * SPACING + random.nextDouble())));
+
+		for (int y = 0; y < SIZE; ++y) {
+			for (int x = 0; x < SIZE; ++x) {
+				int u = y * SIZE + x;
+				if (x + 1 < SIZE)
+					addEdge(graph, u, u + 1, SPACING + random.nextInt(40));
+				if (y + 1 < SIZE)
+					addEdge(graph, u, u + SIZE, SPACING + random.nextInt(40));
+			}
+		}
+		return graph;
+	}
+
+	private static void addEdge(DiGraph<IsoVertex, IsoEdge> graph, int u, int v, double length) {
+		GeofabrikData data = new GeofabrikData(length);
+		graph.addArc(graph.getNode(u), graph.getNode(v), Router.GEOFABRIK_FACTORY.createIsoEdgeData(data));
+		graph.addArc(graph.getNode(v), graph.getNode(u), Router.GEOFABRIK_FACTORY.createIsoEdgeData(data));
+	}
+
+	private static void writeGTFS(File directory, Random random, int numStops, int numTrips) throws IOException {
+		try (PrintWriter pw = new PrintWriter(new File(directory, "stops.txt"))) {
+			pw.println("stop_id,stop_code,stop_name,stop_desc,stop_lat,stop_lon");
+			for (int i = 0; i < numStops; ++i)
+				pw.println((1000 + i) + ",,Stop " + i + ",," + (50.7 + random.nextDouble() * SIZE * SPACING / 111000)
+						+ "," + (7.1 + random.nextDouble() * SIZE * SPACING / 70000));
+		}
+		try (PrintWriter pw = new PrintWriter(new File(directory, "routes.txt"))) {
+			pw.println("route_id,agency_id,route_short_name,route_long_name");
+			pw.println("1,1,R1,Route 1");
+		}
+		try (PrintWriter pw = new PrintWriter(new File(directory, "calendar.txt"))) {
+			pw.println("service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday");
+			pw.println("1,1,1,1,1,1,0,0");
+			pw.println("2,0,0,0,0,0,1,1");
+			pw.println("3,1,0,1,0,1,0,1");
+		}
+		try (PrintWriter pw = new PrintWriter(new File(directory, "transfers.txt"))) {
+			pw.println("from_stop_id,to_stop_id,transfer_type,min_transfer_time");
+			for (int i = 0; i < numStops; i += 3)
+				pw.println((1000 + i) + "," + (1000 + i) + ",2," + (60 + random.nextInt(300)));
+		}
+		try (PrintWriter trips = new PrintWriter(new File(directory, "trips.txt"));
+				PrintWriter stopTimes = new PrintWriter(new File(directory, "stop_times.txt"))) {
+			trips.println("route_id,service_id,trip_id");
+			stopTimes.println("trip_id,arrival_time,departure_time,stop_id");
+			for (int trip = 0; trip < numTrips; ++trip) {
+				trips.println("1," + (1 + random.nextInt(3)) + ",T" + trip);
+				int time = 4 * 3600 + random.nextInt(17 * 3600);
+				int stop = random.nextInt(numStops);
+				int numStopTimes = 3 + random.nextInt(8);
+				for (int i = 0; i < numStopTimes; ++i) {
+					int dwell = random.nextInt(3) * 30;
+					stopTimes.println("T" + trip + "," + format(time) + "," + format(time + dwell) + "," + (1000 + stop));
+					time += dwell + 60 + random.nextInt(400);
+					stop = (stop + 1 + random.nextInt(numStops - 1)) % numStops;
+				}
+			}
+		}
+	}
+
+	private static String format(int seconds) {
+		return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+}
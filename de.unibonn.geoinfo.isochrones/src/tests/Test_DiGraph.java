@@ -0,0 +1,80 @@
+package tests;
+
+import graph.generic.DiGraph;
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+
+/**
+ * Checks removing arcs, compacting and freezing of {@link DiGraph}. Any
+ * unexpected state throws an exception.
+ */
+public class Test_DiGraph {
+
+	public static void main(String[] args) {
+		DiGraph<Integer, Integer> graph = new DiGraph<>();
+		DiGraphNode<Integer, Integer> u = graph.addNode(0);
+		DiGraphNode<Integer, Integer> v = graph.addNode(1);
+		DiGraphNode<Integer, Integer> w = graph.addNode(2);
+
+		// two parallel arcs from u to v, each paired with one of the reverse arcs
+		DiGraphArc<Integer, Integer> uv1 = graph.addArc(u, v, 0);
+		DiGraphArc<Integer, Integer> uv2 = graph.addArc(u, v, 1);
+		DiGraphArc<Integer, Integer> vw = graph.addArc(v, w, 2);
+		DiGraphArc<Integer, Integer> vu1 = graph.addArc(v, u, 3);
+		DiGraphArc<Integer, Integer> vu2 = graph.addArc(v, u, 4);
+		check(uv1.getTwin() == vu1 && vu1.getTwin() == uv1, "First arcs are not twins.");
+		check(uv2.getTwin() == vu2 && vu2.getTwin() == uv2, "Second arcs are not twins.");
+		check(vw.getTwin() == null, "Arc without reverse arc has a twin.");
+
+		// removing an arc
+		graph.removeArc(uv1);
+		check(graph.m() == 4, "Wrong number of arcs after removal: " + graph.m());
+		check(!u.getOutgoingArcs().contains(uv1) && !v.getIncomingArcs().contains(uv1),
+				"Removed arc still in the adjacency lists.");
+		check(uv2.getTwin() == vu2 && vu2.getTwin() == uv2, "Twins of another arc changed by the removal.");
+		// without a paired arc, the first reverse arc is returned
+		check(vu1.getTwin() == uv2, "Twin of an unpaired arc is not the remaining reverse arc.");
+		expectIllegalState(() -> graph.getArcs(), "Arc list readable before compact().");
+
+		// compacting
+		graph.compact();
+		check(graph.getArcs().size() == 4 && !graph.getArcs().contains(uv1), "Removed arc not purged.");
+		for (int i = 0; i < graph.m(); ++i)
+			check(graph.getArc(i).getId() == i, "Arc " + i + " has id " + graph.getArc(i).getId() + ".");
+
+		// a new reverse arc is paired with the arc whose twin has been removed
+		DiGraphArc<Integer, Integer> uv3 = graph.addArc(u, v, 5);
+		check(uv3.getTwin() == vu1 && vu1.getTwin() == uv3, "New arc not paired with the unpaired reverse arc.");
+
+		// freezing
+		graph.removeArc(vw);
+		graph.freeze();
+		check(graph.isFrozen() && graph.m() == 4, "Frozen graph not compacted.");
+		graph.compact();
+		u.setId(7);
+		expectIllegalState(() -> graph.compact(), "Frozen graph renumbered.");
+		check(u.getId() == 7, "Id of a frozen graph changed.");
+		u.setId(0);
+		expectIllegalState(() -> graph.addNode(3), "Node added to a frozen graph.");
+		expectIllegalState(() -> graph.addArc(u, w, 6), "Arc added to a frozen graph.");
+		expectIllegalState(() -> graph.removeArc(uv2), "Arc removed from a frozen graph.");
+		expectIllegalState(() -> u.getOutgoingArcs().clear(), "Adjacency list of a frozen graph modified.");
+		check(graph.m() == 4 && u.getOutgoingArcs().contains(uv2), "Frozen graph changed.");
+
+		System.out.println("DiGraph checks passed.");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new IllegalStateException(message);
+	}
+
+	private static void expectIllegalState(Runnable action, String message) {
+		try {
+			action.run();
+		} catch (IllegalStateException | UnsupportedOperationException e) {
+			return;
+		}
+		throw new IllegalStateException(message);
+	}
+}
@@ -0,0 +1,45 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import util.structures.IndexedDaryHeap;
+import util.structures.MinHeap;
+import util.structures.MinHeap.HeapItem;
+
+public class Test_IndexedDaryHeap {
+
+	public static void main(String[] args) {
+		int n = 100000;
+		Random random = new Random(42);
+
+		IndexedDaryHeap heap = new IndexedDaryHeap(n);
+		MinHeap<Integer> reference = new MinHeap<>();
+		List<HeapItem<Integer>> items = new ArrayList<>(n);
+
+		for (int i = 0; i < n; ++i) {
+			double key = random.nextInt(1000000);
+			heap.insert(i, key);
+			items.add(reference.insertItem(key, i));
+		}
+		for (int i = 0; i < n / 2; ++i) {
+			int id = random.nextInt(n);
+			double key = heap.getKey(id) - random.nextInt(1000);
+			heap.decreaseKey(id, key);
+			reference.decreaseKey(items.get(id), key);
+		}
+
+		int errors = 0;
+		while (!heap.isEmpty()) {
+			double key = heap.getMinKey();
+			heap.extractMin();
+			if (key != reference.extractMin().getKey())
+				errors++;
+		}
+		System.out.println("Extracted " + n + " items, " + errors + " errors.");
+		if (errors > 0)
+			throw new IllegalStateException(errors + " keys differ from the reference heap.");
+	}
+
+}
@@ -23,6 +23,9 @@ import ipeio.api.IpeObject.Document;
 import ipeio.api.IpeObject.Geometry;
 import ipeio.api.IpeObject.ObjectFilter;
 import ipeio.api.IpeParser;
+import main.AbstractMain;
+import main.QueryConfig;
+import main.RunConfig;
 import util.geometry.Envelope;
 
 public class Test_LDIterator {
@@ -33,6 +36,7 @@ public class Test_LDIterator {
 
 		String[] layers = { "test_01", "test_02", "test_03", "test_04", "test_05", "test_06", "test_07" };
 
+		QueryConfig config = QueryConfig.of(RunConfig.getCurrentRunConfig(0, 0, AbstractMain.OCTILINEAR));
 		for (String layer : layers) {
 			var input = reader.readInputArcs(layer);
 			var splitNode = input.getNodes().stream().filter(x -> x.inDegree() + x.outDegree() > 1).findFirst().get();
@@ -41,7 +45,7 @@ public class Test_LDIterator {
 			var splitnodes = new HashSet<DiGraphNode<Point2D, VisualizationEdge>>();
 			splitnodes.add(splitNode);
 
-			SplitNodeFactory snf = new SplitNodeFactory(0.1, overlay, splitnodes);
+			SplitNodeFactory snf = new SplitNodeFactory(0.1, overlay, splitnodes, config);
 			System.out.println(layer + " " + snf.createEdgeData(splitNode.getIncomingArcs().get(0),
 					splitNode.getOutgoingArcs().get(0), false));
 			System.out.println();
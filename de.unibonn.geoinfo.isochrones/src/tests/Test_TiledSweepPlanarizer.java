@@ -0,0 +1,131 @@
+package tests;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import graph.generic.DiGraph.DiGraphArc;
+import graph.generic.DiGraph.DiGraphNode;
+import graph.planarizer.PlanarGraph;
+import graph.planarizer.Planarizer.PlanarizerFactory;
+import graph.planarizer.sweep.TiledSweepPlanarizer;
+import graph.types.GeofabrikData;
+import graph.types.RoadGraph;
+import util.geometry.Envelope;
+
+/**
+ * Planarizes the same random segments with one strip and with several strips
+ * and compares the positions of the nodes and the end points of the arcs of the
+ * planar graphs, which have to be identical. Any difference throws an
+ * exception.
+ */
+public class Test_TiledSweepPlanarizer {
+
+	private static final double SIZE = 1000;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		RoadGraph<Point2D, GeofabrikData> graph = createSegments(random, 3000, 80);
+
+		PlanarizerFactory<Point2D, GeofabrikData> factory = new PlanarizerFactory<>() {
+
+			@Override
+			public Point2D createNodeData(double x, double y) {
+				return new Point2D.Double(x, y);
+			}
+
+			@Override
+			public GeofabrikData createEdgeData(double dist) {
+				return new GeofabrikData(dist);
+			}
+
+		};
+
+		PlanarGraph<Point2D, GeofabrikData> expected = planarize(graph, factory, 1);
+		List<String> expectedNodes = nodes(expected);
+		List<String> expectedArcs = arcs(expected);
+		System.out.println("One strip: " + expected.n() + " nodes, " + expected.m() + " arcs, "
+				+ expected.getCrossPoints().size() + " crossings.");
+
+		for (int strips : new int[] { 2, 3, 7 }) {
+			PlanarGraph<Point2D, GeofabrikData> actual = planarize(graph, factory, strips);
+			if (!nodes(actual).equals(expectedNodes))
+				throw new IllegalStateException("Nodes of " + strips + " strips differ from the ones of one strip: "
+						+ actual.n() + " instead of " + expected.n() + " nodes.");
+			if (!arcs(actual).equals(expectedArcs))
+				throw new IllegalStateException("Arcs of " + strips + " strips differ from the ones of one strip: "
+						+ actual.m() + " instead of " + expected.m() + " arcs.");
+			System.out.println(strips + " strips: same nodes and arcs.");
+		}
+	}
+
+	private static PlanarGraph<Point2D, GeofabrikData> planarize(RoadGraph<Point2D, GeofabrikData> graph,
+			PlanarizerFactory<Point2D, GeofabrikData> factory, int strips) {
+		TiledSweepPlanarizer<Point2D, GeofabrikData> planarizer = new TiledSweepPlanarizer<>(factory, strips);
+		planarizer.setInputGraph(graph);
+		planarizer.planarize();
+		return planarizer.getPlanarGraph();
+	}
+
+	/**
+	 * @return positions of the nodes, sorted
+	 */
+	private static List<String> nodes(PlanarGraph<Point2D, GeofabrikData> graph) {
+		List<String> nodes = new ArrayList<>(graph.n());
+		for (DiGraphNode<Point2D, GeofabrikData> node : graph.getNodes())
+			nodes.add(position(node));
+		Collections.sort(nodes);
+		return nodes;
+	}
+
+	/**
+	 * @return source and target positions of the arcs, sorted
+	 */
+	private static List<String> arcs(PlanarGraph<Point2D, GeofabrikData> graph) {
+		List<String> arcs = new ArrayList<>(graph.m());
+		for (DiGraphArc<Point2D, GeofabrikData> arc : graph.getArcs())
+			arcs.add(position(arc.getSource()) + " -> " + position(arc.getTarget()));
+		Collections.sort(arcs);
+		return arcs;
+	}
+
+	private static String position(DiGraphNode<Point2D, GeofabrikData> node) {
+		return node.getNodeData().getX() + " " + node.getNodeData().getY();
+	}
+
+	/**
+	 * Random segments in both directions, some of them sharing an end point.
+	 */
+	private static RoadGraph<Point2D, GeofabrikData> createSegments(Random random, int numSegments,
+			double maxLength) {
+		RoadGraph<Point2D, GeofabrikData> graph = new RoadGraph<>(new Envelope(0, SIZE, 0, SIZE));
+		List<DiGraphNode<Point2D, GeofabrikData>> ends = new ArrayList<>();
+		for (int i = 0; i < numSegments; ++i) {
+			DiGraphNode<Point2D, GeofabrikData> u;
+			if (!ends.isEmpty() && random.nextInt(3) == 0)
+				u = ends.get(random.nextInt(ends.size()));
+			else
+				u = addNode(graph, random.nextDouble() * SIZE, random.nextDouble() * SIZE);
+
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double length = 1 + random.nextDouble() * maxLength;
+			double x = Math.min(SIZE, Math.max(0, u.getNodeData().getX() + Math.cos(angle) * length));
+			double y = Math.min(SIZE, Math.max(0, u.getNodeData().getY() + Math.sin(angle) * length));
+			DiGraphNode<Point2D, GeofabrikData> v = addNode(graph, x, y);
+
+			double dist = u.getNodeData().distance(v.getNodeData());
+			graph.addArc(u, v, new GeofabrikData(dist));
+			graph.addArc(v, u, new GeofabrikData(dist));
+			ends.add(v);
+		}
+		return graph;
+	}
+
+	private static DiGraphNode<Point2D, GeofabrikData> addNode(RoadGraph<Point2D, GeofabrikData> graph, double x,
+			double y) {
+		DiGraphNode<Point2D, GeofabrikData> node = graph.addNode(new Point2D.Double(x, y));
+		return node != null ? node : graph.getDiGraphNode(x, y);
+	}
+}
@@ -23,8 +23,6 @@ import gisviewer.ListLayer;
 import graph.generic.DiGraph;
 import graph.generic.DiGraph.DiGraphArc;
 import graph.generic.DiGraph.DiGraphNode;
-import graph.types.ColoredNode;
-import graph.types.GeofabrikData;
 import util.geometry.Envelope;
 
 public class ResultFrame {
@@ -57,9 +55,9 @@ public class ResultFrame {
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	}
 
-	public void setEnvelope(List<DiGraphNode<ColoredNode, GeofabrikData>> splitNodes) {
+	public void setEnvelope(List<? extends DiGraphNode<? extends Point2D, ?>> splitNodes) {
 		this.currEnvelope = new Envelope();
-		for (DiGraphNode<ColoredNode, GeofabrikData> node : splitNodes) {
+		for (DiGraphNode<? extends Point2D, ?> node : splitNodes) {
 			currEnvelope.expandToInclude(node.getNodeData().getX(), node.getNodeData().getY());
 		}
 	}
@@ -0,0 +1,109 @@
+package util.structures;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from points to non-negative integers on primitive arrays, e.g. from
+ * the positions of nodes to their indices while a graph is imported. Points are
+ * equal if their coordinates are exactly equal, 0.0 and -0.0 are the same.
+ * Uses open addressing with linear probing, no objects are created per entry.
+ */
+public class CoordinateMap {
+
+	private static final int ABSENT = -1;
+	private static final double MAX_LOAD = 0.5;
+
+	private long[] xs;
+	private long[] ys;
+	private int[] values; // ABSENT for free slots
+	private int mask;
+	private int size = 0;
+
+	public CoordinateMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize number of entries that fit without growing the table
+	 */
+	public CoordinateMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(8, (int) Math.min(1 << 30, expectedSize / MAX_LOAD)) * 2 - 1);
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		xs = new long[capacity];
+		ys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, ABSENT);
+		mask = capacity - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return value of the point, -1 if it is not contained
+	 */
+	public int get(double x, double y) {
+		long kx = key(x), ky = key(y);
+		for (int slot = slot(kx, ky);; slot = (slot + 1) & mask) {
+			if (values[slot] == ABSENT)
+				return ABSENT;
+			if (xs[slot] == kx && ys[slot] == ky)
+				return values[slot];
+		}
+	}
+
+	/**
+	 * Maps the point to the value unless it is already contained.
+	 *
+	 * @param value non-negative value
+	 * @return the value of the point if it is already contained, -1 if the value
+	 *         has been added
+	 */
+	public int putIfAbsent(double x, double y, int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("Values must not be negative, got " + value);
+		long kx = key(x), ky = key(y);
+		int slot = slot(kx, ky);
+		for (; values[slot] != ABSENT; slot = (slot + 1) & mask)
+			if (xs[slot] == kx && ys[slot] == ky)
+				return values[slot];
+		xs[slot] = kx;
+		ys[slot] = ky;
+		values[slot] = value;
+		if (++size > MAX_LOAD * values.length)
+			grow();
+		return ABSENT;
+	}
+
+	private void grow() {
+		long[] oldXs = xs, oldYs = ys;
+		int[] oldValues = values;
+		allocate(values.length * 2);
+		for (int i = 0; i < oldValues.length; ++i) {
+			if (oldValues[i] == ABSENT)
+				continue;
+			int slot = slot(oldXs[i], oldYs[i]);
+			while (values[slot] != ABSENT)
+				slot = (slot + 1) & mask;
+			xs[slot] = oldXs[i];
+			ys[slot] = oldYs[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private static long key(double coordinate) {
+		return Double.doubleToLongBits(coordinate == 0 ? 0.0 : coordinate);
+	}
+
+	private int slot(long kx, long ky) {
+		long h = kx * 0x9E3779B97F4A7C15l + ky;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDl;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+}
@@ -0,0 +1,145 @@
+package util.structures;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap on primitive arrays. In contrast to {@link MinHeap},
+ * no objects are created on insert; the heap position of every id is stored
+ * in an array of size <code>capacity</code>, which allows decrease-key without
+ * handles.
+ */
+public class IndexedDaryHeap implements IntPriorityQueue {
+
+	public static final int DEFAULT_ARITY = 4;
+
+	private final int arity;
+
+	private final int heap[]; // ids in heap order
+	private final double keys[]; // keys in heap order
+	private final int position[]; // position of each id in the heap, -1 if absent
+	private int size = 0;
+
+	public IndexedDaryHeap(int capacity) {
+		this(capacity, DEFAULT_ARITY);
+	}
+
+	public IndexedDaryHeap(int capacity, int arity) {
+		if (arity < 2)
+			throw new IllegalArgumentException("Arity must be at least 2, got " + arity);
+		this.arity = arity;
+		this.heap = new int[capacity];
+		this.keys = new double[capacity];
+		this.position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	@Override
+	public void insert(int id, double key) {
+		if (position[id] >= 0)
+			throw new IllegalArgumentException("Id " + id + " is already contained in the heap.");
+		heap[size] = id;
+		keys[size] = key;
+		position[id] = size;
+		siftUp(size++);
+	}
+
+	@Override
+	public void decreaseKey(int id, double key) {
+		int i = position[id];
+		keys[i] = key;
+		siftUp(i);
+	}
+
+	@Override
+	public boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	@Override
+	public double getKey(int id) {
+		return keys[position[id]];
+	}
+
+	@Override
+	public double getMinKey() {
+		return size == 0 ? Double.NaN : keys[0];
+	}
+
+	@Override
+	public int extractMin() {
+		if (size == 0)
+			return -1;
+		int min = heap[0];
+		position[min] = -1;
+		if (--size > 0) {
+			heap[0] = heap[size];
+			keys[0] = keys[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; ++i)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int id = heap[i];
+		double key = keys[i];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			if (keys[parent] <= key)
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		set(i, id, key);
+	}
+
+	private void siftDown(int i) {
+		int id = heap[i];
+		double key = keys[i];
+		while (true) {
+			int first = i * arity + 1;
+			if (first >= size)
+				break;
+			int last = Math.min(first + arity, size);
+			int min = first;
+			for (int c = first + 1; c < last; ++c) {
+				if (keys[c] < keys[min])
+					min = c;
+			}
+			if (keys[min] >= key)
+				break;
+			move(min, i);
+			i = min;
+		}
+		set(i, id, key);
+	}
+
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		keys[to] = keys[from];
+		position[heap[to]] = to;
+	}
+
+	private void set(int i, int id, double key) {
+		heap[i] = id;
+		keys[i] = key;
+		position[id] = i;
+	}
+}
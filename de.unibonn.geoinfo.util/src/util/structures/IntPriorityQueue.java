@@ -0,0 +1,50 @@
+package util.structures;
+
+/**
+ * Priority queue of integer ids (e.g. node ids) in the range
+ * <code>[0, capacity)</code> with double keys. Each id is contained at most
+ * once. Implementations are meant to be reused for multiple runs, see
+ * {@link #clear()}.
+ */
+public interface IntPriorityQueue {
+
+	/**
+	 * Inserts an id that is not yet contained in the queue.
+	 */
+	void insert(int id, double key);
+
+	/**
+	 * Decreases the key of an id contained in the queue. The new key must not be
+	 * larger than the current key.
+	 */
+	void decreaseKey(int id, double key);
+
+	boolean contains(int id);
+
+	/**
+	 * @return key of the id contained in the queue
+	 */
+	double getKey(int id);
+
+	/**
+	 * @return key of the minimum, Double.NaN if the queue is empty
+	 */
+	double getMinKey();
+
+	/**
+	 * Removes the id with the minimum key.
+	 * 
+	 * @return the removed id, -1 if the queue is empty
+	 */
+	int extractMin();
+
+	int size();
+
+	boolean isEmpty();
+
+	/**
+	 * Removes all ids from the queue. Does not touch memory of ids that are not
+	 * contained.
+	 */
+	void clear();
+}
@@ -0,0 +1,100 @@
+package util.structures;
+
+/**
+ * Hash set of integers on a primitive array, e.g. for the ids of the stops,
+ * routes or services of a GTFS feed. Uses open addressing with linear probing,
+ * no objects are created per element.
+ */
+public class IntSet {
+
+	private static final int FREE = 0;
+	private static final double MAX_LOAD = 0.5;
+
+	private int[] keys; // FREE for free slots, 0 itself is stored in containsFree
+	private boolean containsFree = false;
+	private int mask;
+	private int size = 0;
+
+	public IntSet() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize number of elements that fit without growing the table
+	 */
+	public IntSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(8, (int) Math.min(1 << 30, expectedSize / MAX_LOAD)) * 2 - 1);
+		keys = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int value) {
+		if (value == FREE)
+			return containsFree;
+		for (int slot = slot(value);; slot = (slot + 1) & mask) {
+			if (keys[slot] == FREE)
+				return false;
+			if (keys[slot] == value)
+				return true;
+		}
+	}
+
+	/**
+	 * @return true if the value has been added, false if it is already contained
+	 */
+	public boolean add(int value) {
+		if (value == FREE) {
+			if (containsFree)
+				return false;
+			containsFree = true;
+			++size;
+			return true;
+		}
+		int slot = slot(value);
+		for (; keys[slot] != FREE; slot = (slot + 1) & mask)
+			if (keys[slot] == value)
+				return false;
+		keys[slot] = value;
+		if (++size > MAX_LOAD * keys.length)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Adds all values of the other set.
+	 */
+	public void addAll(IntSet other) {
+		if (other.containsFree)
+			add(FREE);
+		for (int key : other.keys)
+			if (key != FREE)
+				add(key);
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		keys = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		for (int key : oldKeys) {
+			if (key == FREE)
+				continue;
+			int slot = slot(key);
+			while (keys[slot] != FREE)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+		}
+	}
+
+	private int slot(int value) {
+		int h = value * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
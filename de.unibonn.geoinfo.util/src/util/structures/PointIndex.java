@@ -0,0 +1,210 @@
+package util.structures;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Static 2-d tree over points on primitive arrays. The tree is implicit: the
+ * points of a subtree occupy a range of the arrays, with the point splitting
+ * the subtree in the middle of the range. It is built once in O(n log n)
+ * expected time by median selection and cannot be changed afterwards, so
+ * queries may run concurrently.
+ *
+ * Points are identified by their index in the input. Of several points at the
+ * same distance, queries return the one with the smallest index.
+ */
+public class PointIndex {
+
+	private final double xs[]; // coordinates in tree order
+	private final double ys[];
+	private final int ids[]; // index of the point in the input, in tree order
+	private final boolean splitX[]; // subtree of the position is split by x
+
+	/**
+	 * Holds the best point found so far by a nearest neighbour query.
+	 */
+	private static class Search {
+		private double distanceSq;
+		private int id = -1;
+
+		private Search(double maxDistance) {
+			this.distanceSq = maxDistance * maxDistance;
+		}
+	}
+
+	public PointIndex(List<? extends Point2D> points) {
+		int n = points.size();
+		xs = new double[n];
+		ys = new double[n];
+		for (int i = 0; i < n; ++i) {
+			Point2D p = points.get(i);
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+		}
+		ids = new int[n];
+		splitX = new boolean[n];
+		build();
+	}
+
+	/**
+	 * @param x x-coordinates of the points, not changed
+	 * @param y y-coordinates of the points, not changed
+	 */
+	public PointIndex(double[] x, double[] y) {
+		if (x.length != y.length)
+			throw new IllegalArgumentException(x.length + " x-coordinates, but " + y.length + " y-coordinates.");
+		xs = x.clone();
+		ys = y.clone();
+		ids = new int[x.length];
+		splitX = new boolean[x.length];
+		build();
+	}
+
+	private void build() {
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = i;
+		build(0, ids.length);
+	}
+
+	/**
+	 * Splits the range by the median of its larger extent and builds the subtrees
+	 * of both halves.
+	 */
+	private void build(int lo, int hi) {
+		while (hi - lo > 1) {
+			double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (int i = lo; i < hi; ++i) {
+				minX = Math.min(minX, xs[i]);
+				maxX = Math.max(maxX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+			boolean byX = maxX - minX >= maxY - minY;
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi - 1, mid, byX ? xs : ys);
+			splitX[mid] = byX;
+
+			// recurse into the smaller half to bound the depth of the stack
+			if (mid - lo < hi - mid - 1) {
+				build(lo, mid);
+				lo = mid + 1;
+			} else {
+				build(mid + 1, hi);
+				hi = mid;
+			}
+		}
+	}
+
+	/**
+	 * Moves the k-th smallest key of [left, right] to position k, smaller or
+	 * equal keys before and larger or equal keys after it.
+	 */
+	private void select(int left, int right, int k, double[] keys) {
+		while (left < right) {
+			double pivot = keys[(left + right) >>> 1];
+			int i = left, j = right;
+			while (i <= j) {
+				while (keys[i] < pivot)
+					++i;
+				while (keys[j] > pivot)
+					--j;
+				if (i <= j)
+					swap(i++, j--);
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		double x = xs[i];
+		xs[i] = xs[j];
+		xs[j] = x;
+		double y = ys[i];
+		ys[i] = ys[j];
+		ys[j] = y;
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return index of the point next to (x, y), -1 if there are no points
+	 */
+	public int nearest(double x, double y) {
+		return nearest(x, y, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @return index of the point next to (x, y), -1 if there is no point within
+	 *         maxDistance
+	 */
+	public int nearest(double x, double y, double maxDistance) {
+		Search search = new Search(maxDistance);
+		nearest(0, ids.length, x, y, search);
+		return search.id;
+	}
+
+	private void nearest(int lo, int hi, double x, double y, Search search) {
+		if (lo >= hi)
+			return;
+		int mid = (lo + hi) >>> 1;
+		double dx = x - xs[mid];
+		double dy = y - ys[mid];
+		double distanceSq = dx * dx + dy * dy;
+		if (distanceSq < search.distanceSq
+				|| distanceSq == search.distanceSq && (search.id < 0 || ids[mid] < search.id)) {
+			search.distanceSq = distanceSq;
+			search.id = ids[mid];
+		}
+
+		double diff = splitX[mid] ? dx : dy;
+		if (diff < 0) {
+			nearest(lo, mid, x, y, search);
+			if (diff * diff <= search.distanceSq)
+				nearest(mid + 1, hi, x, y, search);
+		} else {
+			nearest(mid + 1, hi, x, y, search);
+			if (diff * diff <= search.distanceSq)
+				nearest(lo, mid, x, y, search);
+		}
+	}
+
+	/**
+	 * Passes the index of each point at most radius from (x, y) to the visitor,
+	 * in no particular order.
+	 */
+	public void visit(double x, double y, double radius, IntConsumer visitor) {
+		visit(0, ids.length, x, y, radius * radius, visitor);
+	}
+
+	private void visit(int lo, int hi, double x, double y, double radiusSq, IntConsumer visitor) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double dx = x - xs[mid];
+			double dy = y - ys[mid];
+			if (dx * dx + dy * dy <= radiusSq)
+				visitor.accept(ids[mid]);
+
+			double diff = splitX[mid] ? dx : dy;
+			if (diff * diff <= radiusSq) {
+				visit(lo, mid, x, y, radiusSq, visitor);
+				lo = mid + 1;
+			} else if (diff < 0) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+	}
+}
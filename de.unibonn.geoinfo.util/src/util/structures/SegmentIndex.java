@@ -0,0 +1,113 @@
+package util.structures;
+
+/**
+ * Static index of line segments for nearest segment queries. Segments are cut
+ * into pieces of at most a given length, whose midpoints are stored in a
+ * {@link PointIndex}. Every point of a segment lies within half that length of
+ * the midpoint of one of its pieces, which bounds the pieces to be checked
+ * after a first candidate has been found.
+ */
+public class SegmentIndex {
+
+	private final double x1[], y1[], x2[], y2[]; // end points of the segments
+	private final int segment[]; // segment of each piece
+	private final PointIndex pieces;
+	private final double halfPieceLength;
+
+	/**
+	 * Holds the best segment found so far by a query.
+	 */
+	private static class Search {
+		private double distance;
+		private int segment;
+
+		private Search(double distance, int segment) {
+			this.distance = distance;
+			this.segment = segment;
+		}
+	}
+
+	/**
+	 * @param maxPieceLength maximum length of the pieces; shorter pieces make
+	 *                       queries near long segments faster, but need more
+	 *                       memory
+	 */
+	public SegmentIndex(double[] x1, double[] y1, double[] x2, double[] y2, double maxPieceLength) {
+		if (x1.length != y1.length || x1.length != x2.length || x1.length != y2.length)
+			throw new IllegalArgumentException("Coordinate arrays differ in length.");
+		if (!(maxPieceLength > 0))
+			throw new IllegalArgumentException("Piece length must be positive, got " + maxPieceLength);
+		this.x1 = x1.clone();
+		this.y1 = y1.clone();
+		this.x2 = x2.clone();
+		this.y2 = y2.clone();
+		this.halfPieceLength = maxPieceLength / 2;
+
+		int[] numPieces = new int[x1.length];
+		int n = 0;
+		for (int s = 0; s < x1.length; ++s) {
+			double length = Math.hypot(x2[s] - x1[s], y2[s] - y1[s]);
+			numPieces[s] = Math.max(1, (int) Math.ceil(length / maxPieceLength));
+			n += numPieces[s];
+		}
+		segment = new int[n];
+		double[] mx = new double[n];
+		double[] my = new double[n];
+		int piece = 0;
+		for (int s = 0; s < x1.length; ++s) {
+			for (int i = 0; i < numPieces[s]; ++i) {
+				double t = (i + 0.5) / numPieces[s];
+				mx[piece] = x1[s] + t * (x2[s] - x1[s]);
+				my[piece] = y1[s] + t * (y2[s] - y1[s]);
+				segment[piece++] = s;
+			}
+		}
+		pieces = new PointIndex(mx, my);
+	}
+
+	public int size() {
+		return x1.length;
+	}
+
+	/**
+	 * @return index of the segment next to (x, y), the one with the smallest
+	 *         index of several at the same distance; -1 if there are no segments
+	 */
+	public int nearest(double x, double y) {
+		int first = pieces.nearest(x, y);
+		if (first < 0)
+			return -1;
+		Search search = new Search(distance(segment[first], x, y), segment[first]);
+		pieces.visit(x, y, search.distance + halfPieceLength, piece -> {
+			int s = segment[piece];
+			double d = distance(s, x, y);
+			if (d < search.distance || d == search.distance && s < search.segment) {
+				search.distance = d;
+				search.segment = s;
+			}
+		});
+		return search.segment;
+	}
+
+	/**
+	 * @return position of the projection of (x, y) onto the segment, from 0 at
+	 *         its first to 1 at its second end point
+	 */
+	public double fraction(int s, double x, double y) {
+		double dx = x2[s] - x1[s];
+		double dy = y2[s] - y1[s];
+		double lengthSq = dx * dx + dy * dy;
+		if (lengthSq == 0)
+			return 0;
+		double t = ((x - x1[s]) * dx + (y - y1[s]) * dy) / lengthSq;
+		return Math.max(0, Math.min(1, t));
+	}
+
+	/**
+	 * @return distance of (x, y) to the segment
+	 */
+	public double distance(int s, double x, double y) {
+		double t = fraction(s, x, y);
+		return Math.hypot(x1[s] + t * (x2[s] - x1[s]) - x, y1[s] + t * (y2[s] - y1[s]) - y);
+	}
+}
@@ -0,0 +1,120 @@
+package util.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs lists of independent tasks in parallel and collects their results in
+ * the order of the tasks. If there is only one thread or one task, the tasks
+ * are run one after another by the calling thread.
+ */
+public class Tasks {
+
+	private static ForkJoinPool sharedPool = null;
+
+	/**
+	 * Runs the tasks on a pool of at most <code>threads</code> threads created
+	 * for this call, e.g. for the long-running tasks of loading data. An
+	 * exception of a task is rethrown.
+	 *
+	 * @return results in the order of the tasks
+	 */
+	public static <T> List<T> invokeAll(List<Callable<T>> tasks, int threads) throws Exception {
+		if (threads <= 1 || tasks.size() <= 1)
+			return invokeAll(tasks, null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			return invokeAll(tasks, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the tasks on the given executor, e.g. the {@link #sharedPool(int)}, or
+	 * one after another if it is null. An exception of a task is rethrown.
+	 *
+	 * @return results in the order of the tasks
+	 */
+	public static <T> List<T> invokeAll(List<Callable<T>> tasks, ExecutorService executor) throws Exception {
+		List<T> results = new ArrayList<>(tasks.size());
+		if (executor == null || tasks.size() <= 1) {
+			for (Callable<T> task : tasks)
+				results.add(task.call());
+			return results;
+		}
+
+		for (Future<T> future : executor.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw e;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * As {@link #invokeAll(List, int)} for tasks without checked exceptions.
+	 *
+	 * @throws IllegalStateException wrapping a checked exception of a task or an
+	 *                               interruption
+	 */
+	public static <T> List<T> invokeAllUnchecked(List<Callable<T>> tasks, int threads) {
+		try {
+			return invokeAll(tasks, threads);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * As {@link #invokeAll(List, ExecutorService)} for tasks without checked
+	 * exceptions.
+	 *
+	 * @throws IllegalStateException wrapping a checked exception of a task or an
+	 *                               interruption
+	 */
+	public static <T> List<T> invokeAllUnchecked(List<Callable<T>> tasks, ExecutorService executor) {
+		try {
+			return invokeAll(tasks, executor);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Pool shared by the short tasks of concurrent queries, so that no threads
+	 * are started per query and all queries together use at most the parallelism
+	 * of the pool.
+	 *
+	 * @param threads parallelism of the pool, has to be the same for all calls
+	 * @return pool created on first use
+	 * @throws IllegalArgumentException if the pool has been created with another
+	 *                                  parallelism
+	 */
+	public static synchronized ForkJoinPool sharedPool(int threads) {
+		threads = Math.max(1, threads);
+		if (sharedPool == null)
+			sharedPool = new ForkJoinPool(threads);
+		else if (sharedPool.getParallelism() != threads)
+			throw new IllegalArgumentException("Shared pool has been created with " + sharedPool.getParallelism()
+					+ " threads, requested " + threads + ".");
+		return sharedPool;
+	}
+}